@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.io.File;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+
+/**
+ * Creates the databases used by the benchmarks. Disk based databases are placed under the directory set by the "buildDirectory"
+ * system property, the temporary directory by default, and are dropped if they already exist.
+ */
+public class OBenchmarkDatabase {
+  private OBenchmarkDatabase() {
+  }
+
+  public static ODatabaseDocumentTx create(final String iEngine, final String iName) {
+    final String url;
+    if ("memory".equals(iEngine))
+      url = "memory:" + iName;
+    else {
+      String buildDirectory = System.getProperty("buildDirectory");
+      if (buildDirectory == null || buildDirectory.isEmpty())
+        buildDirectory = System.getProperty("java.io.tmpdir");
+      url = iEngine + ":" + new File(buildDirectory, "orientdb-benchmarks/" + iName).getAbsolutePath();
+    }
+
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx(url);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+    }
+    db.create();
+    return db;
+  }
+
+  public static void drop(final ODatabaseDocumentTx iDatabase) {
+    if (iDatabase != null && !iDatabase.isClosed())
+      iDatabase.drop();
+  }
+}
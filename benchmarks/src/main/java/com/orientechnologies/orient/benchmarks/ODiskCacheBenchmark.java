@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+
+/**
+ * Load and release of the pages of a file by the 2Q disk cache of a "plocal" storage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ODiskCacheBenchmark {
+  @Param({ "256", "4096" })
+  public int                  pages;
+
+  private ODatabaseDocumentTx db;
+  private ODiskCache          diskCache;
+  private long                fileId;
+  private long                nextPage;
+  private MersenneTwisterFast random;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    db = OBenchmarkDatabase.create("plocal", "diskCacheBenchmark");
+    final OLocalPaginatedStorage storage = (OLocalPaginatedStorage) db.getStorage();
+    diskCache = storage.getDiskCache();
+
+    final OStorageSegmentConfiguration fileConfiguration = new OStorageSegmentConfiguration(storage.getConfiguration(),
+        "diskCacheBenchmark", 0);
+    fileConfiguration.fileType = OFileFactory.CLASSIC;
+    fileId = diskCache.openFile(fileConfiguration, ".pcl");
+
+    for (long i = 0; i < pages; i++) {
+      diskCache.load(fileId, i);
+      diskCache.markDirty(fileId, i);
+      diskCache.release(fileId, i);
+    }
+    diskCache.flushFile(fileId);
+
+    random = new MersenneTwisterFast(42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    diskCache.deleteFile(fileId);
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public long loadReleaseRandom() throws IOException {
+    final long pageIndex = random.nextInt(pages);
+    final long pointer = diskCache.load(fileId, pageIndex);
+    diskCache.release(fileId, pageIndex);
+    return pointer;
+  }
+
+  @Benchmark
+  public long loadReleaseSequential() throws IOException {
+    final long pageIndex = nextPage;
+    nextPage = (nextPage + 1) % pages;
+
+    final long pointer = diskCache.load(fileId, pageIndex);
+    diskCache.release(fileId, pageIndex);
+    return pointer;
+  }
+}
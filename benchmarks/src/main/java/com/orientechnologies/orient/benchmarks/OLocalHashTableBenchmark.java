@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OStringSerializer;
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.hashindex.local.OAbstractLocalHashIndex;
+import com.orientechnologies.orient.core.index.hashindex.local.OLocalHashTable;
+import com.orientechnologies.orient.core.index.hashindex.local.OMurmurHash3HashFunction;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+
+/**
+ * Random puts and gets on the extendible hash table behind the hash indexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class OLocalHashTableBenchmark {
+  @Param({ "10000", "1000000" })
+  public int                               keys;
+
+  private ODatabaseDocumentTx              db;
+  private OLocalHashTable<Integer, String> hashTable;
+  private MersenneTwisterFast              random;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    db = OBenchmarkDatabase.create("plocal", "localHashTableBenchmark");
+
+    final OMurmurHash3HashFunction<Integer> hashFunction = new OMurmurHash3HashFunction<Integer>();
+    hashFunction.setValueSerializer(OIntegerSerializer.INSTANCE);
+
+    hashTable = new OLocalHashTable<Integer, String>(OAbstractLocalHashIndex.METADATA_CONFIGURATION_FILE_EXTENSION,
+        OAbstractLocalHashIndex.TREE_STATE_FILE_EXTENSION, OAbstractLocalHashIndex.BUCKET_FILE_EXTENSION, hashFunction);
+    hashTable.create("localHashTableBenchmark", OIntegerSerializer.INSTANCE, OStringSerializer.INSTANCE,
+        (OStorageLocalAbstract) db.getStorage());
+
+    for (int i = 0; i < keys; i++)
+      hashTable.put(i, String.valueOf(i));
+
+    random = new MersenneTwisterFast(42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    hashTable.delete();
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public void put() {
+    final int key = random.nextInt(keys);
+    hashTable.put(key, String.valueOf(key));
+  }
+
+  @Benchmark
+  public String get() {
+    return hashTable.get(random.nextInt(keys));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.collection.OMVRBTreeMemory;
+import com.orientechnologies.common.util.MersenneTwisterFast;
+
+/**
+ * Random puts and gets on an in-memory MVRB-Tree, the structure behind the SB-Tree indexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class OMVRBTreeBenchmark {
+  @Param({ "10000", "1000000" })
+  public int                               keys;
+
+  private OMVRBTreeMemory<Integer, String> tree;
+  private MersenneTwisterFast              random;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    tree = new OMVRBTreeMemory<Integer, String>();
+    for (int i = 0; i < keys; i++)
+      tree.put(i, String.valueOf(i));
+
+    random = new MersenneTwisterFast(42);
+  }
+
+  @Benchmark
+  public String put() {
+    final int key = random.nextInt(keys);
+    return tree.put(key, String.valueOf(key));
+  }
+
+  @Benchmark
+  public String get() {
+    return tree.get(random.nextInt(keys));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.cache.OCache;
+import com.orientechnologies.orient.core.cache.OConcurrentCache;
+import com.orientechnologies.orient.core.cache.ODefaultCache;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Read-mostly throughput of the record cache shared by several threads, for {@link ODefaultCache} and {@link OConcurrentCache}.
+ * Every invocation splits the same amount of operations between the threads, so the scores are comparable across thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ORecordCacheBenchmark {
+  private static final int              RECORDS       = 100000;
+  private static final int              CACHE_LIMIT   = 50000;
+  private static final int              OPERATIONS    = 64 * 1024;
+  private static final int              WRITE_PERCENT = 5;
+
+  @Param({ "ODefaultCache", "OConcurrentCache" })
+  public String                         cache;
+
+  @Param({ "1", "2", "4", "8", "16", "32", "64" })
+  public int                            threads;
+
+  private OCache                        recordCache;
+  private ODocument[]                   records;
+  private ExecutorService               executorService;
+  private final List<Callable<Integer>> workers = new ArrayList<Callable<Integer>>();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if (cache.equals("ODefaultCache"))
+      recordCache = new ODefaultCache("recordCacheBenchmark", CACHE_LIMIT);
+    else
+      recordCache = new OConcurrentCache("recordCacheBenchmark", CACHE_LIMIT);
+    recordCache.startup();
+
+    records = new ODocument[RECORDS];
+    for (int i = 0; i < RECORDS; i++)
+      records[i] = new ODocument(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(i)));
+
+    for (int i = 0; i < CACHE_LIMIT; i++)
+      recordCache.put(records[i]);
+
+    executorService = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++)
+      workers.add(new Worker(OPERATIONS / threads, new MersenneTwisterFast(42 + i)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorService.shutdown();
+    recordCache.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public int getPut() throws InterruptedException, ExecutionException {
+    int found = 0;
+    for (Future<Integer> future : executorService.invokeAll(workers))
+      found += future.get();
+
+    return found;
+  }
+
+  private final class Worker implements Callable<Integer> {
+    private final int                 operations;
+    private final MersenneTwisterFast random;
+
+    private Worker(final int operations, final MersenneTwisterFast random) {
+      this.operations = operations;
+      this.random = random;
+    }
+
+    @Override
+    public Integer call() {
+      int found = 0;
+      for (int i = 0; i < operations; i++) {
+        final ODocument record = records[random.nextInt(RECORDS)];
+        if (random.nextInt(100) < WRITE_PERCENT)
+          recordCache.put(record);
+        else if (recordCache.get(record.getIdentity()) != null)
+          found++;
+      }
+
+      return found;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+
+/**
+ * Serialization and deserialization of a document with the CSV and the binary record formats, on a schema-full class with scalar,
+ * embedded and collection fields. The size of the serialized document is printed at setup to compare the formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ORecordSerializerBenchmark {
+  @Param({ "csv", "binary" })
+  public String               format;
+
+  private ODatabaseDocumentTx db;
+  private ORecordSerializer   serializer;
+  private ODocument           document;
+  private byte[]              content;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    db = OBenchmarkDatabase.create("memory", "recordSerializerBenchmark");
+
+    final OClass cls = db.getMetadata().getSchema().createClass("Person");
+    cls.createProperty("name", OType.STRING);
+    cls.createProperty("age", OType.INTEGER);
+    cls.createProperty("salary", OType.DOUBLE);
+    cls.createProperty("birthDate", OType.DATETIME);
+    cls.createProperty("tags", OType.EMBEDDEDLIST, OType.STRING);
+    cls.createProperty("attributes", OType.EMBEDDEDMAP, OType.STRING);
+
+    final List<String> tags = new ArrayList<String>();
+    final Map<String, String> attributes = new HashMap<String, String>();
+    for (int i = 0; i < 10; i++) {
+      tags.add("tag" + i);
+      attributes.put("attribute" + i, "value" + i);
+    }
+
+    final ODocument address = new ODocument();
+    address.field("street", "Via Roma, 12");
+    address.field("city", "Rome");
+    address.field("zip", 100);
+
+    document = new ODocument("Person");
+    document.field("name", "Jay Miner");
+    document.field("surname", "Miner");
+    document.field("age", 47);
+    document.field("salary", 12345.67d);
+    document.field("birthDate", new Date(0));
+    document.field("tags", tags);
+    document.field("attributes", attributes);
+    document.field("address", address, OType.EMBEDDED);
+
+    serializer = ORecordSerializerBinary.NAME.equals(format) ? ORecordSerializerBinary.INSTANCE
+        : ORecordSerializerSchemaAware2CSV.INSTANCE;
+    content = serializer.toStream(document, false);
+    System.out.println("Record format " + format + ": " + content.length + " bytes");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return serializer.toStream(document, false);
+  }
+
+  @Benchmark
+  public ORecordInternal<?> deserialize() {
+    return serializer.fromStream(content, new ODocument(), null);
+  }
+
+  @Benchmark
+  public ORecordInternal<?> roundTrip() {
+    return serializer.fromStream(serializer.toStream(document, false), new ODocument(), null);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandExecutorSQLAbstract;
+import com.orientechnologies.orient.core.sql.OSQLEngine;
+import com.orientechnologies.orient.core.sql.filter.OSQLFilter;
+
+/**
+ * Parsing and evaluation of WHERE conditions against a document, without the cost of loading the records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class OSQLFilterBenchmark {
+  @Param({ "age > 30", "name = 'Jay' and age between 20 and 50", "tags contains 'tag5' or name like 'J%'",
+      "address.city = 'Rome' and salary * 2 > 1000" })
+  public String                condition;
+
+  private ODatabaseDocumentTx  db;
+  private OBasicCommandContext context;
+  private OSQLFilter           filter;
+  private ODocument            document;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    db = OBenchmarkDatabase.create("memory", "sqlFilterBenchmark");
+
+    final List<String> tags = new ArrayList<String>();
+    for (int i = 0; i < 10; i++)
+      tags.add("tag" + i);
+
+    final ODocument address = new ODocument();
+    address.field("city", "Rome");
+
+    document = new ODocument();
+    document.field("name", "Jay");
+    document.field("age", 47);
+    document.field("salary", 1234.5d);
+    document.field("tags", tags);
+    document.field("address", address);
+
+    context = new OBasicCommandContext();
+    filter = parse();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public OSQLFilter parse() {
+    return OSQLEngine.getInstance().parseCondition(condition, context, OCommandExecutorSQLAbstract.KEYWORD_WHERE);
+  }
+
+  @Benchmark
+  public Object evaluate() {
+    return filter.evaluate(document, null, context);
+  }
+}
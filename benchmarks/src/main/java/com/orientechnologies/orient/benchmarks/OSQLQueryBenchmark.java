@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * End-to-end SQL commands on a "memory" database: parsing, index lookups, cluster scans, sorting and aggregation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class OSQLQueryBenchmark {
+  private static final int    RECORDS = 50000;
+
+  private ODatabaseDocumentTx db;
+  private MersenneTwisterFast random;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    db = OBenchmarkDatabase.create("memory", "sqlQueryBenchmark");
+
+    final OClass cls = db.getMetadata().getSchema().createClass("Person");
+    cls.createProperty("id", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    cls.createProperty("city", OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    cls.createProperty("age", OType.INTEGER);
+    cls.createProperty("name", OType.STRING);
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Person");
+      doc.field("id", i);
+      doc.field("city", "city" + (i % 100));
+      doc.field("age", i % 90);
+      doc.field("name", "name" + i);
+      doc.save();
+    }
+
+    random = new MersenneTwisterFast(42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public List<ODocument> selectByUniqueIndex() {
+    return query("select from Person where id = ?", random.nextInt(RECORDS));
+  }
+
+  @Benchmark
+  public List<ODocument> selectByNotUniqueIndex() {
+    return query("select from Person where city = ?", "city" + random.nextInt(100));
+  }
+
+  @Benchmark
+  public List<ODocument> selectByScan() {
+    return query("select from Person where age = ? and name like 'name1%'", random.nextInt(90));
+  }
+
+  @Benchmark
+  public List<ODocument> selectOrderByLimit() {
+    return query("select from Person where age > ? order by name desc limit 20", random.nextInt(90));
+  }
+
+  @Benchmark
+  public List<ODocument> selectGroupBy() {
+    return query("select age, count(*) from Person group by age");
+  }
+
+  @Benchmark
+  public Object count() {
+    return db.command(new OCommandSQL("select count(*) from Person")).execute();
+  }
+
+  private List<ODocument> query(final String iText, final Object... iArgs) {
+    return db.query(new OSQLSynchQuery<ODocument>(iText), iArgs);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAbstractPageWALRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRedoExecutor;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRedoHandler;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OBinaryPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+
+/**
+ * Recovery time of a synthetic WAL of page updates, redone by one thread or partitioned by page across several threads. The
+ * changes are applied to pages kept in direct memory, so the measure does not include the disk cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+public class OWALRedoBenchmark {
+  private static final int    RECORDS   = 200000;
+  private static final int    PAGES     = 4096;
+
+  @Param({ "1", "4" })
+  public int                  threads;
+
+  private ODatabaseDocumentTx db;
+  private OWriteAheadLog      writeAheadLog;
+  private OLogSequenceNumber  startLsn;
+  private ODirectMemory       directMemory;
+  private long[]              pagePointers;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    db = OBenchmarkDatabase.create("plocal", "walRedoBenchmark");
+    writeAheadLog = ((OLocalPaginatedStorage) db.getStorage()).getWALInstance();
+    if (writeAheadLog == null)
+      throw new IllegalStateException("The write ahead log is disabled by the storage.useWAL setting");
+
+    final MersenneTwisterFast random = new MersenneTwisterFast(42);
+    for (int i = 0; i < RECORDS; i++) {
+      final byte[] value = new byte[64];
+      random.nextBytes(value);
+
+      final List<OPageDiff<?>> diffs = new ArrayList<OPageDiff<?>>();
+      diffs.add(new OBinaryPageDiff(value, random.nextInt(OLocalPage.PAGE_SIZE - value.length)));
+
+      final OLogSequenceNumber lsn = writeAheadLog.log(new OUpdatePageRecord(random.nextInt(PAGES), 0, null, diffs));
+      if (startLsn == null)
+        startLsn = lsn;
+    }
+    writeAheadLog.flush();
+
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+    pagePointers = new long[PAGES];
+    for (int i = 0; i < PAGES; i++)
+      pagePointers[i] = directMemory.allocate(OLocalPage.PAGE_SIZE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (long pagePointer : pagePointers)
+      directMemory.free(pagePointer);
+
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public long redo() throws IOException {
+    return new OWALRedoExecutor(writeAheadLog, new OWALRedoHandler() {
+      @Override
+      public void recordRead(OWALRecord record) {
+      }
+
+      @Override
+      public void redoPage(OAbstractPageWALRecord pageRecord) {
+        ((OUpdatePageRecord) pageRecord).getDiffs().get(0).restorePageData(pagePointers[(int) pageRecord.getPageIndex()]);
+      }
+
+      @Override
+      public void redoRecord(OWALRecord record) {
+      }
+    }, threads, Long.MAX_VALUE).redoFrom(startLsn);
+  }
+}
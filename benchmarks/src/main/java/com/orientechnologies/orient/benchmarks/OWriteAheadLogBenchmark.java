@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitEndRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitStartRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OBinaryPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+
+/**
+ * Logging of records to the write ahead log of a "plocal" storage: the atomic unit boundaries written by every operation and the
+ * page updates in between.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class OWriteAheadLogBenchmark {
+  @Param({ "64", "1024" })
+  public int                  diffSize;
+
+  private ODatabaseDocumentTx db;
+  private OWriteAheadLog      writeAheadLog;
+  private List<OPageDiff<?>>  diffs;
+  private OLogSequenceNumber  lastLsn;
+  private long                pageIndex;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    db = OBenchmarkDatabase.create("plocal", "writeAheadLogBenchmark");
+    writeAheadLog = ((OLocalPaginatedStorage) db.getStorage()).getWALInstance();
+    if (writeAheadLog == null)
+      throw new IllegalStateException("The write ahead log is disabled by the storage.useWAL setting");
+
+    final byte[] value = new byte[diffSize];
+    new MersenneTwisterFast(42).nextBytes(value);
+    diffs = new ArrayList<OPageDiff<?>>();
+    diffs.add(new OBinaryPageDiff(value, 0));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OBenchmarkDatabase.drop(db);
+  }
+
+  @Benchmark
+  public OLogSequenceNumber logAtomicUnit() throws IOException {
+    final OLogSequenceNumber startLsn = writeAheadLog.log(new OAtomicUnitStartRecord(false));
+    return writeAheadLog.log(new OAtomicUnitEndRecord(startLsn));
+  }
+
+  @Benchmark
+  public OLogSequenceNumber logPageUpdate() throws IOException {
+    lastLsn = writeAheadLog.log(new OUpdatePageRecord(pageIndex++ % 1024, 0, lastLsn, diffs));
+    return lastLsn;
+  }
+}
@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,6 +59,7 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordOperation;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.ODatabaseException;
+import com.orientechnologies.orient.core.exception.OStorageBusyException;
 import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.exception.OTransactionException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
@@ -439,47 +442,146 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
         OChannelBinaryClient network = null;
         try {
           network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
-          network.writeRID(iRid);
-          network.writeString(iFetchPlan != null ? iFetchPlan : "");
-          if (network.getSrvProtocolVersion() >= 9)
-            network.writeByte((byte) (iIgnoreCache ? 1 : 0));
-
-          if (network.getSrvProtocolVersion() >= 13)
-            network.writeByte(loadTombstones ? (byte) 1 : (byte) 0);
+          writeRecordLoad(network, iRid, iFetchPlan, iIgnoreCache, loadTombstones);
         } finally {
           endRequest(network);
         }
 
         try {
           beginResponse(network);
+          return new OStorageOperationResult<ORawBuffer>(readRecordLoad(network));
+        } finally {
+          endResponse(network);
+        }
 
-          if (network.readByte() == 0)
-            return new OStorageOperationResult<ORawBuffer>(null);
+      } catch (Exception e) {
+        handleException("Error on read record " + iRid, e);
 
-          final ORawBuffer buffer = new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte());
+      }
+    } while (true);
+  }
 
-          final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
-          ORecordInternal<?> record;
-          while (network.readByte() == 2) {
-            record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(network);
+  /**
+   * Loads multiple records paying one round trip every {@link OGlobalConfiguration#CLIENT_CHANNEL_MAX_PIPELINED_LOADS} records
+   * instead of one per record: the load requests are written on the same channel with a single flush, then the responses are
+   * read in the same order since the server executes the requests of a channel sequentially.
+   * 
+   * @param iRids
+   *          Records to load
+   * @param iFetchPlan
+   *          Fetch plan used for each record, can be null
+   * @param iIgnoreCache
+   *          Ignore the server side cache
+   * @param iLoadTombstones
+   *          Load also the records deleted but not removed yet
+   * @return The loaded records in the order of iRids. Records not found are not contained in the map.
+   * @throws OStorageBusyException
+   *           if called while the result of a command is being received on the same thread
+   */
+  public Map<ORID, ORawBuffer> loadRecords(final Collection<? extends ORID> iRids, final String iFetchPlan,
+      final boolean iIgnoreCache, final boolean iLoadTombstones) {
+    checkConnection();
 
-            if (database != null)
-              // PUT IN THE CLIENT LOCAL CACHE
-              database.getLevel1Cache().updateRecord(record);
-          }
-          return new OStorageOperationResult<ORawBuffer>(buffer);
+    if (OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting)
+      // PENDING NETWORK OPERATION, CAN'T EXECUTE IT NOW
+      throw new OStorageBusyException("Cannot load records while the result of a command is being received");
+
+    final Map<ORID, ORawBuffer> result = new LinkedHashMap<ORID, ORawBuffer>();
+
+    final int maxPipelined = Math.max(OGlobalConfiguration.CLIENT_CHANNEL_MAX_PIPELINED_LOADS.getValueAsInteger(), 1);
+    final List<ORecordId> chunk = new ArrayList<ORecordId>(Math.min(iRids.size(), maxPipelined));
+
+    for (Iterator<? extends ORID> it = iRids.iterator(); it.hasNext();) {
+      chunk.add((ORecordId) it.next());
+
+      // A LIMITED CHUNK NEVER FILLS THE SOCKET BUFFERS, OTHERWISE CLIENT AND SERVER COULD WAIT FOREVER FOR EACH OTHER
+      if (chunk.size() == maxPipelined || !it.hasNext()) {
+        loadRecordsChunk(chunk, iFetchPlan, iIgnoreCache, iLoadTombstones, result);
+        chunk.clear();
+      }
+    }
+
+    return result;
+  }
+
+  private void loadRecordsChunk(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache,
+      final boolean iLoadTombstones, final Map<ORID, ORawBuffer> iResult) {
+    do {
+      try {
 
+        OChannelBinaryClient network = null;
+        try {
+          network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
+          for (int i = 0; i < iRids.size(); ++i) {
+            if (i > 0) {
+              network.writeByte(OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
+              network.writeInt(getSessionId());
+            }
+            writeRecordLoad(network, iRids.get(i), iFetchPlan, iIgnoreCache, iLoadTombstones);
+          }
         } finally {
-          endResponse(network);
+          endRequest(network);
+        }
+
+        // READ ALL THE RESPONSES ALSO IN CASE OF ERROR TO LEAVE THE CHANNEL CLEAN
+        Exception firstError = null;
+        for (ORecordId rid : iRids) {
+          try {
+            beginResponse(network);
+            final ORawBuffer buffer = readRecordLoad(network);
+            if (buffer != null)
+              iResult.put(rid, buffer);
+          } catch (IOException e) {
+            throw e;
+          } catch (Exception e) {
+            if (firstError == null)
+              firstError = e;
+          } finally {
+            endResponse(network);
+          }
         }
 
+        if (firstError != null)
+          throw firstError;
+
+        return;
+
       } catch (Exception e) {
-        handleException("Error on read record " + iRid, e);
+        handleException("Error on loading records " + iRids, e);
 
       }
     } while (true);
   }
 
+  private void writeRecordLoad(final OChannelBinaryClient iNetwork, final ORecordId iRid, final String iFetchPlan,
+      final boolean iIgnoreCache, final boolean iLoadTombstones) throws IOException {
+    iNetwork.writeRID(iRid);
+    iNetwork.writeString(iFetchPlan != null ? iFetchPlan : "");
+    if (iNetwork.getSrvProtocolVersion() >= 9)
+      iNetwork.writeByte((byte) (iIgnoreCache ? 1 : 0));
+
+    if (iNetwork.getSrvProtocolVersion() >= 13)
+      iNetwork.writeByte(iLoadTombstones ? (byte) 1 : (byte) 0);
+  }
+
+  private ORawBuffer readRecordLoad(final OChannelBinaryClient iNetwork) throws IOException {
+    if (iNetwork.readByte() == 0)
+      return null;
+
+    final ORawBuffer buffer = new ORawBuffer(iNetwork.readBytes(), iNetwork.readVersion(), iNetwork.readByte());
+
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    ORecordInternal<?> record;
+    while (iNetwork.readByte() == 2) {
+      record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(iNetwork);
+
+      if (database != null)
+        // PUT IN THE CLIENT LOCAL CACHE
+        database.getLevel1Cache().updateRecord(record);
+    }
+    return buffer;
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, int iMode, final ORecordCallback<ORecordVersion> iCallback) {
     checkConnection();
@@ -153,6 +153,12 @@ public class OStorageRemoteThread implements OStorageProxy {
     return delegate.readRecord(iRid, iFetchPlan, iIgnoreCache, null, loadTombstones);
   }
 
+  public Map<ORID, ORawBuffer> loadRecords(final Collection<? extends ORID> iRids, final String iFetchPlan,
+      final boolean iIgnoreCache, final boolean iLoadTombstones) {
+    delegate.setSessionId(sessionId);
+    return delegate.loadRecords(iRids, iFetchPlan, iIgnoreCache, iLoadTombstones);
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, final int iMode, ORecordCallback<ORecordVersion> iCallback) {
     delegate.setSessionId(sessionId);
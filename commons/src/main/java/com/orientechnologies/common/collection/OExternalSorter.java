@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.collection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.orientechnologies.common.io.OIOException;
+
+/**
+ * External merge sort. The caller collects the items in memory and, when its budget is exhausted, spills them on disk as a
+ * sorted run. At the end the runs are merged with the items still in memory while they are browsed. Items that compare equal are
+ * returned in the order they were spilled, and the ones in memory at the end, so the result is the same as a stable sort of all
+ * the items.<br>
+ * Run files are deleted as soon as they are browsed: {@link #close()} closes and deletes the ones left, for example when the
+ * result is not browsed till the end.
+ */
+public class OExternalSorter<T> {
+  private final String                prefix;
+  private final Comparator<? super T> comparator;
+  private final OSerializer<T>        serializer;
+
+  private final List<File>            runs    = new ArrayList<File>();
+  private final List<FileRun>         readers = new ArrayList<FileRun>();
+
+  /**
+   * Writes and reads the items of the runs.
+   */
+  public interface OSerializer<T> {
+    public void write(T iItem, DataOutputStream iOut) throws IOException;
+
+    public T read(DataInputStream iIn) throws IOException;
+  }
+
+  /**
+   * @param iPrefix
+   *          Prefix of the temporary files of the runs
+   * @param iComparator
+   *          Order of the items
+   * @param iSerializer
+   *          Serializer of the items on disk
+   */
+  public OExternalSorter(final String iPrefix, final Comparator<? super T> iComparator, final OSerializer<T> iSerializer) {
+    prefix = iPrefix;
+    comparator = iComparator;
+    serializer = iSerializer;
+  }
+
+  /**
+   * Sorts the items and writes them on disk as a new run. The list is left sorted.
+   */
+  public void spill(final List<T> iItems) throws IOException {
+    Collections.sort(iItems, comparator);
+
+    final File file = File.createTempFile(prefix, ".run");
+    runs.add(file);
+
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+    try {
+      for (T item : iItems)
+        serializer.write(item, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Merges the spilled runs with the last one, still in memory. The result can be browsed only once.
+   *
+   * @param iLastRun
+   *          Items not spilled, already sorted
+   * @throws OIOException
+   *           while browsing, if a run cannot be read
+   */
+  public Iterator<T> merge(final Iterator<? extends T> iLastRun) throws IOException {
+    return new MergeIterator(iLastRun);
+  }
+
+  /**
+   * Returns the number of runs on disk not completely browsed yet.
+   */
+  public int getRuns() {
+    return runs.size();
+  }
+
+  /**
+   * Closes the runs still open and deletes all the run files.
+   */
+  public void close() {
+    for (FileRun reader : new ArrayList<FileRun>(readers))
+      reader.close();
+    for (File run : runs)
+      run.delete();
+    runs.clear();
+  }
+
+  /**
+   * Run of sorted items: on disk or the last one in memory.
+   */
+  private abstract class Run {
+    protected final int index;
+    protected T         item;
+
+    protected Run(final int iIndex) {
+      index = iIndex;
+    }
+
+    protected abstract boolean next() throws IOException;
+  }
+
+  private final class FileRun extends Run {
+    private final File            file;
+    private final DataInputStream in;
+
+    private FileRun(final int iIndex, final File iFile) throws IOException {
+      super(iIndex);
+      file = iFile;
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+      readers.add(this);
+    }
+
+    @Override
+    protected boolean next() throws IOException {
+      try {
+        item = serializer.read(in);
+      } catch (EOFException e) {
+        close();
+        return false;
+      }
+      return true;
+    }
+
+    private void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+      }
+      file.delete();
+      runs.remove(file);
+      readers.remove(this);
+    }
+  }
+
+  private final class MemoryRun extends Run {
+    private final Iterator<? extends T> iterator;
+
+    private MemoryRun(final int iIndex, final Iterator<? extends T> iIterator) {
+      super(iIndex);
+      iterator = iIterator;
+    }
+
+    @Override
+    protected boolean next() {
+      if (!iterator.hasNext())
+        return false;
+
+      item = iterator.next();
+      return true;
+    }
+  }
+
+  private final class MergeIterator implements Iterator<T> {
+    private final PriorityQueue<Run> queue;
+
+    private MergeIterator(final Iterator<? extends T> iLastRun) throws IOException {
+      queue = new PriorityQueue<Run>(runs.size() + 1, new Comparator<Run>() {
+        public int compare(final Run r1, final Run r2) {
+          final int result = comparator.compare(r1.item, r2.item);
+          if (result != 0)
+            return result;
+          // EARLIER RUNS CONTAIN EARLIER ITEMS
+          return r1.index - r2.index;
+        }
+      });
+
+      final List<File> files = new ArrayList<File>(runs);
+      for (int i = 0; i < files.size(); ++i)
+        offer(new FileRun(i, files.get(i)));
+      offer(new MemoryRun(files.size(), iLastRun));
+    }
+
+    public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+    public T next() {
+      if (queue.isEmpty())
+        throw new NoSuchElementException();
+
+      final Run run = queue.poll();
+      final T result = run.item;
+
+      try {
+        offer(run);
+      } catch (IOException e) {
+        throw new OIOException("Error on reading the items sorted on disk", e);
+      }
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    private void offer(final Run iRun) throws IOException {
+      if (iRun.next())
+        queue.offer(iRun);
+    }
+  }
+}
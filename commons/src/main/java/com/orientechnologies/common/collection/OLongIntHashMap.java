@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive long keys to primitive int values, with open addressing and linear probing. Neither keys nor values are boxed,
+ * so it is suited to map many identifiers packed in longs. Entries cannot be removed.
+ */
+public class OLongIntHashMap {
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[]             keys;
+  private int[]              values;
+  private boolean[]          used;
+  private int                size;
+  private int                threshold;
+
+  public OLongIntHashMap() {
+    this(16);
+  }
+
+  public OLongIntHashMap(final int iExpectedSize) {
+    int capacity = 16;
+    while (capacity * LOAD_FACTOR < iExpectedSize)
+      capacity <<= 1;
+    allocate(capacity);
+  }
+
+  /**
+   * Returns the value mapped to the key, or the default value if the key is not mapped.
+   */
+  public int get(final long iKey, final int iDefaultValue) {
+    final int slot = slot(iKey);
+    return used[slot] ? values[slot] : iDefaultValue;
+  }
+
+  public boolean containsKey(final long iKey) {
+    return used[slot(iKey)];
+  }
+
+  public void put(final long iKey, final int iValue) {
+    int slot = slot(iKey);
+    if (!used[slot]) {
+      if (size >= threshold) {
+        rehash();
+        slot = slot(iKey);
+      }
+      used[slot] = true;
+      keys[slot] = iKey;
+      size++;
+    }
+    values[slot] = iValue;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  private int slot(final long iKey) {
+    final int mask = keys.length - 1;
+    int slot = hash(iKey) & mask;
+    while (used[slot] && keys[slot] != iKey)
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private static int hash(final long iKey) {
+    final long h = iKey * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private void allocate(final int iCapacity) {
+    keys = new long[iCapacity];
+    values = new int[iCapacity];
+    used = new boolean[iCapacity];
+    threshold = (int) (iCapacity * LOAD_FACTOR);
+  }
+
+  private void rehash() {
+    final long[] oldKeys = keys;
+    final int[] oldValues = values;
+    final boolean[] oldUsed = used;
+
+    allocate(keys.length << 1);
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldUsed[i]) {
+        final int slot = slot(oldKeys[i]);
+        used[slot] = true;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+  }
+}
@@ -0,0 +1,90 @@
+package com.orientechnologies.common.collection;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+@Test
+public class OExternalSorterTest {
+  private static final int                 ITEMS      = 1000;
+
+  private static final Comparator<long[]>  BY_VALUE   = new Comparator<long[]>() {
+                                                        public int compare(final long[] i1, final long[] i2) {
+                                                          return i1[0] < i2[0] ? -1 : (i1[0] == i2[0] ? 0 : 1);
+                                                        }
+                                                      };
+
+  private static final OExternalSorter.OSerializer<long[]> SERIALIZER = new OExternalSorter.OSerializer<long[]>() {
+                                                        public void write(final long[] iItem, final DataOutputStream iOut)
+                                                            throws IOException {
+                                                          iOut.writeLong(iItem[0]);
+                                                          iOut.writeLong(iItem[1]);
+                                                        }
+
+                                                        public long[] read(final DataInputStream iIn) throws IOException {
+                                                          return new long[] { iIn.readLong(), iIn.readLong() };
+                                                        }
+                                                      };
+
+  public void mergedRunsAreTheStableSort() throws IOException {
+    final OExternalSorter<long[]> sorter = new OExternalSorter<long[]>("orientdb-test-", BY_VALUE, SERIALIZER);
+
+    // ITEMS ARE (VALUE, ARRIVAL ORDER): FEW DISTINCT VALUES TO CHECK THE ORDER OF TIES
+    final List<long[]> items = new ArrayList<long[]>();
+    final Random random = new Random(42);
+    List<long[]> run = new ArrayList<long[]>();
+    for (int i = 0; i < ITEMS; i++) {
+      final long[] item = new long[] { random.nextInt(20), i };
+      items.add(item);
+      run.add(item);
+      if (run.size() == 128) {
+        sorter.spill(run);
+        run = new ArrayList<long[]>();
+      }
+    }
+    assertEquals(sorter.getRuns(), ITEMS / 128);
+
+    Collections.sort(run, BY_VALUE);
+    Collections.sort(items, BY_VALUE);
+
+    int count = 0;
+    for (Iterator<long[]> it = sorter.merge(run.iterator()); it.hasNext(); count++) {
+      final long[] item = it.next();
+      assertEquals(item[0], items.get(count)[0]);
+      assertEquals(item[1], items.get(count)[1]);
+    }
+
+    assertEquals(count, ITEMS);
+    assertEquals(sorter.getRuns(), 0);
+  }
+
+  public void closeRemovesTheRunsNotBrowsed() throws IOException {
+    final OExternalSorter<long[]> sorter = new OExternalSorter<long[]>("orientdb-test-", BY_VALUE, SERIALIZER);
+
+    for (int r = 0; r < 3; r++) {
+      final List<long[]> run = new ArrayList<long[]>();
+      for (int i = 0; i < 10; i++)
+        run.add(new long[] { i, r });
+      sorter.spill(run);
+    }
+
+    final Iterator<long[]> it = sorter.merge(Collections.<long[]> emptyList().iterator());
+    assertTrue(it.hasNext());
+    assertEquals(it.next()[1], 0);
+    assertEquals(sorter.getRuns(), 3);
+
+    sorter.close();
+    assertEquals(sorter.getRuns(), 0);
+  }
+}
@@ -0,0 +1,48 @@
+package com.orientechnologies.common.collection;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+@Test
+public class OLongIntHashMapTest {
+
+  public void testPutAndGet() {
+    final OLongIntHashMap map = new OLongIntHashMap();
+    final Map<Long, Integer> expected = new HashMap<Long, Integer>();
+
+    final Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      final long key = random.nextInt(5000) * 0x1000000000000L + random.nextInt(1000);
+      map.put(key, i);
+      expected.put(key, i);
+    }
+
+    assertEquals(map.size(), expected.size());
+    for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+      assertTrue(map.containsKey(entry.getKey()));
+      assertEquals(map.get(entry.getKey(), -1), entry.getValue().intValue());
+    }
+  }
+
+  public void testMissingKeys() {
+    final OLongIntHashMap map = new OLongIntHashMap(4);
+    map.put(0, 1);
+    map.put(-1, 2);
+
+    assertEquals(map.get(0, -1), 1);
+    assertEquals(map.get(-1, -1), 2);
+    assertEquals(map.get(1, -1), -1);
+    assertFalse(map.containsKey(Long.MIN_VALUE));
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(map.get(0, -1), -1);
+  }
+}
@@ -27,6 +27,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.orientechnologies.common.concur.resource.OSharedResourceAbstract;
@@ -77,6 +82,8 @@ public class Orient extends OSharedResourceAbstract {
 
   protected List<Class<? extends ODatabasePoolBase<?>>> pools;
 
+  private ThreadPoolExecutor                            workers;
+
   protected Orient() {
     // REGISTER THE EMBEDDED ENGINE
     registerEngine(new OEngineLocal());
@@ -319,6 +326,11 @@ public class Orient extends OSharedResourceAbstract {
         }
       }
 
+      if (workers != null) {
+        workers.shutdownNow();
+        workers = null;
+      }
+
       if (OMMapManagerLocator.getInstance() != null)
         OMMapManagerLocator.getInstance().shutdown();
 
@@ -364,6 +376,37 @@ public class Orient extends OSharedResourceAbstract {
     return threadGroup;
   }
 
+  /**
+   * Returns the pool of threads used to execute the commands in parallel, like the parallel scan of the clusters. The pool is
+   * created at the first use with {@link OGlobalConfiguration#QUERY_PARALLEL_SCAN_THREADS} threads, grows if the setting is
+   * increased, and is stopped on shutdown.
+   */
+  public ExecutorService getWorkers() {
+    acquireExclusiveLock();
+    try {
+      final int threads = Math.max(1, OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger());
+      if (workers == null) {
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+              private final AtomicInteger counter = new AtomicInteger();
+
+              public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(threadGroup, r, "OrientDB Worker " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+        workers.allowCoreThreadTimeOut(true);
+      } else if (workers.getMaximumPoolSize() < threads) {
+        workers.setMaximumPoolSize(threads);
+        workers.setCorePoolSize(threads);
+      }
+      return workers;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
   public ODatabaseThreadLocalFactory getDatabaseThreadFactory() {
     return databaseThreadFactory;
   }
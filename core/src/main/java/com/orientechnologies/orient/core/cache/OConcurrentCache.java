@@ -0,0 +1,302 @@
+package com.orientechnologies.orient.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+
+/**
+ * Lock-striped implementation of {@link OCache}. Records are spread by identity across segments, each one is an access ordered
+ * LRU map guarded by its own lock, so threads working on different segments never contend. The limit is split evenly between
+ * segments, so the eviction order is LRU per segment and approximately LRU for the whole cache, which never holds more than
+ * its limit.
+ *
+ * Hits, misses and evictions are exposed through the profiler as "db.&lt;name&gt;.cache.level2.impl.*" metrics.
+ */
+public class OConcurrentCache implements OCache {
+  private static final int                 DEFAULT_LIMIT = 1000;
+
+  private final AtomicBoolean              enabled       = new AtomicBoolean(false);
+  private final Segment[]                  segments;
+  private final int                        segmentMask;
+  private final int                        limit;
+  private final String                     profilerPrefix;
+  private final String                     profilerMetadataPrefix;
+
+  protected OMemoryWatchDog.Listener       lowMemoryListener;
+
+  public OConcurrentCache(final String iName, final int initialLimit) {
+    this(iName, initialLimit, Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  public OConcurrentCache(final String iName, final int initialLimit, final int concurrencyLevel) {
+    limit = initialLimit;
+
+    // POWER OF TWO, NOT MORE SEGMENTS THAN ENTRIES
+    int segmentCount = 1;
+    final int maxSegments = initialLimit > 0 ? Math.min(concurrencyLevel, initialLimit) : concurrencyLevel;
+    while (segmentCount << 1 <= maxSegments)
+      segmentCount <<= 1;
+
+    segments = new Segment[segmentCount];
+    segmentMask = segmentCount - 1;
+
+    final int segmentLimit = initialLimit > 0 ? initialLimit / segmentCount : 0;
+    final int segmentCapacity = (initialLimit > 0 ? segmentLimit : DEFAULT_LIMIT / segmentCount) + 1;
+    for (int i = 0; i < segmentCount; ++i)
+      segments[i] = new Segment(segmentCapacity, segmentLimit);
+
+    profilerPrefix = "db." + iName + ".cache.level2.impl.";
+    profilerMetadataPrefix = "db.*.cache.level2.impl.";
+  }
+
+  public void startup() {
+    lowMemoryListener = Orient.instance().getMemoryWatchDog().addListener(new OLowMemoryListener());
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "hits", "Records found in cache", METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+          public Object getValue() {
+            return getHits();
+          }
+        }, profilerMetadataPrefix + "hits");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "misses", "Records not found in cache", METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+          public Object getValue() {
+            return getMisses();
+          }
+        }, profilerMetadataPrefix + "misses");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "evictions", "Records evicted from cache", METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+          public Object getValue() {
+            return getEvictions();
+          }
+        }, profilerMetadataPrefix + "evictions");
+
+    enable();
+  }
+
+  public void shutdown() {
+    Orient.instance().getMemoryWatchDog().removeListener(lowMemoryListener);
+
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "hits");
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "misses");
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "evictions");
+
+    disable();
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(id);
+    segment.lock.lock();
+    try {
+      final ORecordInternal<?> record = segment.cache.get(id);
+      if (record != null)
+        segment.hits++;
+      else
+        segment.misses++;
+      return record;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(record.getIdentity());
+    segment.lock.lock();
+    try {
+      final int sizeBefore = segment.cache.size();
+      final ORecordInternal<?> previous = segment.cache.put(record.getIdentity(), record);
+      segment.evictions += sizeBefore + (previous == null ? 1 : 0) - segment.cache.size();
+      return previous;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(id);
+    segment.lock.lock();
+    try {
+      return segment.cache.remove(id);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock.lock();
+      try {
+        segment.cache.clear();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      segment.lock.lock();
+      try {
+        size += segment.cache.size();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public Collection<ORID> keys() {
+    final List<ORID> keys = new ArrayList<ORID>();
+    for (Segment segment : segments) {
+      segment.lock.lock();
+      try {
+        keys.addAll(segment.cache.keySet());
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Locks the segment of the record, so other operations on the same record wait until {@link #unlock(ORID)}.
+   */
+  public void lock(final ORID id) {
+    segmentFor(id).lock.lock();
+  }
+
+  public void unlock(final ORID id) {
+    segmentFor(id).lock.unlock();
+  }
+
+  public long getHits() {
+    long hits = 0;
+    for (Segment segment : segments)
+      hits += segment.hits;
+    return hits;
+  }
+
+  public long getMisses() {
+    long misses = 0;
+    for (Segment segment : segments)
+      misses += segment.misses;
+    return misses;
+  }
+
+  public long getEvictions() {
+    long evictions = 0;
+    for (Segment segment : segments)
+      evictions += segment.evictions;
+    return evictions;
+  }
+
+  int getSegmentsCount() {
+    return segments.length;
+  }
+
+  private void removeEldest(final int threshold) {
+    // EACH SEGMENT RELEASES ITS SHARE OF THE ENTRIES
+    final int size = size();
+    if (size == 0)
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock.lock();
+      try {
+        final int segmentSize = segment.cache.size();
+        final int amount = threshold >= size ? segmentSize : (int) ((long) segmentSize * threshold / size);
+        if (amount > 0) {
+          segment.cache.removeEldest(amount);
+          segment.evictions += segmentSize - segment.cache.size();
+        }
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  private Segment segmentFor(final ORID id) {
+    int h = id.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[h & segmentMask];
+  }
+
+  private static final class Segment {
+    private final ReentrantLock                      lock = new ReentrantLock();
+    private final ODefaultCache.OLinkedHashMapCache cache;
+
+    // UPDATED UNDER THE SEGMENT LOCK, READ WITHOUT IT BY THE PROFILER
+    private volatile long                            hits;
+    private volatile long                            misses;
+    private volatile long                            evictions;
+
+    private Segment(final int initialCapacity, final int limit) {
+      cache = new ODefaultCache.OLinkedHashMapCache(initialCapacity, 0.75f, limit);
+    }
+  }
+
+  class OLowMemoryListener implements OMemoryWatchDog.Listener {
+    public void memoryUsageLow(final long freeMemory, final long freeMemoryPercentage) {
+      try {
+        final int oldSize = size();
+        if (oldSize == 0)
+          return;
+
+        if (freeMemoryPercentage < 10) {
+          OLogManager.instance().debug(this, "Low memory (%d%%): clearing %d cached records", freeMemoryPercentage, oldSize);
+          removeEldest(oldSize);
+        } else {
+          final int newSize = (int) (oldSize * 0.9f);
+          removeEldest(oldSize - newSize);
+          OLogManager.instance().debug(this, "Low memory (%d%%): reducing cached records number from %d to %d",
+              freeMemoryPercentage, oldSize, newSize);
+        }
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error occurred during concurrent cache cleanup", e);
+      }
+    }
+  }
+}
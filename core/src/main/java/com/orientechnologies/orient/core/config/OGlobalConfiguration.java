@@ -68,12 +68,23 @@ public enum OGlobalConfiguration {
 
   WAL_COMMIT_TIMEOUT("storage.wal.commitTimeout", "Maximum interval between WAL commits (in ms.)", Integer.class, 1000),
 
+  WAL_GROUP_COMMIT_DELAY("storage.wal.groupCommitDelay", "Maximum time (in microseconds) which thread that requested WAL flush "
+      + "waits for other threads to join the same disk sync. Bigger values increase throughput of durable commits but also "
+      + "increase commit latency, 0 means that WAL is synced immediately.", Integer.class, 200),
+
   WAL_FUZZY_CHECKPOINT_INTERVAL("storage.wal.fuzzyCheckpointInterval", "Interval between fuzzy checkpoints (in seconds)",
       Integer.class, 36000),
 
   WAL_CHECKPOINT_INTERVAL_TIMEOUT("storage.wal.checkpointIntervalTimeout",
       "Timeout till DB will wait checkpoint is finished during DB close (in seconds))", Integer.class, 300),
 
+  WAL_RESTORE_THREADS("storage.wal.restoreThreads", "Number of threads which redo the page changes of the WAL during the restore "
+      + "of a storage not closed properly, the changes of the same page are always redone by the same thread. 1 means that the "
+      + "changes are redone by the thread which reads the WAL.", Integer.class, Runtime.getRuntime().availableProcessors()),
+
+  WAL_RESTORE_REPORT_INTERVAL("storage.wal.restoreReportInterval",
+      "Interval (in seconds) between the reports of progress of the restore from WAL", Integer.class, 10),
+
   WAL_LOCATION("storage.wal.path", "Path to the wal file on the disk, by default is placed in DB directory but"
       + " it is highly recomended to use separate disk to store log operations", String.class, null),
 
@@ -89,6 +100,22 @@ public enum OGlobalConfiguration {
       + "this queue is used to accumulate all pages that "
       + "should be written to the disk and then flush them in batch mode to minimize random IO overhead.", Integer.class, 15000),
 
+  DISK_CACHE_WRITER_INTERVAL("storage.diskCache.writerInterval", "Interval (in ms) between the runs of the background writer "
+      + "which writes dirty pages of disk cache in page order, merging adjacent pages in single writes. 0 means that dirty pages "
+      + "are written only by the threads which evict them or flush the cache.", Integer.class, 100),
+
+  DISK_CACHE_WRITER_DIRTY_RATIO("storage.diskCache.writerDirtyRatio", "Share of dirty pages in disk cache at which the background "
+      + "writer writes all dirty pages at every run, with less dirty pages it writes a proportionally smaller part of them.",
+      Float.class, 0.25),
+
+  DISK_CACHE_READ_AHEAD_PAGES("storage.diskCache.readAheadPages", "Amount of pages which are read asynchronously ahead of the page "
+      + "loaded by sequential scan of cluster, pages of the scan do not push out frequently used pages of disk cache. "
+      + "0 means that pages are not read ahead.", Integer.class, 16),
+
+  DISK_CACHE_PARTITIONS("storage.diskCache.partitions", "Amount of independently locked partitions of disk cache, "
+      + "values bigger than 1 allow concurrent access to pages of different partitions. 1 means not partitioned cache.",
+      Integer.class, 1),
+
   DISK_PAGE_CACHE_LOCK_TIMEOUT("storage.diskPageCache.lockTimeOut",
       "Timeout till page lock will wait in case of multi threading operations", Integer.class, 1000),
 
@@ -120,8 +147,9 @@ public enum OGlobalConfiguration {
 
   CACHE_LEVEL2_SIZE("cache.level2.size", "Size of the cache that keeps the record in memory", Integer.class, -1),
 
-  CACHE_LEVEL2_IMPL("cache.level2.impl", "Actual implementation of secondary cache", String.class, ODefaultCache.class
-      .getCanonicalName()),
+  CACHE_LEVEL2_IMPL("cache.level2.impl",
+      "Actual implementation of secondary cache. Use OConcurrentCache to avoid the contention of a single lock on reads",
+      String.class, ODefaultCache.class.getCanonicalName()),
 
   CACHE_LEVEL2_STRATEGY("cache.level2.strategy",
       "Strategy to use when a database requests a record: 0 = pop the record, 1 = copy the record", Integer.class, 0,
@@ -198,6 +226,13 @@ public enum OGlobalConfiguration {
       "Configure the TreeMaps for manual indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called",
       Integer.class, 1),
 
+  INDEX_REBUILD_SORT_BUFFER("index.rebuild.sortBuffer",
+      "Size in MB of the entries sorted in memory by the index rebuild before to spill them on disk. -1 means never spill",
+      Integer.class, 64),
+
+  INDEX_REBUILD_PAGE_LOAD_FACTOR("index.rebuild.pageLoadFactor",
+      "Load factor of the MVRB-Tree nodes filled by the index rebuild, which inserts the keys in ascending order", Float.class, 0.9f),
+
   // TREEMAP
   MVRBTREE_TIMEOUT("mvrbtree.timeout", "Maximum timeout to get lock against the OMVRB-Tree", Integer.class, 5000),
 
@@ -337,6 +372,20 @@ public enum OGlobalConfiguration {
 
   NETWORK_BINARY_DEBUG("network.binary.debug", "Debug mode: print all data incoming on the binary channel", Boolean.class, false),
 
+  NETWORK_BINARY_TRANSPORT("network.binary.transport",
+      "Transport of binary listeners: 'thread' uses a thread per connection, 'nio' multiplexes connections on selector threads",
+      String.class, "thread"),
+
+  NETWORK_BINARY_NIO_SELECTORS("network.binary.nio.selectors", "Number of selector threads of the 'nio' binary transport",
+      Integer.class, 2),
+
+  NETWORK_BINARY_NIO_WORKERS("network.binary.nio.workers",
+      "Maximum number of threads executing client requests with the 'nio' binary transport", Integer.class, 64),
+
+  NETWORK_BINARY_NIO_COMMAND_WORKERS("network.binary.nio.commandWorkers",
+      "Maximum number of threads executing commands with the 'nio' binary transport, apart from the other requests so that long"
+          + " queries cannot hold all the workers. 0 executes them with the other requests", Integer.class, 16),
+
   NETWORK_HTTP_MAX_CONTENT_LENGTH("network.http.maxLength", "TCP/IP max content length in bytes for HTTP requests", Integer.class,
       1000000),
 
@@ -390,11 +439,39 @@ public enum OGlobalConfiguration {
   // COMMAND
   COMMAND_TIMEOUT("command.timeout", "Default timeout for commands expressed in milliseconds", Long.class, 0),
 
+  // QUERY
+  QUERY_ORDERBY_MAX_MEMORY_RECORDS("query.orderBy.maxMemoryRecords",
+      "Maximum number of records sorted in memory by ORDER BY without LIMIT. Beyond it sorted runs are spilled on disk. -1 = no limit",
+      Integer.class, 100000),
+
+  QUERY_GROUPBY_MAX_MEMORY_GROUPS("query.groupBy.maxMemoryGroups",
+      "Maximum number of groups aggregated in memory by GROUP BY. Beyond it partial aggregates are spilled on disk. -1 = no limit",
+      Integer.class, 100000),
+
+  QUERY_PARALLEL_SCAN_THREADS("query.parallelScan.threads",
+      "Number of threads used to scan the clusters of a class in parallel when no index can be used. 0 or 1 = sequential scan",
+      Integer.class, 0),
+
+  QUERY_PARALLEL_SCAN_PARTITION_SIZE("query.parallelScan.partitionSize",
+      "Minimum number of cluster positions scanned by each partition of a parallel scan. 0 = one partition per cluster",
+      Integer.class, 50000),
+
+  QUERY_INDEX_SCAN_THRESHOLD("query.indexScanThreshold",
+      "Fraction of the records of a class above which scanning the clusters is cheaper than loading the records found by an index",
+      Float.class, 0.3),
+
+  QUERY_INDEX_STATISTICS_MIN_RECORDS("query.indexStatistics.minRecords",
+      "Minimum number of records of a class to choose the indexes by their statistics. Smaller classes always use the first index available",
+      Integer.class, 10000),
+
   // CLIENT
   CLIENT_CHANNEL_MIN_POOL("client.channel.minPool", "Minimum pool size", Integer.class, 1),
 
   CLIENT_CHANNEL_MAX_POOL("client.channel.maxPool", "Maximum channel pool size", Integer.class, 5),
 
+  CLIENT_CHANNEL_MAX_PIPELINED_LOADS("client.channel.maxPipelinedLoads",
+      "Maximum number of record loads sent in a single write when loading records in batch", Integer.class, 128),
+
   CLIENT_CONNECT_POOL_WAIT_TIMEOUT("client.connectionPool.waitTimeout",
       "Maximum time which client should wait connection from the pool", Integer.class, 5000),
 
@@ -413,7 +490,39 @@ public enum OGlobalConfiguration {
       Level.class, Level.FINE),
 
   SERVER_LOG_DUMP_CLIENT_EXCEPTION_FULLSTACKTRACE("server.log.dumpClientExceptionFullStackTrace",
-      "Dumps the full stack trace of the exception to sent to the client", Level.class, Boolean.TRUE);
+      "Dumps the full stack trace of the exception to sent to the client", Level.class, Boolean.TRUE),
+
+  // DISTRIBUTED
+  DISTRIBUTED_QUERY_BATCH_SIZE("distributed.query.batchSize",
+      "Number of result records sent in one message by every node executing a distributed query", Integer.class, 100),
+
+  DISTRIBUTED_QUERY_WINDOW("distributed.query.window",
+      "Number of result messages a node can send before the coordinator of the distributed query consumes them", Integer.class, 8),
+
+  DISTRIBUTED_QUERY_TIMEOUT("distributed.query.timeout",
+      "Maximum time in ms a node waits for the coordinator of a distributed query to consume its results before to stop sending them",
+      Integer.class, 60000),
+
+  DISTRIBUTED_REPLICATION_BATCH_SIZE("distributed.replication.batchSize",
+      "Maximum number of record changes sent to a replica node in one message", Integer.class, 100),
+
+  DISTRIBUTED_REPLICATION_BATCH_DELAY("distributed.replication.batchDelay",
+      "Time in ms to wait for more record changes to join a message to a replica node. 0 sends the changes queued so far", Integer.class,
+      0),
+
+  DISTRIBUTED_REPLICATION_WRITE_QUORUM("distributed.replication.writeQuorum",
+      "Number of nodes, the local one included, that must apply a record change before the write returns. The other nodes apply it "
+          + "asynchronously. 0 waits for all the nodes", Integer.class, 0),
+
+  DISTRIBUTED_ALIGN_BATCH_SIZE("distributed.align.batchSize",
+      "Maximum number of operations sent in one message to align a node", Integer.class, 1000),
+
+  DISTRIBUTED_ALIGN_BATCH_MAX_BYTES("distributed.align.batchMaxBytes",
+      "Maximum size in bytes of the records sent in one message to align a node, before the compression", Integer.class, 4194304),
+
+  DISTRIBUTED_ALIGN_COMPRESSION("distributed.align.compression",
+      "Compresses the operations sent to align a node. Disable it while the cluster has nodes of previous versions, that cannot read them",
+      Boolean.class, true);
 
   private final String                 key;
   private final Object                 defValue;
@@ -47,35 +47,37 @@ import com.orientechnologies.orient.core.version.OVersionFactory;
  */
 @SuppressWarnings("serial")
 public class OStorageConfiguration implements OSerializableStream {
-  public static final ORecordId             CONFIG_RID       = new OImmutableRecordId(0,
-                                                                 OClusterPositionFactory.INSTANCE.valueOf(0));
+  public static final ORecordId             CONFIG_RID            = new OImmutableRecordId(0,
+                                                                     OClusterPositionFactory.INSTANCE.valueOf(0));
 
-  public static final String                DEFAULT_TIMEZONE = "UTC";
-  public static final String                DEFAULT_CHARSET  = "UTF-8";
+  public static final String                DEFAULT_TIMEZONE      = "UTC";
+  public static final String                DEFAULT_CHARSET       = "UTF-8";
+  public static final String                DEFAULT_RECORD_FORMAT = "csv";
 
-  public static final int                   CURRENT_VERSION  = 5;
+  public static final int                   CURRENT_VERSION       = 6;
 
-  public int                                version          = -1;
+  public int                                version               = -1;
   public String                             name;
   public String                             schemaRecordId;
   public String                             dictionaryRecordId;
   public String                             indexMgrRecordId;
 
-  private String                            localeLanguage   = Locale.getDefault().getLanguage();
-  private String                            localeCountry    = Locale.getDefault().getCountry();
-  public String                             dateFormat       = "yyyy-MM-dd";
-  public String                             dateTimeFormat   = "yyyy-MM-dd HH:mm:ss";
-  private TimeZone                          timeZone         = TimeZone.getTimeZone(DEFAULT_TIMEZONE);
-  private String                            charset          = DEFAULT_CHARSET;
+  private String                            localeLanguage        = Locale.getDefault().getLanguage();
+  private String                            localeCountry         = Locale.getDefault().getCountry();
+  public String                             dateFormat            = "yyyy-MM-dd";
+  public String                             dateTimeFormat        = "yyyy-MM-dd HH:mm:ss";
+  private TimeZone                          timeZone              = TimeZone.getTimeZone(DEFAULT_TIMEZONE);
+  private String                            charset               = DEFAULT_CHARSET;
+  private String                            recordFormat          = DEFAULT_RECORD_FORMAT;
 
   public OStorageSegmentConfiguration       fileTemplate;
 
-  public List<OStorageClusterConfiguration> clusters         = new ArrayList<OStorageClusterConfiguration>();
-  public List<OStorageDataConfiguration>    dataSegments     = new ArrayList<OStorageDataConfiguration>();
+  public List<OStorageClusterConfiguration> clusters              = new ArrayList<OStorageClusterConfiguration>();
+  public List<OStorageDataConfiguration>    dataSegments          = new ArrayList<OStorageDataConfiguration>();
 
-  public OStorageTxConfiguration            txSegment        = new OStorageTxConfiguration();
+  public OStorageTxConfiguration            txSegment             = new OStorageTxConfiguration();
 
-  public List<OStorageEntryConfiguration>   properties       = new ArrayList<OStorageEntryConfiguration>();
+  public List<OStorageEntryConfiguration>   properties            = new ArrayList<OStorageEntryConfiguration>();
 
   private transient Locale                  localeInstance;
   private transient DecimalFormatSymbols    unusualSymbols;
@@ -176,6 +178,12 @@ public class OStorageConfiguration implements OSerializableStream {
       charset = read(values[index++]);
     }
 
+    // @COMPATIBILTY 1.5
+    if (version > 5)
+      recordFormat = read(values[index++]);
+    else
+      recordFormat = DEFAULT_RECORD_FORMAT;
+
     // @COMPATIBILTY
     if (version > 1)
       index = phySegmentFromStream(values, index, fileTemplate);
@@ -280,6 +288,7 @@ public class OStorageConfiguration implements OSerializableStream {
 
     write(buffer, timeZone.getID());
     write(buffer, charset);
+    write(buffer, recordFormat);
 
     phySegmentToStream(buffer, fileTemplate);
 
@@ -469,6 +478,17 @@ public class OStorageConfiguration implements OSerializableStream {
     this.charset = charset;
   }
 
+  /**
+   * Returns the format new documents are written with: "csv" or "binary". Records in both formats can be read anyway.
+   */
+  public String getRecordFormat() {
+    return recordFormat;
+  }
+
+  public void setRecordFormat(final String iRecordFormat) {
+    this.recordFormat = iRecordFormat;
+  }
+
   public void setLocaleLanguage(final String iValue) {
     localeLanguage = iValue;
     localeInstance = null;
@@ -31,6 +31,7 @@ import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.cache.OLevel1RecordCache;
 import com.orientechnologies.orient.core.cache.OLevel2RecordCache;
+import com.orientechnologies.orient.core.config.OStorageConfiguration;
 import com.orientechnologies.orient.core.config.OStorageEntryConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabaseLifecycleListener;
@@ -47,6 +48,7 @@ import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.intent.OIntent;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
@@ -591,6 +593,9 @@ public class ODatabaseRaw implements ODatabase {
     case CHARSET:
       return storage.getConfiguration().getCharset();
 
+    case RECORDFORMAT:
+      return storage.getConfiguration().getRecordFormat();
+
     case CUSTOM:
       return storage.getConfiguration().properties;
     }
@@ -660,6 +665,15 @@ public class ODatabaseRaw implements ODatabase {
       storage.getConfiguration().update();
       break;
 
+    case RECORDFORMAT:
+      if (!OStorageConfiguration.DEFAULT_RECORD_FORMAT.equalsIgnoreCase(stringValue)
+          && !ORecordSerializerBinary.NAME.equalsIgnoreCase(stringValue))
+        throw new IllegalArgumentException("Record format '" + stringValue + "' is not supported. Use '"
+            + OStorageConfiguration.DEFAULT_RECORD_FORMAT + "' or '" + ORecordSerializerBinary.NAME + "'");
+      storage.getConfiguration().setRecordFormat(stringValue.toLowerCase(Locale.ENGLISH));
+      storage.getConfiguration().update();
+      break;
+
     case CUSTOM:
       if (iValue.toString().indexOf("=") == -1) {
         if (iValue.toString().equalsIgnoreCase("clear")) {
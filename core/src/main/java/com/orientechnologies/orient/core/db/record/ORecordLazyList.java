@@ -17,19 +17,28 @@ package com.orientechnologies.orient.core.db.record;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 import com.orientechnologies.common.collection.OLazyIterator;
 import com.orientechnologies.common.collection.OLazyIteratorListWrapper;
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.record.ORecordMultiValueHelper.MULTIVALUE_CONTENT_TYPE;
 import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
+import com.orientechnologies.orient.core.exception.OStorageBusyException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
 
 /**
  * Lazy implementation of ArrayList. It's bound to a source ORecord object to keep track of changes. This avoid to call the
@@ -300,6 +309,8 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
       // PRECONDITIONS
       return;
 
+    preloadRecords();
+
     for (int i = 0; i < size(); ++i) {
       try {
         convertLink2Record(i);
@@ -332,6 +343,45 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
     return allConverted;
   }
 
+  /**
+   * Against a remote storage loads the linked records missing in the local cache all together, instead of paying a round trip per
+   * record when they are converted one by one.
+   */
+  private void preloadRecords() {
+    if (ridOnly)
+      return;
+
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    if (database == null || !(database.getStorage() instanceof OStorageProxy) || !database.getLevel1Cache().isEnabled())
+      return;
+
+    final Set<ORID> rids = new LinkedHashSet<ORID>();
+    for (int i = 0; i < super.size(); ++i) {
+      final OIdentifiable o = super.get(i);
+      if (o instanceof ORecordId && ((ORecordId) o).isPersistent() && database.getLevel1Cache().findRecord((ORecordId) o) == null)
+        rids.add((ORecordId) o);
+    }
+
+    if (rids.size() < 2)
+      return;
+
+    final Map<ORID, ORawBuffer> buffers;
+    try {
+      buffers = ((OStorageProxy) database.getStorage()).loadRecords(rids, null, false, false);
+    } catch (OStorageBusyException e) {
+      // CANNOT LOAD THEM NOW: THEY ARE LOADED ONE BY ONE
+      return;
+    }
+
+    for (Map.Entry<ORID, ORawBuffer> entry : buffers.entrySet()) {
+      final ORawBuffer buffer = entry.getValue();
+      final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(buffer.recordType);
+      record.fill(entry.getKey(), buffer.version, buffer.buffer, false);
+      // THE CONVERSION FINDS THEM IN CACHE AND CALLS THE HOOKS AS FOR ANY OTHER LOAD
+      database.getLevel1Cache().updateRecord(record);
+    }
+  }
+
   /**
    * Convert the item requested from link to record.
    * 
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.exception.ODatabaseException;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.OIndexUnique;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.security.ODatabaseSecurityResources;
+import com.orientechnologies.orient.core.metadata.security.ORole;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+/**
+ * Creates big amount of new records faster than saving them one by one. Records are collected per cluster and created by batches,
+ * on paginated storage every batch is appended to new pages of the cluster with a WAL record per page instead of per record.
+ *
+ * Hooks are not called for the loaded records. Automatic indexes of their classes are updated once per batch: keys of the batch
+ * are checked against unique indexes before any record of the batch is created, then they are put in the existing indexes sorted
+ * by key after the batch is created. A key already indexed, or found twice in the batch for a unique index, throws
+ * {@link OIndexException} and no record of that batch is created, batches created before are kept. Records become visible to
+ * index lookups when their batch is created. Records linked by the loaded records should be saved before, records are not loaded
+ * in transaction.
+ */
+public class ODatabaseBulkLoader {
+  private final ODatabaseRecord                         database;
+  private int                                           batchSize      = 1000;
+
+  private final Map<Integer, List<ORecordInternal<?>>> pendingRecords = new HashMap<Integer, List<ORecordInternal<?>>>();
+  private final Map<Integer, List<byte[]>>              pendingContent = new HashMap<Integer, List<byte[]>>();
+
+  private long                                          loadedRecords;
+
+  public ODatabaseBulkLoader(final ODatabaseRecord database) {
+    this.database = database;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize
+   *          amount of records of the cluster which are collected before they are created
+   */
+  public ODatabaseBulkLoader setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public long getLoadedRecords() {
+    return loadedRecords;
+  }
+
+  /**
+   * Adds new record to the cluster of its class, or to the default cluster if record has no class. Identity of the record is
+   * assigned when the batch of its cluster is created.
+   */
+  public void add(final ORecordInternal<?> record) {
+    add(record, null);
+  }
+
+  public void add(final ORecordInternal<?> record, final String clusterName) {
+    final ORecordId rid = (ORecordId) record.getIdentity();
+    if (!rid.isNew())
+      throw new ODatabaseException("Record " + rid + " is already stored and can not be bulk loaded.");
+
+    OClass schemaClass = null;
+    if (record instanceof ODocument)
+      schemaClass = ((ODocument) record).getSchemaClass();
+
+    if (clusterName != null)
+      rid.clusterId = database.getClusterIdByName(clusterName);
+    else if (rid.clusterId < 0)
+      rid.clusterId = schemaClass != null ? schemaClass.getDefaultClusterId() : database.getDefaultClusterId();
+
+    List<ORecordInternal<?>> records = pendingRecords.get(rid.clusterId);
+    if (records == null) {
+      database.checkSecurity(ODatabaseSecurityResources.CLUSTER, ORole.PERMISSION_CREATE,
+          database.getClusterNameById(rid.clusterId));
+
+      records = new ArrayList<ORecordInternal<?>>();
+      pendingRecords.put(rid.clusterId, records);
+      pendingContent.put(rid.clusterId, new ArrayList<byte[]>());
+    }
+
+    final byte[] stream = record.toStream();
+    record.onBeforeIdentityChanged(rid);
+
+    records.add(record);
+    pendingContent.get(rid.clusterId).add(stream);
+
+    if (records.size() >= batchSize)
+      flushCluster(rid.clusterId);
+  }
+
+  /**
+   * Creates all collected records.
+   */
+  public void flush() {
+    for (int clusterId : new ArrayList<Integer>(pendingRecords.keySet()))
+      flushCluster(clusterId);
+  }
+
+  /**
+   * Creates all collected records.
+   */
+  public void close() {
+    flush();
+  }
+
+  private void flushCluster(final int clusterId) {
+    final List<ORecordInternal<?>> records = pendingRecords.remove(clusterId);
+    final List<byte[]> contents = pendingContent.remove(clusterId);
+    if (records == null || records.isEmpty())
+      return;
+
+    final Map<OIndex<?>, SortedMap<Object, List<ODocument>>> indexKeys = collectIndexKeys(records);
+
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    final byte recordType = records.get(0).getRecordType();
+
+    final OStorage storage = database.getStorage();
+    if (storage instanceof OLocalPaginatedStorage && sameRecordType(records, recordType)) {
+      final OPhysicalPosition[] positions = ((OLocalPaginatedStorage) storage).createRecords(clusterId,
+          contents.toArray(new byte[contents.size()][]), version, recordType);
+
+      for (int i = 0; i < positions.length; i++)
+        onRecordCreated(records.get(i), contents.get(i), positions[i]);
+    } else {
+      for (int i = 0; i < records.size(); i++) {
+        final ORecordInternal<?> record = records.get(i);
+        final OPhysicalPosition position = storage.createRecord(database.getDataSegmentStrategy().assignDataSegmentId(database,
+            record), (ORecordId) record.getIdentity(), contents.get(i), version, record.getRecordType(), 0, null).getResult();
+
+        onRecordCreated(record, contents.get(i), position);
+      }
+    }
+
+    loadedRecords += records.size();
+
+    for (Map.Entry<OIndex<?>, SortedMap<Object, List<ODocument>>> entry : indexKeys.entrySet()) {
+      final OIndex<?> index = entry.getKey();
+      for (Map.Entry<Object, List<ODocument>> key : entry.getValue().entrySet())
+        for (ODocument document : key.getValue())
+          index.put(key.getKey(), document.placeholder());
+    }
+  }
+
+  /**
+   * Collects the keys of the automatic indexes of the records sorted by key, checking unique indexes before records are created.
+   */
+  private Map<OIndex<?>, SortedMap<Object, List<ODocument>>> collectIndexKeys(final List<ORecordInternal<?>> records) {
+    final Map<OIndex<?>, SortedMap<Object, List<ODocument>>> indexKeys =
+        new LinkedHashMap<OIndex<?>, SortedMap<Object, List<ODocument>>>();
+
+    for (ORecordInternal<?> record : records) {
+      if (!(record instanceof ODocument))
+        continue;
+
+      final ODocument document = (ODocument) record;
+      final OClass schemaClass = document.getSchemaClass();
+      if (schemaClass == null)
+        continue;
+
+      for (OIndex<?> index : schemaClass.getIndexes()) {
+        if (!index.isAutomatic())
+          continue;
+
+        SortedMap<Object, List<ODocument>> keys = indexKeys.get(index);
+        if (keys == null) {
+          keys = new TreeMap<Object, List<ODocument>>(ODefaultComparator.INSTANCE);
+          indexKeys.put(index, keys);
+        }
+
+        final Object key = index.getDefinition().getDocumentValueToIndex(document);
+        if (key instanceof Collection) {
+          for (final Object keyItem : (Collection<?>) key)
+            if (keyItem != null)
+              addIndexKey(index, keys, keyItem, document);
+        } else if (key != null)
+          addIndexKey(index, keys, key, document);
+      }
+    }
+
+    return indexKeys;
+  }
+
+  private void addIndexKey(final OIndex<?> index, final SortedMap<Object, List<ODocument>> keys, final Object key,
+      final ODocument document) {
+    List<ODocument> documents = keys.get(key);
+    if (documents == null) {
+      index.checkEntry(document, key);
+
+      documents = new ArrayList<ODocument>(1);
+      keys.put(key, documents);
+    } else if (documents.get(documents.size() - 1) == document)
+      // SAME KEY TWICE IN THE COLLECTION OF THE DOCUMENT
+      return;
+    else if (index.getInternal() instanceof OIndexUnique)
+      throw new OIndexException("Found duplicated key '" + key + "' in the bulk loaded records of the unique index '"
+          + index.getName() + "'");
+
+    documents.add(document);
+  }
+
+  private boolean sameRecordType(final List<ORecordInternal<?>> records, final byte recordType) {
+    for (ORecordInternal<?> record : records)
+      if (record.getRecordType() != recordType)
+        return false;
+
+    return true;
+  }
+
+  private void onRecordCreated(final ORecordInternal<?> record, final byte[] content, final OPhysicalPosition position) {
+    final ORecordId rid = (ORecordId) record.getIdentity();
+    rid.clusterPosition = position.clusterPosition;
+
+    record.onAfterIdentityChanged(record);
+    record.fill(rid, position.recordVersion, content, false);
+  }
+}
@@ -564,6 +564,9 @@ public class ODatabaseCompare extends ODatabaseImpExpAbstract {
   }
 
   private void convertSchemaDoc(final ODocument document) {
+    // THE FIELD NAME IDS OF THE BINARY RECORD FORMAT DEPEND ON THE ORDER THE PROPERTIES HAVE BEEN CREATED
+    document.removeField("fieldNames");
+
     if (document.field("classes") != null) {
       document.setFieldType("classes", OType.EMBEDDEDSET);
       for (ODocument classDoc : document.<Set<ODocument>> field("classes")) {
@@ -300,6 +300,7 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
     writer.writeAttribute(2, true, "mvrbtree-version", OMVRBTreeMapProvider.CURRENT_PROTOCOL_VERSION);
     writer.writeAttribute(2, true, "schemaRecordId", database.getStorage().getConfiguration().schemaRecordId);
     writer.writeAttribute(2, true, "indexMgrRecordId", database.getStorage().getConfiguration().indexMgrRecordId);
+    writer.writeAttribute(2, true, "record-format", database.getStorage().getConfiguration().getRecordFormat());
     writer.endObject(1, true);
 
     listener.onMessage("OK");
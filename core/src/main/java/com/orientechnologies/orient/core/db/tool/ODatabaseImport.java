@@ -32,6 +32,7 @@ import java.util.zip.GZIPInputStream;
 
 import com.orientechnologies.common.serialization.types.OBinarySerializer;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabase.STATUS;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.record.OClassTrigger;
@@ -80,6 +81,7 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
   private boolean                    hashClustersAreUsed = false;
   private ORID                       schemaRecordId;
   private ORID                       indexMgrRecordId;
+  private String                     recordFormat;
 
   public ODatabaseImport(final ODatabaseDocument database, final String iFileName, final OCommandOutputListener iListener)
       throws IOException {
@@ -113,6 +115,15 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
     return this;
   }
 
+  @Override
+  protected void parseSetting(final String option, final List<String> items) {
+    if (option.equalsIgnoreCase("-recordFormat"))
+      // CONVERT THE DOCUMENTS TO THE FORMAT, OTHERWISE THE ONE OF THE EXPORTED DATABASE IS KEPT
+      recordFormat = items.get(0);
+    else
+      super.parseSetting(option, items);
+  }
+
   public ODatabaseImport importDatabase() {
     try {
       listener.onMessage("\nStarted import of database '" + database.getURL() + "' from " + fileName + "...");
@@ -130,6 +141,9 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
 
       database.setStatus(STATUS.IMPORTING);
 
+      if (recordFormat != null)
+        database.set(ODatabase.ATTRIBUTES.RECORDFORMAT, recordFormat);
+
       String tag;
       while (jsonReader.hasNext() && jsonReader.lastChar() != '}') {
         tag = jsonReader.readString(OJSONReader.FIELD_ASSIGNMENT);
@@ -194,7 +208,13 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
         schemaRecordId = new ORecordId(jsonReader.readString(OJSONReader.NEXT_IN_OBJECT));
       else if (fieldName.equals("indexMgrRecordId"))
         indexMgrRecordId = new ORecordId(jsonReader.readString(OJSONReader.NEXT_IN_OBJECT));
-      else
+      else if (fieldName.equals("record-format")) {
+        final String exportedRecordFormat = jsonReader.readString(OJSONReader.NEXT_IN_OBJECT);
+        if (recordFormat == null) {
+          recordFormat = exportedRecordFormat;
+          database.set(ODatabase.ATTRIBUTES.RECORDFORMAT, recordFormat);
+        }
+      } else
         jsonReader.readNext(OJSONReader.NEXT_IN_OBJECT);
     }
     jsonReader.readNext(OJSONReader.COMMA_SEPARATOR);
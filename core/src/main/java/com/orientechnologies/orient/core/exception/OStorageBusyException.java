@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.exception;
+
+/**
+ * Thrown when the storage cannot serve a request now because the channel is busy, for example while the result of a command is
+ * being received on the same thread. The request can be retried once the channel is free.
+ */
+public class OStorageBusyException extends OStorageException {
+
+  private static final long serialVersionUID = -6245843170153273870L;
+
+  public OStorageBusyException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public OStorageBusyException(String message) {
+    super(message);
+  }
+
+}
@@ -46,6 +46,9 @@ public class OIndexDictionary extends OIndexOneValue {
         if (value == null || !value.equals(iSingleValue))
           map.put(iKey, iSingleValue);
 
+        if (value == null)
+          updateStatistics(iKey, 1, 1);
+
         return this;
 
       } finally {
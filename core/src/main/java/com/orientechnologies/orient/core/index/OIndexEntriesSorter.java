@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import com.orientechnologies.common.collection.OExternalSorter;
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.io.OIOException;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Sorts the (key, RID) entries extracted by an index rebuild, so the index is filled in key order. Entries are kept in memory up
+ * to the given budget, then they are sorted and spilled on disk serialized by the key serializer of the index. The sorted runs are
+ * merged while the entries are browsed. Entries with the same key are sorted by RID.
+ */
+public class OIndexEntriesSorter {
+  private static final int                ENTRY_OVERHEAD = 64;
+
+  private static final Comparator<Entry>  COMPARATOR     = new Comparator<Entry>() {
+                                                           public int compare(final Entry e1, final Entry e2) {
+                                                             final int result = ODefaultComparator.INSTANCE.compare(e1.key, e2.key);
+                                                             if (result != 0)
+                                                               return result;
+                                                             return e1.rid.compareTo(e2.rid);
+                                                           }
+                                                         };
+
+  private final OBinarySerializer<Object> keySerializer;
+  private final long                      maxMemory;
+  private final OExternalSorter<Entry>    sorter;
+
+  private List<Entry>                     entries        = new ArrayList<Entry>();
+  private long                            usedMemory;
+
+  /**
+   * @param iKeySerializer
+   *          Serializer of the keys used to spill them on disk
+   * @param iMaxMemory
+   *          Bytes of entries sorted in memory before to spill them on disk, -1 to never spill
+   */
+  public OIndexEntriesSorter(final OBinarySerializer<Object> iKeySerializer, final long iMaxMemory) {
+    keySerializer = iKeySerializer;
+    maxMemory = iMaxMemory;
+    sorter = new OExternalSorter<Entry>("orientdb-index-", COMPARATOR, new OExternalSorter.OSerializer<Entry>() {
+      public void write(final Entry iEntry, final DataOutputStream iOut) throws IOException {
+        final byte[] key = new byte[keySerializer.getObjectSize(iEntry.key)];
+        keySerializer.serialize(iEntry.key, key, 0);
+        iOut.writeInt(key.length);
+        iOut.write(key);
+
+        final byte[] rid = iEntry.rid.toStream();
+        iOut.writeShort(rid.length);
+        iOut.write(rid);
+      }
+
+      public Entry read(final DataInputStream iIn) throws IOException {
+        final byte[] key = new byte[iIn.readInt()];
+        iIn.readFully(key);
+        final byte[] rid = new byte[iIn.readShort()];
+        iIn.readFully(rid);
+        return new Entry(keySerializer.deserialize(key, 0), new ORecordId().fromStream(rid));
+      }
+    });
+  }
+
+  public void add(final Object iKey, final ORID iRid) {
+    entries.add(new Entry(iKey, iRid));
+
+    if (maxMemory > -1) {
+      usedMemory += keySerializer.getObjectSize(iKey) + ENTRY_OVERHEAD;
+      if (usedMemory >= maxMemory)
+        spill();
+    }
+  }
+
+  /**
+   * Returns the entries in key order. They can be browsed only once.
+   */
+  public Iterator<Entry> sortedEntries() {
+    Collections.sort(entries, COMPARATOR);
+
+    final List<Entry> lastRun = entries;
+    entries = new ArrayList<Entry>();
+    usedMemory = 0;
+
+    if (sorter.getRuns() == 0)
+      return lastRun.iterator();
+
+    try {
+      final Iterator<Entry> merged = sorter.merge(lastRun.iterator());
+      return new Iterator<Entry>() {
+        public boolean hasNext() {
+          return merged.hasNext();
+        }
+
+        public Entry next() {
+          try {
+            return merged.next();
+          } catch (OIOException e) {
+            close();
+            throw new OIndexException("Error on reading the index entries sorted on disk", e);
+          }
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException("remove");
+        }
+      };
+    } catch (IOException e) {
+      close();
+      throw new OIndexException("Error on reading the index entries sorted on disk", e);
+    }
+  }
+
+  /**
+   * Closes and removes the spilled runs not browsed yet.
+   */
+  public void close() {
+    sorter.close();
+  }
+
+  protected int getSpilledRuns() {
+    return sorter.getRuns();
+  }
+
+  private void spill() {
+    try {
+      sorter.spill(entries);
+    } catch (IOException e) {
+      close();
+      throw new OIndexException("Error on spilling the index entries to sort on disk", e);
+    }
+
+    entries = new ArrayList<Entry>();
+    usedMemory = 0;
+  }
+
+  public static final class Entry {
+    private final Object key;
+    private final ORID   rid;
+
+    private Entry(final Object iKey, final ORID iRid) {
+      key = iKey;
+      rid = iRid;
+    }
+
+    public Object getKey() {
+      return key;
+    }
+
+    public ORID getRid() {
+      return rid;
+    }
+  }
+}
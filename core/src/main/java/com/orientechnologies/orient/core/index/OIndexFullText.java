@@ -110,18 +110,21 @@ public class OIndexFullText extends OIndexMultiValues {
 
           // SEARCH FOR THE WORD
           refs = map.get(word);
+          final boolean newWord = refs == null;
 
-          if (refs == null) {
+          if (newWord) {
             // WORD NOT EXISTS: CREATE THE KEYWORD CONTAINER THE FIRST TIME THE WORD IS FOUND
             refs = new OMVRBTreeRIDSet();
             ((OMVRBTreeRIDSet) refs).setAutoConvertToRecord(false);
           }
 
           // ADD THE CURRENT DOCUMENT AS REF FOR THAT WORD
+          final int sizeBefore = refs.size();
           refs.add(iSingleValue);
 
           // SAVE THE INDEX ENTRY
           map.put(word, refs);
+          updateStatistics(word, refs.size() - sizeBefore, newWord ? 1 : 0);
 
         } finally {
           releaseExclusiveLock();
@@ -163,6 +166,7 @@ public class OIndexFullText extends OIndexMultiValues {
                 map.remove(word);
               else
                 map.put(word, recs);
+              updateStatistics(word, -1, recs.isEmpty() ? -1 : 0);
               removed = true;
             }
           }
@@ -89,6 +89,13 @@ public interface OIndexInternal<T> extends OIndex<T>, Iterable<Entry<Object, T>>
    */
   public boolean canBeUsedInEqualityOperators();
 
+  /**
+   * Returns the statistics of the index used by the query planner to estimate the selectivity of the conditions.
+   * 
+   * @return Current statistics, updated at every change of the index.
+   */
+  public OIndexStatistics getStatistics();
+
   /**
    * Prohibit index modifications. Only index read commands are allowed after this call.
    * 
@@ -26,6 +26,8 @@ import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.orientechnologies.common.collection.OCompositeKey;
 import com.orientechnologies.common.collection.OMVRBTree;
@@ -41,6 +43,7 @@ import com.orientechnologies.orient.core.annotation.ODocumentInstance;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordElement;
@@ -50,6 +53,7 @@ import com.orientechnologies.orient.core.exception.OTransactionException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
 import com.orientechnologies.orient.core.memory.OMemoryWatchDog.Listener;
+import com.orientechnologies.orient.core.metadata.security.OUser;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.profiler.OJVMProfiler;
 import com.orientechnologies.orient.core.record.ORecord;
@@ -62,6 +66,7 @@ import com.orientechnologies.orient.core.serialization.serializer.stream.OStream
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
 import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeDatabaseLazySave;
+import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeMapProvider;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbstract;
 
 /**
@@ -71,20 +76,23 @@ import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbs
  * 
  */
 public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveExternal implements OIndexInternal<T> {
-  protected final OModificationLock              modificationLock = new OModificationLock();
+  protected final OModificationLock              modificationLock  = new OModificationLock();
 
-  protected static final String                  CONFIG_MAP_RID   = "mapRid";
-  protected static final String                  CONFIG_CLUSTERS  = "clusters";
+  protected static final String                  CONFIG_MAP_RID    = "mapRid";
+  protected static final String                  CONFIG_CLUSTERS   = "clusters";
+  protected static final String                  CONFIG_STATISTICS = "statistics";
   protected String                               name;
   protected String                               type;
   protected OMVRBTreeDatabaseLazySave<Object, T> map;
-  protected Set<String>                          clustersToIndex  = new LinkedHashSet<String>();
+  protected Set<String>                          clustersToIndex   = new LinkedHashSet<String>();
   protected OIndexDefinition                     indexDefinition;
   protected final String                         databaseName;
   protected int                                  maxUpdatesBeforeSave;
 
   @ODocumentInstance
   protected ODocument                            configuration;
+  protected volatile OIndexStatistics            statistics;
+  private final AtomicBoolean                    statisticsBuilding = new AtomicBoolean();
   private final Listener                         watchDog;
 
   public OIndexMVRBTreeAbstract(final String iType) {
@@ -236,6 +244,14 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       map = new OMVRBTreeDatabaseLazySave<Object, T>(getDatabase(), rid, maxUpdatesBeforeSave);
       try {
         map.load();
+
+        final ODocument statisticsDoc = configuration.field(CONFIG_STATISTICS);
+        if (statisticsDoc != null) {
+          final OIndexStatistics storedStatistics = OIndexStatistics.fromDocument(statisticsDoc);
+          // DISCARD THE STATISTICS NOT UPDATED WITH THE LAST CHANGES
+          if (storedStatistics.getKeys() == map.size())
+            statistics = storedStatistics;
+        }
       } catch (Exception e) {
         if (onCorruptionRepairDatabase(null, "load", "Index will be rebuilt")) {
           if (isAutomatic())
@@ -364,12 +380,17 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
 
   /**
    * Populates the index with all the existent records. Uses the massive insert intent to speed up and keep the consumed memory low.
+   * Keys are extracted from all the clusters and sorted first, then they are inserted in ascending order so every key is appended
+   * to the last node of the tree, which is split at {@link OGlobalConfiguration#INDEX_REBUILD_PAGE_LOAD_FACTOR}.
    */
+  @SuppressWarnings("unchecked")
   public long rebuild(final OProgressListener iProgressListener) {
     long documentIndexed = 0;
 
     final boolean intentInstalled = getDatabase().declareIntent(new OIntentMassiveInsert());
 
+    OIndexEntriesSorter sorter = null;
+
     acquireExclusiveLock();
     try {
       try {
@@ -377,6 +398,7 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       } catch (Exception e) {
         // IGNORE EXCEPTION: IF THE REBUILD WAS LAUNCHED IN CASE OF RID INVALID CLEAR ALWAYS GOES IN ERROR
       }
+      statistics = null;
 
       int documentNum = 0;
       long documentTotal = 0;
@@ -387,6 +409,10 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       if (iProgressListener != null)
         iProgressListener.onBegin(this, documentTotal);
 
+      final int sortBuffer = OGlobalConfiguration.INDEX_REBUILD_SORT_BUFFER.getValueAsInteger();
+      sorter = new OIndexEntriesSorter(((OMVRBTreeMapProvider<Object, T>) map.getProvider()).getKeySerializer(),
+          sortBuffer > -1 ? sortBuffer * 1024L * 1024L : -1);
+
       for (final String clusterName : clustersToIndex)
         try {
           for (final ORecord<?> record : getDatabase().browseCluster(clusterName)) {
@@ -405,10 +431,13 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
               if (fieldValue != null) {
                 if (fieldValue instanceof Collection) {
                   for (final Object fieldValueItem : (Collection<?>) fieldValue) {
-                    put(fieldValueItem, doc);
+                    if (fieldValueItem != null)
+                      sorter.add(fieldValueItem, doc.getIdentity());
+                    else
+                      put(fieldValueItem, doc);
                   }
                 } else
-                  put(fieldValue, doc);
+                  sorter.add(fieldValue, doc.getIdentity());
 
                 ++documentIndexed;
               }
@@ -422,7 +451,21 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
           // END OF CLUSTER REACHED, IGNORE IT
         }
 
+      map.setPageLoadFactor(OGlobalConfiguration.INDEX_REBUILD_PAGE_LOAD_FACTOR.getValueAsFloat());
+      try {
+        for (Iterator<OIndexEntriesSorter.Entry> it = sorter.sortedEntries(); it.hasNext();) {
+          if (Thread.interrupted())
+            throw new OCommandExecutionException("The index rebuild has been interrupted");
+
+          final OIndexEntriesSorter.Entry entry = it.next();
+          put(entry.getKey(), entry.getRid());
+        }
+      } finally {
+        map.setPageLoadFactor(null);
+      }
+
       lazySave();
+      statistics = buildStatistics(getSize());
 
       if (iProgressListener != null)
         iProgressListener.onCompletition(this, true);
@@ -440,6 +483,9 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       throw new OIndexException("Error on rebuilding the index for clusters: " + clustersToIndex, e);
 
     } finally {
+      if (sorter != null)
+        sorter.close();
+
       if (intentInstalled)
         getDatabase().declareIntent(null);
 
@@ -466,7 +512,12 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       acquireExclusiveLock();
       try {
 
-        return map.remove(key) != null;
+        final T removed = map.remove(key);
+        if (removed == null)
+          return false;
+
+        updateStatistics(key, -OIndexStatistics.countValues(removed), -1);
+        return true;
 
       } finally {
         releaseExclusiveLock();
@@ -484,6 +535,7 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       try {
 
         map.clear();
+        statistics = null;
         return this;
 
       } finally {
@@ -658,6 +710,13 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
         configuration.field(CONFIG_CLUSTERS, clustersToIndex, OType.EMBEDDEDSET);
         configuration.field(CONFIG_MAP_RID, ((OMVRBTreeProviderAbstract<Object, ?>) map.getProvider()).getRecord().getIdentity());
 
+        if (statistics != null) {
+          final ODocument statisticsDoc = statistics.toDocument();
+          statisticsDoc.addOwner(configuration);
+          configuration.field(CONFIG_STATISTICS, statisticsDoc, OType.EMBEDDED);
+        } else
+          configuration.removeField(CONFIG_STATISTICS);
+
       } finally {
         configuration.setInternalStatus(ORecordElement.STATUS.LOADED);
       }
@@ -739,6 +798,79 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     return configuration;
   }
 
+  /**
+   * Returns the statistics without computing them: building them browses all the entries, so when they are missing or stale they
+   * are built in background by the workers of the engine and the current ones are returned meanwhile.
+   * 
+   * @return The statistics, null if not built yet
+   */
+  public OIndexStatistics getStatistics() {
+    acquireSharedLock();
+    try {
+      if ((statistics == null || statistics.isStale()) && statisticsBuilding.compareAndSet(false, true))
+        scheduleStatisticsBuild();
+      return statistics;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  private void scheduleStatisticsBuild() {
+    final ODatabaseRecord database = getDatabase();
+    final String url = database.getURL();
+    final OUser user = database.getUser();
+
+    try {
+      Orient.instance().getWorkers().execute(new Runnable() {
+        public void run() {
+          ODatabaseDocumentTx db = null;
+          try {
+            // THE CALLER HAS ALREADY BEEN AUTHENTICATED
+            db = new ODatabaseDocumentTx(url);
+            db.setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+            db.open(user != null ? user.getName() : OUser.ADMIN, "");
+
+            // COUNTED BEFORE: THE SIZE OF SOME INDEXES IS COMPUTED UNDER EXCLUSIVE LOCK
+            final long entries = getSize();
+
+            acquireSharedLock();
+            try {
+              // THE CHANGES ARE APPLIED UNDER EXCLUSIVE LOCK: THE ENTRIES CANNOT CHANGE WHILE THEY ARE BROWSED
+              statistics = buildStatistics(entries);
+            } finally {
+              releaseSharedLock();
+            }
+          } catch (Exception e) {
+            OLogManager.instance().debug(this, "Cannot build the statistics of index %s", e, name);
+          } finally {
+            statisticsBuilding.set(false);
+            if (db != null)
+              db.close();
+            ODatabaseRecordThreadLocal.INSTANCE.remove();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      statisticsBuilding.set(false);
+    }
+  }
+
+  /**
+   * Updates the statistics, if already computed, after a change of the index.
+   */
+  protected void updateStatistics(final Object iKey, final long iEntries, final long iKeys) {
+    if (statistics != null)
+      statistics.update(iKey, iEntries, iKeys);
+  }
+
+  protected boolean isStatisticsToSave() {
+    return statistics != null && statistics.isToSave();
+  }
+
+  protected OIndexStatistics buildStatistics(final long iEntries) {
+    return OIndexStatistics.build(map.entrySet().iterator(), iEntries);
+  }
+
   public boolean isAutomatic() {
     return indexDefinition != null && indexDefinition.getClassName() != null;
   }
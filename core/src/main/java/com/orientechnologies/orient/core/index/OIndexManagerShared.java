@@ -140,6 +140,27 @@ public class OIndexManagerShared extends OIndexManagerAbstract implements OIndex
       classPropertyIndex.remove(indexDefinition.getClassName().toLowerCase());
   }
 
+  /**
+   * Flushes the indexes and stores the configuration too if the statistics of some index changed considerably since the last time
+   * they have been stored.
+   */
+  @Override
+  public void flush() {
+    super.flush();
+
+    for (final OIndexInternal<?> idx : indexes.values())
+      if (idx instanceof OIndexMVRBTreeAbstract<?> && ((OIndexMVRBTreeAbstract<?>) idx).isStatisticsToSave()) {
+        try {
+          final ODatabaseRecord database = getDatabase();
+          if (database != null && !database.isClosed() && !database.getTransaction().isActive())
+            save();
+        } catch (Exception e) {
+          OLogManager.instance().debug(this, "Cannot save the statistics of the indexes", e);
+        }
+        break;
+      }
+  }
+
   @Override
   protected void fromStream() {
     acquireExclusiveLock();
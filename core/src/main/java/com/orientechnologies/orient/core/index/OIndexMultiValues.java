@@ -91,8 +91,9 @@ public abstract class OIndexMultiValues extends OIndexMVRBTreeAbstract<Set<OIden
         checkForKeyType(iKey);
 
         Set<OIdentifiable> values = map.get(iKey);
+        final boolean newKey = values == null;
 
-        if (values == null) {
+        if (newKey) {
           values = new OMVRBTreeRIDSet();
           ((OMVRBTreeRIDSet) values).setAutoConvertToRecord(false);
         }
@@ -100,9 +101,11 @@ public abstract class OIndexMultiValues extends OIndexMVRBTreeAbstract<Set<OIden
         if (!iSingleValue.getIdentity().isValid())
           ((ORecord<?>) iSingleValue).save();
 
+        final int sizeBefore = values.size();
         values.add(iSingleValue.getIdentity());
 
         map.put(iKey, values);
+        updateStatistics(iKey, values.size() - sizeBefore, newKey ? 1 : 0);
         return this;
 
       } finally {
@@ -131,6 +134,7 @@ public abstract class OIndexMultiValues extends OIndexMVRBTreeAbstract<Set<OIden
             map.remove(iKey);
           else
             map.put(iKey, recs);
+          updateStatistics(iKey, -1, recs.isEmpty() ? -1 : 0);
           return true;
         }
         return false;
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Statistics of an index used by the query planner to estimate how many records are selected by a condition: number of entries,
+ * number of distinct keys and an equi-depth histogram of the keys. Counters and buckets are updated at every change of the index,
+ * while the bounds of the buckets are computed again only after many changes, when the depth of the buckets could be too uneven.
+ */
+public class OIndexStatistics {
+  public static final int     HISTOGRAM_BUCKETS      = 32;
+  private static final int    MIN_CHANGES_TO_REBUILD = 1000;
+  private static final String FIELD_ENTRIES          = "entries";
+  private static final String FIELD_KEYS             = "keys";
+  private static final String FIELD_CHANGES          = "changes";
+  private static final String FIELD_BUILT_ON         = "builtOn";
+  private static final String FIELD_BOUNDS           = "bounds";
+  private static final String FIELD_COMPOSITE        = "composite";
+  private static final String FIELD_BUCKET_SIZES     = "bucketEntries";
+  private static final String FIELD_BUCKET_KEYS      = "bucketKeys";
+
+  private long                entries;
+  private long                keys;
+  private long                changes;
+  private long                changesToSave;
+  private long                builtOn;
+
+  private Object[]            bounds;
+  private long[]              bucketEntries;
+  private long[]              bucketKeys;
+
+  public OIndexStatistics(final long iEntries, final long iKeys) {
+    entries = iEntries;
+    keys = iKeys;
+    builtOn = iEntries;
+  }
+
+  /**
+   * Computes the statistics browsing the entries of an ordered index.
+   *
+   * @param iIterator
+   *          Entries of the index in key order
+   * @param iEntries
+   *          Number of entries, used to compute the depth of the buckets
+   */
+  public static OIndexStatistics build(final Iterator<? extends Map.Entry<?, ?>> iIterator, final long iEntries) {
+    final long depth = Math.max(1, (iEntries + HISTOGRAM_BUCKETS - 1) / HISTOGRAM_BUCKETS);
+
+    final List<Object> bounds = new ArrayList<Object>(HISTOGRAM_BUCKETS + 1);
+    final List<long[]> buckets = new ArrayList<long[]>(HISTOGRAM_BUCKETS + 1);
+
+    long entries = 0;
+    long keys = 0;
+    long[] current = null;
+    Object lastKey = null;
+
+    while (iIterator.hasNext()) {
+      final Map.Entry<?, ?> entry = iIterator.next();
+      final long values = countValues(entry.getValue());
+      if (values == 0)
+        continue;
+
+      if (current != null && values >= depth) {
+        // FREQUENT KEY: KEEP IT IN A BUCKET BY ITSELF
+        bounds.add(lastKey);
+        buckets.add(current);
+        current = null;
+      }
+
+      if (current == null)
+        current = new long[2];
+
+      lastKey = entry.getKey();
+      current[0] += values;
+      current[1]++;
+      entries += values;
+      keys++;
+
+      if (current[0] >= depth) {
+        bounds.add(lastKey);
+        buckets.add(current);
+        current = null;
+      }
+    }
+
+    if (current != null) {
+      bounds.add(lastKey);
+      buckets.add(current);
+    }
+
+    final OIndexStatistics statistics = new OIndexStatistics(entries, keys);
+    statistics.setBuckets(bounds, buckets);
+    return statistics;
+  }
+
+  public static OIndexStatistics fromDocument(final ODocument iDocument) {
+    final OIndexStatistics statistics = new OIndexStatistics(((Number) iDocument.field(FIELD_ENTRIES)).longValue(),
+        ((Number) iDocument.field(FIELD_KEYS)).longValue());
+    statistics.changes = ((Number) iDocument.field(FIELD_CHANGES)).longValue();
+    statistics.builtOn = ((Number) iDocument.field(FIELD_BUILT_ON)).longValue();
+
+    final List<Object> bounds = iDocument.field(FIELD_BOUNDS);
+    if (bounds != null) {
+      final boolean composite = Boolean.TRUE.equals(iDocument.field(FIELD_COMPOSITE));
+      final List<Number> sizes = iDocument.field(FIELD_BUCKET_SIZES);
+      final List<Number> keys = iDocument.field(FIELD_BUCKET_KEYS);
+
+      final List<Object> keyBounds = new ArrayList<Object>(bounds.size());
+      final List<long[]> buckets = new ArrayList<long[]>(bounds.size());
+      for (int i = 0; i < bounds.size(); ++i) {
+        keyBounds.add(composite ? new OCompositeKey((List<?>) bounds.get(i)) : bounds.get(i));
+        buckets.add(new long[] { sizes.get(i).longValue(), keys.get(i).longValue() });
+      }
+      statistics.setBuckets(keyBounds, buckets);
+    }
+    return statistics;
+  }
+
+  public synchronized ODocument toDocument() {
+    final ODocument document = new ODocument();
+    document.field(FIELD_ENTRIES, entries);
+    document.field(FIELD_KEYS, keys);
+    document.field(FIELD_CHANGES, changes);
+    document.field(FIELD_BUILT_ON, builtOn);
+
+    if (bounds != null && isStorable()) {
+      final List<Object> storedBounds = new ArrayList<Object>(bounds.length);
+      final List<Long> sizes = new ArrayList<Long>(bounds.length);
+      final List<Long> keyCounts = new ArrayList<Long>(bounds.length);
+      for (int i = 0; i < bounds.length; ++i) {
+        storedBounds.add(bounds[i] instanceof OCompositeKey ? ((OCompositeKey) bounds[i]).getKeys() : bounds[i]);
+        sizes.add(bucketEntries[i]);
+        keyCounts.add(bucketKeys[i]);
+      }
+      document.field(FIELD_BOUNDS, storedBounds, OType.EMBEDDEDLIST);
+      document.field(FIELD_COMPOSITE, bounds[0] instanceof OCompositeKey);
+      document.field(FIELD_BUCKET_SIZES, sizes, OType.EMBEDDEDLIST);
+      document.field(FIELD_BUCKET_KEYS, keyCounts, OType.EMBEDDEDLIST);
+    }
+
+    changesToSave = 0;
+    return document;
+  }
+
+  /**
+   * Updates the statistics after a change of the index.
+   *
+   * @param iKey
+   *          Changed key
+   * @param iEntries
+   *          Number of entries added, negative if removed
+   * @param iKeys
+   *          1 if the key has been added, -1 if removed, otherwise 0
+   */
+  public synchronized void update(final Object iKey, final long iEntries, final long iKeys) {
+    entries = Math.max(0, entries + iEntries);
+    keys = Math.max(0, keys + iKeys);
+    changes += Math.abs(iEntries);
+    changesToSave += Math.abs(iEntries);
+
+    if (bounds != null)
+      try {
+        final int bucket = findBucket(iKey);
+        if (bucket == bounds.length - 1 && iEntries > 0 && compare(bounds[bucket], iKey) < 0)
+          // NEW GREATEST KEY
+          bounds[bucket] = iKey;
+        bucketEntries[bucket] = Math.max(0, bucketEntries[bucket] + iEntries);
+        bucketKeys[bucket] = Math.max(0, bucketKeys[bucket] + iKeys);
+      } catch (RuntimeException e) {
+        // KEY NOT COMPARABLE WITH THE BOUNDS: DISCARD THE HISTOGRAM
+        bounds = null;
+      }
+  }
+
+  public synchronized long getEntries() {
+    return entries;
+  }
+
+  public synchronized long getKeys() {
+    return keys;
+  }
+
+  public synchronized boolean hasHistogram() {
+    return bounds != null;
+  }
+
+  /**
+   * Tells if the histogram should be computed again because too many entries changed since it has been built.
+   */
+  public synchronized boolean isStale() {
+    return (bounds == null && entries > 0) || changes > Math.max(builtOn, MIN_CHANGES_TO_REBUILD);
+  }
+
+  /**
+   * Tells if the statistics changed enough since the last time they have been stored.
+   */
+  public synchronized boolean isToSave() {
+    return changesToSave > Math.max(entries / 10, MIN_CHANGES_TO_REBUILD);
+  }
+
+  /**
+   * Estimates the number of entries with the given key.
+   */
+  public synchronized long estimateEquals(final Object iKey) {
+    if (entries == 0 || keys == 0)
+      return 0;
+
+    if (bounds != null && iKey != null)
+      try {
+        final int bucket = findBucket(iKey);
+        return average(bucketEntries[bucket], bucketKeys[bucket]);
+      } catch (RuntimeException e) {
+        // NOT COMPARABLE: USE THE AVERAGE ON ALL THE KEYS
+      }
+
+    return average(entries, keys);
+  }
+
+  /**
+   * Estimates the number of entries between two keys. Composite keys with less items than the indexed ones match all the keys
+   * starting with them, like in the index range queries.
+   *
+   * @param iFrom
+   *          Lower bound, null for none
+   * @param iFromInclusive
+   *          Lower bound is included
+   * @param iTo
+   *          Upper bound, null for none
+   * @param iToInclusive
+   *          Upper bound is included
+   */
+  public synchronized long estimateRange(final Object iFrom, final boolean iFromInclusive, final Object iTo,
+      final boolean iToInclusive) {
+    if (entries == 0)
+      return 0;
+
+    if (bounds == null)
+      // NO HISTOGRAM: A THIRD OF THE ENTRIES OR THE AVERAGE OF A KEY FOR A POINT RANGE
+      return iFrom != null && iTo != null && compare(iFrom, iTo) == 0 ? average(entries, keys) : Math.max(1, entries / 3);
+
+    try {
+      final boolean point = iFrom != null && iTo != null && compare(iFrom, iTo) == 0;
+
+      long result = 0;
+      for (int i = 0; i < bounds.length; ++i) {
+        // BUCKET CONTAINS THE KEYS IN (lower, upper], THE FIRST ONE IS UNBOUNDED
+        final Object lower = i > 0 ? bounds[i - 1] : null;
+        final Object upper = bounds[i];
+
+        if (iFrom != null) {
+          final int cmp = compare(upper, iFrom);
+          if (cmp < 0 || (cmp == 0 && !iFromInclusive))
+            continue;
+        }
+        if (iTo != null && lower != null) {
+          final int cmp = compare(lower, iTo);
+          if (cmp > 0 || (cmp == 0 && !iToInclusive))
+            continue;
+        }
+
+        final boolean contained = (iFrom == null || (lower != null && compare(lower, iFrom) >= 0))
+            && (iTo == null || compare(upper, iTo) <= 0);
+
+        if (contained)
+          result += bucketEntries[i];
+        else if (point)
+          result += average(bucketEntries[i], bucketKeys[i]);
+        else
+          // PARTIAL OVERLAP: HALF OF THE BUCKET
+          result += (bucketEntries[i] + 1) / 2;
+      }
+      return result;
+
+    } catch (RuntimeException e) {
+      return Math.max(1, entries / 3);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "entries=" + entries + ", keys=" + keys + ", buckets=" + (bounds != null ? bounds.length : 0);
+  }
+
+  public static long countValues(final Object iValue) {
+    if (iValue == null)
+      return 0;
+    if (iValue instanceof Collection<?>)
+      return ((Collection<?>) iValue).size();
+    return 1;
+  }
+
+  private void setBuckets(final List<Object> iBounds, final List<long[]> iBuckets) {
+    if (iBounds.isEmpty())
+      return;
+
+    bounds = iBounds.toArray();
+    bucketEntries = new long[iBuckets.size()];
+    bucketKeys = new long[iBuckets.size()];
+    for (int i = 0; i < iBuckets.size(); ++i) {
+      bucketEntries[i] = iBuckets.get(i)[0];
+      bucketKeys[i] = iBuckets.get(i)[1];
+    }
+  }
+
+  /**
+   * Returns the first bucket whose upper bound is not less than the key, the last one if the key is greater than all the bounds.
+   */
+  private int findBucket(final Object iKey) {
+    int low = 0;
+    int high = bounds.length - 1;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (compare(bounds[mid], iKey) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  private boolean isStorable() {
+    final boolean composite = bounds[0] instanceof OCompositeKey;
+    for (Object bound : bounds) {
+      if (composite != bound instanceof OCompositeKey)
+        return false;
+
+      if (composite) {
+        for (Object item : ((OCompositeKey) bound).getKeys())
+          if (!OType.isSimpleType(item))
+            return false;
+      } else if (!OType.isSimpleType(bound))
+        return false;
+    }
+    return true;
+  }
+
+  private static int compare(final Object iFirst, final Object iSecond) {
+    return ODefaultComparator.INSTANCE.compare(iFirst, iSecond);
+  }
+
+  private static long average(final long iEntries, final long iKeys) {
+    if (iEntries == 0)
+      return 0;
+    return iKeys > 0 ? (iEntries + iKeys - 1) / iKeys : iEntries;
+  }
+}
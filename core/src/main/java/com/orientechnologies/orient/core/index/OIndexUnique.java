@@ -58,6 +58,7 @@ public class OIndexUnique extends OIndexOneValue {
           ((ORecord<?>) iSingleValue.getRecord()).save();
 
         map.put(iKey, iSingleValue.getIdentity());
+        updateStatistics(iKey, 1, 1);
         return this;
 
       } finally {
@@ -67,7 +67,8 @@ public class OPropertyIndexDefinition extends ODocumentWrapperNoClass implements
       else
         return null;
     }
-    return createValue(iDocument.field(field));
+    // AVOID UNMARSHALLING THE RECORD WHEN THE FORMAT ALLOWS TO READ THE SINGLE FIELD
+    return createValue(iDocument.peekField(field));
   }
 
   @Override
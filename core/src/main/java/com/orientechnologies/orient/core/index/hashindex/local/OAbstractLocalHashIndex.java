@@ -40,6 +40,7 @@ import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexException;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
 import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
 import com.orientechnologies.orient.core.index.OSimpleKeyIndexDefinition;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
@@ -69,7 +70,7 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
   private String                           name;
   private String                           type;
 
-  private OIndexDefinition                 indexDefinition;
+  private volatile OIndexDefinition        indexDefinition;
   private Set<String>                      clustersToIndex                       = new LinkedHashSet<String>();
 
   private ODocument                        configuration;
@@ -178,22 +179,36 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
 
   @Override
   public OIndex<T> put(Object key, OIdentifiable value) {
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
       localHashTable.put(key, (T) value);
       return this;
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Puts the value only if the key is not mapped yet, the check and the put are atomic.
+   * 
+   * @return the value already mapped to the key or <code>null</code> if the passed value was put
+   */
+  protected T putIfAbsent(Object key, T value) {
+    acquireSharedLock();
+    try {
+      return localHashTable.putIfAbsent(key, value);
+    } finally {
+      releaseSharedLock();
     }
   }
 
   @Override
   public boolean remove(Object key) {
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
       return localHashTable.remove(key) != null;
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -642,6 +657,15 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
     return true;
   }
 
+  /**
+   * Keys are unique and not ordered, so the size kept by the hash table is enough to estimate the equality conditions.
+   */
+  @Override
+  public OIndexStatistics getStatistics() {
+    final long size = localHashTable.size();
+    return new OIndexStatistics(size, size);
+  }
+
   @Override
   public void freeze(boolean throwException) {
     throw new UnsupportedOperationException("freeze");
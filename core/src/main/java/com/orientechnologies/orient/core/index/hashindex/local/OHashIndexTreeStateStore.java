@@ -10,6 +10,8 @@ import com.orientechnologies.orient.core.storage.impl.local.OSingleFileSegment;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
 
 /**
+ * Tree of the hash table as stored by the previous versions, only read to move it into {@link OHashTableDirectory}.
+ *
  * @author Andrey Lomakin
  * @since 11.02.13
  */
@@ -29,62 +31,14 @@ public class OHashIndexTreeStateStore extends OSingleFileSegment {
     super(iStorage, iConfig, iType);
   }
 
-  public void setHashTreeSize(long hashTreeSize) throws IOException {
-    file.writeHeaderLong(0, hashTreeSize);
-  }
-
   public long getHashTreeSize() throws IOException {
     return file.readHeaderLong(0);
   }
 
-  public void setHashTreeTombstone(long hashTreeTombstone) throws IOException {
-    file.writeHeaderLong(OLongSerializer.LONG_SIZE, hashTreeTombstone);
-  }
-
   public long getHashTreeTombstone() throws IOException {
     return file.readHeaderLong(OLongSerializer.LONG_SIZE);
   }
 
-  public void setBucketTombstonePointer(long bucketTombstonePointer) throws IOException {
-    file.writeHeaderLong(2 * OLongSerializer.LONG_SIZE, bucketTombstonePointer);
-  }
-
-  public long getBucketTombstonePointer() throws IOException {
-    return file.readHeaderLong(2 * OLongSerializer.LONG_SIZE);
-  }
-
-  public void storeTreeState(long[][] hashTree, OHashTreeNodeMetadata[] nodesMetadata) throws IOException {
-    truncate();
-
-    file.allocateSpace(hashTree.length * RECORD_SIZE);
-    long filePosition = 0;
-    for (int i = 0; i < hashTree.length; i++) {
-      long[] node = hashTree[i];
-      byte[] nodeContentBuffer = new byte[RECORD_SIZE];
-      int offset = 0;
-
-      if (node != null) {
-        OBooleanSerializer.INSTANCE.serializeNative(true, nodeContentBuffer, offset);
-        offset++;
-
-        for (long position : node) {
-          OLongSerializer.INSTANCE.serializeNative(position, nodeContentBuffer, offset);
-          offset += OLongSerializer.LONG_SIZE;
-        }
-
-        OHashTreeNodeMetadata nodeMetadata = nodesMetadata[i];
-        nodeContentBuffer[offset++] = (byte) nodeMetadata.getMaxLeftChildDepth();
-        nodeContentBuffer[offset++] = (byte) nodeMetadata.getMaxRightChildDepth();
-        nodeContentBuffer[offset] = (byte) nodeMetadata.getNodeLocalDepth();
-      } else {
-        OBooleanSerializer.INSTANCE.serializeNative(false, nodeContentBuffer, offset);
-      }
-
-      file.write(filePosition, nodeContentBuffer);
-      filePosition += nodeContentBuffer.length;
-    }
-  }
-
   public TreeState loadTreeState(int hashTreeSize) throws IOException {
     OHashTreeNodeMetadata[] hashTreeNodeMetadata = new OHashTreeNodeMetadata[hashTreeSize];
     long[][] hashTree = new long[hashTreeSize][];
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import java.io.IOException;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+
+/**
+ * Directory of the extendible hash table, kept in the pages of the disk cache instead of the heap. Only the pages changed since the
+ * last flush are written on disk.
+ *
+ * Every page starts with the magic number, CRC and LSN fields maintained by the disk cache, like the buckets do. The first page
+ * contains the number of nodes and the head of the list of removed nodes, the other pages contain the nodes. Every
+ * node is made of the local depth, the maximum depths of the left and right children and {@link OLocalHashTable#MAX_LEVEL_SIZE}
+ * pointers. A removed node keeps the index of the next removed node in its first pointer.
+ *
+ * The changes are serialized by the hash table, the readers may run concurrently with a change and validate what they read by
+ * themselves.
+ */
+public class OHashTableDirectory {
+  private static final int    MAGIC_NUMBER_OFFSET          = 0;
+  private static final int    CRC32_OFFSET                 = MAGIC_NUMBER_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int    WAL_SEGMENT_OFFSET           = CRC32_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int    WAL_POSITION_OFFSET          = WAL_SEGMENT_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int    PAGE_DATA_OFFSET             = WAL_POSITION_OFFSET + OLongSerializer.LONG_SIZE;
+
+  private static final int    TREE_SIZE_OFFSET             = PAGE_DATA_OFFSET;
+  private static final int    TOMBSTONE_OFFSET             = TREE_SIZE_OFFSET + OIntegerSerializer.INT_SIZE;
+
+  private static final int    LOCAL_DEPTH_OFFSET           = 0;
+  private static final int    MAX_LEFT_CHILD_DEPTH_OFFSET  = 1;
+  private static final int    MAX_RIGHT_CHILD_DEPTH_OFFSET = 2;
+  private static final int    POINTERS_OFFSET              = OLongSerializer.LONG_SIZE;
+
+  private static final int    NODE_SIZE                    = POINTERS_OFFSET + OLocalHashTable.MAX_LEVEL_SIZE
+                                                               * OLongSerializer.LONG_SIZE;
+  private static final int    NODES_PER_PAGE               = (OHashIndexBucket.MAX_BUCKET_SIZE_BYTES - PAGE_DATA_OFFSET) / NODE_SIZE;
+
+  private final String        fileExtension;
+  private final ODirectMemory directMemory                 = ODirectMemoryFactory.INSTANCE.directMemory();
+
+  private String              name;
+  private ODiskCache          diskCache;
+  private long                fileId;
+
+  private volatile int        treeSize;
+  private int                 tombstone                    = -1;
+
+  public OHashTableDirectory(String fileExtension) {
+    this.fileExtension = fileExtension;
+  }
+
+  public void create(String name, OStorageLocalAbstract storage) throws IOException {
+    open(name, storage);
+    clear();
+  }
+
+  public void open(String name, OStorageLocalAbstract storage) throws IOException {
+    this.name = name;
+    this.diskCache = storage.getDiskCache();
+
+    final OStorageSegmentConfiguration fileConfiguration = new OStorageSegmentConfiguration(storage.getConfiguration(), name, 0);
+    fileConfiguration.fileType = OFileFactory.CLASSIC;
+    fileConfiguration.fileMaxSize = "10000Mb";
+
+    fileId = diskCache.openFile(fileConfiguration, fileExtension);
+
+    if (diskCache.getFilledUpTo(fileId) == 0) {
+      treeSize = 0;
+      tombstone = -1;
+      return;
+    }
+
+    final long pagePointer = diskCache.load(fileId, 0);
+    try {
+      treeSize = directMemory.getInt(pagePointer + TREE_SIZE_OFFSET);
+      tombstone = directMemory.getInt(pagePointer + TOMBSTONE_OFFSET);
+    } finally {
+      diskCache.release(fileId, 0);
+    }
+  }
+
+  public void clear() throws IOException {
+    diskCache.truncateFile(fileId);
+
+    treeSize = 0;
+    tombstone = -1;
+    storeHeader();
+  }
+
+  public void flush() throws IOException {
+    diskCache.flushFile(fileId);
+  }
+
+  public void close() throws IOException {
+    diskCache.closeFile(fileId);
+  }
+
+  public void delete() throws IOException {
+    diskCache.deleteFile(fileId);
+  }
+
+  public void rename(String newName) throws IOException {
+    diskCache.renameFile(fileId, name, newName);
+    name = newName;
+  }
+
+  public boolean wasSoftlyClosed() throws IOException {
+    return diskCache.wasSoftlyClosed(fileId);
+  }
+
+  public void setSoftlyClosed(boolean softlyClosed) throws IOException {
+    diskCache.setSoftlyClosed(fileId, softlyClosed);
+  }
+
+  public int getTreeSize() {
+    return treeSize;
+  }
+
+  /**
+   * Stores a new node, reusing the place of a removed node if any.
+   *
+   * @return the index of the node
+   */
+  public int addNewNode(long[] node, int nodeLocalDepth) throws IOException {
+    final int nodeIndex;
+    if (tombstone >= 0) {
+      nodeIndex = tombstone;
+      tombstone = (int) getNodePointer(nodeIndex, 0);
+    } else
+      nodeIndex = treeSize++;
+
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      final long nodePointer = pagePointer + nodeOffset(nodeIndex);
+
+      directMemory.setByte(nodePointer + LOCAL_DEPTH_OFFSET, (byte) nodeLocalDepth);
+      directMemory.setByte(nodePointer + MAX_LEFT_CHILD_DEPTH_OFFSET, (byte) 0);
+      directMemory.setByte(nodePointer + MAX_RIGHT_CHILD_DEPTH_OFFSET, (byte) 0);
+
+      writePointers(nodePointer, node);
+    } finally {
+      releaseNode(nodeIndex, true);
+    }
+
+    storeHeader();
+    return nodeIndex;
+  }
+
+  public void deleteNode(int nodeIndex) throws IOException {
+    if (nodeIndex == treeSize - 1)
+      treeSize--;
+    else {
+      setNodePointer(nodeIndex, 0, tombstone);
+      tombstone = nodeIndex;
+    }
+
+    storeHeader();
+  }
+
+  public long[] getNode(int nodeIndex) throws IOException {
+    final long[] node = new long[OLocalHashTable.MAX_LEVEL_SIZE];
+
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      final long pointersPointer = pagePointer + nodeOffset(nodeIndex) + POINTERS_OFFSET;
+      for (int i = 0; i < node.length; i++)
+        node[i] = directMemory.getLong(pointersPointer + i * OLongSerializer.LONG_SIZE);
+    } finally {
+      releaseNode(nodeIndex, false);
+    }
+
+    return node;
+  }
+
+  public void setNode(int nodeIndex, long[] node) throws IOException {
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      writePointers(pagePointer + nodeOffset(nodeIndex), node);
+    } finally {
+      releaseNode(nodeIndex, true);
+    }
+  }
+
+  public long getNodePointer(int nodeIndex, int index) throws IOException {
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      return directMemory.getLong(pagePointer + nodeOffset(nodeIndex) + POINTERS_OFFSET + index * OLongSerializer.LONG_SIZE);
+    } finally {
+      releaseNode(nodeIndex, false);
+    }
+  }
+
+  public void setNodePointer(int nodeIndex, int index, long pointer) throws IOException {
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      directMemory.setLong(pagePointer + nodeOffset(nodeIndex) + POINTERS_OFFSET + index * OLongSerializer.LONG_SIZE, pointer);
+    } finally {
+      releaseNode(nodeIndex, true);
+    }
+  }
+
+  public int getNodeLocalDepth(int nodeIndex) throws IOException {
+    return getNodeByte(nodeIndex, LOCAL_DEPTH_OFFSET);
+  }
+
+  public void setNodeLocalDepth(int nodeIndex, int localDepth) throws IOException {
+    setNodeByte(nodeIndex, LOCAL_DEPTH_OFFSET, localDepth);
+  }
+
+  public int getMaxLeftChildDepth(int nodeIndex) throws IOException {
+    return getNodeByte(nodeIndex, MAX_LEFT_CHILD_DEPTH_OFFSET);
+  }
+
+  public void setMaxLeftChildDepth(int nodeIndex, int maxLeftChildDepth) throws IOException {
+    setNodeByte(nodeIndex, MAX_LEFT_CHILD_DEPTH_OFFSET, maxLeftChildDepth);
+  }
+
+  public int getMaxRightChildDepth(int nodeIndex) throws IOException {
+    return getNodeByte(nodeIndex, MAX_RIGHT_CHILD_DEPTH_OFFSET);
+  }
+
+  public void setMaxRightChildDepth(int nodeIndex, int maxRightChildDepth) throws IOException {
+    setNodeByte(nodeIndex, MAX_RIGHT_CHILD_DEPTH_OFFSET, maxRightChildDepth);
+  }
+
+  /**
+   * Replaces the content of the directory with a tree kept on heap, as stored by the previous versions of the hash table.
+   */
+  public void importTree(long[][] hashTree, OHashTreeNodeMetadata[] nodesMetadata, int hashTreeSize, int hashTreeTombstone)
+      throws IOException {
+    clear();
+
+    for (int i = 0; i < hashTreeSize; i++) {
+      if (nodesMetadata[i] != null) {
+        addNewNode(hashTree[i], nodesMetadata[i].getNodeLocalDepth());
+        setMaxLeftChildDepth(i, nodesMetadata[i].getMaxLeftChildDepth());
+        setMaxRightChildDepth(i, nodesMetadata[i].getMaxRightChildDepth());
+      } else {
+        // REMOVED NODE, ITS FIRST POINTER IS THE NEXT REMOVED NODE
+        addNewNode(new long[] { hashTree[i] != null ? hashTree[i][0] : -1 }, 0);
+      }
+    }
+
+    tombstone = hashTreeTombstone;
+    storeHeader();
+  }
+
+  private void writePointers(long nodePointer, long[] node) {
+    final long pointersPointer = nodePointer + POINTERS_OFFSET;
+    for (int i = 0; i < node.length; i++)
+      directMemory.setLong(pointersPointer + i * OLongSerializer.LONG_SIZE, node[i]);
+  }
+
+  private int getNodeByte(int nodeIndex, int offset) throws IOException {
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      return directMemory.getByte(pagePointer + nodeOffset(nodeIndex) + offset) & 0xFF;
+    } finally {
+      releaseNode(nodeIndex, false);
+    }
+  }
+
+  private void setNodeByte(int nodeIndex, int offset, int value) throws IOException {
+    final long pagePointer = loadNode(nodeIndex);
+    try {
+      directMemory.setByte(pagePointer + nodeOffset(nodeIndex) + offset, (byte) value);
+    } finally {
+      releaseNode(nodeIndex, true);
+    }
+  }
+
+  private void storeHeader() throws IOException {
+    final long pagePointer = diskCache.load(fileId, 0);
+    try {
+      directMemory.setInt(pagePointer + TREE_SIZE_OFFSET, treeSize);
+      directMemory.setInt(pagePointer + TOMBSTONE_OFFSET, tombstone);
+    } finally {
+      diskCache.markDirty(fileId, 0);
+      diskCache.release(fileId, 0);
+    }
+  }
+
+  private long loadNode(int nodeIndex) throws IOException {
+    return diskCache.load(fileId, nodePageIndex(nodeIndex));
+  }
+
+  private void releaseNode(int nodeIndex, boolean dirty) {
+    final long pageIndex = nodePageIndex(nodeIndex);
+    if (dirty)
+      diskCache.markDirty(fileId, pageIndex);
+    diskCache.release(fileId, pageIndex);
+  }
+
+  private static long nodePageIndex(int nodeIndex) {
+    // THE FIRST PAGE IS THE HEADER
+    return nodeIndex / NODES_PER_PAGE + 1;
+  }
+
+  private static int nodeOffset(int nodeIndex) {
+    return PAGE_DATA_OFFSET + (nodeIndex % NODES_PER_PAGE) * NODE_SIZE;
+  }
+}
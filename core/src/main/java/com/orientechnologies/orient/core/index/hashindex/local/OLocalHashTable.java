@@ -18,8 +18,12 @@ package com.orientechnologies.orient.core.index.hashindex.local;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.concur.lock.OLockManager;
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
 import com.orientechnologies.common.directmemory.ODirectMemory;
 import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
@@ -41,19 +45,12 @@ import com.orientechnologies.orient.core.storage.impl.local.OStorageVariablePars
  */
 public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   private static final double           MERGE_THRESHOLD        = 0.2;
+  private static final int              OPTIMISTIC_READ_ATTEMPTS = 3;
 
   private static final long             HASH_CODE_MIN_VALUE    = 0;
   private static final long             HASH_CODE_MAX_VALUE    = 0xFFFFFFFFFFFFFFFFL;
 
-  private long[][]                      hashTree;
-  private OHashTreeNodeMetadata[]       nodesMetadata;
-
-  private int                           hashTreeSize;
-
-  private long                          size;
-
-  private int                           hashTreeTombstone      = -1;
-  private long                          bucketTombstonePointer = -1;
+  private final AtomicLong              size                   = new AtomicLong();
 
   private final String                  metadataConfigurationFileExtension;
   private final String                  treeStateFileExtension;
@@ -70,7 +67,16 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   private String                        name;
 
   private OHashIndexBufferStore         metadataStore;
-  private OHashIndexTreeStateStore      treeStateStore;
+  private final OHashTableDirectory     directory;
+
+  /**
+   * Splits and merges of buckets hold the write lock, the operations which walk across several buckets hold the read lock. The
+   * operations on a single bucket do not use it, they read the directory optimistically and validate the read by the directory
+   * version, which is odd while the directory is changed.
+   */
+  private final ReadWriteLock           structureLock          = new ReentrantReadWriteLock();
+  private volatile long                 directoryVersion;
+  private final OLockManager<Long, Thread> bucketLatches       = new OLockManager<Long, Thread>(true, 0);
 
   private final ODirectMemory           directMemory           = ODirectMemoryFactory.INSTANCE.directMemory();
 
@@ -92,17 +98,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     this.treeStateFileExtension = treeStateFileExtension;
     this.bucketFileExtension = bucketFileExtension;
     this.keyHashFunction = keyHashFunction;
+    this.directory = new OHashTableDirectory(treeStateFileExtension);
   }
 
-  private void initStores(String metadataConfigurationFileExtension, String treeStateFileExtension) throws IOException {
+  private void initStores(String metadataConfigurationFileExtension) throws IOException {
     final OStorageFileConfiguration metadataConfiguration = new OStorageFileConfiguration(null,
         OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + metadataConfigurationFileExtension, OFileFactory.CLASSIC, "0", "50%");
 
-    final OStorageFileConfiguration treeStateConfiguration = new OStorageFileConfiguration(null,
-        OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + treeStateFileExtension, OFileFactory.CLASSIC, "0", "50%");
-
     metadataStore = new OHashIndexBufferStore(storage, metadataConfiguration);
-    treeStateStore = new OHashIndexTreeStateStore(storage, treeStateConfiguration);
   }
 
   public void create(String name, OBinarySerializer<K> keySerializer, OBinarySerializer<V> valueSerializer,
@@ -119,16 +122,12 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       this.keySerializer = keySerializer;
       this.valueSerializer = valueSerializer;
 
-      initStores(metadataConfigurationFileExtension, treeStateFileExtension);
+      initStores(metadataConfigurationFileExtension);
 
       metadataStore.create(-1);
-      treeStateStore.create(-1);
-
-      metadataStore.setRecordsCount(size);
+      directory.create(name, storage);
 
-      treeStateStore.setHashTreeSize(hashTreeSize);
-      treeStateStore.setHashTreeTombstone(hashTreeTombstone);
-      treeStateStore.setBucketTombstonePointer(bucketTombstonePointer);
+      metadataStore.setRecordsCount(size.get());
 
       filesMetadata[0] = createFileMetadata(0);
 
@@ -172,26 +171,30 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     try {
       final long hashCode = keyHashFunction.hashCode(key);
 
-      BucketPath bucketPath = getBucket(hashCode);
-      final long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      final long bucketPointer = findAndLatchBucket(hashCode, OLockManager.LOCK.SHARED);
       if (bucketPointer == 0)
         return null;
 
-      long pageIndex = getPageIndex(bucketPointer);
-      int fileLevel = getFileLevel(bucketPointer);
+      try {
+        long pageIndex = getPageIndex(bucketPointer);
+        int fileLevel = getFileLevel(bucketPointer);
 
-      long dataPointer = loadPage(pageIndex, fileLevel);
+        long dataPointer = loadPage(pageIndex, fileLevel);
 
-      try {
-        final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer, valueSerializer);
+        try {
+          final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer,
+              valueSerializer);
 
-        OHashIndexBucket.Entry<K, V> entry = bucket.find(key);
-        if (entry == null)
-          return null;
+          OHashIndexBucket.Entry<K, V> entry = bucket.find(key);
+          if (entry == null)
+            return null;
 
-        return entry.value;
+          return entry.value;
+        } finally {
+          releasePage(pageIndex, fileLevel);
+        }
       } finally {
-        releasePage(pageIndex, fileLevel);
+        unlatchBucket(bucketPointer, OLockManager.LOCK.SHARED);
       }
     } catch (IOException e) {
       throw new OIndexException("Exception during index value retrieval", e);
@@ -201,55 +204,111 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   }
 
   public void put(K key, V value) {
-    doPut(key, value);
+    doPut(key, value, false);
+  }
+
+  /**
+   * Puts the value only if the key is not contained in the table yet, the check and the put are atomic.
+   *
+   * @return the value already associated with the key, or null if the value was put
+   */
+  public V putIfAbsent(K key, V value) {
+    return doPut(key, value, true);
   }
 
   public V remove(K key) {
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
 
-      final BucketPath nodePath = getBucket(hashCode);
-      final long bucketPointer = hashTree[nodePath.nodeIndex][nodePath.itemIndex + nodePath.hashMapOffset];
+      final long bucketPointer = findAndLatchBucket(hashCode, OLockManager.LOCK.EXCLUSIVE);
+      if (bucketPointer == 0)
+        return null;
 
-      final long pageIndex = getPageIndex(bucketPointer);
-      final int fileLevel = getFileLevel(bucketPointer);
       final V removed;
-
-      long dataPointer = loadPage(pageIndex, fileLevel);
+      final boolean mergeRequired;
       try {
-        final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer, valueSerializer);
-        final int positionIndex = bucket.getIndex(key);
-        if (positionIndex < 0)
-          return null;
+        final long pageIndex = getPageIndex(bucketPointer);
+        final int fileLevel = getFileLevel(bucketPointer);
+
+        long dataPointer = loadPage(pageIndex, fileLevel);
+        try {
+          final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer,
+              valueSerializer);
+          final int positionIndex = bucket.getIndex(key);
+          if (positionIndex < 0)
+            return null;
 
-        removed = bucket.deleteEntry(positionIndex).value;
-        size--;
+          removed = bucket.deleteEntry(positionIndex).value;
+          size.decrementAndGet();
 
-        if (!mergeBucketsAfterDeletion(nodePath, bucket))
           markPageAsDirty(pageIndex, fileLevel);
-
+          mergeRequired = isMergeCandidate(bucket);
+        } finally {
+          releasePage(pageIndex, fileLevel);
+        }
       } finally {
-        releasePage(pageIndex, fileLevel);
+        unlatchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
       }
 
-      if (nodePath.parent != null) {
-        final int hashMapSize = 1 << nodePath.nodeLocalDepth;
-
-        final long[] node = hashTree[nodePath.nodeIndex];
-        final boolean allMapsContainSameBucket = checkAllMapsContainSameBucket(node, hashMapSize);
-        if (allMapsContainSameBucket)
-          mergeNodeToParent(node, nodePath);
-      }
+      if (mergeRequired)
+        mergeBucket(hashCode);
 
       return removed;
     } catch (IOException e) {
       throw new OIndexException("Error during index removal", e);
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
+  /**
+   * Merges the bucket of the hash code with its buddy, and the node of the bucket with its parent if all the hash maps of the node
+   * point to the same bucket. Only the other splits and merges are blocked, the buckets that are not merged stay available.
+   */
+  private void mergeBucket(long hashCode) throws IOException {
+    structureLock.writeLock().lock();
+    try {
+      final BucketPath nodePath = getBucket(hashCode);
+      final long bucketPointer = directory.getNodePointer(nodePath.nodeIndex, nodePath.itemIndex + nodePath.hashMapOffset);
+
+      latchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
+      try {
+        final long pageIndex = getPageIndex(bucketPointer);
+        final int fileLevel = getFileLevel(bucketPointer);
+
+        long dataPointer = loadPage(pageIndex, fileLevel);
+        directoryVersion++;
+        try {
+          final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer,
+              valueSerializer);
+          mergeBucketsAfterDeletion(nodePath, bucket);
+
+          if (nodePath.parent != null) {
+            final int hashMapSize = 1 << nodePath.nodeLocalDepth;
+
+            final long[] node = directory.getNode(nodePath.nodeIndex);
+            final boolean allMapsContainSameBucket = checkAllMapsContainSameBucket(node, hashMapSize);
+            if (allMapsContainSameBucket)
+              mergeNodeToParent(node, nodePath);
+          }
+        } finally {
+          directoryVersion++;
+          releasePage(pageIndex, fileLevel);
+        }
+      } finally {
+        unlatchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
+      }
+    } finally {
+      structureLock.writeLock().unlock();
+    }
+  }
+
+  private boolean isMergeCandidate(OHashIndexBucket<K, V> bucket) {
+    return bucket.getContentSize() <= OHashIndexBucket.MAX_BUCKET_SIZE_BYTES * MERGE_THRESHOLD
+        && bucket.getDepth() - MAX_LEVEL_DEPTH >= 1;
+  }
+
   public void clear() {
     acquireExclusiveLock();
     try {
@@ -258,10 +317,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           buffer.truncateFile(fileLevelIds[i]);
       }
 
-      bucketTombstonePointer = -1;
-
       metadataStore.truncate();
-      treeStateStore.truncate();
 
       initHashTreeState();
     } catch (IOException e) {
@@ -277,15 +333,16 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
   public OHashIndexBucket.Entry<K, V>[] higherEntries(K key, int limit) {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
       BucketPath bucketPath = getBucket(hashCode);
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
 
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
@@ -294,14 +351,15 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           if (bucketPath == null)
             return new OHashIndexBucket.Entry[0];
 
-          releasePage(pageIndex, fileLevel);
+          releaseLatchedPage(pageIndex, fileLevel);
 
-          final long nextPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+          final long nextPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex
+              + bucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(nextPointer);
           pageIndex = getPageIndex(nextPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         }
 
@@ -320,22 +378,18 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
         return convertBucketToEntries(bucket, startIndex, endIndex);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
     } catch (IOException ioe) {
       throw new OIndexException("Exception during data retrieval", ioe);
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
   private void saveState() throws IOException {
-    treeStateStore.setHashTreeSize(hashTreeSize);
-    treeStateStore.setBucketTombstonePointer(bucketTombstonePointer);
-    treeStateStore.setHashTreeTombstone(hashTreeTombstone);
-    treeStateStore.storeTreeState(hashTree, nodesMetadata);
-
-    metadataStore.setRecordsCount(size);
+    metadataStore.setRecordsCount(size.get());
     metadataStore.setKeySerializerId(keySerializer.getId());
     metadataStore.setValueSerializerId(valueSerializer.getId());
 
@@ -350,30 +404,13 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       buffer = storage.getDiskCache();
 
       this.name = name;
-      initStores(metadataConfigurationFileExtension, treeStateFileExtension);
+      initStores(metadataConfigurationFileExtension);
 
       metadataStore.open();
-      treeStateStore.open();
+      directory.open(name, storage);
+      importLegacyTreeState();
 
-      size = metadataStore.getRecordsCount();
-
-      hashTreeSize = (int) treeStateStore.getHashTreeSize();
-      hashTreeTombstone = (int) treeStateStore.getHashTreeTombstone();
-      bucketTombstonePointer = treeStateStore.getBucketTombstonePointer();
-
-      final int arraySize;
-      int bitsCount = Integer.bitCount(hashTreeSize);
-      if (bitsCount == 1)
-        arraySize = hashTreeSize;
-      else
-        arraySize = Integer.highestOneBit(hashTreeSize) << 1;
-
-      OHashIndexTreeStateStore.TreeState treeState = treeStateStore.loadTreeState(arraySize);
-
-      hashTree = treeState.getHashTree();
-      nodesMetadata = treeState.getHashTreeNodeMetadata();
-
-      size = metadataStore.getRecordsCount();
+      size.set(metadataStore.getRecordsCount());
       keySerializer = (OBinarySerializer<K>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
           .getKeySerializerId());
       valueSerializer = (OBinarySerializer<V>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
@@ -393,6 +430,28 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     }
   }
 
+  /**
+   * Moves the tree kept by the previous versions in a file of its own into the directory and removes that file.
+   */
+  private void importLegacyTreeState() throws IOException {
+    final OStorageFileConfiguration treeStateConfiguration = new OStorageFileConfiguration(null,
+        OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + treeStateFileExtension, OFileFactory.CLASSIC, "0", "50%");
+    final OHashIndexTreeStateStore treeStateStore = new OHashIndexTreeStateStore(storage, treeStateConfiguration);
+    if (!treeStateStore.exists())
+      return;
+
+    treeStateStore.open();
+
+    final int hashTreeSize = (int) treeStateStore.getHashTreeSize();
+    final int hashTreeTombstone = (int) treeStateStore.getHashTreeTombstone();
+    final OHashIndexTreeStateStore.TreeState treeState = treeStateStore.loadTreeState(hashTreeSize);
+
+    directory.importTree(treeState.getHashTree(), treeState.getHashTreeNodeMetadata(), hashTreeSize, hashTreeTombstone);
+    directory.flush();
+
+    treeStateStore.delete();
+  }
+
   private OHashIndexBucket.Entry<K, V>[] convertBucketToEntries(final OHashIndexBucket<K, V> bucket, int startIndex, int endIndex) {
     final OHashIndexBucket.Entry<K, V>[] entries = new OHashIndexBucket.Entry[endIndex - startIndex];
     final Iterator<OHashIndexBucket.Entry<K, V>> iterator = bucket.iterator(startIndex);
@@ -403,19 +462,19 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return entries;
   }
 
-  private BucketPath nextBucketToFind(final BucketPath bucketPath, int bucketDepth) {
+  private BucketPath nextBucketToFind(final BucketPath bucketPath, int bucketDepth) throws IOException {
     int offset = bucketPath.nodeGlobalDepth - bucketDepth;
 
     BucketPath currentNode = bucketPath;
-    int nodeLocalDepth = nodesMetadata[bucketPath.nodeIndex].getNodeLocalDepth();
-    assert nodesMetadata[bucketPath.nodeIndex].getNodeLocalDepth() == bucketPath.nodeLocalDepth;
+    int nodeLocalDepth = directory.getNodeLocalDepth(bucketPath.nodeIndex);
+    assert directory.getNodeLocalDepth(bucketPath.nodeIndex) == bucketPath.nodeLocalDepth;
 
     while (offset > 0) {
       offset -= nodeLocalDepth;
       if (offset > 0) {
         currentNode = bucketPath.parent;
         nodeLocalDepth = currentNode.nodeLocalDepth;
-        assert nodesMetadata[currentNode.nodeIndex].getNodeLocalDepth() == currentNode.nodeLocalDepth;
+        assert directory.getNodeLocalDepth(currentNode.nodeIndex) == currentNode.nodeLocalDepth;
       }
     }
 
@@ -440,9 +499,9 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return nextNonEmptyNode(bucketPathToFind);
   }
 
-  private BucketPath nextNonEmptyNode(BucketPath bucketPath) {
+  private BucketPath nextNonEmptyNode(BucketPath bucketPath) throws IOException {
     nextBucketLoop: while (bucketPath != null) {
-      final long[] node = hashTree[bucketPath.nodeIndex];
+      final long[] node = directory.getNode(bucketPath.nodeIndex);
       final int startIndex = bucketPath.itemIndex + bucketPath.hashMapOffset;
       final int endIndex = MAX_LEVEL_SIZE;
 
@@ -465,7 +524,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           final BucketPath parent = new BucketPath(bucketPath.parent, 0, i, bucketPath.nodeIndex, bucketPath.nodeLocalDepth,
               bucketPath.nodeGlobalDepth);
 
-          final int childLocalDepth = nodesMetadata[childNodeIndex].getNodeLocalDepth();
+          final int childLocalDepth = directory.getNodeLocalDepth(childNodeIndex);
           bucketPath = new BucketPath(parent, childItemOffset, 0, childNodeIndex, childLocalDepth, bucketPath.nodeGlobalDepth
               + childLocalDepth);
 
@@ -479,12 +538,12 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return null;
   }
 
-  private BucketPath nextLevelUp(BucketPath bucketPath) {
+  private BucketPath nextLevelUp(BucketPath bucketPath) throws IOException {
     if (bucketPath.parent == null)
       return null;
 
     final int nodeLocalDepth = bucketPath.nodeLocalDepth;
-    assert nodesMetadata[bucketPath.nodeIndex].getNodeLocalDepth() == bucketPath.nodeLocalDepth;
+    assert directory.getNodeLocalDepth(bucketPath.nodeIndex) == bucketPath.nodeLocalDepth;
     final int pointersSize = 1 << (MAX_LEVEL_DEPTH - nodeLocalDepth);
 
     final BucketPath parent = bucketPath.parent;
@@ -504,16 +563,17 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
   public OHashIndexBucket.Entry<K, V>[] ceilingEntries(K key) {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
       BucketPath bucketPath = getBucket(hashCode);
 
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
 
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         while (bucket.size() == 0) {
@@ -521,13 +581,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           if (bucketPath == null)
             return new OHashIndexBucket.Entry[0];
 
-          releasePage(pageIndex, fileLevel);
-          final long nextPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+          releaseLatchedPage(pageIndex, fileLevel);
+          final long nextPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex
+              + bucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(nextPointer);
           pageIndex = getPageIndex(nextPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         }
 
@@ -541,25 +602,27 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         final int endIndex = bucket.size();
         return convertBucketToEntries(bucket, startIndex, endIndex);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
 
     } catch (IOException ioe) {
       throw new OIndexException("Error during data retrieval", ioe);
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
   public OHashIndexBucket.Entry<K, V> firstEntry() {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       BucketPath bucketPath = getBucket(HASH_CODE_MIN_VALUE);
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
@@ -568,38 +631,41 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           if (bucketPath == null)
             return null;
 
-          releasePage(pageIndex, fileLevel);
-          final long nextPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+          releaseLatchedPage(pageIndex, fileLevel);
+          final long nextPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex
+              + bucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(nextPointer);
           pageIndex = getPageIndex(nextPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         }
 
         return bucket.getEntry(0);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
 
     } catch (IOException ioe) {
       throw new OIndexException("Exception during data read", ioe);
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
   public OHashIndexBucket.Entry<K, V> lastEntry() {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       BucketPath bucketPath = getBucket(HASH_CODE_MAX_VALUE);
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
 
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
@@ -608,13 +674,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           if (prevBucketPath == null)
             return null;
 
-          releasePage(pageIndex, fileLevel);
-          final long prevPointer = hashTree[prevBucketPath.nodeIndex][prevBucketPath.itemIndex + prevBucketPath.hashMapOffset];
+          releaseLatchedPage(pageIndex, fileLevel);
+          final long prevPointer = directory.getNodePointer(prevBucketPath.nodeIndex, prevBucketPath.itemIndex
+              + prevBucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(prevPointer);
           pageIndex = getPageIndex(prevPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
           bucketPath = prevBucketPath;
@@ -622,41 +689,44 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
         return bucket.getEntry(bucket.size() - 1);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
     } catch (IOException ioe) {
       throw new OIndexException("Exception during data read", ioe);
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
   public OHashIndexBucket.Entry<K, V>[] lowerEntries(K key) throws IOException {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
       BucketPath bucketPath = getBucket(hashCode);
 
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
 
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         while (bucket.size() == 0 || comparator.compare(bucket.getKey(0), key) >= 0) {
           final BucketPath prevBucketPath = prevBucketToFind(bucketPath, bucket.getDepth());
           if (prevBucketPath == null)
             return new OHashIndexBucket.Entry[0];
-          releasePage(pageIndex, fileLevel);
+          releaseLatchedPage(pageIndex, fileLevel);
 
-          final long prevPointer = hashTree[prevBucketPath.nodeIndex][prevBucketPath.itemIndex + prevBucketPath.hashMapOffset];
+          final long prevPointer = directory.getNodePointer(prevBucketPath.nodeIndex, prevBucketPath.itemIndex
+              + prevBucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(prevPointer);
           pageIndex = getPageIndex(prevPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
           bucketPath = prevBucketPath;
@@ -673,25 +743,27 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
         return convertBucketToEntries(bucket, startIndex, endIndex);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
   public OHashIndexBucket.Entry<K, V>[] floorEntries(K key) throws IOException {
     acquireSharedLock();
+    structureLock.readLock().lock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
       BucketPath bucketPath = getBucket(hashCode);
 
-      long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+      long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
 
       int fileLevel = getFileLevel(bucketPointer);
       long pageIndex = getPageIndex(bucketPointer);
 
-      long pagePointer = loadPage(pageIndex, fileLevel);
+      long pagePointer = loadLatchedPage(pageIndex, fileLevel);
       try {
         OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         while (bucket.size() == 0) {
@@ -699,14 +771,15 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           if (prevBucketPath == null)
             return new OHashIndexBucket.Entry[0];
 
-          releasePage(pageIndex, fileLevel);
+          releaseLatchedPage(pageIndex, fileLevel);
 
-          final long prevPointer = hashTree[prevBucketPath.nodeIndex][prevBucketPath.itemIndex + prevBucketPath.hashMapOffset];
+          final long prevPointer = directory.getNodePointer(prevBucketPath.nodeIndex, prevBucketPath.itemIndex
+              + prevBucketPath.hashMapOffset);
 
           fileLevel = getFileLevel(prevPointer);
           pageIndex = getPageIndex(prevPointer);
 
-          pagePointer = loadPage(pageIndex, fileLevel);
+          pagePointer = loadLatchedPage(pageIndex, fileLevel);
           bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
 
           bucketPath = prevBucketPath;
@@ -723,14 +796,15 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
         return convertBucketToEntries(bucket, startIndex, endIndex);
       } finally {
-        releasePage(pageIndex, fileLevel);
+        releaseLatchedPage(pageIndex, fileLevel);
       }
     } finally {
+      structureLock.readLock().unlock();
       releaseSharedLock();
     }
   }
 
-  private BucketPath prevBucketToFind(final BucketPath bucketPath, int bucketDepth) {
+  private BucketPath prevBucketToFind(final BucketPath bucketPath, int bucketDepth) throws IOException {
     int offset = bucketPath.nodeGlobalDepth - bucketDepth;
 
     BucketPath currentBucket = bucketPath;
@@ -763,9 +837,9 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return prevNonEmptyNode(bucketPathToFind);
   }
 
-  private BucketPath prevNonEmptyNode(BucketPath nodePath) {
+  private BucketPath prevNonEmptyNode(BucketPath nodePath) throws IOException {
     prevBucketLoop: while (nodePath != null) {
-      final long[] node = hashTree[nodePath.nodeIndex];
+      final long[] node = directory.getNode(nodePath.nodeIndex);
       final int startIndex = 0;
       final int endIndex = nodePath.itemIndex + nodePath.hashMapOffset;
 
@@ -783,7 +857,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         if (position < 0) {
           final int childNodeIndex = (int) ((position & Long.MAX_VALUE) >> 8);
           final int childItemOffset = (int) position & 0xFF;
-          final int nodeLocalDepth = nodesMetadata[childNodeIndex].getNodeLocalDepth();
+          final int nodeLocalDepth = directory.getNodeLocalDepth(childNodeIndex);
           final int endChildIndex = (1 << nodeLocalDepth) - 1;
 
           final BucketPath parent = new BucketPath(nodePath.parent, 0, i, nodePath.nodeIndex, nodePath.nodeLocalDepth,
@@ -800,7 +874,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return null;
   }
 
-  private BucketPath prevLevelUp(BucketPath bucketPath) {
+  private BucketPath prevLevelUp(BucketPath bucketPath) throws IOException {
     if (bucketPath.parent == null)
       return null;
 
@@ -824,7 +898,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   public long size() {
     acquireSharedLock();
     try {
-      return size;
+      return size.get();
     } finally {
       releaseSharedLock();
     }
@@ -834,7 +908,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     acquireExclusiveLock();
     try {
       metadataStore.rename(name, newName);
-      treeStateStore.rename(name, newName);
+      directory.rename(newName);
 
       for (long fileId : fileLevelIds)
         if (fileId > 0)
@@ -852,7 +926,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       flush();
 
       metadataStore.close();
-      treeStateStore.close();
+      directory.close();
 
       for (int i = 0; i < filesMetadata.length; i++)
         if (filesMetadata[i] != null)
@@ -874,7 +948,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       }
 
       metadataStore.delete();
-      treeStateStore.delete();
+      directory.delete();
     } catch (IOException e) {
       throw new OIndexException("Exception during index deletion", e);
     } finally {
@@ -882,37 +956,35 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     }
   }
 
-  private void mergeNodeToParent(long[] node, BucketPath nodePath) {
+  private void mergeNodeToParent(long[] node, BucketPath nodePath) throws IOException {
     final int startIndex = findParentNodeStartIndex(nodePath);
     final int localNodeDepth = nodePath.nodeLocalDepth;
     final int hashMapSize = 1 << localNodeDepth;
 
-    final long[] parentNode = hashTree[nodePath.parent.nodeIndex];
+    final int parentIndex = nodePath.parent.nodeIndex;
+    final long[] parentNode = directory.getNode(parentIndex);
     for (int i = 0, k = startIndex; i < node.length; i += hashMapSize, k++) {
       parentNode[k] = node[i];
     }
+    directory.setNode(parentIndex, parentNode);
 
     deleteNode(nodePath.nodeIndex);
 
-    final OHashTreeNodeMetadata metadata = nodesMetadata[nodePath.parent.nodeIndex];
     if (nodePath.parent.itemIndex < MAX_LEVEL_SIZE / 2) {
-      final int maxChildDepth = metadata.getMaxLeftChildDepth();
+      final int maxChildDepth = directory.getMaxLeftChildDepth(parentIndex);
       if (maxChildDepth == localNodeDepth)
-        metadata.setMaxLeftChildDepth(getMaxLevelDepth(parentNode, 0, parentNode.length / 2));
+        directory.setMaxLeftChildDepth(parentIndex, getMaxLevelDepth(parentNode, 0, parentNode.length / 2));
     } else {
-      final int maxChildDepth = metadata.getMaxRightChildDepth();
+      final int maxChildDepth = directory.getMaxRightChildDepth(parentIndex);
       if (maxChildDepth == localNodeDepth)
-        metadata.setMaxRightChildDepth(getMaxLevelDepth(parentNode, parentNode.length / 2, parentNode.length));
+        directory.setMaxRightChildDepth(parentIndex, getMaxLevelDepth(parentNode, parentNode.length / 2, parentNode.length));
     }
   }
 
   private boolean mergeBucketsAfterDeletion(BucketPath nodePath, OHashIndexBucket<K, V> bucket) throws IOException {
     final int bucketDepth = bucket.getDepth();
 
-    if (bucket.getContentSize() > OHashIndexBucket.MAX_BUCKET_SIZE_BYTES * MERGE_THRESHOLD)
-      return false;
-
-    if (bucketDepth - MAX_LEVEL_DEPTH < 1)
+    if (!isMergeCandidate(bucket))
       return false;
 
     int offset = nodePath.nodeGlobalDepth - (bucketDepth - 1);
@@ -941,7 +1013,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     long buddyIndex;
     long buddyPointer;
 
-    final long[] node = hashTree[currentNode.nodeIndex];
+    final long[] node = directory.getNode(currentNode.nodeIndex);
     if ((currentNode.itemIndex >>> (nodeLocalDepth - diff - 1) & 1) == 1) {
       buddyPointer = node[firstStartIndex + currentNode.hashMapOffset];
 
@@ -949,7 +1021,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         final int nodeIndex = (int) ((buddyPointer & Long.MAX_VALUE) >> 8);
         final int itemOffset = (int) buddyPointer & 0xFF;
 
-        buddyPointer = hashTree[nodeIndex][itemOffset];
+        buddyPointer = directory.getNodePointer(nodeIndex, itemOffset);
       }
 
       assert buddyPointer > 0;
@@ -963,7 +1035,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         final int nodeIndex = (int) ((buddyPointer & Long.MAX_VALUE) >> 8);
         final int itemOffset = (int) buddyPointer & 0xFF;
 
-        buddyPointer = hashTree[nodeIndex][itemOffset];
+        buddyPointer = directory.getNodePointer(nodeIndex, itemOffset);
       }
 
       assert buddyPointer > 0;
@@ -972,6 +1044,9 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       buddyIndex = getPageIndex(buddyPointer);
     }
 
+    // THE BUDDY IS A LIVE BUCKET WHICH MAY BE CHANGED BY THE OPERATIONS WHICH DO NOT TOUCH THE DIRECTORY
+    final long buddyBucketPointer = createBucketPointer(buddyIndex, buddyLevel);
+    latchBucket(buddyBucketPointer, OLockManager.LOCK.EXCLUSIVE);
     long buddyPagePointer = loadPage(buddyIndex, buddyLevel);
     try {
       buddyBucket = new OHashIndexBucket<K, V>(buddyPagePointer, directMemory, keySerializer, valueSerializer);
@@ -1004,7 +1079,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         releasePage(newBuddyIndex, newBuddyLevel);
       }
 
-      final long bucketPointer = hashTree[nodePath.nodeIndex][nodePath.itemIndex + nodePath.hashMapOffset];
+      final long bucketPointer = directory.getNodePointer(nodePath.nodeIndex, nodePath.itemIndex + nodePath.hashMapOffset);
       final long bucketIndex = getPageIndex(bucketPointer);
       final int bucketLevel = getFileLevel(bucketPointer);
 
@@ -1035,6 +1110,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       return true;
     } finally {
       releasePage(buddyIndex, buddyLevel);
+      unlatchBucket(buddyBucketPointer, OLockManager.LOCK.EXCLUSIVE);
     }
   }
 
@@ -1044,7 +1120,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       saveState();
 
       metadataStore.synch();
-      treeStateStore.synch();
+      directory.flush();
 
       for (int i = 0; i < filesMetadata.length; i++)
         if (filesMetadata[i] != null)
@@ -1063,7 +1139,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       if (!metadataStore.wasSoftlyClosedAtPreviousTime())
         return false;
 
-      if (!treeStateStore.wasSoftlyClosedAtPreviousTime())
+      if (!directory.wasSoftlyClosed())
         return false;
 
       for (int i = 0; i < filesMetadata.length; i++) {
@@ -1083,7 +1159,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     acquireSharedLock();
     try {
       metadataStore.setSoftlyClosed(softlyClosed);
-      treeStateStore.setSoftlyClosed(softlyClosed);
+      directory.setSoftlyClosed(softlyClosed);
 
       for (int i = 0; i < filesMetadata.length; i++) {
         if (filesMetadata[i] != null)
@@ -1096,38 +1172,86 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     }
   }
 
-  private void doPut(K key, V value) {
-    acquireExclusiveLock();
+  private V doPut(K key, V value, boolean onlyIfAbsent) {
+    acquireSharedLock();
     try {
       final long hashCode = keyHashFunction.hashCode(key);
 
+      while (true) {
+        final long bucketPointer = findAndLatchBucket(hashCode, OLockManager.LOCK.EXCLUSIVE);
+        if (bucketPointer == 0)
+          throw new IllegalStateException("In this version of hash table buckets are added through split only.");
+
+        try {
+          final long pageIndex = getPageIndex(bucketPointer);
+          final int fileLevel = getFileLevel(bucketPointer);
+
+          final long pagePointer = loadPage(pageIndex, fileLevel);
+          try {
+            final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer,
+                valueSerializer);
+            final int index = bucket.getIndex(key);
+            if (index > -1) {
+              if (onlyIfAbsent)
+                return bucket.getEntry(index).value;
+
+              bucket.updateEntry(index, value);
+              markPageAsDirty(pageIndex, fileLevel);
+              return null;
+            }
+
+            if (bucket.addEntry(key, value)) {
+              assert bucket.getEntry(bucket.getIndex(key)).value.equals(value);
+              markPageAsDirty(pageIndex, fileLevel);
+
+              size.incrementAndGet();
+              return null;
+            }
+          } finally {
+            releasePage(pageIndex, fileLevel);
+          }
+        } finally {
+          unlatchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
+        }
+
+        splitFullBucket(hashCode, bucketPointer);
+      }
+    } catch (OIndexMaximumLimitReachedException e) {
+      OLogManager.instance().warn(this, "Key " + key + " is too large to fit in index and will be skipped", e);
+      return null;
+    } catch (IOException e) {
+      throw new OIndexException("Error during index update", e);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Splits the bucket of the hash code. Only the other splits and merges and the users of the split bucket are blocked, the
+   * readers of the rest of the directory detect the change by the directory version.
+   * 
+   * @param fullBucketPointer
+   *          the bucket found full, if the hash code is mapped to another bucket meanwhile it was already split and nothing is done
+   */
+  private void splitFullBucket(long hashCode, long fullBucketPointer) throws IOException {
+    structureLock.writeLock().lock();
+    try {
       final BucketPath bucketPath = getBucket(hashCode);
-      long[] node = hashTree[bucketPath.nodeIndex];
+      long[] node = directory.getNode(bucketPath.nodeIndex);
 
       final long bucketPointer = node[bucketPath.itemIndex + bucketPath.hashMapOffset];
-      if (bucketPointer == 0)
-        throw new IllegalStateException("In this version of hash table buckets are added through split only.");
+      if (bucketPointer != fullBucketPointer)
+        return;
 
       final long pageIndex = getPageIndex(bucketPointer);
       final int fileLevel = getFileLevel(bucketPointer);
 
       long pagePointer = loadPage(pageIndex, fileLevel);
+      latchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
 
+      directoryVersion++;
       try {
         final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
-        final int index = bucket.getIndex(key);
-        if (index > -1) {
-          bucket.updateEntry(index, value);
-          return;
-        }
-
-        if (bucket.addEntry(key, value)) {
-          assert bucket.getEntry(bucket.getIndex(key)).value.equals(value);
-          markPageAsDirty(pageIndex, fileLevel);
-
-          size++;
-          return;
-        }
 
         final BucketSplitResult splitResult = splitBucket(bucket, fileLevel, pageIndex, pagePointer);
 
@@ -1143,7 +1267,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
             assert !(nodeSplitResult.allLeftHashMapsEqual && nodeSplitResult.allRightHashMapsEqual);
 
-            final long[] newNode = nodeSplitResult.newNode;
+            long[] newNode = nodeSplitResult.newNode;
 
             final int nodeLocalDepth = bucketPath.nodeLocalDepth + 1;
             final int hashMapSize = 1 << nodeLocalDepth;
@@ -1173,7 +1297,10 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
               updateNodeAfterBucketSplit(newBucketPath, bucketDepth, newBucketPointer, updatedBucketPointer);
             }
 
-            final long[] updatedNode = hashTree[bucketPath.nodeIndex];
+            final long[] updatedNode = directory.getNode(bucketPath.nodeIndex);
+            if (newNodeIndex >= 0)
+              newNode = directory.getNode(newNodeIndex);
+
             updateNodesAfterSplit(bucketPath, updatedNode, newNode, nodeLocalDepth, hashMapSize, allLeftHashMapsEqual,
                 allRightHashMapsEqual, newNodeIndex);
 
@@ -1185,25 +1312,22 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
           }
         }
       } finally {
+        directoryVersion++;
+
         releasePage(pageIndex, fileLevel);
+        unlatchBucket(bucketPointer, OLockManager.LOCK.EXCLUSIVE);
       }
-
-      doPut(key, value);
-    } catch (OIndexMaximumLimitReachedException e) {
-      OLogManager.instance().warn(this, "Key " + key + " is too large to fit in index and will be skipped", e);
-    } catch (IOException e) {
-      throw new OIndexException("Error during index update", e);
     } finally {
-      releaseExclusiveLock();
+      structureLock.writeLock().unlock();
     }
   }
 
   private void updateNodesAfterSplit(BucketPath bucketPath, long[] node, long[] newNode, int nodeLocalDepth, int hashMapSize,
-      boolean allLeftHashMapEquals, boolean allRightHashMapsEquals, int newNodeIndex) {
+      boolean allLeftHashMapEquals, boolean allRightHashMapsEquals, int newNodeIndex) throws IOException {
 
     final int startIndex = findParentNodeStartIndex(bucketPath);
 
-    final long[] parentNode = hashTree[bucketPath.parent.nodeIndex];
+    final long[] parentNode = directory.getNode(bucketPath.parent.nodeIndex);
     assert assertParentNodeStartIndex(bucketPath, parentNode, startIndex);
 
     final int pointersSize = 1 << (MAX_LEVEL_DEPTH - nodeLocalDepth);
@@ -1227,22 +1351,23 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         parentNode[startIndex + pointersSize + i] = (newNodeIndex << 8) | (i * hashMapSize) | Long.MIN_VALUE;
     }
 
+    directory.setNode(bucketPath.parent.nodeIndex, parentNode);
+
     updateMaxChildDepth(bucketPath.parent, bucketPath.nodeLocalDepth + 1);
   }
 
-  private void updateMaxChildDepth(BucketPath parentPath, int childDepth) {
+  private void updateMaxChildDepth(BucketPath parentPath, int childDepth) throws IOException {
     if (parentPath == null)
       return;
 
-    final OHashTreeNodeMetadata metadata = nodesMetadata[parentPath.nodeIndex];
     if (parentPath.itemIndex < MAX_LEVEL_SIZE / 2) {
-      final int maxChildDepth = metadata.getMaxLeftChildDepth();
+      final int maxChildDepth = directory.getMaxLeftChildDepth(parentPath.nodeIndex);
       if (childDepth > maxChildDepth)
-        metadata.setMaxLeftChildDepth(childDepth);
+        directory.setMaxLeftChildDepth(parentPath.nodeIndex, childDepth);
     } else {
-      final int maxChildDepth = metadata.getMaxRightChildDepth();
+      final int maxChildDepth = directory.getMaxRightChildDepth(parentPath.nodeIndex);
       if (childDepth + 1 > maxChildDepth)
-        metadata.setMaxRightChildDepth(childDepth);
+        directory.setMaxRightChildDepth(parentPath.nodeIndex, childDepth);
     }
   }
 
@@ -1267,7 +1392,8 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return ((parentBucketPath.itemIndex - MAX_LEVEL_SIZE / 2) / pointersSize) * pointersSize + MAX_LEVEL_SIZE / 2;
   }
 
-  private void addNewLevelNode(BucketPath bucketPath, long[] node, long newBucketPointer, long updatedBucketPointer) {
+  private void addNewLevelNode(BucketPath bucketPath, long[] node, long newBucketPointer, long updatedBucketPointer)
+      throws IOException {
     final long[] newNode = new long[MAX_LEVEL_SIZE];
 
     final int newNodeDepth;
@@ -1275,7 +1401,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     final int mapInterval;
 
     if (bucketPath.itemIndex < node.length / 2) {
-      final int maxDepth = nodesMetadata[bucketPath.nodeIndex].getMaxLeftChildDepth();
+      final int maxDepth = directory.getMaxLeftChildDepth(bucketPath.nodeIndex);
       assert getMaxLevelDepth(node, 0, node.length / 2) == maxDepth;
       if (maxDepth > 0)
         newNodeDepth = maxDepth;
@@ -1285,7 +1411,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       mapInterval = 1 << (MAX_LEVEL_DEPTH - newNodeDepth);
       newNodeStartIndex = (bucketPath.itemIndex / mapInterval) * mapInterval;
     } else {
-      final int maxDepth = nodesMetadata[bucketPath.nodeIndex].getMaxRightChildDepth();
+      final int maxDepth = directory.getMaxRightChildDepth(bucketPath.nodeIndex);
       assert getMaxLevelDepth(node, node.length / 2, node.length) == maxDepth;
       if (maxDepth > 0)
         newNodeDepth = maxDepth;
@@ -1316,10 +1442,13 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       node[nodeOffset] = (newNodeIndex << 8) | (i * mapSize) | Long.MIN_VALUE;
     }
 
+    directory.setNode(newNodeIndex, newNode);
+    directory.setNode(bucketPath.nodeIndex, node);
+
     updateMaxChildDepth(bucketPath, newNodeDepth);
   }
 
-  private int getMaxLevelDepth(long node[], int start, int end) {
+  private int getMaxLevelDepth(long node[], int start, int end) throws IOException {
     int currentIndex = -1;
     int maxDepth = 0;
 
@@ -1333,14 +1462,15 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         continue;
 
       currentIndex = index;
-      if (maxDepth < nodesMetadata[index].getNodeLocalDepth())
-        maxDepth = nodesMetadata[index].getNodeLocalDepth();
+      if (maxDepth < directory.getNodeLocalDepth(index))
+        maxDepth = directory.getNodeLocalDepth(index);
     }
 
     return maxDepth;
   }
 
-  private void updateNodeAfterBucketSplit(BucketPath bucketPath, int bucketDepth, long newBucketPointer, long updatedBucketPointer) {
+  private void updateNodeAfterBucketSplit(BucketPath bucketPath, int bucketDepth, long newBucketPointer, long updatedBucketPointer)
+      throws IOException {
     int offset = bucketPath.nodeGlobalDepth - (bucketDepth - 1);
     BucketPath currentNode = bucketPath;
     int nodeLocalDepth = bucketPath.nodeLocalDepth;
@@ -1368,40 +1498,8 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       updateBucket(currentNode.nodeIndex, i, currentNode.hashMapOffset, newBucketPointer);
   }
 
-  private int addNewNode(long[] newNode, int nodeLocalDepth) {
-    if (hashTreeTombstone >= 0) {
-      long[] tombstone = hashTree[hashTreeTombstone];
-
-      hashTree[hashTreeTombstone] = newNode;
-      nodesMetadata[hashTreeTombstone] = new OHashTreeNodeMetadata((byte) 0, (byte) 0, (byte) nodeLocalDepth);
-
-      final int nodeIndex = hashTreeTombstone;
-      if (tombstone != null)
-        hashTreeTombstone = (int) tombstone[0];
-      else
-        hashTreeTombstone = -1;
-
-      return nodeIndex;
-    }
-
-    if (hashTreeSize >= hashTree.length) {
-      long[][] newHashTree = new long[hashTree.length << 1][];
-      System.arraycopy(hashTree, 0, newHashTree, 0, hashTree.length);
-      hashTree = newHashTree;
-      newHashTree = null;
-
-      OHashTreeNodeMetadata[] newNodeMetadata = new OHashTreeNodeMetadata[nodesMetadata.length << 1];
-      System.arraycopy(nodesMetadata, 0, newNodeMetadata, 0, nodesMetadata.length);
-      nodesMetadata = newNodeMetadata;
-      newNodeMetadata = null;
-    }
-
-    hashTree[hashTreeSize] = newNode;
-    nodesMetadata[hashTreeSize] = new OHashTreeNodeMetadata((byte) 0, (byte) 0, (byte) nodeLocalDepth);
-
-    hashTreeSize++;
-
-    return hashTreeSize - 1;
+  private int addNewNode(long[] newNode, int nodeLocalDepth) throws IOException {
+    return directory.addNewNode(newNode, nodeLocalDepth);
   }
 
   private boolean checkAllMapsContainSameBucket(long[] newNode, int hashMapSize) {
@@ -1443,7 +1541,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return true;
   }
 
-  private NodeSplitResult splitNode(BucketPath bucketPath, long[] node) {
+  private NodeSplitResult splitNode(BucketPath bucketPath, long[] node) throws IOException {
     final long[] newNode = new long[MAX_LEVEL_SIZE];
     final int hashMapSize = 1 << (bucketPath.nodeLocalDepth + 1);
 
@@ -1496,30 +1594,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
     allLeftItemsAreEqual = hashMapItemsAreEqual;
 
-    nodesMetadata[bucketPath.nodeIndex].incrementLocalNodeDepth();
-    hashTree[bucketPath.nodeIndex] = updatedNode;
+    directory.setNodeLocalDepth(bucketPath.nodeIndex, directory.getNodeLocalDepth(bucketPath.nodeIndex) + 1);
+    directory.setNode(bucketPath.nodeIndex, updatedNode);
 
     return new NodeSplitResult(newNode, allLeftItemsAreEqual, allRightItemsAreEqual);
   }
 
-  private void deleteNode(int nodeIndex) {
-    if (nodeIndex == hashTreeSize - 1) {
-      hashTree[nodeIndex] = null;
-      nodesMetadata[nodeIndex] = null;
-      hashTreeSize--;
-      return;
-    }
-
-    if (hashTreeTombstone > -1) {
-      final long[] tombstone = new long[] { hashTreeTombstone };
-      hashTree[nodeIndex] = tombstone;
-      hashTreeTombstone = nodeIndex;
-    } else {
-      hashTree[nodeIndex] = null;
-      hashTreeTombstone = nodeIndex;
-    }
-
-    nodesMetadata[nodeIndex] = null;
+  private void deleteNode(int nodeIndex) throws IOException {
+    directory.deleteNode(nodeIndex);
   }
 
   private void splitBucketContent(OHashIndexBucket<K, V> bucket, OHashIndexBucket<K, V> updatedBucket,
@@ -1627,16 +1709,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return true;
   }
 
-  private void updateBucket(int nodeIndex, int itemIndex, int offset, long newBucketPointer) {
-    final long node[] = hashTree[nodeIndex];
-
-    final long position = node[itemIndex + offset];
+  private void updateBucket(int nodeIndex, int itemIndex, int offset, long newBucketPointer) throws IOException {
+    final long position = directory.getNodePointer(nodeIndex, itemIndex + offset);
     if (position >= 0)
-      node[itemIndex + offset] = newBucketPointer;
+      directory.setNodePointer(nodeIndex, itemIndex + offset, newBucketPointer);
     else {
       final int childNodeIndex = (int) ((position & Long.MAX_VALUE) >>> 8);
       final int childOffset = (int) (position & 0xFF);
-      final int childNodeDepth = nodesMetadata[childNodeIndex].getNodeLocalDepth();
+      final int childNodeDepth = directory.getNodeLocalDepth(childNodeIndex);
       final int interval = 1 << childNodeDepth;
       for (int i = 0; i < interval; i++) {
         updateBucket(childNodeIndex, i, childOffset, newBucketPointer);
@@ -1660,16 +1740,12 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     for (int i = 0; i < MAX_LEVEL_SIZE; i++)
       rootTree[i] = createBucketPointer(i, 0);
 
-    hashTree = new long[1][];
-    hashTree[0] = rootTree;
-
-    nodesMetadata = new OHashTreeNodeMetadata[1];
-    nodesMetadata[0] = new OHashTreeNodeMetadata((byte) 0, (byte) 0, (byte) MAX_LEVEL_DEPTH);
+    directory.clear();
+    directory.addNewNode(rootTree, MAX_LEVEL_DEPTH);
 
     filesMetadata[0].setBucketsCount(MAX_LEVEL_SIZE);
 
-    size = 0;
-    hashTreeSize = 1;
+    size.set(0);
   }
 
   private long createBucketPointer(long pageIndex, int fileLevel) {
@@ -1696,8 +1772,99 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     return buffer.load(fileLevelIds[fileLevel], pageIndex);
   }
 
-  private BucketPath getBucket(final long hashCode) {
-    int localNodeDepth = nodesMetadata[0].getNodeLocalDepth();
+  /**
+   * Finds the bucket of the hash code and latches it. The directory is read without locks, if it is changed meanwhile by a split
+   * or a merge the read is repeated, and after a few attempts the bucket is found holding the structure lock.
+   *
+   * @return the latched bucket pointer, or 0 if the hash code has no bucket
+   */
+  private long findAndLatchBucket(final long hashCode, final OLockManager.LOCK lockType) throws IOException {
+    for (int i = 0; i < OPTIMISTIC_READ_ATTEMPTS; i++) {
+      final long version = directoryVersion;
+      if ((version & 1) != 0) {
+        Thread.yield();
+        continue;
+      }
+
+      final long bucketPointer = findBucketPointer(hashCode);
+      if (bucketPointer <= 0 || directoryVersion != version)
+        continue;
+
+      latchBucket(bucketPointer, lockType);
+      if (directoryVersion == version)
+        return bucketPointer;
+
+      unlatchBucket(bucketPointer, lockType);
+    }
+
+    structureLock.readLock().lock();
+    try {
+      final BucketPath bucketPath = getBucket(hashCode);
+      final long bucketPointer = directory.getNodePointer(bucketPath.nodeIndex, bucketPath.itemIndex + bucketPath.hashMapOffset);
+      if (bucketPointer != 0)
+        latchBucket(bucketPointer, lockType);
+
+      return bucketPointer;
+    } finally {
+      structureLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Same search of {@link #getBucket(long)} done without locks, so the directory can be changed while it is read. Every node index
+   * and item index is checked before it is used, an inconsistent state is reported returning -1.
+   */
+  private long findBucketPointer(final long hashCode) throws IOException {
+    final int treeSize = directory.getTreeSize();
+
+    int localNodeDepth = directory.getNodeLocalDepth(0);
+    int nodeDepth = localNodeDepth;
+    int nodeIndex = 0;
+    int offset = 0;
+
+    while (localNodeDepth > 0 && localNodeDepth <= MAX_LEVEL_DEPTH && nodeDepth <= HASH_CODE_SIZE) {
+      final int index = (int) ((hashCode >>> (HASH_CODE_SIZE - nodeDepth)) & (LEVEL_MASK >>> (MAX_LEVEL_DEPTH - localNodeDepth)));
+      if (index + offset >= MAX_LEVEL_SIZE)
+        return -1;
+
+      final long position = directory.getNodePointer(nodeIndex, index + offset);
+      if (position >= 0)
+        return position;
+
+      final long childIndex = (position & Long.MAX_VALUE) >>> 8;
+      if (childIndex >= treeSize)
+        return -1;
+
+      nodeIndex = (int) childIndex;
+      offset = (int) (position & 0xFF);
+
+      localNodeDepth = directory.getNodeLocalDepth(nodeIndex);
+      nodeDepth += localNodeDepth;
+    }
+
+    return -1;
+  }
+
+  private void latchBucket(long bucketPointer, OLockManager.LOCK lockType) {
+    bucketLatches.acquireLock(Thread.currentThread(), bucketPointer, lockType);
+  }
+
+  private void unlatchBucket(long bucketPointer, OLockManager.LOCK lockType) {
+    bucketLatches.releaseLock(Thread.currentThread(), bucketPointer, lockType);
+  }
+
+  private long loadLatchedPage(long pageIndex, int fileLevel) throws IOException {
+    latchBucket(createBucketPointer(pageIndex, fileLevel), OLockManager.LOCK.SHARED);
+    return loadPage(pageIndex, fileLevel);
+  }
+
+  private void releaseLatchedPage(long pageIndex, int fileLevel) {
+    releasePage(pageIndex, fileLevel);
+    unlatchBucket(createBucketPointer(pageIndex, fileLevel), OLockManager.LOCK.SHARED);
+  }
+
+  private BucketPath getBucket(final long hashCode) throws IOException {
+    int localNodeDepth = directory.getNodeLocalDepth(0);
     int nodeDepth = localNodeDepth;
     BucketPath parentNode = null;
     int nodeIndex = 0;
@@ -1706,14 +1873,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     int index = (int) ((hashCode >>> (HASH_CODE_SIZE - nodeDepth)) & (LEVEL_MASK >>> (MAX_LEVEL_DEPTH - localNodeDepth)));
     BucketPath currentNode = new BucketPath(parentNode, 0, index, 0, localNodeDepth, nodeDepth);
     do {
-      final long position = hashTree[nodeIndex][index + offset];
+      final long position = directory.getNodePointer(nodeIndex, index + offset);
       if (position >= 0)
         return currentNode;
 
       nodeIndex = (int) ((position & Long.MAX_VALUE) >>> 8);
       offset = (int) (position & 0xFF);
 
-      localNodeDepth = nodesMetadata[nodeIndex].getNodeLocalDepth();
+      localNodeDepth = directory.getNodeLocalDepth(nodeIndex);
       nodeDepth += localNodeDepth;
 
       index = (int) ((hashCode >>> (HASH_CODE_SIZE - nodeDepth)) & (LEVEL_MASK >>> (MAX_LEVEL_DEPTH - localNodeDepth)));
@@ -63,18 +63,24 @@ public class OUniqueHashIndex extends OAbstractLocalHashIndex<OIdentifiable> {
 
   @Override
   public OIndex<OIdentifiable> put(Object key, OIdentifiable value) {
-    acquireExclusiveLock();
-    try {
-      checkForKeyType(key);
+    if (getDefinition() == null) {
+      // THE KEY TYPE CHANGES THE SERIALIZER OF THE TABLE SO IT IS RECOGNIZED WITHOUT CONCURRENT PUTS
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(key);
+      } finally {
+        releaseExclusiveLock();
+      }
+    }
 
+    acquireSharedLock();
+    try {
       final OIdentifiable currentValue = super.get(key);
 
       if (currentValue != null) {
         // CHECK IF THE ID IS THE SAME OF CURRENT: THIS IS THE UPDATE CASE
         if (!currentValue.equals(value))
-          throw new ORecordDuplicatedException("Found duplicated key '" + key + "' on unique index '" + getName() + "' for record "
-              + value.getIdentity() + ". The record already present in the index is " + currentValue.getIdentity(),
-              currentValue.getIdentity());
+          throw duplicatedKey(key, value, currentValue);
         else
           return this;
       }
@@ -82,14 +88,24 @@ public class OUniqueHashIndex extends OAbstractLocalHashIndex<OIdentifiable> {
       if (!value.getIdentity().isPersistent())
         ((ORecord<?>) value.getRecord()).save();
 
-      super.put(key, value.getIdentity());
+      // THE TABLE IS THE SERIALIZATION POINT OF CONCURRENT PUTS OF THE SAME KEY
+      final OIdentifiable putValue = putIfAbsent(key, value.getIdentity());
+      if (putValue != null && !putValue.equals(value.getIdentity()))
+        throw duplicatedKey(key, value, putValue);
+
       return this;
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
+  private ORecordDuplicatedException duplicatedKey(Object key, OIdentifiable value, OIdentifiable currentValue) {
+    return new ORecordDuplicatedException("Found duplicated key '" + key + "' on unique index '" + getName() + "' for record "
+        + value.getIdentity() + ". The record already present in the index is " + currentValue.getIdentity(),
+        currentValue.getIdentity());
+  }
+
   @Override
   public void checkEntry(OIdentifiable iRecord, Object iKey) {
     final OIdentifiable indexedRID = get(iKey);
@@ -34,6 +34,11 @@ class LRUEntry {
 
   int                usageCounter = 0;
 
+  /**
+   * Page was loaded by sequential read and is not remembered in a1out queue when it is evicted.
+   */
+  boolean            sequentialRead;
+
   LRUEntry           next;
 
   LRUEntry           after;
@@ -75,6 +80,7 @@ class LRUEntry {
   @Override
   public String toString() {
     return "LRUEntry{" + "fileId=" + fileId + ", pageIndex=" + pageIndex + ", loadedLSN=" + loadedLSN + ", dataPointer="
-        + dataPointer + ", isDirty=" + isDirty + ", hashCode=" + hashCode + ", usageCounter=" + usageCounter + '}';
+        + dataPointer + ", isDirty=" + isDirty + ", hashCode=" + hashCode + ", usageCounter=" + usageCounter + ", sequentialRead="
+        + sequentialRead + '}';
   }
 }
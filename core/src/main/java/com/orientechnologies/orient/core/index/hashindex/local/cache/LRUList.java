@@ -218,11 +218,20 @@ class LRUList implements Iterable<LRUEntry> {
     return size;
   }
 
+  /**
+   * Removes least recently used entry which is not in use.
+   *
+   * @return removed entry or <code>null</code> if all entries are in use.
+   */
   public LRUEntry removeLRU() {
     LRUEntry entryToRemove = head;
-    while (entryToRemove.usageCounter != 0) {
+    while (entryToRemove != null && entryToRemove.usageCounter != 0) {
       entryToRemove = entryToRemove.after;
     }
+
+    if (entryToRemove == null)
+      return null;
+
     return remove(entryToRemove.fileId, entryToRemove.pageIndex);
   }
 
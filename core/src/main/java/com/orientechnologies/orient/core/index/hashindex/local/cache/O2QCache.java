@@ -28,13 +28,24 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.CRC32;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
 import com.orientechnologies.common.serialization.types.OLongSerializer;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
 import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.storage.impl.local.OMultiFileSegment;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.ODirtyPage;
@@ -46,7 +57,9 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWrite
  * @since 14.03.13
  */
 public class O2QCache implements ODiskCache {
-  public static final long                                     MAGIC_NUMBER = 0xFACB03FEL;
+  public static final long                                     MAGIC_NUMBER        = 0xFACB03FEL;
+
+  private static final int                                     MAX_PAGES_PER_WRITE = 32;
 
   public final int                                             writeQueueLength;
 
@@ -85,11 +98,59 @@ public class O2QCache implements ODiskCache {
   private final OWriteAheadLog                                 writeAheadLog;
 
   private final boolean                                        syncOnPageFlush;
-  private long                                                 fileCounter  = 1;
+  private long                                                 fileCounter         = 1;
   private int                                                  crcOffset;
 
+  /**
+   * Pages taken by the background writer which are not written yet. A thread which writes or reloads one of these pages removes it
+   * from the map, so the background writer does not write the page over its newer content.
+   */
+  private final ConcurrentMap<FileLockKey, PendingWrite>       pendingWrites       = new ConcurrentHashMap<FileLockKey, PendingWrite>();
+
+  /**
+   * Held during every write of pages to the files. It is acquired after the cache lock, the background writer does not acquire the
+   * cache lock while holding it.
+   */
+  private final Lock                                           writeLock           = new ReentrantLock();
+
+  private final ScheduledExecutorService                       pageWriter;
+  private final float                                          writerDirtyRatio;
+  private FileLockKey                                          lastTakenPage;
+
+  private final ExecutorService                                readAheadExecutor;
+  private final int                                            readAheadPages;
+
+  /**
+   * Page index after the last page which is read ahead for sequential read of the file, there is an entry for every opened file
+   * which is read sequentially.
+   */
+  private final Map<Long, Long>                                readAheadLimits     = new HashMap<Long, Long>();
+
   public O2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog, int pageSize,
       OStorageLocalAbstract storageLocal, boolean syncOnPageFlush) {
+    this(maxMemory, writeQueueLength, directMemory, writeAheadLog, pageSize, storageLocal, syncOnPageFlush, 0, 0);
+  }
+
+  /**
+   * @param writerInterval
+   *          interval in ms between the runs of the background writer, 0 means that dirty pages are written only when they are
+   *          evicted or flushed
+   * @param writerDirtyRatio
+   *          share of dirty pages in the cache at which the background writer writes all of them at every run
+   */
+  public O2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog, int pageSize,
+      OStorageLocalAbstract storageLocal, boolean syncOnPageFlush, int writerInterval, float writerDirtyRatio) {
+    this(maxMemory, writeQueueLength, directMemory, writeAheadLog, pageSize, storageLocal, syncOnPageFlush, writerInterval,
+        writerDirtyRatio, 0);
+  }
+
+  /**
+   * @param readAheadPages
+   *          amount of pages which are read asynchronously ahead of the page loaded by sequential read, 0 means that pages are not
+   *          read ahead
+   */
+  public O2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog, int pageSize,
+      OStorageLocalAbstract storageLocal, boolean syncOnPageFlush, int writerInterval, float writerDirtyRatio, int readAheadPages) {
 
     this.writeQueueLength = writeQueueLength;
     this.writeAheadLog = writeAheadLog;
@@ -118,6 +179,36 @@ public class O2QCache implements ODiskCache {
     a1in = new LRUList();
 
     syncObject = new Object();
+
+    this.writerDirtyRatio = writerDirtyRatio;
+    if (writerInterval > 0) {
+      pageWriter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r);
+          thread.setDaemon(true);
+          thread.setName("Disk Cache Writer");
+          return thread;
+        }
+      });
+      pageWriter.scheduleWithFixedDelay(new PageWriterTask(), writerInterval, writerInterval, TimeUnit.MILLISECONDS);
+    } else
+      pageWriter = null;
+
+    // PAGES READ AHEAD ARE PUT IN A1IN QUEUE, THEY SHOULD NOT PUSH OUT EACH OTHER BEFORE THEY ARE READ
+    this.readAheadPages = Math.min(readAheadPages, K_IN >> 1);
+    if (this.readAheadPages > 0) {
+      readAheadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r);
+          thread.setDaemon(true);
+          thread.setName("Disk Cache Read Ahead");
+          return thread;
+        }
+      });
+    } else
+      readAheadExecutor = null;
   }
 
   LRUList getAm() {
@@ -179,6 +270,14 @@ public class O2QCache implements ODiskCache {
     lruEntry.isDirty = true;
   }
 
+  private OLogSequenceNumber getLogSequenceNumberFromPage(byte[] content) {
+    final long position = OLongSerializer.INSTANCE.deserializeNative(content, OLongSerializer.LONG_SIZE
+        + (2 * OIntegerSerializer.INT_SIZE));
+    final int segment = OIntegerSerializer.INSTANCE.deserializeNative(content, OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE);
+
+    return new OLogSequenceNumber(segment, position);
+  }
+
   private OLogSequenceNumber getLogSequenceNumberFromPage(long dataPointer) {
     final long position = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, dataPointer
         + OLongSerializer.LONG_SIZE + (2 * OIntegerSerializer.INT_SIZE));
@@ -190,9 +289,18 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public long load(long fileId, long pageIndex) throws IOException {
+    return load(fileId, pageIndex, false);
+  }
+
+  @Override
+  public long load(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
     synchronized (syncObject) {
-      final LRUEntry lruEntry = updateCache(fileId, pageIndex);
+      final LRUEntry lruEntry = updateCache(fileId, pageIndex, sequentialRead);
       lruEntry.usageCounter++;
+
+      if (sequentialRead && readAheadExecutor != null)
+        scheduleReadAhead(fileId, pageIndex);
+
       return lruEntry.dataPointer;
     }
   }
@@ -219,6 +327,8 @@ public class O2QCache implements ODiskCache {
   public void flushFile(long fileId) throws IOException {
     synchronized (syncObject) {
 
+      flushPendingPages(fileId);
+
       final SortedMap<Long, OLogSequenceNumber> dirtyPages = this.dirtyPages.get(fileId);
 
       for (Iterator<Long> iterator = dirtyPages.keySet().iterator(); iterator.hasNext();) {
@@ -252,6 +362,9 @@ public class O2QCache implements ODiskCache {
       if (!files.containsKey(fileId))
         return;
 
+      flushPendingPages(fileId);
+      readAheadLimits.remove(fileId);
+
       final Set<Long> pageIndexes = filePages.get(fileId);
       Long[] sortedPageIndexes = new Long[pageIndexes.size()];
       sortedPageIndexes = pageIndexes.toArray(sortedPageIndexes);
@@ -305,6 +418,9 @@ public class O2QCache implements ODiskCache {
       if (!files.containsKey(fileId))
         return;
 
+      discardPendingPages(fileId);
+      readAheadLimits.remove(fileId);
+
       final Set<Long> pageEntries = filePages.get(fileId);
       for (Long pageIndex : pageEntries) {
         LRUEntry lruEntry = get(fileId, pageIndex);
@@ -334,7 +450,12 @@ public class O2QCache implements ODiskCache {
       if (!files.containsKey(fileId))
         return;
 
-      files.get(fileId).rename(oldFileName, newFileName);
+      writeLock.lock();
+      try {
+        files.get(fileId).rename(oldFileName, newFileName);
+      } finally {
+        writeLock.unlock();
+      }
     }
 
   }
@@ -364,6 +485,9 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public void close() throws IOException {
+    stopReadAhead();
+    stopPageWriter();
+
     synchronized (syncObject) {
       clear();
       for (OMultiFileSegment multiFileSegment : files.values()) {
@@ -395,10 +519,15 @@ public class O2QCache implements ODiskCache {
     }
   }
 
-  private LRUEntry updateCache(long fileId, long pageIndex) throws IOException {
+  /**
+   * Page loaded by sequential read does not change position of the page in am queue and is put in a1in queue even if it was
+   * accessed recently, so scan of the whole file does not push out frequently used pages.
+   */
+  private LRUEntry updateCache(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
     LRUEntry lruEntry = am.get(fileId, pageIndex);
     if (lruEntry != null) {
-      lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lruEntry.loadedLSN);
+      if (!sequentialRead)
+        lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lruEntry.loadedLSN);
 
       return lruEntry;
     }
@@ -407,6 +536,10 @@ public class O2QCache implements ODiskCache {
     if (lruEntry != null) {
       removeColdestPageIfNeeded();
 
+      if (sequentialRead)
+        // PAGE IS REMEMBERED IN A1OUT QUEUE AGAIN WHEN IT IS EVICTED
+        return putToA1in(fileId, pageIndex, false);
+
       CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
       lruEntry.dataPointer = cacheResult.dataPointer;
       lruEntry.isDirty = cacheResult.isDirty;
@@ -422,11 +555,22 @@ public class O2QCache implements ODiskCache {
     }
 
     lruEntry = a1in.get(fileId, pageIndex);
-    if (lruEntry != null)
+    if (lruEntry != null) {
+      if (!sequentialRead)
+        lruEntry.sequentialRead = false;
+
       return lruEntry;
+    }
 
     removeColdestPageIfNeeded();
 
+    lruEntry = putToA1in(fileId, pageIndex, sequentialRead);
+    filePages.get(fileId).add(pageIndex);
+
+    return lruEntry;
+  }
+
+  private LRUEntry putToA1in(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
     CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
     OLogSequenceNumber lsn;
     if (cacheResult.isDirty)
@@ -434,9 +578,8 @@ public class O2QCache implements ODiskCache {
     else
       lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
 
-    lruEntry = a1in.putToMRU(fileId, pageIndex, cacheResult.dataPointer, cacheResult.isDirty, lsn);
-
-    filePages.get(fileId).add(pageIndex);
+    LRUEntry lruEntry = a1in.putToMRU(fileId, pageIndex, cacheResult.dataPointer, cacheResult.isDirty, lsn);
+    lruEntry.sequentialRead = sequentialRead;
 
     return lruEntry;
   }
@@ -449,6 +592,11 @@ public class O2QCache implements ODiskCache {
         evictFileContent(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, removedFromAInEntry.dataPointer,
             removedFromAInEntry.isDirty);
 
+        if (removedFromAInEntry.sequentialRead) {
+          filePages.get(removedFromAInEntry.fileId).remove(removedFromAInEntry.pageIndex);
+          return;
+        }
+
         a1out.putToMRU(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, ODirectMemory.NULL_POINTER, false, null);
         if (a1out.size() > K_OUT) {
           LRUEntry removedEntry = a1out.removeLRU();
@@ -471,6 +619,13 @@ public class O2QCache implements ODiskCache {
     if (evictedPages.containsKey(key))
       return new CacheResult(true, evictedPages.remove(key));
 
+    final PendingWrite pendingWrite = pendingWrites.remove(key);
+    if (pendingWrite != null) {
+      // THE PAGE WAS EVICTED BEFORE THE BACKGROUND WRITER WROTE IT, IT COMES BACK AS DIRTY PAGE
+      dirtyPages.get(fileId).put(pageIndex, pendingWrite.lsn);
+      return new CacheResult(true, directMemory.allocate(pendingWrite.content));
+    }
+
     final OMultiFileSegment multiFileSegment = files.get(fileId);
     final long startPosition = pageIndex * pageSize;
     final long endPosition = startPosition + pageSize;
@@ -500,25 +655,273 @@ public class O2QCache implements ODiskCache {
   }
 
   private void flushData(final long fileId, final long pageIndex, final long dataPointer) throws IOException {
+    // THE CONTENT IN MEMORY IS NEWER THAN THE ONE TAKEN BY THE BACKGROUND WRITER
+    pendingWrites.remove(new FileLockKey(fileId, pageIndex));
+
+    flushWAL(getLogSequenceNumberFromPage(dataPointer));
+
+    writePages(files.get(fileId), pageIndex, directMemory.get(dataPointer, pageSize));
+  }
+
+  private void flushWAL(OLogSequenceNumber pageLSN) throws IOException {
     if (writeAheadLog != null) {
-      OLogSequenceNumber lsn = getLogSequenceNumberFromPage(dataPointer);
       OLogSequenceNumber flushedLSN = writeAheadLog.getFlushedLSN();
-      if (flushedLSN == null || flushedLSN.compareTo(lsn) < 0)
+      if (flushedLSN == null || flushedLSN.compareTo(pageLSN) < 0)
         writeAheadLog.flush();
     }
+  }
 
-    final byte[] content = directMemory.get(dataPointer, pageSize);
-    OLongSerializer.INSTANCE.serializeNative(MAGIC_NUMBER, content, 0);
+  /**
+   * Writes the content of adjacent pages by single write.
+   */
+  private void writePages(OMultiFileSegment multiFileSegment, long firstPageIndex, byte[] content) throws IOException {
+    for (int offset = 0; offset < content.length; offset += pageSize) {
+      OLongSerializer.INSTANCE.serializeNative(MAGIC_NUMBER, content, offset);
 
-    final int crc32 = calculatePageCrc(content);
-    OIntegerSerializer.INSTANCE.serializeNative(crc32, content, OLongSerializer.LONG_SIZE);
+      final int crc32 = calculatePageCrc(content, offset);
+      OIntegerSerializer.INSTANCE.serializeNative(crc32, content, offset + OLongSerializer.LONG_SIZE);
+    }
 
-    final OMultiFileSegment multiFileSegment = files.get(fileId);
+    writeLock.lock();
+    try {
+      multiFileSegment.writeContinuously(firstPageIndex * pageSize, content);
+
+      if (syncOnPageFlush)
+        multiFileSegment.synch();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void flushPendingPages(long fileId) throws IOException {
+    for (PendingWrite pendingWrite : pendingWrites.values()) {
+      if (pendingWrite.key.fileId == fileId && pendingWrites.remove(pendingWrite.key, pendingWrite)) {
+        flushWAL(getLogSequenceNumberFromPage(pendingWrite.content));
+        writePages(pendingWrite.file, pendingWrite.key.pageIndex, pendingWrite.content);
+      }
+    }
+  }
+
+  private void discardPendingPages(long fileId) {
+    for (Iterator<FileLockKey> iterator = pendingWrites.keySet().iterator(); iterator.hasNext();) {
+      if (iterator.next().fileId == fileId)
+        iterator.remove();
+    }
+
+    // WAITS FOR THE WRITE OF THE BACKGROUND WRITER IN PROGRESS, IF ANY
+    writeLock.lock();
+    writeLock.unlock();
+  }
+
+  private void stopPageWriter() {
+    if (pageWriter == null || pageWriter.isShutdown())
+      return;
+
+    pageWriter.shutdown();
+    try {
+      if (!pageWriter.awaitTermination(10000, TimeUnit.MILLISECONDS))
+        throw new OStorageException("Background writer of disk cache can not be stopped.");
+    } catch (InterruptedException e) {
+      OLogManager.instance().error(this, "Can not shutdown background writer of disk cache.");
+    }
+  }
+
+  private void stopReadAhead() {
+    if (readAheadExecutor == null || readAheadExecutor.isShutdown())
+      return;
+
+    readAheadExecutor.shutdown();
+    try {
+      if (!readAheadExecutor.awaitTermination(10000, TimeUnit.MILLISECONDS))
+        throw new OStorageException("Read ahead of disk cache pages can not be stopped.");
+    } catch (InterruptedException e) {
+      OLogManager.instance().error(this, "Can not shutdown read ahead of disk cache pages.");
+    }
+  }
+
+  /**
+   * Schedules read of the pages which follow the page loaded by sequential read when the read reaches the second half of the
+   * pages read ahead before or starts at other place of the file.
+   */
+  private void scheduleReadAhead(final long fileId, final long pageIndex) {
+    final Long readAheadLimit = readAheadLimits.get(fileId);
+    if (readAheadLimit != null && pageIndex < readAheadLimit - (readAheadPages >> 1)
+        && pageIndex >= readAheadLimit - 2 * readAheadPages)
+      return;
+
+    readAheadLimits.put(fileId, pageIndex + 1 + readAheadPages);
+    readAheadExecutor.submit(new ReadAheadTask(fileId, pageIndex + 1, pageIndex + 1 + readAheadPages));
+  }
+
+  /**
+   * Reads by single read the pages of the range which are not in the cache and puts them in a1in queue as pages loaded by
+   * sequential read. Pages which are in the cache, in the write queues or were accessed recently are not touched.
+   */
+  private void readAhead(long fileId, long firstPageIndex, long lastPageIndex) throws IOException {
+    synchronized (syncObject) {
+      // FILE WAS CLOSED OR TRUNCATED AFTER READ AHEAD WAS SCHEDULED
+      if (!readAheadLimits.containsKey(fileId))
+        return;
+
+      final OMultiFileSegment multiFileSegment = files.get(fileId);
+      lastPageIndex = Math.min(lastPageIndex, multiFileSegment.getFilledUpTo() / pageSize);
+
+      while (firstPageIndex < lastPageIndex && !canBeReadAhead(fileId, firstPageIndex))
+        firstPageIndex++;
+      while (lastPageIndex > firstPageIndex && !canBeReadAhead(fileId, lastPageIndex - 1))
+        lastPageIndex--;
+
+      if (firstPageIndex >= lastPageIndex)
+        return;
+
+      final byte[] content = new byte[(int) (lastPageIndex - firstPageIndex) * pageSize];
+      multiFileSegment.readContinuously(firstPageIndex * pageSize, content, content.length);
+
+      for (long pageIndex = firstPageIndex; pageIndex < lastPageIndex; pageIndex++) {
+        if (!canBeReadAhead(fileId, pageIndex))
+          continue;
+
+        removeColdestPageIfNeeded();
+
+        final long dataPointer = directMemory.allocate(pageSize);
+        directMemory.set(dataPointer, content, (int) (pageIndex - firstPageIndex) * pageSize, pageSize);
+
+        final LRUEntry lruEntry = a1in.putToMRU(fileId, pageIndex, dataPointer, false, getLogSequenceNumberFromPage(dataPointer));
+        lruEntry.sequentialRead = true;
+
+        filePages.get(fileId).add(pageIndex);
+      }
+    }
+  }
+
+  private boolean canBeReadAhead(long fileId, long pageIndex) {
+    final FileLockKey key = new FileLockKey(fileId, pageIndex);
+    return get(fileId, pageIndex) == null && !a1out.contains(fileId, pageIndex) && !evictedPages.containsKey(key)
+        && !pendingWrites.containsKey(key);
+  }
+
+  /**
+   * Takes the pages which the background writer writes in this run. The evicted pages are always taken, so the threads which
+   * evict pages rarely find the write queue full. The other dirty pages which are not in use are taken in (fileId, pageIndex) order
+   * starting after the last page taken by the previous run. When the share of dirty pages reaches the writer dirty ratio all of
+   * them are taken, under it a proportionally smaller part.
+   */
+  private void takePagesToWrite() {
+    synchronized (syncObject) {
+      for (Map.Entry<FileLockKey, Long> entry : evictedPages.entrySet()) {
+        final FileLockKey key = entry.getKey();
+        final long dataPointer = entry.getValue();
+
+        final OLogSequenceNumber lsn = dirtyPages.get(key.fileId).remove(key.pageIndex);
+        pendingWrites.put(key, new PendingWrite(key, files.get(key.fileId), directMemory.get(dataPointer, pageSize), lsn));
+
+        directMemory.free(dataPointer);
+      }
+      evictedPages.clear();
+
+      final List<FileLockKey> dirtyPagesKeys = new ArrayList<FileLockKey>();
+      final List<Long> fileIds = new ArrayList<Long>(dirtyPages.keySet());
+      Collections.sort(fileIds);
+      for (long fileId : fileIds) {
+        for (long pageIndex : dirtyPages.get(fileId).keySet())
+          dirtyPagesKeys.add(new FileLockKey(fileId, pageIndex));
+      }
+
+      if (dirtyPagesKeys.isEmpty())
+        return;
+
+      final int dirtyPagesCount = dirtyPagesKeys.size();
+      final float dirtyRatio = (float) dirtyPagesCount / maxSize;
+
+      final int pagesToTake;
+      if (dirtyRatio >= writerDirtyRatio)
+        pagesToTake = dirtyPagesCount;
+      else
+        pagesToTake = Math.max(1, (int) (dirtyPagesCount * dirtyRatio / writerDirtyRatio));
+
+      int start = 0;
+      if (lastTakenPage != null) {
+        start = Collections.binarySearch(dirtyPagesKeys, lastTakenPage);
+        start = start >= 0 ? start + 1 : -start - 1;
+      }
+
+      int pagesTaken = 0;
+      for (int i = 0; i < dirtyPagesCount && pagesTaken < pagesToTake; i++) {
+        final FileLockKey key = dirtyPagesKeys.get((start + i) % dirtyPagesCount);
+
+        final LRUEntry lruEntry = get(key.fileId, key.pageIndex);
+        if (lruEntry == null || lruEntry.usageCounter > 0)
+          continue;
+
+        final OLogSequenceNumber lsn = dirtyPages.get(key.fileId).remove(key.pageIndex);
+        pendingWrites.put(key, new PendingWrite(key, files.get(key.fileId), directMemory.get(lruEntry.dataPointer, pageSize), lsn));
+        lruEntry.isDirty = false;
+
+        lastTakenPage = key;
+        pagesTaken++;
+      }
+    }
+  }
 
-    multiFileSegment.writeContinuously(pageIndex * pageSize, content);
+  /**
+   * Writes the pending pages in (fileId, pageIndex) order, adjacent pages are written together. The pages which fail to be written
+   * stay pending and are written by the next run.
+   */
+  private void writePendingPages() throws IOException {
+    if (pendingWrites.isEmpty())
+      return;
+
+    final List<PendingWrite> pages = new ArrayList<PendingWrite>(pendingWrites.values());
+    Collections.sort(pages);
+
+    OLogSequenceNumber maxLSN = null;
+    for (PendingWrite page : pages) {
+      final OLogSequenceNumber lsn = getLogSequenceNumberFromPage(page.content);
+      if (maxLSN == null || maxLSN.compareTo(lsn) < 0)
+        maxLSN = lsn;
+    }
+    flushWAL(maxLSN);
 
-    if (syncOnPageFlush)
-      multiFileSegment.synch();
+    int start = 0;
+    while (start < pages.size()) {
+      int end = start + 1;
+      while (end < pages.size() && end - start < MAX_PAGES_PER_WRITE && pages.get(end).isNextPageOf(pages.get(end - 1)))
+        end++;
+
+      writeAdjacentPages(pages.subList(start, end));
+      start = end;
+    }
+  }
+
+  private void writeAdjacentPages(List<PendingWrite> pages) throws IOException {
+    writeLock.lock();
+    try {
+      int start = 0;
+      while (start < pages.size()) {
+        // PAGES WHICH WERE WRITTEN OR RELOADED BY OTHER THREADS MEANWHILE ARE SKIPPED
+        if (pendingWrites.get(pages.get(start).key) != pages.get(start)) {
+          start++;
+          continue;
+        }
+
+        int end = start + 1;
+        while (end < pages.size() && pendingWrites.get(pages.get(end).key) == pages.get(end))
+          end++;
+
+        final byte[] content = new byte[(end - start) * pageSize];
+        for (int i = start; i < end; i++)
+          System.arraycopy(pages.get(i).content, 0, content, (i - start) * pageSize, pageSize);
+
+        writePages(pages.get(start).file, pages.get(start).key.pageIndex, content);
+
+        for (int i = start; i < end; i++)
+          pendingWrites.remove(pages.get(i).key, pages.get(i));
+
+        start = end;
+      }
+    } finally {
+      writeLock.unlock();
+    }
   }
 
   @Override
@@ -567,7 +970,7 @@ public class O2QCache implements ODiskCache {
 
             final int storedCRC32 = OIntegerSerializer.INSTANCE.deserializeNative(data, OLongSerializer.LONG_SIZE);
 
-            final int calculatedCRC32 = calculatePageCrc(data);
+            final int calculatedCRC32 = calculatePageCrc(data, 0);
             if (storedCRC32 != calculatedCRC32) {
               checkSumIncorrect = true;
               if (commandOutputListener != null)
@@ -612,13 +1015,21 @@ public class O2QCache implements ODiskCache {
       if (writeAheadLog == null)
         return Collections.emptySet();
 
-      Set<ODirtyPage> logDirtyPages = new HashSet<ODirtyPage>(dirtyPages.size());
+      final Map<FileLockKey, OLogSequenceNumber> pagesLSN = new HashMap<FileLockKey, OLogSequenceNumber>();
       for (long fileId : dirtyPages.keySet()) {
         SortedMap<Long, OLogSequenceNumber> pages = dirtyPages.get(fileId);
-        for (Map.Entry<Long, OLogSequenceNumber> pageEntry : pages.entrySet()) {
-          final ODirtyPage logDirtyPage = new ODirtyPage(files.get(fileId).getName(), pageEntry.getKey(), pageEntry.getValue());
-          logDirtyPages.add(logDirtyPage);
-        }
+        for (Map.Entry<Long, OLogSequenceNumber> pageEntry : pages.entrySet())
+          pagesLSN.put(new FileLockKey(fileId, pageEntry.getKey()), pageEntry.getValue());
+      }
+
+      // PAGES TAKEN BY THE BACKGROUND WRITER ARE STILL DIRTY ON DISK, THEIR LSN IS NOT NEWER THAN THE ONE OF A CHANGE MADE LATER
+      for (PendingWrite pendingWrite : pendingWrites.values())
+        pagesLSN.put(pendingWrite.key, pendingWrite.lsn);
+
+      Set<ODirtyPage> logDirtyPages = new HashSet<ODirtyPage>(pagesLSN.size());
+      for (Map.Entry<FileLockKey, OLogSequenceNumber> pageEntry : pagesLSN.entrySet()) {
+        final FileLockKey key = pageEntry.getKey();
+        logDirtyPages.add(new ODirtyPage(files.get(key.fileId).getName(), key.pageIndex, pageEntry.getValue()));
       }
 
       writeAheadLog.logDirtyPages(logDirtyPages);
@@ -697,15 +1108,71 @@ public class O2QCache implements ODiskCache {
     return lruEntry;
   }
 
-  private int calculatePageCrc(byte[] pageData) {
+  private int calculatePageCrc(byte[] data, int pageOffset) {
     int systemSize = OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE;
 
     final CRC32 crc32 = new CRC32();
-    crc32.update(pageData, systemSize, pageData.length - systemSize);
+    crc32.update(data, pageOffset + systemSize, pageSize - systemSize);
 
     return (int) crc32.getValue();
   }
 
+  private final class PageWriterTask implements Runnable {
+    @Override
+    public void run() {
+      try {
+        takePagesToWrite();
+        writePendingPages();
+      } catch (Throwable e) {
+        OLogManager.instance().error(this, "Error during background write of disk cache pages", e);
+      }
+    }
+  }
+
+  private final class ReadAheadTask implements Runnable {
+    private final long fileId;
+    private final long firstPageIndex;
+    private final long lastPageIndex;
+
+    private ReadAheadTask(long fileId, long firstPageIndex, long lastPageIndex) {
+      this.fileId = fileId;
+      this.firstPageIndex = firstPageIndex;
+      this.lastPageIndex = lastPageIndex;
+    }
+
+    @Override
+    public void run() {
+      try {
+        readAhead(fileId, firstPageIndex, lastPageIndex);
+      } catch (Throwable e) {
+        OLogManager.instance().error(this, "Error during read ahead of disk cache pages", e);
+      }
+    }
+  }
+
+  private static final class PendingWrite implements Comparable<PendingWrite> {
+    private final FileLockKey        key;
+    private final OMultiFileSegment  file;
+    private final byte[]             content;
+    private final OLogSequenceNumber lsn;
+
+    private PendingWrite(FileLockKey key, OMultiFileSegment file, byte[] content, OLogSequenceNumber lsn) {
+      this.key = key;
+      this.file = file;
+      this.content = content;
+      this.lsn = lsn;
+    }
+
+    private boolean isNextPageOf(PendingWrite other) {
+      return key.fileId == other.key.fileId && key.pageIndex == other.key.pageIndex + 1;
+    }
+
+    @Override
+    public int compareTo(PendingWrite other) {
+      return key.compareTo(other.key);
+    }
+  }
+
   private static final class FileLockKey implements Comparable<FileLockKey> {
     private final long fileId;
     private final long pageIndex;
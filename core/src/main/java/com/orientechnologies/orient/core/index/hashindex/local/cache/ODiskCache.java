@@ -18,6 +18,12 @@ public interface ODiskCache {
 
   long load(long fileId, long pageIndex) throws IOException;
 
+  /**
+   * Loads page like {@link #load(long, long)}. Page which is loaded by sequential read (scan of whole file) is not promoted to
+   * the frequently used pages and does not push them out of the cache.
+   */
+  long load(long fileId, long pageIndex, boolean sequentialRead) throws IOException;
+
   void release(long fileId, long pageIndex);
 
   long getFilledUpTo(long fileId) throws IOException;
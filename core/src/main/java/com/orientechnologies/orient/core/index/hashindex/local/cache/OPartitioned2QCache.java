@@ -0,0 +1,917 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.storage.impl.local.OMultiFileSegment;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.ODirtyPage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+
+/**
+ * 2Q disk cache which is split on several independently locked partitions. Page is assigned to the partition by hash of
+ * (fileId, pageIndex) pair, every partition has its own am/a1in/a1out queues, dirty pages table and write queue, so threads which
+ * work with pages of different partitions do not contend with each other.
+ *
+ * Operations which are related to the whole file (flush, close, truncate) are performed partition by partition.
+ *
+ * @see O2QCache
+ */
+public class OPartitioned2QCache implements ODiskCache {
+  private final int                                   pageSize;
+  private final ODirectMemory                         directMemory;
+  private final OStorageLocalAbstract                 storageLocal;
+  private final OWriteAheadLog                        writeAheadLog;
+  private final boolean                               syncOnPageFlush;
+
+  private final ConcurrentMap<Long, OMultiFileSegment> files;
+  private final AtomicLong                            fileCounter = new AtomicLong(1);
+
+  /**
+   * Serializes operations which change set of opened files.
+   */
+  private final Object                                filesLock   = new Object();
+
+  private final Partition[]                           partitions;
+  private final int                                   partitionMask;
+
+  public OPartitioned2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog,
+      int pageSize, OStorageLocalAbstract storageLocal, boolean syncOnPageFlush, int partitionsCount) {
+    this.pageSize = pageSize;
+    this.directMemory = directMemory;
+    this.storageLocal = storageLocal;
+    this.writeAheadLog = writeAheadLog;
+    this.syncOnPageFlush = syncOnPageFlush;
+    this.files = new ConcurrentHashMap<Long, OMultiFileSegment>();
+
+    int partitionsPowerOfTwo = 1;
+    while (partitionsPowerOfTwo < partitionsCount)
+      partitionsPowerOfTwo <<= 1;
+
+    partitionMask = partitionsPowerOfTwo - 1;
+    partitions = new Partition[partitionsPowerOfTwo];
+
+    long tmpMaxSize = maxMemory / pageSize;
+    final int maxSize;
+    if (tmpMaxSize >= Integer.MAX_VALUE) {
+      maxSize = Integer.MAX_VALUE;
+    } else {
+      maxSize = (int) tmpMaxSize;
+    }
+
+    final int partitionMaxSize = Math.max(1, maxSize / partitionsPowerOfTwo);
+    final int partitionWriteQueueLength = Math.max(1, writeQueueLength / partitionsPowerOfTwo);
+
+    for (int i = 0; i < partitions.length; i++)
+      partitions[i] = new Partition(partitionMaxSize, partitionWriteQueueLength);
+  }
+
+  public int getPartitionsCount() {
+    return partitions.length;
+  }
+
+  @Override
+  public long openFile(OStorageSegmentConfiguration fileConfiguration, String fileExtension) throws IOException {
+    synchronized (filesLock) {
+      final long fileId = fileCounter.getAndIncrement();
+
+      final OMultiFileSegment multiFileSegment = new OMultiFileSegment(storageLocal, fileConfiguration, fileExtension, pageSize);
+      if (multiFileSegment.exists())
+        multiFileSegment.open();
+      else
+        multiFileSegment.create(pageSize);
+
+      lockAllPartitions();
+      try {
+        for (Partition partition : partitions)
+          partition.addFile(fileId);
+      } finally {
+        unlockAllPartitions();
+      }
+
+      files.put(fileId, multiFileSegment);
+
+      return fileId;
+    }
+  }
+
+  @Override
+  public void markDirty(long fileId, long pageIndex) {
+    final Partition partition = partition(fileId, pageIndex);
+    partition.lock.lock();
+    try {
+      partition.markDirty(fileId, pageIndex);
+    } finally {
+      partition.lock.unlock();
+    }
+  }
+
+  @Override
+  public long load(long fileId, long pageIndex) throws IOException {
+    return load(fileId, pageIndex, false);
+  }
+
+  @Override
+  public long load(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
+    final Partition partition = partition(fileId, pageIndex);
+    partition.lock.lock();
+    try {
+      final LRUEntry lruEntry = partition.updateCache(fileId, pageIndex, sequentialRead);
+      lruEntry.usageCounter++;
+      return lruEntry.dataPointer;
+    } finally {
+      partition.lock.unlock();
+    }
+  }
+
+  @Override
+  public void release(long fileId, long pageIndex) {
+    final Partition partition = partition(fileId, pageIndex);
+    partition.lock.lock();
+    try {
+      LRUEntry lruEntry = partition.get(fileId, pageIndex);
+      if (lruEntry != null)
+        lruEntry.usageCounter--;
+      else
+        throw new IllegalStateException("record should be released is already free!");
+    } finally {
+      partition.lock.unlock();
+    }
+  }
+
+  @Override
+  public long getFilledUpTo(long fileId) throws IOException {
+    return files.get(fileId).getFilledUpTo() / pageSize;
+  }
+
+  @Override
+  public void flushFile(long fileId) throws IOException {
+    final OMultiFileSegment multiFileSegment = files.get(fileId);
+    if (multiFileSegment == null)
+      return;
+
+    for (Partition partition : partitions) {
+      partition.lock.lock();
+      try {
+        partition.flushFile(fileId);
+      } finally {
+        partition.lock.unlock();
+      }
+    }
+
+    multiFileSegment.synch();
+  }
+
+  @Override
+  public void closeFile(long fileId) throws IOException {
+    synchronized (filesLock) {
+      if (!files.containsKey(fileId))
+        return;
+
+      lockAllPartitions();
+      try {
+        for (Partition partition : partitions)
+          partition.closeFile(fileId);
+      } finally {
+        unlockAllPartitions();
+      }
+
+      files.get(fileId).close();
+    }
+  }
+
+  @Override
+  public void deleteFile(long fileId) throws IOException {
+    synchronized (filesLock) {
+      if (!files.containsKey(fileId))
+        return;
+
+      truncateFile(fileId);
+      files.get(fileId).delete();
+
+      lockAllPartitions();
+      try {
+        for (Partition partition : partitions)
+          partition.removeFile(fileId);
+      } finally {
+        unlockAllPartitions();
+      }
+
+      files.remove(fileId);
+    }
+  }
+
+  @Override
+  public void truncateFile(long fileId) throws IOException {
+    synchronized (filesLock) {
+      if (!files.containsKey(fileId))
+        return;
+
+      lockAllPartitions();
+      try {
+        for (Partition partition : partitions)
+          partition.truncateFile(fileId);
+
+        files.get(fileId).truncate();
+      } finally {
+        unlockAllPartitions();
+      }
+    }
+  }
+
+  @Override
+  public void renameFile(long fileId, String oldFileName, String newFileName) throws IOException {
+    synchronized (filesLock) {
+      if (!files.containsKey(fileId))
+        return;
+
+      files.get(fileId).rename(oldFileName, newFileName);
+    }
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    synchronized (filesLock) {
+      for (long fileId : files.keySet())
+        flushFile(fileId);
+    }
+  }
+
+  @Override
+  public void clear() throws IOException {
+    synchronized (filesLock) {
+      flushBuffer();
+
+      lockAllPartitions();
+      try {
+        for (Partition partition : partitions)
+          partition.clear();
+      } finally {
+        unlockAllPartitions();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (filesLock) {
+      clear();
+      for (OMultiFileSegment multiFileSegment : files.values()) {
+        multiFileSegment.synch();
+        multiFileSegment.close();
+      }
+    }
+  }
+
+  @Override
+  public boolean wasSoftlyClosed(long fileId) throws IOException {
+    OMultiFileSegment multiFileSegment = files.get(fileId);
+    if (multiFileSegment == null)
+      return false;
+
+    return multiFileSegment.wasSoftlyClosedAtPreviousTime();
+  }
+
+  @Override
+  public void setSoftlyClosed(long fileId, boolean softlyClosed) throws IOException {
+    OMultiFileSegment multiFileSegment = files.get(fileId);
+    if (multiFileSegment != null)
+      multiFileSegment.setSoftlyClosed(softlyClosed);
+  }
+
+  @Override
+  public OPageDataVerificationError[] checkStoredPages(OCommandOutputListener commandOutputListener) {
+    final int notificationTimeOut = 5000;
+    final List<OPageDataVerificationError> errors = new ArrayList<OPageDataVerificationError>();
+
+    synchronized (filesLock) {
+      for (long fileId : files.keySet()) {
+
+        OMultiFileSegment multiFileSegment = files.get(fileId);
+
+        boolean fileIsCorrect;
+        try {
+
+          if (commandOutputListener != null)
+            commandOutputListener.onMessage("Flashing file " + multiFileSegment.getName() + "... ");
+
+          flushFile(fileId);
+
+          if (commandOutputListener != null)
+            commandOutputListener.onMessage("Start verification of content of " + multiFileSegment.getName() + "file ...");
+
+          long time = System.currentTimeMillis();
+
+          long filledUpTo = multiFileSegment.getFilledUpTo();
+          fileIsCorrect = true;
+
+          for (long pos = 0; pos < filledUpTo; pos += pageSize) {
+            boolean checkSumIncorrect = false;
+            boolean magicNumberIncorrect = false;
+
+            byte[] data = new byte[pageSize];
+
+            multiFileSegment.readContinuously(pos, data, data.length);
+
+            long magicNumber = OLongSerializer.INSTANCE.deserializeNative(data, 0);
+
+            if (magicNumber != O2QCache.MAGIC_NUMBER) {
+              magicNumberIncorrect = true;
+              if (commandOutputListener != null)
+                commandOutputListener.onMessage("Error: Magic number for page " + (pos / pageSize) + " in file "
+                    + multiFileSegment.getName() + " does not much !!!");
+              fileIsCorrect = false;
+            }
+
+            final int storedCRC32 = OIntegerSerializer.INSTANCE.deserializeNative(data, OLongSerializer.LONG_SIZE);
+
+            final int calculatedCRC32 = calculatePageCrc(data);
+            if (storedCRC32 != calculatedCRC32) {
+              checkSumIncorrect = true;
+              if (commandOutputListener != null)
+                commandOutputListener.onMessage("Error: Checksum for page " + (pos / pageSize) + " in file "
+                    + multiFileSegment.getName() + " is incorrect !!!");
+              fileIsCorrect = false;
+            }
+
+            if (magicNumberIncorrect || checkSumIncorrect)
+              errors.add(new OPageDataVerificationError(magicNumberIncorrect, checkSumIncorrect, pos / pageSize, multiFileSegment
+                  .getName()));
+
+            if (commandOutputListener != null && System.currentTimeMillis() - time > notificationTimeOut) {
+              time = System.currentTimeMillis();
+              commandOutputListener.onMessage((pos / pageSize) + " pages were processed ...");
+            }
+          }
+        } catch (IOException ioe) {
+          if (commandOutputListener != null)
+            commandOutputListener.onMessage("Error: Error during processing of file " + multiFileSegment.getName() + ". "
+                + ioe.getMessage());
+
+          fileIsCorrect = false;
+        }
+
+        if (!fileIsCorrect) {
+          if (commandOutputListener != null)
+            commandOutputListener.onMessage("Verification of file " + multiFileSegment.getName() + " is finished with errors.");
+        } else {
+          if (commandOutputListener != null)
+            commandOutputListener.onMessage("Verification of file " + multiFileSegment.getName() + " is successfully finished.");
+        }
+      }
+
+      return errors.toArray(new OPageDataVerificationError[errors.size()]);
+    }
+  }
+
+  @Override
+  public Set<ODirtyPage> logDirtyPagesTable() throws IOException {
+    if (writeAheadLog == null)
+      return Collections.emptySet();
+
+    // all partitions are locked to get consistent snapshot of dirty pages table in relation to WAL content
+    lockAllPartitions();
+    try {
+      final Set<ODirtyPage> logDirtyPages = new HashSet<ODirtyPage>();
+      for (Partition partition : partitions)
+        partition.collectDirtyPages(logDirtyPages);
+
+      writeAheadLog.logDirtyPages(logDirtyPages);
+      return logDirtyPages;
+    } finally {
+      unlockAllPartitions();
+    }
+  }
+
+  @Override
+  public void forceSyncStoredChanges() throws IOException {
+    for (OMultiFileSegment multiFileSegment : files.values())
+      multiFileSegment.synch();
+  }
+
+  private Partition partition(long fileId, long pageIndex) {
+    long hash = fileId * 0x9E3779B97F4A7C15L + pageIndex;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+
+    return partitions[(int) (hash & partitionMask)];
+  }
+
+  private void lockAllPartitions() {
+    for (Partition partition : partitions)
+      partition.lock.lock();
+  }
+
+  private void unlockAllPartitions() {
+    for (int i = partitions.length - 1; i >= 0; i--)
+      partitions[i].lock.unlock();
+  }
+
+  private OLogSequenceNumber getLogSequenceNumberFromPage(long dataPointer) {
+    final long position = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, dataPointer
+        + OLongSerializer.LONG_SIZE + (2 * OIntegerSerializer.INT_SIZE));
+    final int segment = OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, dataPointer
+        + OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE);
+
+    return new OLogSequenceNumber(segment, position);
+  }
+
+  private void flushData(final long fileId, final long pageIndex, final long dataPointer) throws IOException {
+    if (writeAheadLog != null) {
+      // partitions flush pages concurrently, so WAL flushes requested by them are grouped
+      OLogSequenceNumber lsn = getLogSequenceNumberFromPage(dataPointer);
+      writeAheadLog.flushTill(lsn);
+    }
+
+    final byte[] content = directMemory.get(dataPointer, pageSize);
+    OLongSerializer.INSTANCE.serializeNative(O2QCache.MAGIC_NUMBER, content, 0);
+
+    final int crc32 = calculatePageCrc(content);
+    OIntegerSerializer.INSTANCE.serializeNative(crc32, content, OLongSerializer.LONG_SIZE);
+
+    final OMultiFileSegment multiFileSegment = files.get(fileId);
+
+    multiFileSegment.writeContinuously(pageIndex * pageSize, content);
+
+    if (syncOnPageFlush)
+      multiFileSegment.synch();
+  }
+
+  private int calculatePageCrc(byte[] pageData) {
+    int systemSize = OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE;
+
+    final CRC32 crc32 = new CRC32();
+    crc32.update(pageData, systemSize, pageData.length - systemSize);
+
+    return (int) crc32.getValue();
+  }
+
+  /**
+   * Single 2Q cache segment. All methods should be called under partition lock.
+   */
+  private final class Partition {
+    private final ReentrantLock                                  lock = new ReentrantLock();
+
+    private final int                                            maxSize;
+    private final int                                            K_IN;
+    private final int                                            K_OUT;
+    private final int                                            writeQueueLength;
+
+    private final LRUList                                        am;
+    private final LRUList                                        a1out;
+    private final LRUList                                        a1in;
+
+    /**
+     * List of pages which were flushed out of the partition but were not written to the disk.
+     */
+    private final Map<FileLockKey, Long>                         evictedPages;
+
+    /**
+     * Contains all pages of given file which belong to this partition, not only dirty onces.
+     */
+    private final Map<Long, Set<Long>>                           filePages;
+
+    /**
+     * Keys is a file id. Values is a sorted set of dirty pages of this partition.
+     */
+    private final Map<Long, SortedMap<Long, OLogSequenceNumber>> dirtyPages;
+
+    private Partition(int maxSize, int writeQueueLength) {
+      this.maxSize = maxSize;
+      this.writeQueueLength = writeQueueLength;
+
+      K_IN = maxSize >> 2;
+      K_OUT = maxSize >> 1;
+
+      am = new LRUList();
+      a1out = new LRUList();
+      a1in = new LRUList();
+
+      evictedPages = new HashMap<FileLockKey, Long>();
+      filePages = new HashMap<Long, Set<Long>>();
+      dirtyPages = new HashMap<Long, SortedMap<Long, OLogSequenceNumber>>();
+    }
+
+    private void addFile(long fileId) {
+      filePages.put(fileId, new HashSet<Long>());
+      dirtyPages.put(fileId, new TreeMap<Long, OLogSequenceNumber>());
+    }
+
+    private void removeFile(long fileId) {
+      filePages.remove(fileId);
+      dirtyPages.remove(fileId);
+    }
+
+    private void markDirty(long fileId, long pageIndex) {
+      LRUEntry lruEntry = a1in.get(fileId, pageIndex);
+
+      if (lruEntry != null) {
+        doMarkDirty(fileId, pageIndex, lruEntry);
+        return;
+      }
+
+      lruEntry = am.get(fileId, pageIndex);
+      if (lruEntry != null) {
+        doMarkDirty(fileId, pageIndex, lruEntry);
+      } else
+        throw new IllegalStateException("Requested page number " + pageIndex + " for file " + files.get(fileId).getName()
+            + " is not in cache");
+    }
+
+    private void doMarkDirty(long fileId, long pageIndex, LRUEntry lruEntry) {
+      if (lruEntry.isDirty)
+        return;
+
+      dirtyPages.get(fileId).put(pageIndex, lruEntry.loadedLSN);
+      lruEntry.isDirty = true;
+    }
+
+    private LRUEntry updateCache(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
+      LRUEntry lruEntry = am.get(fileId, pageIndex);
+      if (lruEntry != null) {
+        if (!sequentialRead)
+          lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lruEntry.loadedLSN);
+
+        return lruEntry;
+      }
+
+      lruEntry = a1out.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        removeColdestPageIfNeeded();
+
+        if (sequentialRead)
+          return putToA1in(fileId, pageIndex, false);
+
+        CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
+        lruEntry.dataPointer = cacheResult.dataPointer;
+        lruEntry.isDirty = cacheResult.isDirty;
+
+        OLogSequenceNumber lsn;
+        if (cacheResult.isDirty)
+          lsn = dirtyPages.get(fileId).get(pageIndex);
+        else
+          lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
+
+        lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lsn);
+        return lruEntry;
+      }
+
+      lruEntry = a1in.get(fileId, pageIndex);
+      if (lruEntry != null) {
+        if (!sequentialRead)
+          lruEntry.sequentialRead = false;
+
+        return lruEntry;
+      }
+
+      removeColdestPageIfNeeded();
+
+      lruEntry = putToA1in(fileId, pageIndex, sequentialRead);
+      filePages.get(fileId).add(pageIndex);
+
+      return lruEntry;
+    }
+
+    private LRUEntry putToA1in(long fileId, long pageIndex, boolean sequentialRead) throws IOException {
+      CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
+      OLogSequenceNumber lsn;
+      if (cacheResult.isDirty)
+        lsn = dirtyPages.get(fileId).get(pageIndex);
+      else
+        lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
+
+      LRUEntry lruEntry = a1in.putToMRU(fileId, pageIndex, cacheResult.dataPointer, cacheResult.isDirty, lsn);
+      lruEntry.sequentialRead = sequentialRead;
+
+      return lruEntry;
+    }
+
+    private void removeColdestPageIfNeeded() throws IOException {
+      if (am.size() + a1in.size() >= maxSize) {
+        // all pages of queue can be in use by concurrent threads, in such case page of other queue is evicted, if all pages of
+        // partition are in use it temporary exceeds its size
+        if (a1in.size() > K_IN) {
+          if (!removeColdestA1inPage())
+            removeColdestAmPage();
+        } else if (!removeColdestAmPage())
+          removeColdestA1inPage();
+      }
+    }
+
+    private boolean removeColdestA1inPage() throws IOException {
+      LRUEntry removedFromAInEntry = a1in.removeLRU();
+      if (removedFromAInEntry == null)
+        return false;
+
+      evictFileContent(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, removedFromAInEntry.dataPointer,
+          removedFromAInEntry.isDirty);
+
+      if (removedFromAInEntry.sequentialRead) {
+        filePages.get(removedFromAInEntry.fileId).remove(removedFromAInEntry.pageIndex);
+        return true;
+      }
+
+      a1out.putToMRU(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, ODirectMemory.NULL_POINTER, false, null);
+      if (a1out.size() > K_OUT) {
+        LRUEntry removedEntry = a1out.removeLRU();
+        Set<Long> pageEntries = filePages.get(removedEntry.fileId);
+        pageEntries.remove(removedEntry.pageIndex);
+      }
+
+      return true;
+    }
+
+    private boolean removeColdestAmPage() throws IOException {
+      LRUEntry removedEntry = am.removeLRU();
+      if (removedEntry == null)
+        return false;
+
+      evictFileContent(removedEntry.fileId, removedEntry.pageIndex, removedEntry.dataPointer, removedEntry.isDirty);
+      Set<Long> pageEntries = filePages.get(removedEntry.fileId);
+      pageEntries.remove(removedEntry.pageIndex);
+
+      return true;
+    }
+
+    private CacheResult cacheFileContent(long fileId, long pageIndex) throws IOException {
+      FileLockKey key = new FileLockKey(fileId, pageIndex);
+      if (evictedPages.containsKey(key))
+        return new CacheResult(true, evictedPages.remove(key));
+
+      final OMultiFileSegment multiFileSegment = files.get(fileId);
+      final long startPosition = pageIndex * pageSize;
+      final long endPosition = startPosition + pageSize;
+
+      byte[] content = new byte[pageSize];
+      long dataPointer;
+
+      // file can be extended by several partitions at once, so check and allocation should be atomic
+      synchronized (multiFileSegment) {
+        if (multiFileSegment.getFilledUpTo() >= endPosition) {
+          multiFileSegment.readContinuously(startPosition, content, content.length);
+          dataPointer = directMemory.allocate(content);
+        } else {
+          multiFileSegment.allocateSpaceContinuously((int) (endPosition - multiFileSegment.getFilledUpTo()));
+          dataPointer = directMemory.allocate(content);
+        }
+      }
+
+      return new CacheResult(false, dataPointer);
+    }
+
+    private void evictFileContent(long fileId, long pageIndex, long dataPointer, boolean isDirty) throws IOException {
+      if (isDirty) {
+        if (evictedPages.size() >= writeQueueLength)
+          flushEvictedPages();
+
+        evictedPages.put(new FileLockKey(fileId, pageIndex), dataPointer);
+      } else {
+        directMemory.free(dataPointer);
+      }
+    }
+
+    private void flushEvictedPages() throws IOException {
+      List<Map.Entry<FileLockKey, Long>> sortedPages = new ArrayList<Map.Entry<FileLockKey, Long>>(evictedPages.entrySet());
+      Collections.sort(sortedPages, new Comparator<Map.Entry<FileLockKey, Long>>() {
+        @Override
+        public int compare(Map.Entry<FileLockKey, Long> entryOne, Map.Entry<FileLockKey, Long> entryTwo) {
+          return entryOne.getKey().compareTo(entryTwo.getKey());
+        }
+      });
+
+      for (Map.Entry<FileLockKey, Long> entry : sortedPages) {
+        long evictedDataPointer = entry.getValue();
+        FileLockKey fileLockKey = entry.getKey();
+
+        flushData(fileLockKey.fileId, fileLockKey.pageIndex, evictedDataPointer);
+        dirtyPages.get(fileLockKey.fileId).remove(fileLockKey.pageIndex);
+
+        directMemory.free(evictedDataPointer);
+      }
+
+      evictedPages.clear();
+    }
+
+    private void flushFile(long fileId) throws IOException {
+      final SortedMap<Long, OLogSequenceNumber> fileDirtyPages = dirtyPages.get(fileId);
+      if (fileDirtyPages == null)
+        return;
+
+      for (Iterator<Long> iterator = fileDirtyPages.keySet().iterator(); iterator.hasNext();) {
+        Long pageIndex = iterator.next();
+        LRUEntry lruEntry = get(fileId, pageIndex);
+
+        if (lruEntry == null) {
+          final Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null) {
+            flushData(fileId, pageIndex, dataPointer);
+            iterator.remove();
+            directMemory.free(dataPointer);
+          }
+        } else {
+          if (lruEntry.usageCounter == 0) {
+            flushData(fileId, lruEntry.pageIndex, lruEntry.dataPointer);
+            iterator.remove();
+            lruEntry.isDirty = false;
+          } else {
+            throw new OBlockedPageException("Unable to perform flush file because some pages is in use.");
+          }
+        }
+      }
+    }
+
+    private void closeFile(long fileId) throws IOException {
+      final Set<Long> pageIndexes = filePages.get(fileId);
+      Long[] sortedPageIndexes = new Long[pageIndexes.size()];
+      sortedPageIndexes = pageIndexes.toArray(sortedPageIndexes);
+      Arrays.sort(sortedPageIndexes);
+
+      for (Long pageIndex : sortedPageIndexes) {
+        LRUEntry lruEntry = get(fileId, pageIndex);
+        if (lruEntry != null) {
+          if (lruEntry.usageCounter == 0) {
+            lruEntry = remove(fileId, pageIndex);
+
+            flushData(fileId, pageIndex, lruEntry.dataPointer);
+            dirtyPages.get(fileId).remove(pageIndex);
+
+            directMemory.free(lruEntry.dataPointer);
+          }
+        } else {
+          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null) {
+            flushData(fileId, pageIndex, dataPointer);
+            dirtyPages.get(fileId).remove(pageIndex);
+            directMemory.free(dataPointer);
+          }
+        }
+      }
+
+      pageIndexes.clear();
+    }
+
+    private void truncateFile(long fileId) {
+      final Set<Long> pageEntries = filePages.get(fileId);
+      for (Long pageIndex : pageEntries) {
+        LRUEntry lruEntry = get(fileId, pageIndex);
+        if (lruEntry != null) {
+          if (lruEntry.usageCounter == 0) {
+            lruEntry = remove(fileId, pageIndex);
+            if (lruEntry.dataPointer != ODirectMemory.NULL_POINTER)
+              directMemory.free(lruEntry.dataPointer);
+          }
+        } else {
+          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null)
+            directMemory.free(dataPointer);
+        }
+      }
+
+      dirtyPages.get(fileId).clear();
+      pageEntries.clear();
+    }
+
+    private void clear() {
+      am.clear();
+      a1in.clear();
+      a1out.clear();
+      for (Set<Long> fileEntries : filePages.values())
+        fileEntries.clear();
+      for (SortedMap<Long, OLogSequenceNumber> fileDirtyPages : dirtyPages.values())
+        fileDirtyPages.clear();
+    }
+
+    private void collectDirtyPages(Set<ODirtyPage> logDirtyPages) {
+      for (Map.Entry<Long, SortedMap<Long, OLogSequenceNumber>> fileEntry : dirtyPages.entrySet()) {
+        final String fileName = files.get(fileEntry.getKey()).getName();
+        for (Map.Entry<Long, OLogSequenceNumber> pageEntry : fileEntry.getValue().entrySet())
+          logDirtyPages.add(new ODirtyPage(fileName, pageEntry.getKey(), pageEntry.getValue()));
+      }
+    }
+
+    private LRUEntry get(long fileId, long pageIndex) {
+      LRUEntry lruEntry = am.get(fileId, pageIndex);
+
+      if (lruEntry != null) {
+        return lruEntry;
+      }
+
+      lruEntry = a1in.get(fileId, pageIndex);
+      return lruEntry;
+    }
+
+    private LRUEntry remove(long fileId, long pageIndex) {
+      LRUEntry lruEntry = am.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        if (lruEntry.usageCounter > 1)
+          throw new IllegalStateException("Record cannot be removed because it is used!");
+        return lruEntry;
+      }
+      lruEntry = a1out.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        return lruEntry;
+      }
+      lruEntry = a1in.remove(fileId, pageIndex);
+      if (lruEntry != null && lruEntry.usageCounter > 1)
+        throw new IllegalStateException("Record cannot be removed because it is used!");
+      return lruEntry;
+    }
+  }
+
+  private static class CacheResult {
+    private final boolean isDirty;
+    private final long    dataPointer;
+
+    private CacheResult(boolean dirty, long dataPointer) {
+      isDirty = dirty;
+      this.dataPointer = dataPointer;
+    }
+  }
+
+  private static final class FileLockKey implements Comparable<FileLockKey> {
+    private final long fileId;
+    private final long pageIndex;
+
+    private FileLockKey(long fileId, long pageIndex) {
+      this.fileId = fileId;
+      this.pageIndex = pageIndex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+
+      FileLockKey that = (FileLockKey) o;
+
+      if (fileId != that.fileId)
+        return false;
+      if (pageIndex != that.pageIndex)
+        return false;
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (fileId ^ (fileId >>> 32));
+      result = 31 * result + (int) (pageIndex ^ (pageIndex >>> 32));
+      return result;
+    }
+
+    @Override
+    public int compareTo(FileLockKey otherKey) {
+      if (fileId > otherKey.fileId)
+        return 1;
+      if (fileId < otherKey.fileId)
+        return -1;
+
+      if (pageIndex > otherKey.pageIndex)
+        return 1;
+      if (pageIndex < otherKey.pageIndex)
+        return -1;
+
+      return 0;
+    }
+  }
+}
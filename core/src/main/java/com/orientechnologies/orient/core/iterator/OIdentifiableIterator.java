@@ -29,6 +29,7 @@ import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.OSequentialReadThreadLocal;
 import com.orientechnologies.orient.core.storage.OStorage;
 
 /**
@@ -255,40 +256,47 @@ public abstract class OIdentifiableIterator<REC extends OIdentifiable> implement
       // LIMIT REACHED
       return null;
 
-    do {
-      final boolean moveResult;
-      switch (iMovement) {
-      case 1:
-        moveResult = nextPosition();
-        break;
-      case -1:
-        moveResult = prevPosition();
-        break;
-      case 0:
-        moveResult = checkCurrentPosition();
-        break;
-      default:
-        throw new IllegalStateException("Invalid movement value : " + iMovement);
-      }
-
-      if (!moveResult)
-        return null;
-
-      try {
+    // PAGES OF THE CLUSTER ARE READ IN ORDER OF RECORD POSITIONS
+    final boolean wasSequentialRead = OSequentialReadThreadLocal.INSTANCE.isSequentialRead();
+    OSequentialReadThreadLocal.INSTANCE.set(Boolean.TRUE);
+    try {
+      do {
+        final boolean moveResult;
+        switch (iMovement) {
+        case 1:
+          moveResult = nextPosition();
+          break;
+        case -1:
+          moveResult = prevPosition();
+          break;
+        case 0:
+          moveResult = checkCurrentPosition();
+          break;
+        default:
+          throw new IllegalStateException("Invalid movement value : " + iMovement);
+        }
+
+        if (!moveResult)
+          return null;
+
+        try {
+          if (iRecord != null) {
+            iRecord.setIdentity(new ORecordId(current.clusterId, current.clusterPosition));
+            iRecord = lowLevelDatabase.load(iRecord, fetchPlan, !useCache, iterateThroughTombstones);
+          } else
+            iRecord = lowLevelDatabase.load(current, fetchPlan, !useCache, iterateThroughTombstones);
+        } catch (ODatabaseException e) {
+          OLogManager.instance().error(this, "Error on fetching record during browsing. The record has been skipped", e);
+        }
+
         if (iRecord != null) {
-          iRecord.setIdentity(new ORecordId(current.clusterId, current.clusterPosition));
-          iRecord = lowLevelDatabase.load(iRecord, fetchPlan, !useCache, iterateThroughTombstones);
-        } else
-          iRecord = lowLevelDatabase.load(current, fetchPlan, !useCache, iterateThroughTombstones);
-      } catch (ODatabaseException e) {
-        OLogManager.instance().error(this, "Error on fetching record during browsing. The record has been skipped", e);
-      }
-
-      if (iRecord != null) {
-        browsedRecords++;
-        return iRecord;
-      }
-    } while (iMovement != 0);
+          browsedRecords++;
+          return iRecord;
+        }
+      } while (iMovement != 0);
+    } finally {
+      OSequentialReadThreadLocal.INSTANCE.set(wasSequentialRead);
+    }
 
     return null;
   }
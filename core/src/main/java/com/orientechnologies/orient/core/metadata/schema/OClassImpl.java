@@ -53,6 +53,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
 import com.orientechnologies.orient.core.type.ODocumentWrapper;
 import com.orientechnologies.orient.core.type.ODocumentWrapperNoClass;
 
@@ -1106,6 +1107,10 @@ public class OClassImpl extends ODocumentWrapperNoClass implements OClass {
       prop.setLinkedTypeInternal(iLinkedType);
     else if (iLinkedClass != null)
       prop.setLinkedClassInternal(iLinkedClass);
+
+    if (!(getDatabase().getStorage() instanceof OStorageProxy))
+      // REMOTE CLIENTS GET THE FIELD NAME IDS ASSIGNED BY THE SERVER WITH THE SCHEMA
+      owner.registerFieldName(iName);
     return prop;
   }
 
@@ -170,6 +170,14 @@ public class OSchemaProxy extends OProxedResource<OSchemaShared> implements OSch
     delegate.saveInternal();
   }
 
+  public int getFieldNameId(final String iFieldName) {
+    return delegate.getFieldNameId(iFieldName);
+  }
+
+  public String getFieldName(final int iId) {
+    return delegate.getFieldName(iId);
+  }
+
   public ORID getIdentity() {
     setCurrentDatabaseInThreadLocal();
     return delegate.getIdentity();
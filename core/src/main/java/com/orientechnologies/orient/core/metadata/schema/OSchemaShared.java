@@ -15,11 +15,15 @@
  */
 package com.orientechnologies.orient.core.metadata.schema;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 
 import com.orientechnologies.common.concur.resource.OCloseable;
@@ -54,11 +58,13 @@ import com.orientechnologies.orient.core.type.ODocumentWrapperNoClass;
  */
 @SuppressWarnings("unchecked")
 public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, OCloseable {
-  private static final long     serialVersionUID       = 1L;
+  private static final long             serialVersionUID       = 1L;
 
-  public static final int       CURRENT_VERSION_NUMBER = 4;
-  private static final String   DROP_INDEX_QUERY       = "drop index ";
-  protected Map<String, OClass> classes                = new HashMap<String, OClass>();
+  public static final int               CURRENT_VERSION_NUMBER = 4;
+  private static final String           DROP_INDEX_QUERY       = "drop index ";
+  protected Map<String, OClass>         classes                = new HashMap<String, OClass>();
+  private volatile String[]             fieldNames             = new String[0];
+  private volatile Map<String, Integer> fieldNameIds           = new HashMap<String, Integer>();
 
   public OSchemaShared(final int schemaClusterId) {
     super(new ODocument());
@@ -392,6 +398,40 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
     return (RET) this;
   }
 
+  /**
+   * Returns the id of the field name in the dictionary used by the binary record format, or -1 if it has no id.
+   */
+  public int getFieldNameId(final String iFieldName) {
+    final Integer id = fieldNameIds.get(iFieldName);
+    return id != null ? id.intValue() : -1;
+  }
+
+  /**
+   * Returns the field name with the id in the dictionary used by the binary record format, or null if the id is unknown.
+   */
+  public String getFieldName(final int iId) {
+    final String[] names = fieldNames;
+    return iId >= 0 && iId < names.length ? names[iId] : null;
+  }
+
+  /**
+   * Assigns the next id of the dictionary to the field name. Ids are never reused, so the records written before dropping a
+   * property can still be read.
+   */
+  public synchronized void registerFieldName(final String iFieldName) {
+    if (fieldNameIds.containsKey(iFieldName))
+      return;
+
+    final String[] names = Arrays.copyOf(fieldNames, fieldNames.length + 1);
+    names[names.length - 1] = iFieldName;
+
+    final Map<String, Integer> ids = new HashMap<String, Integer>(fieldNameIds);
+    ids.put(iFieldName, names.length - 1);
+
+    fieldNames = names;
+    fieldNameIds = ids;
+  }
+
   public boolean existsClass(final String iClassName) {
     return getDatabase().getStorage().callInLock(new Callable<Boolean>() {
       @Override
@@ -519,6 +559,18 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
             cls.setSuperClassInternal(superClass);
           }
         }
+
+        final List<String> storedFieldNames = document.field("fieldNames");
+        if (storedFieldNames != null)
+          setFieldNames(storedFieldNames);
+        else {
+          // SCHEMA CREATED BEFORE THE BINARY RECORD FORMAT: ASSIGN THE IDS TO THE PROPERTIES IN THE SAME ORDER EVERYWHERE
+          final Set<String> propertyNames = new TreeSet<String>();
+          for (OClass c : classes.values())
+            for (OProperty p : c.declaredProperties())
+              propertyNames.add(p.getName());
+          setFieldNames(propertyNames);
+        }
         return null;
       }
     }, true);
@@ -544,6 +596,7 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
             cc.add(((OClassImpl) c).toStream());
 
           document.field("classes", cc, OType.EMBEDDEDSET);
+          document.field("fieldNames", new ArrayList<String>(Arrays.asList(fieldNames)), OType.EMBEDDEDLIST);
 
         } finally {
           document.setInternalStatus(ORecordElement.STATUS.LOADED);
@@ -678,6 +731,22 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
   public void close() {
     classes.clear();
     document.clear();
+    fieldNames = new String[0];
+    fieldNameIds = new HashMap<String, Integer>();
+  }
+
+  private synchronized void setFieldNames(final Collection<String> iFieldNames) {
+    if (iFieldNames.size() < fieldNames.length)
+      // NAMES REGISTERED BUT NOT SAVED YET
+      return;
+
+    final String[] names = iFieldNames.toArray(new String[iFieldNames.size()]);
+    final Map<String, Integer> ids = new HashMap<String, Integer>();
+    for (int i = 0; i < names.length; ++i)
+      ids.put(names[i], i);
+
+    fieldNames = names;
+    fieldNameIds = ids;
   }
 
   private void saveInternal(final String iClusterName) {
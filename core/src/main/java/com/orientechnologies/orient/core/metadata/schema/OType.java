@@ -507,6 +507,10 @@ public enum OType {
         + b.getClass() + ")");
   }
 
+  public int getId() {
+    return id;
+  }
+
   public boolean isMultiValue() {
     return this == EMBEDDEDLIST || this == EMBEDDEDMAP || this == EMBEDDEDSET || this == LINKLIST || this == LINKMAP
         || this == LINKSET;
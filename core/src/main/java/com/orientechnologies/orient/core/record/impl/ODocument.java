@@ -69,6 +69,7 @@ import com.orientechnologies.orient.core.record.ORecordSchemaAwareAbstract;
 import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
 
 /**
@@ -428,6 +429,16 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
     return super.toStream();
   }
 
+  @Override
+  public byte[] toStream(final boolean iOnlyDelta) {
+    if (_source == null
+        && (_recordFormat instanceof ORecordSerializerSchemaAware2CSV || _recordFormat instanceof ORecordSerializerBinary))
+      // CHOOSE BETWEEN THE DOCUMENT FORMATS BY THE DATABASE SETTING
+      _recordFormat = ORecordSerializerFactory.instance().getFormat(
+          ORecordSerializerBinary.isEnabledFor(this) ? ORecordSerializerBinary.NAME : ORecordSerializerSchemaAware2CSV.NAME);
+    return super.toStream(iOnlyDelta);
+  }
+
   /**
    * Dumps the instance as string.
    */
@@ -552,6 +563,34 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
     return (RET) ODocumentHelper.getFieldValue(this, iFieldName);
   }
 
+  /**
+   * Returns true if the document has not been unmarshalled yet and its fields can be read one by one from the content with
+   * {@link #peekField(String)}.
+   */
+  public boolean isPeekable() {
+    return _status == ORecordElement.STATUS.LOADED && ORecordSerializerBinary.isBinary(_source);
+  }
+
+  /**
+   * Reads the field value as {@link #rawField(String)} does, but if the document has not been unmarshalled yet the value is read
+   * directly from the content, without unmarshalling the other fields and without keeping the value in the document. Useful to
+   * evaluate conditions and index keys on many records.
+   * 
+   * @param iFieldName
+   *          field name
+   * @return field value if defined, otherwise null
+   */
+  public <RET> RET peekField(final String iFieldName) {
+    if (isPeekable() && (_fieldValues == null || !_fieldValues.containsKey(iFieldName)) && iFieldName.length() > 0
+        && iFieldName.charAt(0) != '@' && OStringSerializerHelper.indexOf(iFieldName, 0, '.', '[') == -1) {
+      final Object value = ORecordSerializerBinary.INSTANCE.readField(_source, iFieldName);
+      if (value != ORecordSerializerBinary.NOT_READABLE)
+        return (RET) value;
+    }
+
+    return rawField(iFieldName);
+  }
+
   /**
    * Reads the field value.
    * 
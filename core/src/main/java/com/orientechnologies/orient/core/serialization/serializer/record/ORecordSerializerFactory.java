@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerJSON;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
 
@@ -39,6 +40,7 @@ public class ORecordSerializerFactory {
 
 		register(ORecordSerializerSchemaAware2CSV.NAME, new ORecordSerializerSchemaAware2CSV());
 		register(ORecordSerializerJSON.NAME, new ORecordSerializerJSON());
+		register(ORecordSerializerBinary.NAME, ORecordSerializerBinary.INSTANCE);
 		register(ORecordSerializerRaw.NAME, defaultRecordFormat);
 	}
 
@@ -0,0 +1,855 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.serialization.serializer.record.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.OUserObject2RecordHandler;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ORecordElement;
+import com.orientechnologies.orient.core.db.record.ORecordLazyMultiValue;
+import com.orientechnologies.orient.core.db.record.OTrackedList;
+import com.orientechnologies.orient.core.db.record.OTrackedMap;
+import com.orientechnologies.orient.core.db.record.OTrackedSet;
+import com.orientechnologies.orient.core.exception.OSerializationException;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OSchemaProxy;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.OSerializationLongIdThreadLocal;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
+
+/**
+ * Compact binary format for documents, an alternative to {@link ORecordSerializerSchemaAware2CSV} selected per database with the
+ * RECORDFORMAT attribute. The content is:
+ * <ul>
+ * <li>a zero byte, that never starts a CSV record, and the format version</li>
+ * <li>the class name</li>
+ * <li>the number of fields and the length of the headers</li>
+ * <li>a header per field: the name, as id of the schema dictionary or inline if it has no id, the type and the length of the
+ * value</li>
+ * <li>the values, in the order of the headers, so a field can be reached by summing the previous lengths</li>
+ * </ul>
+ * Numbers, dates and links are written as variable length integers. The values that have no binary form, such as link collections
+ * or links to records not saved yet, are written as in CSV and flagged in the header. Records in both formats can be read by both
+ * serializers.
+ */
+public class ORecordSerializerBinary implements ORecordSerializer {
+  public static final String                  NAME         = "binary";
+  public static final ORecordSerializerBinary INSTANCE     = new ORecordSerializerBinary();
+
+  /**
+   * Returned by {@link #readField(byte[], String)} when the record must be unmarshalled to read the field.
+   */
+  public static final Object                  NOT_READABLE = new Object();
+
+  private static final byte                   MAGIC        = 0;
+  private static final byte                   VERSION      = 1;
+
+  private static final int                    NULL_VALUE   = 0x80;
+  private static final int                    TEXT_VALUE   = 0x40;
+  private static final int                    TYPED_VALUE  = 0x20;
+  private static final int                    TYPE_MASK    = 0x1f;
+
+  private static final OType[]                TYPES        = new OType[TYPE_MASK + 1];
+  private static final OJVMProfiler           PROFILER     = Orient.instance().getProfiler();
+
+  static {
+    for (OType t : OType.values())
+      TYPES[t.getId()] = t;
+  }
+
+  /**
+   * Returns true if the content has been written by this format.
+   */
+  public static boolean isBinary(final byte[] iSource) {
+    return iSource != null && iSource.length > 1 && iSource[0] == MAGIC;
+  }
+
+  /**
+   * Returns true if the document must be written with this format: it belongs to a class, it is not embedded and the current
+   * database is configured for it. The other documents can be nested as text in other records, so they keep the CSV format.
+   */
+  public static boolean isEnabledFor(final ODocument iDocument) {
+    if (iDocument.getSchemaClass() == null || iDocument.hasOwners())
+      return false;
+
+    final ODatabaseRecord db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    return db != null && !db.isClosed() && NAME.equals(db.getStorage().getConfiguration().getRecordFormat());
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+
+  public ORecordInternal<?> fromStream(final byte[] iSource, final ORecordInternal<?> iRecord, final String[] iFields) {
+    if (!isBinary(iSource))
+      return ORecordSerializerSchemaAware2CSV.INSTANCE.fromStream(iSource, iRecord, iFields);
+
+    final long timer = PROFILER.startChrono();
+    try {
+      readDocument(new BytesContainer(iSource, 0), (ODocument) iRecord, iFields, getSchema());
+      return iRecord;
+    } finally {
+      PROFILER.stopChrono(PROFILER.getProcessMetric("serializer.record.binary.fromStream"), "Deserialize record from binary stream",
+          timer);
+    }
+  }
+
+  /**
+   * Reads the value of a single field without unmarshalling the record: the headers are scanned comparing the names, by id or by
+   * their bytes, and only the value of the field is decoded. Embedded documents and collections belong to the record and values in
+   * CSV form need it to be parsed, so they cannot be read this way.
+   * 
+   * @return the value, null if the field is not present, or {@link #NOT_READABLE} if the record must be unmarshalled to read it
+   */
+  public Object readField(final byte[] iSource, final String iFieldName) {
+    if (!isBinary(iSource) || iSource[1] != VERSION)
+      return NOT_READABLE;
+
+    final OSchemaProxy schema = getSchema();
+    final int fieldId = schema != null ? schema.getFieldNameId(iFieldName) : -1;
+    byte[] fieldNameBytes = null;
+
+    final BytesContainer input = new BytesContainer(iSource, 2);
+    // SKIP THE CLASS NAME
+    final int classNameLength = (int) readVarLong(input);
+    input.offset += classNameLength;
+
+    final int fields = (int) readVarLong(input);
+    final int headersLength = (int) readVarLong(input);
+    int valueOffset = input.offset + headersLength;
+
+    for (int i = 0; i < fields; ++i) {
+      final long id = readSignedVarLong(input);
+      final boolean found;
+      if (id < 0) {
+        final int nameLength = (int) (-id - 1);
+        if (fieldNameBytes == null)
+          fieldNameBytes = OBinaryProtocol.string2bytes(iFieldName);
+        found = equals(iSource, input.offset, nameLength, fieldNameBytes);
+        input.offset += nameLength;
+      } else
+        found = id == fieldId;
+
+      final int flags = input.bytes[input.offset++] & 0xff;
+      final int length = (int) readVarLong(input);
+
+      if (found) {
+        if ((flags & NULL_VALUE) != 0)
+          return null;
+
+        final OType type = TYPES[flags & TYPE_MASK];
+        if ((flags & TEXT_VALUE) != 0 || type == OType.EMBEDDED || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET
+            || type == OType.EMBEDDEDMAP)
+          return NOT_READABLE;
+
+        return readValue(new BytesContainer(iSource, valueOffset), type, length, null, schema);
+      }
+
+      valueOffset += length;
+    }
+
+    // NOT FOUND
+    return null;
+  }
+
+  public byte[] toStream(final ORecordInternal<?> iRecord, final boolean iOnlyDelta) {
+    if (!(iRecord instanceof ODocument))
+      throw new OSerializationException("Cannot marshall a record of type " + iRecord.getClass().getSimpleName());
+
+    final ODocument record = (ODocument) iRecord;
+
+    // CHECK IF THE RECORD IS PENDING TO BE MARSHALLED, AS THE CSV FORMAT DOES
+    if (record.getSerializationId() < 0)
+      record.setSerializationId(ORecordSerializerSchemaAware2CSV.nextSerializationId());
+
+    final Set<Long> marshalledRecords = OSerializationLongIdThreadLocal.INSTANCE.get();
+    final Long identityRecord = record.getSerializationId();
+    if (!marshalledRecords.add(identityRecord))
+      return record.fields() > 0 ? null : new byte[0];
+
+    final long timer = PROFILER.startChrono();
+    try {
+      final ODatabaseRecord db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+      final BytesContainer output = new BytesContainer(64);
+      writeDocument(output, record, iOnlyDelta, getSchema(), db, marshalledRecords);
+
+      // APPEND ZEROS IF NEEDED, AS THE CSV FORMAT DOES WITH BLANKS
+      final float overSize = record.getSchemaClass() != null ? record.getSchemaClass().getOverSize() : 0;
+      final int newSize;
+      if (record.hasOwners())
+        newSize = output.offset;
+      else if (record.getSize() > output.offset)
+        newSize = record.getSize();
+      else if (overSize > 0)
+        newSize = (int) (output.offset * overSize);
+      else
+        newSize = output.offset;
+
+      return Arrays.copyOf(output.bytes, newSize);
+    } finally {
+      marshalledRecords.remove(identityRecord);
+      PROFILER.stopChrono(PROFILER.getProcessMetric("serializer.record.binary.toStream"), "Serialize record to binary stream", timer);
+    }
+  }
+
+  private void writeDocument(final BytesContainer iOutput, final ODocument iRecord, final boolean iOnlyDelta,
+      final OSchemaProxy iSchema, final OUserObject2RecordHandler iObjHandler, final Set<Long> iMarshalledRecords) {
+    writeByte(iOutput, MAGIC);
+    writeByte(iOutput, VERSION);
+
+    final OClass cls = iRecord.getSchemaClass();
+    writeString(iOutput, !iOnlyDelta && cls != null ? cls.getStreamableName() : "");
+
+    final String[] fieldNames = iOnlyDelta && iRecord.isTrackingChanges() ? iRecord.getDirtyFields() : iRecord.fieldNames();
+
+    final BytesContainer headers = new BytesContainer(fieldNames.length * 4 + 1);
+    final BytesContainer values = new BytesContainer(fieldNames.length * 8 + 1);
+    int fields = 0;
+
+    for (String fieldName : fieldNames) {
+      final Object fieldValue = iRecord.rawField(fieldName);
+      final OProperty prop = cls != null ? cls.getProperty(fieldName) : null;
+      final OType fieldType = prop == null ? iRecord.fieldType(fieldName) : null;
+
+      OType type = prop != null ? prop.getType() : fieldType;
+      if (type == null)
+        type = getTypeByValue(fieldValue);
+
+      if (type == OType.TRANSIENT)
+        // TRANSIENT FIELD
+        continue;
+
+      final int begin = values.offset;
+      int flags = fieldType != null ? TYPED_VALUE : 0;
+
+      if (fieldValue == null)
+        flags |= NULL_VALUE | (type != null ? type.getId() : TYPE_MASK);
+      else if (type != null && isNative(type, fieldValue)) {
+        writeValue(values, type, fieldValue, prop != null ? prop.getLinkedType() : null, iSchema, iObjHandler, iMarshalledRecords);
+        flags |= type.getId();
+      } else {
+        // NO BINARY FORM: WRITE IT AS THE CSV FORMAT DOES
+        final StringBuilder buffer = new StringBuilder();
+        type = ORecordSerializerSchemaAware2CSV.INSTANCE.fieldToStream(iRecord, buffer, iObjHandler, fieldName, fieldValue,
+            iMarshalledRecords, true);
+        if (type == null)
+          continue;
+
+        writeBytes(values, OBinaryProtocol.string2bytes(buffer.substring(fieldName.length() + 1)));
+        flags |= TEXT_VALUE | type.getId();
+      }
+
+      writeFieldName(headers, fieldName, iSchema);
+      writeByte(headers, (byte) flags);
+      writeVarLong(headers, values.offset - begin);
+      fields++;
+    }
+
+    writeVarLong(iOutput, fields);
+    writeVarLong(iOutput, headers.offset);
+    writeBytes(iOutput, headers.bytes, headers.offset);
+    writeBytes(iOutput, values.bytes, values.offset);
+  }
+
+  private void readDocument(final BytesContainer iInput, final ODocument iRecord, final String[] iFields,
+      final OSchemaProxy iSchema) {
+    if (iInput.bytes[iInput.offset++] != MAGIC)
+      throw new OSerializationException("Record " + iRecord.getIdentity() + " has not been written in the binary format");
+
+    final byte version = iInput.bytes[iInput.offset++];
+    if (version != VERSION)
+      throw new OSerializationException("Binary record format version " + version + " of record " + iRecord.getIdentity()
+          + " is not supported");
+
+    final String className = readString(iInput);
+    iRecord.setClassNameIfExists(className.length() > 0 ? className : null);
+
+    if (iFields != null && iFields.length == 1 && iFields[0].equals("@class"))
+      // ONLY THE CLASS NAME HAS BEEN REQUESTED: RETURN NOW WITHOUT UNMARSHALL THE ENTIRE RECORD
+      return;
+
+    final int fields = (int) readVarLong(iInput);
+    final int headersLength = (int) readVarLong(iInput);
+    int valueOffset = iInput.offset + headersLength;
+
+    final OClass cls = iRecord.getSchemaClass();
+
+    for (int i = 0; i < fields; ++i) {
+      final String fieldName = readFieldName(iInput, iSchema);
+      final int flags = iInput.bytes[iInput.offset++] & 0xff;
+      final int length = (int) readVarLong(iInput);
+
+      final int begin = valueOffset;
+      valueOffset += length;
+
+      if (iRecord.containsField(fieldName))
+        // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
+        continue;
+
+      if (iFields != null && iFields.length > 0 && !isRequested(iFields, fieldName))
+        // SKIP IT
+        continue;
+
+      try {
+        final OType type = TYPES[flags & TYPE_MASK];
+        final OProperty prop = cls != null ? cls.getProperty(fieldName) : null;
+
+        final Object value;
+        if ((flags & NULL_VALUE) != 0)
+          value = null;
+        else if ((flags & TEXT_VALUE) != 0)
+          value = ORecordSerializerSchemaAware2CSV.INSTANCE.fieldFromStream(iRecord, type, prop != null ? prop.getLinkedClass()
+              : null, prop != null ? prop.getLinkedType() : null, fieldName, OBinaryProtocol.bytes2string(iInput.bytes, begin, length));
+        else
+          value = readValue(new BytesContainer(iInput.bytes, begin), type, length, iRecord, iSchema);
+
+        if ((flags & TYPED_VALUE) != 0 || type == OType.EMBEDDED || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET
+            || type == OType.EMBEDDEDMAP)
+          // SAVE THE TYPE AS THE CSV FORMAT DOES
+          iRecord.field(fieldName, value, type);
+        else
+          iRecord.field(fieldName, value);
+
+      } catch (Exception e) {
+        OLogManager.instance().exception("Error on unmarshalling field '%s' in record %s", e, OSerializationException.class,
+            fieldName, iRecord.getIdentity());
+      }
+    }
+  }
+
+  private static boolean equals(final byte[] iSource, final int iOffset, final int iLength, final byte[] iOther) {
+    if (iLength != iOther.length)
+      return false;
+    for (int i = 0; i < iLength; ++i)
+      if (iSource[iOffset + i] != iOther[i])
+        return false;
+    return true;
+  }
+
+  private static boolean isRequested(final String[] iFields, final String iFieldName) {
+    for (String f : iFields)
+      if (f.equals(iFieldName))
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns the type of a field not declared in the schema, or null if it cannot be written in binary form.
+   */
+  private static OType getTypeByValue(final Object iValue) {
+    if (iValue == null)
+      return null;
+
+    final OType type = getItemType(iValue, null);
+    if (type != null)
+      return type;
+
+    if (iValue instanceof ODocument)
+      return ((ODocument) iValue).hasOwners() ? OType.EMBEDDED : OType.LINK;
+    else if (iValue instanceof ORID || iValue instanceof ORecord<?>)
+      return OType.LINK;
+    else if (iValue instanceof Collection<?> && !((Collection<?>) iValue).isEmpty())
+      // EMPTY COLLECTIONS ARE LEFT TO THE CSV FORMAT THAT KNOWS HOW TO TREAT THEIR UNCERTAIN TYPE
+      return iValue instanceof Set<?> ? OType.EMBEDDEDSET : OType.EMBEDDEDLIST;
+    else if (iValue instanceof Map<?, ?> && !((Map<?, ?>) iValue).isEmpty())
+      return OType.EMBEDDEDMAP;
+
+    return null;
+  }
+
+  /**
+   * Returns the type of a value allowed in embedded collections, or null if it has no binary form.
+   */
+  private static OType getItemType(final Object iValue, final OType iLinkedType) {
+    if (iValue instanceof String)
+      return OType.STRING;
+    else if (iValue instanceof Integer)
+      return OType.INTEGER;
+    else if (iValue instanceof Long)
+      return OType.LONG;
+    else if (iValue instanceof Double)
+      return OType.DOUBLE;
+    else if (iValue instanceof Float)
+      return OType.FLOAT;
+    else if (iValue instanceof Short)
+      return OType.SHORT;
+    else if (iValue instanceof Byte)
+      return OType.BYTE;
+    else if (iValue instanceof Boolean)
+      return OType.BOOLEAN;
+    else if (iValue instanceof Date)
+      return iLinkedType == OType.DATE ? OType.DATE : OType.DATETIME;
+    else if (iValue instanceof BigDecimal)
+      return OType.DECIMAL;
+    else if (iValue instanceof byte[])
+      return OType.BINARY;
+    return null;
+  }
+
+  private static boolean isNative(final OType iType, final Object iValue) {
+    switch (iType) {
+    case BOOLEAN:
+      return iValue instanceof Boolean;
+    case BYTE:
+    case SHORT:
+    case INTEGER:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+      return iValue instanceof Number && !(iValue instanceof BigDecimal) && !(iValue instanceof BigInteger);
+    case DECIMAL:
+      return iValue instanceof BigDecimal;
+    case DATE:
+    case DATETIME:
+      return iValue instanceof Date;
+    case STRING:
+      return iValue instanceof String;
+    case BINARY:
+      return iValue instanceof byte[];
+    case LINK:
+      // ONLY SAVED RECORDS: THE OTHERS ARE SAVED BY THE CSV FORMAT BEFORE WRITING THE LINK
+      if (iValue instanceof ORID)
+        return ((ORID) iValue).isPersistent();
+      return iValue instanceof ORecord<?> && !(iValue instanceof ODocument && ((ODocument) iValue).isEmbedded())
+          && ((ORecord<?>) iValue).getIdentity().isPersistent() && !((ORecord<?>) iValue).isDirty();
+    case EMBEDDED:
+      return iValue instanceof ODocument;
+    case EMBEDDEDLIST:
+    case EMBEDDEDSET:
+      if (!(iValue instanceof Collection<?>) || iValue instanceof ORecordLazyMultiValue || iValue instanceof OMVRBTreeRIDSet)
+        return false;
+      for (Object item : (Collection<?>) iValue)
+        if (item != null && getItemType(item, null) == null)
+          return false;
+      return true;
+    case EMBEDDEDMAP:
+      if (!(iValue instanceof Map<?, ?>) || iValue instanceof ORecordLazyMultiValue)
+        return false;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) iValue).entrySet())
+        if (!(entry.getKey() instanceof String) || entry.getValue() != null && getItemType(entry.getValue(), null) == null)
+          return false;
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private void writeValue(final BytesContainer iOutput, final OType iType, final Object iValue, final OType iLinkedType,
+      final OSchemaProxy iSchema, final OUserObject2RecordHandler iObjHandler, final Set<Long> iMarshalledRecords) {
+    switch (iType) {
+    case EMBEDDED:
+      writeDocument(iOutput, (ODocument) iValue, false, iSchema, iObjHandler, iMarshalledRecords);
+      break;
+
+    case EMBEDDEDLIST:
+    case EMBEDDEDSET: {
+      final Collection<?> items = (Collection<?>) iValue;
+      writeVarLong(iOutput, items.size());
+      for (Object item : items)
+        writeItem(iOutput, item, iLinkedType);
+      break;
+    }
+
+    case EMBEDDEDMAP: {
+      final Map<?, ?> map = (Map<?, ?>) iValue;
+      writeVarLong(iOutput, map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(iOutput, (String) entry.getKey());
+        writeItem(iOutput, entry.getValue(), iLinkedType);
+      }
+      break;
+    }
+
+    case STRING:
+      writeBytes(iOutput, OBinaryProtocol.string2bytes((String) iValue));
+      break;
+
+    case BINARY:
+      writeBytes(iOutput, (byte[]) iValue);
+      break;
+
+    default:
+      writeSimpleValue(iOutput, iType, iValue);
+    }
+  }
+
+  private Object readValue(final BytesContainer iInput, final OType iType, final int iLength, final ODocument iRecord,
+      final OSchemaProxy iSchema) {
+    switch (iType) {
+    case EMBEDDED: {
+      final ODocument document = new ODocument();
+      document.setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
+      readDocument(iInput, document, null, iSchema);
+      document.setInternalStatus(ORecordElement.STATUS.LOADED);
+      document.unsetDirty();
+      return document.addOwner(iRecord);
+    }
+
+    case EMBEDDEDLIST:
+    case EMBEDDEDSET: {
+      final Collection<Object> items = iType == OType.EMBEDDEDLIST ? new OTrackedList<Object>(iRecord) : new OTrackedSet<Object>(
+          iRecord);
+      ((ORecordElement) items).setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
+      for (int size = (int) readVarLong(iInput); size > 0; --size)
+        items.add(readItem(iInput));
+      ((ORecordElement) items).setInternalStatus(ORecordElement.STATUS.LOADED);
+      return items;
+    }
+
+    case EMBEDDEDMAP: {
+      final OTrackedMap<Object> map = new OTrackedMap<Object>(iRecord);
+      map.setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
+      for (int size = (int) readVarLong(iInput); size > 0; --size)
+        map.put(readString(iInput), readItem(iInput));
+      map.setInternalStatus(ORecordElement.STATUS.LOADED);
+      return map;
+    }
+
+    case STRING:
+      return OBinaryProtocol.bytes2string(iInput.bytes, iInput.offset, iLength);
+
+    case BINARY:
+      return Arrays.copyOfRange(iInput.bytes, iInput.offset, iInput.offset + iLength);
+
+    default:
+      return readSimpleValue(iInput, iType);
+    }
+  }
+
+  private static void writeItem(final BytesContainer iOutput, final Object iValue, final OType iLinkedType) {
+    if (iValue == null) {
+      writeByte(iOutput, (byte) (NULL_VALUE | TYPE_MASK));
+      return;
+    }
+
+    final OType type = getItemType(iValue, iLinkedType);
+    writeByte(iOutput, (byte) type.getId());
+
+    if (type == OType.STRING)
+      writeString(iOutput, (String) iValue);
+    else if (type == OType.BINARY) {
+      writeVarLong(iOutput, ((byte[]) iValue).length);
+      writeBytes(iOutput, (byte[]) iValue);
+    } else
+      writeSimpleValue(iOutput, type, iValue);
+  }
+
+  private static Object readItem(final BytesContainer iInput) {
+    final int flags = iInput.bytes[iInput.offset++] & 0xff;
+    if ((flags & NULL_VALUE) != 0)
+      return null;
+
+    final OType type = TYPES[flags & TYPE_MASK];
+    if (type == OType.STRING)
+      return readString(iInput);
+    else if (type == OType.BINARY) {
+      final int length = (int) readVarLong(iInput);
+      iInput.offset += length;
+      return Arrays.copyOfRange(iInput.bytes, iInput.offset - length, iInput.offset);
+    }
+    return readSimpleValue(iInput, type);
+  }
+
+  /**
+   * Writes the values that need no length: numbers, dates and links.
+   */
+  private static void writeSimpleValue(final BytesContainer iOutput, final OType iType, final Object iValue) {
+    switch (iType) {
+    case BOOLEAN:
+      writeByte(iOutput, (byte) (((Boolean) iValue).booleanValue() ? 1 : 0));
+      break;
+
+    case BYTE:
+      writeByte(iOutput, ((Number) iValue).byteValue());
+      break;
+
+    case SHORT:
+    case INTEGER:
+    case LONG:
+      writeSignedVarLong(iOutput, ((Number) iValue).longValue());
+      break;
+
+    case FLOAT:
+      writeFixedLong(iOutput, Float.floatToIntBits(((Number) iValue).floatValue()), 4);
+      break;
+
+    case DOUBLE:
+      writeFixedLong(iOutput, Double.doubleToLongBits(((Number) iValue).doubleValue()), 8);
+      break;
+
+    case DECIMAL: {
+      final BigDecimal decimal = (BigDecimal) iValue;
+      final byte[] unscaled = decimal.unscaledValue().toByteArray();
+      writeSignedVarLong(iOutput, decimal.scale());
+      writeVarLong(iOutput, unscaled.length);
+      writeBytes(iOutput, unscaled);
+      break;
+    }
+
+    case DATE: {
+      // RESET HOURS, MINUTES, SECONDS AND MILLISECONDS AS THE CSV FORMAT DOES
+      final Calendar calendar = Calendar.getInstance();
+      calendar.setTime((Date) iValue);
+      calendar.set(Calendar.HOUR_OF_DAY, 0);
+      calendar.set(Calendar.MINUTE, 0);
+      calendar.set(Calendar.SECOND, 0);
+      calendar.set(Calendar.MILLISECOND, 0);
+      writeSignedVarLong(iOutput, calendar.getTimeInMillis());
+      break;
+    }
+
+    case DATETIME:
+      writeSignedVarLong(iOutput, ((Date) iValue).getTime());
+      break;
+
+    case LINK: {
+      final ORID rid = iValue instanceof ORID ? (ORID) iValue : ((ORecord<?>) iValue).getIdentity();
+      writeSignedVarLong(iOutput, rid.getClusterId());
+      final OClusterPosition position = rid.getClusterPosition();
+      if (OClusterPositionFactory.INSTANCE.getSerializedSize() == OLongSerializer.LONG_SIZE)
+        writeSignedVarLong(iOutput, position.longValue());
+      else
+        writeBytes(iOutput, position.toStream());
+      break;
+    }
+
+    default:
+      throw new OSerializationException("Type " + iType + " has no binary form");
+    }
+  }
+
+  private static Object readSimpleValue(final BytesContainer iInput, final OType iType) {
+    switch (iType) {
+    case BOOLEAN:
+      return iInput.bytes[iInput.offset++] != 0;
+
+    case BYTE:
+      return iInput.bytes[iInput.offset++];
+
+    case SHORT:
+      return (short) readSignedVarLong(iInput);
+
+    case INTEGER:
+      return (int) readSignedVarLong(iInput);
+
+    case LONG:
+      return readSignedVarLong(iInput);
+
+    case FLOAT:
+      return Float.intBitsToFloat((int) readFixedLong(iInput, 4));
+
+    case DOUBLE:
+      return Double.longBitsToDouble(readFixedLong(iInput, 8));
+
+    case DECIMAL: {
+      final int scale = (int) readSignedVarLong(iInput);
+      final int length = (int) readVarLong(iInput);
+      iInput.offset += length;
+      return new BigDecimal(new BigInteger(Arrays.copyOfRange(iInput.bytes, iInput.offset - length, iInput.offset)), scale);
+    }
+
+    case DATE:
+    case DATETIME:
+      return new Date(readSignedVarLong(iInput));
+
+    case LINK: {
+      final int clusterId = (int) readSignedVarLong(iInput);
+      final OClusterPosition position;
+      if (OClusterPositionFactory.INSTANCE.getSerializedSize() == OLongSerializer.LONG_SIZE)
+        position = OClusterPositionFactory.INSTANCE.valueOf(readSignedVarLong(iInput));
+      else {
+        position = OClusterPositionFactory.INSTANCE.fromStream(iInput.bytes, iInput.offset);
+        iInput.offset += OClusterPositionFactory.INSTANCE.getSerializedSize();
+      }
+      return new ORecordId(clusterId, position);
+    }
+
+    default:
+      throw new OSerializationException("Type " + iType + " has no binary form");
+    }
+  }
+
+  private static void writeFieldName(final BytesContainer iOutput, final String iFieldName, final OSchemaProxy iSchema) {
+    final int id = iSchema != null ? iSchema.getFieldNameId(iFieldName) : -1;
+    if (id > -1)
+      writeSignedVarLong(iOutput, id);
+    else {
+      // NOT IN THE DICTIONARY: WRITE THE NAME, WITH THE LENGTH AS NEGATIVE NUMBER
+      final byte[] bytes = OBinaryProtocol.string2bytes(iFieldName);
+      writeSignedVarLong(iOutput, -bytes.length - 1);
+      writeBytes(iOutput, bytes);
+    }
+  }
+
+  private static String readFieldName(final BytesContainer iInput, final OSchemaProxy iSchema) {
+    final long id = readSignedVarLong(iInput);
+    if (id < 0) {
+      final int length = (int) (-id - 1);
+      iInput.offset += length;
+      return OBinaryProtocol.bytes2string(iInput.bytes, iInput.offset - length, length);
+    }
+
+    if (iSchema == null)
+      throw new OSerializationException("Cannot read the field name with id " + id + " without an open database");
+
+    String fieldName = iSchema.getFieldName((int) id);
+    if (fieldName == null) {
+      // ASSIGNED BY ANOTHER CLIENT OR SERVER: RELOAD THE SCHEMA
+      iSchema.reload();
+      fieldName = iSchema.getFieldName((int) id);
+      if (fieldName == null)
+        throw new OSerializationException("Field name with id " + id + " not found in the schema");
+    }
+    return fieldName;
+  }
+
+  private static OSchemaProxy getSchema() {
+    final ODatabaseRecord db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    if (db == null || db.isClosed() || db.getMetadata() == null)
+      return null;
+
+    final OSchema schema = db.getMetadata().getSchema();
+    return schema instanceof OSchemaProxy ? (OSchemaProxy) schema : null;
+  }
+
+  private static void writeString(final BytesContainer iOutput, final String iValue) {
+    final byte[] bytes = OBinaryProtocol.string2bytes(iValue);
+    writeVarLong(iOutput, bytes.length);
+    writeBytes(iOutput, bytes);
+  }
+
+  private static String readString(final BytesContainer iInput) {
+    final int length = (int) readVarLong(iInput);
+    iInput.offset += length;
+    return OBinaryProtocol.bytes2string(iInput.bytes, iInput.offset - length, length);
+  }
+
+  private static void writeBytes(final BytesContainer iOutput, final byte[] iBytes) {
+    writeBytes(iOutput, iBytes, iBytes.length);
+  }
+
+  private static void writeBytes(final BytesContainer iOutput, final byte[] iBytes, final int iLength) {
+    // ALLOCATE BEFORE READING THE BUFFER: IT COULD BE REPLACED BY A BIGGER ONE
+    final int pos = iOutput.alloc(iLength);
+    System.arraycopy(iBytes, 0, iOutput.bytes, pos, iLength);
+  }
+
+  private static void writeByte(final BytesContainer iOutput, final byte iValue) {
+    final int pos = iOutput.alloc(1);
+    iOutput.bytes[pos] = iValue;
+  }
+
+  private static void writeFixedLong(final BytesContainer iOutput, final long iValue, final int iSize) {
+    final int pos = iOutput.alloc(iSize);
+    for (int i = 0; i < iSize; ++i)
+      iOutput.bytes[pos + i] = (byte) (iValue >>> ((iSize - i - 1) << 3));
+  }
+
+  private static long readFixedLong(final BytesContainer iInput, final int iSize) {
+    long value = 0;
+    for (int i = 0; i < iSize; ++i)
+      value = (value << 8) | (iInput.bytes[iInput.offset++] & 0xff);
+    return value;
+  }
+
+  /**
+   * Writes an unsigned number in 7 bits groups, the lowest first, with the high bit set in all the bytes but the last.
+   */
+  private static void writeVarLong(final BytesContainer iOutput, long iValue) {
+    while ((iValue & ~0x7FL) != 0) {
+      writeByte(iOutput, (byte) ((iValue & 0x7F) | 0x80));
+      iValue >>>= 7;
+    }
+    writeByte(iOutput, (byte) iValue);
+  }
+
+  private static long readVarLong(final BytesContainer iInput) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63)
+        throw new OSerializationException("Variable length number too long");
+      b = iInput.bytes[iInput.offset++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  /**
+   * Writes a signed number with the zig-zag encoding, so small negative numbers take few bytes too.
+   */
+  private static void writeSignedVarLong(final BytesContainer iOutput, final long iValue) {
+    writeVarLong(iOutput, (iValue << 1) ^ (iValue >> 63));
+  }
+
+  private static long readSignedVarLong(final BytesContainer iInput) {
+    final long value = readVarLong(iInput);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static final class BytesContainer {
+    private byte[] bytes;
+    private int    offset;
+
+    private BytesContainer(final int iSize) {
+      bytes = new byte[iSize];
+    }
+
+    private BytesContainer(final byte[] iSource, final int iOffset) {
+      bytes = iSource;
+      offset = iOffset;
+    }
+
+    /**
+     * Reserves the bytes at the end, growing the buffer if needed, and returns the position of the first one.
+     */
+    private int alloc(final int iSize) {
+      final int begin = offset;
+      offset += iSize;
+      if (offset > bytes.length)
+        bytes = Arrays.copyOf(bytes, Math.max(offset, bytes.length << 1));
+      return begin;
+    }
+  }
+}
@@ -48,6 +48,14 @@ public class OCommandExecutorSQLExplain extends OCommandExecutorSQLDelegate {
 
 		report.field("elapsed", (System.nanoTime() - startTime) / 1000000000f);
 
+		// RECORDS FETCHED BY THE INDEXES OR BY THE SCAN, TO COMPARE WITH THE ESTIMATED ROWS
+		final Object indexReads = report.field("indexReads");
+		final Object documentReads = report.field("documentReads");
+		if (indexReads != null)
+			report.field("actualRows", indexReads);
+		else if (documentReads != null)
+			report.field("actualRows", documentReads);
+
 		if (result instanceof Collection<?>) {
 			report.field("resultType", "collection");
 			report.field("resultSize", ((Collection<?>) result).size());
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -285,7 +286,14 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
   }
 
   protected boolean filter(final ORecordInternal<?> iRecord) {
-    context.setVariable("current", iRecord);
+    return filter(iRecord, context);
+  }
+
+  /**
+   * Filters the record using the variables of the passed context. Parallel scans use a context per thread.
+   */
+  protected boolean filter(final ORecordInternal<?> iRecord, final OCommandContext iContext) {
+    iContext.setVariable("current", iRecord);
 
     if (iRecord instanceof ORecordSchemaAware<?>) {
       // CHECK THE TARGET CLASS
@@ -297,18 +305,22 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
           if (!targetClass.isSuperClassOf(recordSchemaAware.getSchemaClass()))
             return false;
         }
-        context.updateMetric("documentAnalyzedCompatibleClass", +1);
+        iContext.updateMetric("documentAnalyzedCompatibleClass", +1);
       }
     }
 
-    return evaluateRecord(iRecord);
+    return evaluateRecord(iRecord, iContext);
   }
 
   protected boolean evaluateRecord(final ORecord<?> iRecord) {
+    return evaluateRecord(iRecord, context);
+  }
+
+  protected boolean evaluateRecord(final ORecord<?> iRecord, final OCommandContext iContext) {
     assignLetClauses(iRecord);
     if (compiledFilter == null)
       return true;
-    return (Boolean) compiledFilter.evaluate(iRecord, null, context);
+    return (Boolean) compiledFilter.evaluate(iRecord, null, iContext);
   }
 
   protected void assignLetClauses(final ORecord<?> iRecord) {
@@ -410,6 +422,18 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
 
         t.clear();
         tempResult = newList;
+      } else {
+        // LAZY RESULT: BROWSE IT UP TO THE LIMIT
+        int toSkip = skip;
+        for (OIdentifiable o : tempResult) {
+          if (toSkip > 0)
+            toSkip--;
+          else if (limit > 0 && newList.size() >= limit)
+            break;
+          else
+            newList.add(o);
+        }
+        tempResult = newList;
       }
     }
   }
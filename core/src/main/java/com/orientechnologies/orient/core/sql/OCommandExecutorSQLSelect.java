@@ -15,14 +15,15 @@
  */
 package com.orientechnologies.orient.core.sql;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,11 +37,14 @@ import com.orientechnologies.common.concur.resource.OSharedResource;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.util.OPair;
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.command.OCommandRequest;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.OQueryParsingException;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
@@ -72,7 +76,9 @@ import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajorEquals;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinor;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinorEquals;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorOr;
+import com.orientechnologies.orient.core.storage.OAutoshardedStorage;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
@@ -92,6 +98,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   public static final String          KEYWORD_BY                        = "BY";
   public static final String          KEYWORD_GROUP                     = "GROUP";
   private static final int            MIN_THRESHOLD_USE_INDEX_AS_TARGET = 100;
+  private static final double         INDEX_ENTRY_COST                  = 0.1;
+  private static final int            MAX_INTERSECTED_INDEXES           = 3;
+  private static final int            MIN_INTERSECTION_FETCH_LIMIT      = 1000;
 
   private Map<String, String>         projectionDefinition              = null;
   private Map<String, Object>         projections                       = null;    // THIS HAS BEEN KEPT FOR COMPATIBILITY; BUT
@@ -105,6 +114,8 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   private int                         fetchLimit                        = -1;
   private OIdentifiable               lastRecord;
   private Iterator<OIdentifiable>     subIterator;
+  private OOrderByCollector           orderByCollector;
+  private OGroupByAggregator          groupByAggregator;
 
   /**
    * Compile the filter conditions only the first time.
@@ -317,17 +328,31 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     if (timeoutMs > 0)
       getContext().beginExecution(timeoutMs, timeoutStrategy);
 
-    if (!optimizeExecution()) {
-      fetchLimit = getQueryFetchLimit();
+    try {
+      if (!optimizeExecution()) {
+        fetchLimit = getQueryFetchLimit();
+        orderByCollector = createOrderByCollector();
+        groupByAggregator = createGroupByAggregator();
 
-      executeSearch(iArgs);
-      applyExpand();
-      handleNoTarget();
-      handleGroupBy();
-      applyOrderBy();
-      applyLimitAndSkip();
+        executeSearch(iArgs);
+        applyExpand();
+        handleNoTarget();
+        handleGroupBy();
+        applyOrderBy();
+        applyLimitAndSkip();
+      }
+      return getResult();
+    } finally {
+      // REMOVES THE RUNS SPILLED ON DISK ALSO WHEN THE RESULT WAS NOT BROWSED TILL THE END
+      if (orderByCollector != null) {
+        orderByCollector.close();
+        orderByCollector = null;
+      }
+      if (groupByAggregator != null) {
+        groupByAggregator.close();
+        groupByAggregator = null;
+      }
     }
-    return getResult();
   }
 
   protected void executeSearch(final Map<Object, Object> iArgs) {
@@ -342,10 +367,21 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       return;
     }
 
-    // BROWSE ALL THE RECORDS
-    while (target.hasNext())
-      if (!executeSearchRecord(target.next()))
-        break;
+    if (target instanceof OParallelClusterScan) {
+      final OParallelClusterScan scan = (OParallelClusterScan) target;
+      try {
+        // RECORDS ARE ALREADY FILTERED BY THE SCAN
+        while (scan.hasNext())
+          if (!executeSearchFilteredRecord(scan.next()))
+            break;
+      } finally {
+        scan.close();
+      }
+    } else
+      // BROWSE ALL THE RECORDS
+      while (target.hasNext())
+        if (!executeSearchRecord(target.next()))
+          break;
 
     if (request.getResultListener() != null)
       request.getResultListener().end();
@@ -388,6 +424,17 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return true;
   }
 
+  protected boolean executeSearchFilteredRecord(final OIdentifiable iRecord) {
+    if (Thread.interrupted())
+      throw new OCommandExecutionException("The select execution has been interrupted");
+
+    if (!context.checkTimeout())
+      return false;
+
+    context.setVariable("current", iRecord);
+    return handleResult(iRecord, true);
+  }
+
   protected boolean handleResult(final OIdentifiable iRecord, final boolean iCloneIt) {
     lastRecord = null;
 
@@ -424,32 +471,10 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
           return;
       } else {
         // AGGREGATION/GROUP BY
-        final ODocument doc = (ODocument) iRecord.getRecord();
-        Object fieldValue = null;
-        if (groupByFields != null && !groupByFields.isEmpty()) {
-          if (groupByFields.size() > 1) {
-            // MULTI-FIELD FROUP BY
-            final Object[] fields = new Object[groupByFields.size()];
-            for (int i = 0; i < groupByFields.size(); ++i) {
-              final String field = groupByFields.get(i);
-              if (field.startsWith("$"))
-                fields[i] = context.getVariable(field);
-              else
-                fields[i] = doc.field(field);
-            }
-            fieldValue = fields;
-          } else {
-            final String field = groupByFields.get(0);
-            if (field != null) {
-              if (field.startsWith("$"))
-                fieldValue = context.getVariable(field);
-              else
-                fieldValue = doc.field(field);
-            }
-          }
-        }
-
-        getProjectionGroup(fieldValue).applyRecord(iRecord);
+        if (groupByAggregator != null)
+          groupByAggregator.add(iRecord, resultCount);
+        else
+          getProjectionGroup(getGroupByKey(groupByFields, (ODocument) iRecord.getRecord(), context)).applyRecord(iRecord);
         return;
       }
     }
@@ -459,6 +484,10 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       if (request.getResultListener() != null)
         request.getResultListener().result(iRecord);
 
+    } else if (orderByCollector != null && expandTarget == null) {
+      // ORDER THE RECORDS WHILE THEY ARE COLLECTED
+      orderByCollector.add(iRecord);
+
     } else {
 
       // COLLECT ALL THE RECORDS AND ORDER THEM AT THE END
@@ -468,40 +497,43 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     }
   }
 
+  /**
+   * Returns the key of the group of a record: the value of the GROUP BY field, or the list of the values with more fields.
+   * Fields starting with '$' are variables of the context.
+   */
+  static Object getGroupByKey(final List<String> iGroupByFields, final ODocument iRecord, final OCommandContext iContext) {
+    if (iGroupByFields == null || iGroupByFields.isEmpty())
+      return null;
+
+    if (iGroupByFields.size() > 1) {
+      // MULTI-FIELD FROUP BY
+      final Object[] fields = new Object[iGroupByFields.size()];
+      for (int i = 0; i < iGroupByFields.size(); ++i) {
+        final String field = iGroupByFields.get(i);
+        if (field.startsWith("$"))
+          fields[i] = iContext.getVariable(field);
+        else
+          fields[i] = iRecord.field(field);
+      }
+      return Arrays.asList(fields);
+    }
+
+    final String field = iGroupByFields.get(0);
+    if (field == null)
+      return null;
+    if (field.startsWith("$"))
+      return iContext.getVariable(field);
+    return iRecord.field(field);
+  }
+
   protected ORuntimeResult getProjectionGroup(final Object fieldValue) {
     ORuntimeResult group = null;
 
     if (groupedResult == null)
       groupedResult = new LinkedHashMap<Object, ORuntimeResult>();
-    else {
-      if (fieldValue != null && fieldValue.getClass().isArray()) {
-        // SEQUENTIAL SCAN
-        final int arraySize = Array.getLength(fieldValue);
-        for (Entry<Object, ORuntimeResult> entry : groupedResult.entrySet()) {
-          final Object k = entry.getKey();
-
-          boolean same = false;
-
-          if (k != null && k.getClass().isArray() && Array.getLength(k) == arraySize) {
-            same = true;
-            for (int i = 0; i < arraySize; ++i) {
-              final Object o1 = Array.get(k, i);
-              final Object o2 = Array.get(fieldValue, i);
-
-              if (o1 == null && o2 != null || o1 != null && o2 == null || o1 != null && !o1.equals(o2)) {
-                same = false;
-                break;
-              }
-            }
-          }
-
-          if (same)
-            group = entry.getValue();
-        }
-      } else
-        // LOKUP FOR THE FIELD
-        group = groupedResult.get(fieldValue);
-    }
+    else
+      // LOKUP FOR THE FIELD. MULTI-FIELD KEYS ARE LISTS, SO THEY ARE HASHED BY CONTENT
+      group = groupedResult.get(fieldValue);
 
     if (group == null) {
       group = new ORuntimeResult(createProjectionFromDefinition(), resultCount, context);
@@ -510,6 +542,34 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return group;
   }
 
+  /**
+   * Creates the collector of the records to order. With LIMIT only the first SKIP + LIMIT records are kept, otherwise they are
+   * spilled on disk once {@link OGlobalConfiguration#QUERY_ORDERBY_MAX_MEMORY_RECORDS} is reached.
+   */
+  private OOrderByCollector createOrderByCollector() {
+    if (orderedFields == null || orderedFields.isEmpty() || expandTarget != null || groupByFields != null)
+      return null;
+
+    final int maxResults = limit > 0 ? (int) Math.min((long) Math.max(skip, 0) + limit, Integer.MAX_VALUE) : -1;
+    final int maxMemoryRecords = maxResults == -1 && skip <= 0 ? OGlobalConfiguration.QUERY_ORDERBY_MAX_MEMORY_RECORDS
+        .getValueAsInteger() : -1;
+
+    return new OOrderByCollector(orderedFields, maxResults, maxMemoryRecords);
+  }
+
+  /**
+   * Creates the hash aggregator of the groups if the projections are only fields and aggregates it supports. Not used against
+   * distributed storages, where the functions return partial results to merge.
+   */
+  private OGroupByAggregator createGroupByAggregator() {
+    if (groupByFields == null || groupByFields.isEmpty() || groupedResult == null
+        || getDatabase().getStorage() instanceof OAutoshardedStorage)
+      return null;
+
+    return OGroupByAggregator.create(projections, groupByFields, context,
+        OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.getValueAsInteger());
+  }
+
   private int getQueryFetchLimit() {
     if (orderedFields != null) {
       return -1;
@@ -606,10 +666,37 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     if (searchForIndexes(cls)) {
       // final OJVMProfiler profiler = Orient.instance().getProfiler();
       // profiler.updateCounter(profiler.getDatabaseMetrics(getDatabase().getName(), "query.indexUsed"), 1);
-    } else
+    } else if (!searchInClustersInParallel(cls.getPolymorphicClusterIds()))
       super.searchInClasses();
   }
 
+  /**
+   * Scans the clusters in parallel if enabled by {@link OGlobalConfiguration#QUERY_PARALLEL_SCAN_THREADS}. Records are returned in
+   * cluster order, unless the query sorts or aggregates them.
+   * 
+   * @return true if the target has been assigned to a parallel scan
+   */
+  private boolean searchInClustersInParallel(final int[] iClusterIds) {
+    final int threads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger();
+    if (threads < 2 || iClusterIds.length == 0 || let != null || OParallelClusterScan.isWorkerThread())
+      return false;
+
+    final ODatabaseRecord database = getDatabase();
+    if (!(database.getStorage() instanceof OStorageEmbedded) || database.getTransaction().isActive())
+      return false;
+
+    final ORID[] range = getRange();
+    if (range[0] != null || range[1] != null)
+      // PAGINATION OR RID RANGE: BROWSE SEQUENTIALLY
+      return false;
+
+    final boolean ordered = (orderedFields == null || orderedFields.isEmpty()) && groupedResult == null;
+    // WITHOUT SKIP AND LIMIT ALL THE RECORDS ARE AGGREGATED: EVERY PARTITION AGGREGATES ITS OWN
+    final OGroupByAggregator aggregator = skip <= 0 && fetchLimit == -1 ? groupByAggregator : null;
+    target = new OParallelClusterScan(database, this, iClusterIds, threads, ordered, aggregator);
+    return true;
+  }
+
   @SuppressWarnings("rawtypes")
   private boolean searchForIndexes(final OClass iSchemaClass) {
     final ODatabaseRecord database = getDatabase();
@@ -632,7 +719,8 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       }
     });
 
-    // go through all variants to choose which one can be used for index search.
+    // go through all variants to collect the indexes that can be used for index search.
+    final List<IndexCandidate> candidates = new ArrayList<IndexCandidate>();
     for (final OIndexSearchResult searchResult : indexSearchResults) {
       final List<OIndex<?>> involvedIndexes = getInvolvedIndexes(iSchemaClass, searchResult);
       Collections.sort(involvedIndexes, IndexComparator.INSTANCE);
@@ -662,48 +750,190 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
             keyParams.add(searchResult.lastValue);
         }
 
-        INDEX_OPERATION_TYPE opType = null;
+        candidates.add(new IndexCandidate(index, searchResult, keyParams));
+      }
+    }
 
-        if (context.isRecordingMetrics()) {
-          Set<String> idxNames = (Set<String>) context.getVariable("involvedIndexes");
-          if (idxNames == null) {
-            idxNames = new HashSet<String>();
-            context.setVariable("involvedIndexes", idxNames);
-          }
-          idxNames.add(index.getName());
-        }
+    if (candidates.isEmpty())
+      return false;
 
-        if (projections != null && projections.size() == 1) {
-          final Object v = projections.values().iterator().next();
-          if (v instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) v).getFunction() instanceof OSQLFunctionCount) {
-            if (!(compiledFilter.getRootCondition().getLeft() instanceof OSQLFilterCondition || compiledFilter.getRootCondition()
-                .getRight() instanceof OSQLFilterCondition))
-              // OPTIMIZATION: JUST COUNT IT
-              opType = INDEX_OPERATION_TYPE.COUNT;
-          }
-        }
+    INDEX_OPERATION_TYPE opType = null;
 
-        if (opType == null)
-          opType = INDEX_OPERATION_TYPE.GET;
+    if (projections != null && projections.size() == 1) {
+      final Object v = projections.values().iterator().next();
+      if (v instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) v).getFunction() instanceof OSQLFunctionCount) {
+        if (!(compiledFilter.getRootCondition().getLeft() instanceof OSQLFilterCondition || compiledFilter.getRootCondition()
+            .getRight() instanceof OSQLFilterCondition))
+          // OPTIMIZATION: JUST COUNT IT
+          opType = INDEX_OPERATION_TYPE.COUNT;
+      }
+    }
 
-        Object result = operator.executeIndexQuery(context, index, opType, keyParams, fetchLimit);
-        if (result == null)
-          continue;
+    if (opType == null) {
+      opType = INDEX_OPERATION_TYPE.GET;
 
-        if (opType == INDEX_OPERATION_TYPE.COUNT) {
-          // OPTIMIZATION: EMBED THE RESULT IN A DOCUMENT AND AVOID THE CLASSIC PATH
-          final String projName = projectionDefinition.keySet().iterator().next();
-          projectionDefinition.clear();
-          getProjectionGroup(null).applyValue(projName, result);
-        } else
-          fillSearchIndexResultSet(result);
+      final List<IndexCandidate> plan = chooseIndexes(iSchemaClass, candidates);
+      if (plan != null) {
+        if (plan.isEmpty())
+          // SCANNING THE CLUSTERS IS CHEAPER
+          return false;
 
-        return true;
+        if (plan.size() > 1 && searchInIndexIntersection(plan))
+          return true;
+
+        // TRY THE BEST INDEX FIRST
+        candidates.remove(plan.get(0));
+        candidates.add(0, plan.get(0));
       }
     }
+
+    for (final IndexCandidate candidate : candidates) {
+      addInvolvedIndex(candidate.index);
+
+      final Object result = candidate.searchResult.lastOperator.executeIndexQuery(context, candidate.index, opType,
+          candidate.keyParams, fetchLimit);
+      if (result == null)
+        continue;
+
+      if (opType == INDEX_OPERATION_TYPE.COUNT) {
+        // OPTIMIZATION: EMBED THE RESULT IN A DOCUMENT AND AVOID THE CLASSIC PATH
+        final String projName = projectionDefinition.keySet().iterator().next();
+        projectionDefinition.clear();
+        getProjectionGroup(null).applyValue(projName, result);
+      } else
+        fillSearchIndexResultSet(result);
+
+      return true;
+    }
     return false;
   }
 
+  /**
+   * Chooses how to fetch the records using the statistics of the indexes: by the most selective index, by the intersection of the
+   * results of more indexes on different fields or by scanning the clusters. The cost is measured in records read by a scan: a
+   * record found by an index costs the inverse of {@link OGlobalConfiguration#QUERY_INDEX_SCAN_THRESHOLD}, because it is loaded
+   * with a random access, and an index entry a fraction of it.
+   * 
+   * @return The indexes to use, empty to scan the clusters or null if the statistics are not available
+   */
+  private List<IndexCandidate> chooseIndexes(final OClass iSchemaClass, final List<IndexCandidate> iCandidates) {
+    final float scanThreshold = OGlobalConfiguration.QUERY_INDEX_SCAN_THRESHOLD.getValueAsFloat();
+    if (scanThreshold <= 0)
+      return null;
+
+    final long records = iSchemaClass.count();
+    if (records < OGlobalConfiguration.QUERY_INDEX_STATISTICS_MIN_RECORDS.getValueAsLong())
+      return null;
+
+    for (final IndexCandidate candidate : iCandidates) {
+      if (candidate.index instanceof OIndexProxy)
+        // CHAIN OF INDEXES: NO ESTIMATION
+        return null;
+
+      candidate.estimate = candidate.searchResult.lastOperator.estimateIndexQuery(context, candidate.index, candidate.keyParams);
+      if (candidate.estimate < 0)
+        return null;
+    }
+
+    final List<IndexCandidate> sorted = new ArrayList<IndexCandidate>(iCandidates);
+    Collections.sort(sorted, new Comparator<IndexCandidate>() {
+      public int compare(final IndexCandidate o1, final IndexCandidate o2) {
+        return o1.estimate < o2.estimate ? -1 : (o1.estimate == o2.estimate ? 0 : 1);
+      }
+    });
+
+    final double recordCost = 1d / scanThreshold;
+
+    final List<IndexCandidate> plan = new ArrayList<IndexCandidate>();
+    plan.add(sorted.get(0));
+    double rows = sorted.get(0).estimate;
+    long entriesRead = sorted.get(0).estimate;
+    double cost = entriesRead * INDEX_ENTRY_COST + rows * recordCost;
+
+    // INTERSECT THE INDEXES ON OTHER FIELDS WHILE THE COST DECREASES, CONSIDERING THE CONDITIONS AS INDEPENDENT
+    for (int i = 1; i < sorted.size() && plan.size() < MAX_INTERSECTED_INDEXES; ++i) {
+      final IndexCandidate candidate = sorted.get(i);
+      if (!candidate.isIndependentOf(plan))
+        continue;
+
+      final double newRows = rows * candidate.estimate / Math.max(records, 1);
+      final double newCost = (entriesRead + candidate.estimate) * INDEX_ENTRY_COST + newRows * recordCost;
+      if (newCost < cost) {
+        plan.add(candidate);
+        rows = newRows;
+        entriesRead += candidate.estimate;
+        cost = newCost;
+      }
+    }
+
+    final boolean scan = cost >= records;
+
+    if (context.isRecordingMetrics())
+      context.setVariable("estimatedRows", scan ? records : (long) Math.ceil(rows));
+
+    if (scan)
+      plan.clear();
+    return plan;
+  }
+
+  /**
+   * Fetches only the records found by all the indexes of the plan. The most selective index, the first of the plan, drives the
+   * intersection and is read entirely. The other ones are read up to twice their estimate: an index that returns more entries is
+   * not intersected, the records it would exclude are excluded by the filter anyway.
+   * 
+   * @return false if an index cannot execute its condition
+   */
+  private boolean searchInIndexIntersection(final List<IndexCandidate> iPlan) {
+    Set<ORID> rids = null;
+
+    for (final IndexCandidate candidate : iPlan) {
+      addInvolvedIndex(candidate.index);
+
+      final int limit = rids == null ? -1 : (int) Math.min(Integer.MAX_VALUE,
+          Math.max(MIN_INTERSECTION_FETCH_LIMIT, candidate.estimate * 2));
+
+      final Object result = candidate.searchResult.lastOperator.executeIndexQuery(context, candidate.index,
+          INDEX_OPERATION_TYPE.GET, candidate.keyParams, limit);
+      if (result == null)
+        return false;
+
+      final Collection<?> found = result instanceof Collection<?> ? (Collection<?>) result : Collections.singletonList(result);
+      if (limit > -1 && found.size() == limit)
+        // ESTIMATE TOO LOW: THE RESULT COULD BE TRUNCATED AND CANNOT BE INTERSECTED. THE OPERATORS THAT GET A SINGLE KEY IGNORE
+        // THE LIMIT AND ALWAYS RETURN ALL ITS VALUES
+        continue;
+
+      if (rids == null) {
+        rids = new LinkedHashSet<ORID>(found.size());
+        for (Object o : found)
+          rids.add(((OIdentifiable) o).getIdentity());
+      } else {
+        final Set<ORID> foundRids = new HashSet<ORID>(found.size());
+        for (Object o : found)
+          foundRids.add(((OIdentifiable) o).getIdentity());
+        rids.retainAll(foundRids);
+      }
+
+      if (rids.isEmpty())
+        break;
+    }
+
+    fillSearchIndexResultSet(new ArrayList<OIdentifiable>(rids));
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addInvolvedIndex(final OIndex<?> iIndex) {
+    if (context.isRecordingMetrics()) {
+      Set<String> idxNames = (Set<String>) context.getVariable("involvedIndexes");
+      if (idxNames == null) {
+        idxNames = new HashSet<String>();
+        context.setVariable("involvedIndexes", idxNames);
+      }
+      idxNames.add(iIndex.getName());
+    }
+  }
+
   private static List<OIndex<?>> getInvolvedIndexes(OClass iSchemaClass, OIndexSearchResult searchResultFields) {
     final Set<OIndex<?>> involvedIndexes = iSchemaClass.getInvolvedIndexes(searchResultFields.fields());
 
@@ -821,6 +1051,8 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
           }
         }
       } else {
+        context.updateMetric("indexReads", 1);
+
         final ORecord<?> record = ((OIdentifiable) indexResult).getRecord();
         if (filter((ORecordInternal<?>) record))
           handleResult(record, true);
@@ -974,7 +1206,23 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     if (orderedFields == null)
       return;
 
-    if (tempResult instanceof OMultiCollectionIterator) {
+    if (orderByCollector != null) {
+      if (tempResult == null) {
+        tempResult = orderByCollector.getResult();
+        orderedFields.clear();
+        return;
+      }
+
+      // RECORDS COLLECTED ALSO OUTSIDE THE COLLECTOR: SORT THEM ALL TOGETHER
+      final List<OIdentifiable> list = new ArrayList<OIdentifiable>();
+      for (OIdentifiable o : tempResult)
+        list.add(o);
+      for (OIdentifiable o : orderByCollector.getResult())
+        list.add(o);
+      tempResult = list;
+    }
+
+    if (!(tempResult instanceof List<?>)) {
       final List<OIdentifiable> list = new ArrayList<OIdentifiable>();
       for (OIdentifiable o : tempResult)
         list.add(o);
@@ -1244,6 +1492,11 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   }
 
   private void handleGroupBy() {
+    if (groupByAggregator != null && tempResult == null) {
+      tempResult = groupByAggregator.getResult();
+      return;
+    }
+
     if (groupedResult != null && tempResult == null) {
       tempResult = new ArrayList<OIdentifiable>();
 
@@ -1352,6 +1605,26 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return false;
   }
 
+  private static class IndexCandidate {
+    private final OIndex<?>          index;
+    private final OIndexSearchResult searchResult;
+    private final List<Object>       keyParams;
+    private long                     estimate = -1;
+
+    private IndexCandidate(final OIndex<?> iIndex, final OIndexSearchResult iSearchResult, final List<Object> iKeyParams) {
+      index = iIndex;
+      searchResult = iSearchResult;
+      keyParams = iKeyParams;
+    }
+
+    private boolean isIndependentOf(final List<IndexCandidate> iOthers) {
+      for (IndexCandidate other : iOthers)
+        if (!Collections.disjoint(searchResult.fields(), other.searchResult.fields()))
+          return false;
+      return true;
+    }
+  }
+
   private static class IndexComparator implements Comparator<OIndex<?>> {
     private static final IndexComparator INSTANCE = new IndexComparator();
 
@@ -0,0 +1,589 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.orientechnologies.common.collection.OExternalSorter;
+import com.orientechnologies.common.io.OIOException;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.filter.OSQLFilterItemField;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunction;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
+import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionAverage;
+import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMax;
+import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMin;
+import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionSum;
+import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionCount;
+
+/**
+ * Hash based GROUP BY for projections made only of fields and count(), sum(), avg(), min() and max() aggregates. Instead of a
+ * result document and a set of function instances per group, every group keeps an array of primitive accumulators.<br>
+ * When the number of groups exceeds the memory threshold, the partial aggregates are spilled on disk in runs sorted by
+ * partition, a hash of the group key. While the result is browsed the runs are merged and the groups of a partition are
+ * aggregated together, one partition at a time.<br>
+ * The partial aggregates of different aggregators, for example built in parallel by the scans of different clusters with
+ * {@link #createPartial(OCommandContext)}, are combined with {@link #merge(OGroupByAggregator)}.
+ */
+public class OGroupByAggregator {
+  private static final int               PARTITIONS      = 16;
+
+  private static final Comparator<Group> PARTITION_ORDER = new Comparator<Group>() {
+                                                           public int compare(final Group g1, final Group g2) {
+                                                             return g1.partition - g2.partition;
+                                                           }
+                                                         };
+
+  private enum KIND {
+    FIELD, COUNT, SUM, AVG, MIN, MAX
+  }
+
+  private final String[]               names;
+  private final KIND[]                 kinds;
+  private final Object[]               parameters;
+  private final List<String>           groupByFields;
+  private final OCommandContext        context;
+  private final int                    maxMemoryGroups;
+
+  private LinkedHashMap<Object, Group> groups     = new LinkedHashMap<Object, Group>();
+  private final OExternalSorter<Group> sorter;
+
+  private OGroupByAggregator(final String[] iNames, final KIND[] iKinds, final Object[] iParameters,
+      final List<String> iGroupByFields, final OCommandContext iContext, final int iMaxMemoryGroups) {
+    names = iNames;
+    kinds = iKinds;
+    parameters = iParameters;
+    groupByFields = iGroupByFields;
+    context = iContext;
+    maxMemoryGroups = iMaxMemoryGroups;
+    sorter = new OExternalSorter<Group>("orientdb-groupby-", PARTITION_ORDER, new OExternalSorter.OSerializer<Group>() {
+      public void write(final Group iGroup, final DataOutputStream iOut) throws IOException {
+        final byte[] buffer = toStream(iGroup);
+        iOut.writeInt(buffer.length);
+        iOut.write(buffer);
+      }
+
+      public Group read(final DataInputStream iIn) throws IOException {
+        final byte[] buffer = new byte[iIn.readInt()];
+        iIn.readFully(buffer);
+        return fromStream(buffer);
+      }
+    });
+  }
+
+  /**
+   * Creates an aggregator for the projections of a query.
+   *
+   * @param iProjections
+   *          Projections of the query
+   * @param iGroupByFields
+   *          Fields of the GROUP BY
+   * @param iContext
+   *          Command context used to evaluate the fields
+   * @param iMaxMemoryGroups
+   *          Number of groups kept in memory before to spill them on disk, -1 to never spill
+   * @return The aggregator or null if any projection is not supported
+   */
+  public static OGroupByAggregator create(final Map<String, Object> iProjections, final List<String> iGroupByFields,
+      final OCommandContext iContext, final int iMaxMemoryGroups) {
+    if (iProjections == null || iProjections.isEmpty())
+      return null;
+
+    final String[] names = new String[iProjections.size()];
+    final KIND[] kinds = new KIND[names.length];
+    final Object[] parameters = new Object[names.length];
+
+    int i = 0;
+    for (Entry<String, Object> projection : iProjections.entrySet()) {
+      names[i] = projection.getKey();
+      final Object p = projection.getValue();
+
+      if (p instanceof OSQLFilterItemField && !((OSQLFilterItemField) p).hasChainOperators()) {
+        kinds[i] = KIND.FIELD;
+        parameters[i] = p;
+      } else if (p instanceof OSQLFunctionRuntime) {
+        final OSQLFunctionRuntime f = (OSQLFunctionRuntime) p;
+        if (f.hasChainOperators() || !f.aggregateResults() || f.configuredParameters.length != 1)
+          return null;
+
+        final OSQLFunction function = f.getFunction();
+        final Object parameter = f.configuredParameters[0];
+        if (function instanceof OSQLFunctionCount && ("*".equals(parameter) || parameter instanceof OSQLFilterItemField))
+          kinds[i] = KIND.COUNT;
+        else if (!(parameter instanceof OSQLFilterItemField))
+          return null;
+        else if (function instanceof OSQLFunctionSum)
+          kinds[i] = KIND.SUM;
+        else if (function instanceof OSQLFunctionAverage)
+          kinds[i] = KIND.AVG;
+        else if (function instanceof OSQLFunctionMin)
+          kinds[i] = KIND.MIN;
+        else if (function instanceof OSQLFunctionMax)
+          kinds[i] = KIND.MAX;
+        else
+          return null;
+        parameters[i] = parameter;
+      } else
+        return null;
+
+      i++;
+    }
+
+    return new OGroupByAggregator(names, kinds, parameters, iGroupByFields, iContext, iMaxMemoryGroups);
+  }
+
+  /**
+   * Creates an empty aggregator of the same projections, whose partial aggregates can be merged in this one. It can be filled by
+   * another thread.
+   *
+   * @param iContext
+   *          Command context used to evaluate the fields in the thread that fills the aggregator
+   */
+  public OGroupByAggregator createPartial(final OCommandContext iContext) {
+    return new OGroupByAggregator(names, kinds, parameters, groupByFields, iContext, maxMemoryGroups);
+  }
+
+  /**
+   * Aggregates a record in its group. Records without a group key are not part of the result.
+   *
+   * @param iRecord
+   *          Record to aggregate
+   * @param iProgressive
+   *          Progressive number of the record, used to assign a temporary RID to the groups
+   */
+  public void add(final OIdentifiable iRecord, final int iProgressive) {
+    final ODocument record = (ODocument) iRecord.getRecord();
+
+    final Object groupKey = OCommandExecutorSQLSelect.getGroupByKey(groupByFields, record, context);
+    if (groupKey == null)
+      return;
+    final Object key = normalizeKey(groupKey);
+
+    Group group = groups.get(key);
+    if (group == null) {
+      group = new Group(key, iProgressive, kinds.length);
+      groups.put(key, group);
+    }
+
+    for (int i = 0; i < kinds.length; ++i) {
+      final Accumulator accumulator = group.accumulators[i];
+
+      final Object value;
+      if (parameters[i] instanceof OSQLFilterItemField)
+        value = ((OSQLFilterItemField) parameters[i]).getValue(record, context);
+      else
+        value = parameters[i];
+
+      switch (kinds[i]) {
+      case FIELD:
+        if (value != null)
+          accumulator.value = value;
+        break;
+      case COUNT:
+        if (value != null)
+          accumulator.count++;
+        break;
+      case SUM:
+      case AVG:
+        if (value instanceof Collection<?>) {
+          for (Object item : (Collection<?>) value)
+            accumulator.sum((Number) item);
+        } else
+          accumulator.sum((Number) value);
+        break;
+      case MIN:
+      case MAX:
+        if (value instanceof Collection<?>) {
+          for (Object item : (Collection<?>) value)
+            accumulator.compare(item, kinds[i] == KIND.MIN);
+        } else
+          accumulator.compare(value, kinds[i] == KIND.MIN);
+        break;
+      }
+    }
+
+    checkMemory();
+  }
+
+  /**
+   * Merges the partial aggregates of an aggregator created by {@link #createPartial(OCommandContext)}, also the ones it spilled
+   * on disk. The other aggregator is closed.
+   */
+  public void merge(final OGroupByAggregator iPartial) {
+    try {
+      for (Group group : iPartial.groups.values()) {
+        mergeGroup(group);
+        checkMemory();
+      }
+      iPartial.groups.clear();
+
+      if (iPartial.sorter.getRuns() > 0) {
+        for (Iterator<Group> it = iPartial.sorter.merge(Collections.<Group> emptyList().iterator()); it.hasNext();) {
+          mergeGroup(it.next());
+          checkMemory();
+        }
+      }
+    } catch (IOException e) {
+      throw new OCommandExecutionException("Error on reading the groups spilled on disk", e);
+    } catch (OIOException e) {
+      throw new OCommandExecutionException("Error on reading the groups spilled on disk", e);
+    } finally {
+      iPartial.close();
+    }
+  }
+
+  /**
+   * Returns the result documents, one per group. It is a list if all the groups are in memory, otherwise an iterable that
+   * aggregates one spilled partition at a time and can be browsed only once.
+   */
+  public Iterable<OIdentifiable> getResult() {
+    if (sorter.getRuns() == 0) {
+      final List<OIdentifiable> result = new ArrayList<OIdentifiable>(groups.size());
+      for (Group group : groups.values()) {
+        final ODocument doc = toDocument(group);
+        if (!doc.isEmpty())
+          result.add(doc);
+      }
+      groups.clear();
+      return result;
+    }
+
+    final List<Group> lastRun = new ArrayList<Group>(groups.values());
+    Collections.sort(lastRun, PARTITION_ORDER);
+    groups = new LinkedHashMap<Object, Group>();
+
+    return new Iterable<OIdentifiable>() {
+      public Iterator<OIdentifiable> iterator() {
+        try {
+          return new PartitionIterator(sorter.merge(lastRun.iterator()));
+        } catch (IOException e) {
+          close();
+          throw new OCommandExecutionException("Error on reading the groups spilled on disk", e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Closes and removes the spilled partitions not browsed yet. To call once the result is not needed anymore, also if it was not
+   * browsed till the end.
+   */
+  public void close() {
+    groups.clear();
+    sorter.close();
+  }
+
+  protected int getGroupsInMemory() {
+    return groups.size();
+  }
+
+  protected boolean isSpilled() {
+    return sorter.getRuns() > 0;
+  }
+
+  private void mergeGroup(final Group iGroup) {
+    final Group group = groups.get(iGroup.key);
+    if (group == null)
+      groups.put(iGroup.key, iGroup);
+    else {
+      group.progressive = Math.min(group.progressive, iGroup.progressive);
+      for (int i = 0; i < kinds.length; ++i)
+        group.accumulators[i].merge(iGroup.accumulators[i], kinds[i]);
+    }
+  }
+
+  private void checkMemory() {
+    if (maxMemoryGroups > 0 && groups.size() > maxMemoryGroups)
+      spill();
+  }
+
+  private ODocument toDocument(final Group iGroup) {
+    final ODocument doc = ORuntimeResult.createProjectionDocument(iGroup.progressive);
+    for (int i = 0; i < kinds.length; ++i) {
+      final Object value = iGroup.accumulators[i].getResult(kinds[i]);
+      if (value != null)
+        doc.field(names[i], value);
+    }
+    // AVOID SAVING OF TEMP RECORD
+    doc.unsetDirty();
+    return doc;
+  }
+
+  /**
+   * Uses the identity of the records as key, so groups read back from disk find the in-memory ones.
+   */
+  private static Object normalizeKey(final Object iKey) {
+    if (iKey instanceof OIdentifiable)
+      return ((OIdentifiable) iKey).getIdentity();
+
+    if (iKey instanceof List<?>) {
+      final List<Object> key = new ArrayList<Object>(((List<?>) iKey).size());
+      for (Object k : (List<?>) iKey)
+        key.add(k instanceof OIdentifiable ? ((OIdentifiable) k).getIdentity() : k);
+      return key;
+    }
+
+    return iKey;
+  }
+
+  private static int partitionOf(final Object iKey) {
+    int h = iKey != null ? iKey.hashCode() : 0;
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return (h & 0x7fffffff) % PARTITIONS;
+  }
+
+  private void spill() {
+    try {
+      sorter.spill(new ArrayList<Group>(groups.values()));
+    } catch (IOException e) {
+      close();
+      throw new OCommandExecutionException("Error on spilling the groups on disk", e);
+    }
+
+    groups = new LinkedHashMap<Object, Group>();
+  }
+
+  private byte[] toStream(final Group iGroup) {
+    final ODocument doc = new ODocument();
+    doc.field("k", iGroup.key);
+    doc.field("p", iGroup.progressive);
+    for (int i = 0; i < kinds.length; ++i) {
+      final Accumulator accumulator = iGroup.accumulators[i];
+      doc.field("c" + i, accumulator.count);
+      doc.field("l" + i, accumulator.longSum);
+      doc.field("f" + i, (accumulator.integral ? 1 : 0) | (accumulator.longResult ? 2 : 0));
+      if (accumulator.sum != null)
+        doc.field("s" + i, accumulator.sum);
+      if (accumulator.value != null)
+        doc.field("v" + i, accumulator.value);
+    }
+    return doc.toStream();
+  }
+
+  private Group fromStream(final byte[] iBuffer) {
+    final ODocument doc = new ODocument();
+    doc.setLazyLoad(false);
+    doc.fromStream(iBuffer);
+
+    final Group group = new Group(normalizeKey(doc.field("k")), ((Number) doc.field("p")).intValue(), kinds.length);
+    for (int i = 0; i < kinds.length; ++i) {
+      final Accumulator accumulator = group.accumulators[i];
+      accumulator.count = ((Number) doc.field("c" + i)).longValue();
+      accumulator.longSum = ((Number) doc.field("l" + i)).longValue();
+      final int flags = ((Number) doc.field("f" + i)).intValue();
+      accumulator.integral = (flags & 1) != 0;
+      accumulator.longResult = (flags & 2) != 0;
+      accumulator.sum = doc.field("s" + i);
+      accumulator.value = doc.field("v" + i);
+    }
+    return group;
+  }
+
+  private static final class Group {
+    private final Object        key;
+    private final int           partition;
+    private int                 progressive;
+    private final Accumulator[] accumulators;
+
+    private Group(final Object iKey, final int iProgressive, final int iSize) {
+      key = iKey;
+      partition = partitionOf(iKey);
+      progressive = iProgressive;
+      accumulators = new Accumulator[iSize];
+      for (int i = 0; i < iSize; ++i)
+        accumulators[i] = new Accumulator();
+    }
+  }
+
+  /**
+   * Partial aggregate of a projection. Sums of integral numbers are kept in a long, other numbers are summed with
+   * {@link OType#increment(Number, Number)} as {@link OSQLFunctionSum} does.
+   */
+  private static final class Accumulator {
+    private long    count;
+    private long    longSum;
+    private boolean integral;
+    private boolean longResult;
+    private Number  sum;
+    private Object  value;
+
+    private void sum(final Number iValue) {
+      if (iValue == null)
+        return;
+
+      count++;
+      if (sum == null && (iValue instanceof Integer || iValue instanceof Long || iValue instanceof Short || iValue instanceof Byte)) {
+        longSum += iValue.longValue();
+        integral = true;
+        if (iValue instanceof Long)
+          longResult = true;
+      } else {
+        final Number current = getSum();
+        sum = current == null ? iValue : OType.increment(current, iValue);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compare(final Object iValue, final boolean iMin) {
+      if (iValue == null)
+        return;
+
+      if (value == null)
+        value = iValue;
+      else {
+        final int result = ((Comparable<Object>) value).compareTo(iValue);
+        if (iMin ? result > 0 : result < 0)
+          value = iValue;
+      }
+    }
+
+    private void merge(final Accumulator iOther, final KIND iKind) {
+      switch (iKind) {
+      case FIELD:
+        if (iOther.value != null)
+          value = iOther.value;
+        break;
+      case MIN:
+      case MAX:
+        compare(iOther.value, iKind == KIND.MIN);
+        break;
+      default:
+        if (sum != null || iOther.sum != null) {
+          final Number a = getSum();
+          final Number b = iOther.getSum();
+          sum = a == null ? b : (b == null ? a : OType.increment(a, b));
+        } else {
+          longSum += iOther.longSum;
+          integral |= iOther.integral;
+          longResult |= iOther.longResult;
+        }
+        count += iOther.count;
+      }
+    }
+
+    private Number getSum() {
+      if (sum != null)
+        return sum;
+      if (!integral)
+        return null;
+      if (longResult || longSum > Integer.MAX_VALUE || longSum < Integer.MIN_VALUE)
+        return longSum;
+      return (int) longSum;
+    }
+
+    private Object getResult(final KIND iKind) {
+      switch (iKind) {
+      case COUNT:
+        return count;
+      case SUM:
+        return getSum();
+      case AVG:
+        final Number total = getSum();
+        if (total == null || count == 0)
+          return null;
+        if (total instanceof Integer)
+          return total.intValue() / (int) count;
+        else if (total instanceof Long)
+          return total.longValue() / count;
+        else if (total instanceof Float)
+          return total.floatValue() / count;
+        else if (total instanceof Double)
+          return total.doubleValue() / count;
+        else if (total instanceof BigDecimal)
+          return ((BigDecimal) total).divide(new BigDecimal(count));
+        return null;
+      default:
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Aggregates the groups of one partition at a time, browsing the runs merged in partition order.
+   */
+  private final class PartitionIterator implements Iterator<OIdentifiable> {
+    private final Iterator<Group>   merged;
+    private Group                   nextGroup;
+    private Iterator<OIdentifiable> current;
+
+    private PartitionIterator(final Iterator<Group> iMerged) {
+      merged = iMerged;
+    }
+
+    public boolean hasNext() {
+      while ((current == null || !current.hasNext()) && (nextGroup != null || merged.hasNext())) {
+        if (nextGroup == null)
+          nextGroup = readGroup();
+
+        // A PARTITION IS AGGREGATED IN MEMORY EVEN IF IT EXCEEDS THE THRESHOLD
+        groups = new LinkedHashMap<Object, Group>();
+        final int partition = nextGroup.partition;
+        while (nextGroup != null && nextGroup.partition == partition) {
+          mergeGroup(nextGroup);
+          nextGroup = merged.hasNext() ? readGroup() : null;
+        }
+
+        final List<OIdentifiable> result = new ArrayList<OIdentifiable>(groups.size());
+        for (Group group : groups.values()) {
+          final ODocument doc = toDocument(group);
+          if (!doc.isEmpty())
+            result.add(doc);
+        }
+        groups.clear();
+        current = result.iterator();
+      }
+
+      return current != null && current.hasNext();
+    }
+
+    public OIdentifiable next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      return current.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    private Group readGroup() {
+      try {
+        return merged.next();
+      } catch (OIOException e) {
+        close();
+        throw new OCommandExecutionException("Error on reading the groups spilled on disk", e);
+      }
+    }
+  }
+}
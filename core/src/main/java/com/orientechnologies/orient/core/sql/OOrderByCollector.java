@@ -0,0 +1,293 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.orientechnologies.common.collection.OExternalSorter;
+import com.orientechnologies.common.io.OIOException;
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ODocumentComparator;
+
+/**
+ * Collects the results of a SELECT with ORDER BY. When only the first N results are needed (LIMIT) they are kept in a bounded
+ * heap, so the memory used does not depend on the number of matching records. Otherwise, once the in-memory threshold is
+ * reached, the collected records are sorted and spilled on disk as sort keys plus RIDs. The sorted runs are merged when the
+ * result is browsed and the records are loaded back only at that time.<br>
+ * Ties are resolved by arrival order in both cases, so the result is the same as a stable sort of all the records.
+ */
+public class OOrderByCollector {
+  private final List<OPair<String, String>> orderCriteria;
+  private final Comparator<OIdentifiable>   comparator;
+  private final int                         maxResults;
+  private final int                         maxMemoryRecords;
+
+  private PriorityQueue<Entry>              topRecords;
+  private long                              sequence;
+
+  private List<OIdentifiable>               records   = new ArrayList<OIdentifiable>();
+  private final OExternalSorter<Entry>      sorter;
+  private boolean                           spillable = true;
+
+  /**
+   * @param iOrderCriteria
+   *          Fields to sort by with their ordering
+   * @param iMaxResults
+   *          Number of results needed (skip + limit), -1 for all
+   * @param iMaxMemoryRecords
+   *          Number of records sorted in memory before to spill them on disk, -1 to never spill
+   */
+  public OOrderByCollector(final List<OPair<String, String>> iOrderCriteria, final int iMaxResults, final int iMaxMemoryRecords) {
+    orderCriteria = new ArrayList<OPair<String, String>>(iOrderCriteria);
+    comparator = new ODocumentComparator(orderCriteria);
+    maxResults = iMaxResults;
+    maxMemoryRecords = iMaxMemoryRecords;
+
+    if (maxResults > -1)
+      topRecords = new PriorityQueue<Entry>(Math.max(Math.min(maxResults, 1024), 1), Collections.reverseOrder(new Comparator<Entry>() {
+        public int compare(final Entry e1, final Entry e2) {
+          return compareEntries(e1, e2);
+        }
+      }));
+
+    // SPILLED RECORDS ARE SORTED BY THEIR KEYS, SO NESTED FIELDS ARE NOT EVALUATED AGAIN ON MERGE
+    final ODocumentComparator keyComparator = new ODocumentComparator(getKeyCriteria());
+    sorter = new OExternalSorter<Entry>("orientdb-orderby-", new Comparator<Entry>() {
+      public int compare(final Entry e1, final Entry e2) {
+        return keyComparator.compare(e1.key, e2.key);
+      }
+    }, new OExternalSorter.OSerializer<Entry>() {
+      public void write(final Entry iEntry, final DataOutputStream iOut) throws IOException {
+        final byte[] key = iEntry.key.toStream();
+        iOut.writeInt(key.length);
+        iOut.write(key);
+
+        final byte[] rid = iEntry.record.getIdentity().toStream();
+        iOut.writeShort(rid.length);
+        iOut.write(rid);
+      }
+
+      public Entry read(final DataInputStream iIn) throws IOException {
+        final byte[] key = new byte[iIn.readInt()];
+        iIn.readFully(key);
+        final byte[] rid = new byte[iIn.readShort()];
+        iIn.readFully(rid);
+        return new Entry(new ODocument().fromStream(key), new ORecordId().fromStream(rid));
+      }
+    });
+  }
+
+  public void add(final OIdentifiable iRecord) {
+    if (topRecords != null) {
+      if (maxResults == 0)
+        return;
+
+      final Entry entry = new Entry(iRecord, sequence++);
+      if (topRecords.size() < maxResults)
+        topRecords.offer(entry);
+      else if (compareEntries(entry, topRecords.peek()) < 0) {
+        // REPLACE THE GREATEST ONE
+        topRecords.poll();
+        topRecords.offer(entry);
+      }
+      return;
+    }
+
+    records.add(iRecord);
+
+    if (spillable && !iRecord.getIdentity().isPersistent())
+      // CANNOT BE LOADED AGAIN FROM ITS RID: KEEP EVERYTHING IN MEMORY
+      spillable = false;
+
+    if (spillable && maxMemoryRecords > 0 && records.size() >= maxMemoryRecords)
+      spill();
+  }
+
+  /**
+   * Returns the sorted records. It is a list if all of them are in memory, otherwise an iterable that merges the runs spilled
+   * on disk and can be browsed only once.
+   */
+  public Iterable<OIdentifiable> getResult() {
+    if (topRecords != null) {
+      final List<Entry> entries = new ArrayList<Entry>(topRecords);
+      topRecords = null;
+      Collections.sort(entries, new Comparator<Entry>() {
+        public int compare(final Entry e1, final Entry e2) {
+          return compareEntries(e1, e2);
+        }
+      });
+
+      final List<OIdentifiable> result = new ArrayList<OIdentifiable>(entries.size());
+      for (Entry e : entries)
+        result.add(e.record);
+      return result;
+    }
+
+    Collections.sort(records, comparator);
+    if (sorter.getRuns() == 0)
+      return records;
+
+    final List<OIdentifiable> lastRun = records;
+    records = null;
+
+    return new Iterable<OIdentifiable>() {
+      public Iterator<OIdentifiable> iterator() {
+        return new MergeIterator(lastRun);
+      }
+    };
+  }
+
+  /**
+   * Closes the runs still open and removes the spilled ones not browsed yet. To call once the result is not needed anymore, also
+   * if it was not browsed till the end.
+   */
+  public void close() {
+    sorter.close();
+  }
+
+  protected int getSpilledRuns() {
+    return sorter.getRuns();
+  }
+
+  private int compareEntries(final Entry e1, final Entry e2) {
+    final int result = comparator.compare(e1.record, e2.record);
+    if (result != 0)
+      return result;
+    return e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1);
+  }
+
+  private void spill() {
+    final List<Entry> entries = new ArrayList<Entry>(records.size());
+    for (OIdentifiable record : records)
+      entries.add(new Entry(extractKey(record), record));
+
+    try {
+      sorter.spill(entries);
+    } catch (IOException e) {
+      close();
+      throw new OCommandExecutionException("Error on spilling the records to sort on disk", e);
+    }
+
+    records = new ArrayList<OIdentifiable>();
+  }
+
+  /**
+   * Copies the values to sort by in a document with fields named by position, so nested fields are not evaluated again.
+   */
+  private ODocument extractKey(final OIdentifiable iRecord) {
+    final ODocument record = (ODocument) iRecord.getRecord();
+    final ODocument key = new ODocument();
+    for (int i = 0; i < orderCriteria.size(); ++i)
+      key.field("k" + i, record.field(orderCriteria.get(i).getKey()));
+    return key;
+  }
+
+  private List<OPair<String, String>> getKeyCriteria() {
+    final List<OPair<String, String>> keyCriteria = new ArrayList<OPair<String, String>>(orderCriteria.size());
+    for (int i = 0; i < orderCriteria.size(); ++i)
+      keyCriteria.add(new OPair<String, String>("k" + i, orderCriteria.get(i).getValue()));
+    return keyCriteria;
+  }
+
+  /**
+   * Record with its arrival order, for the top records, or with its sort key, for the spilled ones.
+   */
+  private static final class Entry {
+    private final OIdentifiable record;
+    private final long          sequence;
+    private final ODocument     key;
+
+    private Entry(final OIdentifiable iRecord, final long iSequence) {
+      record = iRecord;
+      sequence = iSequence;
+      key = null;
+    }
+
+    private Entry(final ODocument iKey, final OIdentifiable iRecord) {
+      record = iRecord;
+      sequence = 0;
+      key = iKey;
+    }
+  }
+
+  private final class MergeIterator implements Iterator<OIdentifiable> {
+    private final Iterator<Entry> merged;
+    private OIdentifiable         nextRecord;
+
+    private MergeIterator(final List<OIdentifiable> iLastRun) {
+      final Iterator<OIdentifiable> lastRun = iLastRun.iterator();
+      try {
+        merged = sorter.merge(new Iterator<Entry>() {
+          public boolean hasNext() {
+            return lastRun.hasNext();
+          }
+
+          public Entry next() {
+            final OIdentifiable record = lastRun.next();
+            return new Entry(extractKey(record), record);
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException("remove");
+          }
+        });
+      } catch (IOException e) {
+        throw new OCommandExecutionException("Error on reading the records sorted on disk", e);
+      }
+    }
+
+    public boolean hasNext() {
+      while (nextRecord == null && merged.hasNext()) {
+        final OIdentifiable current;
+        try {
+          current = merged.next().record;
+        } catch (OIOException e) {
+          throw new OCommandExecutionException("Error on reading the records sorted on disk", e);
+        }
+
+        // LOAD THE RECORD ONLY NOW. IT COULD HAVE BEEN DELETED IN THE MEANWHILE
+        nextRecord = current instanceof ORecordId ? current.getRecord() : current;
+      }
+      return nextRecord != null;
+    }
+
+    public OIdentifiable next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+
+      final OIdentifiable result = nextRecord;
+      nextRecord = null;
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+}
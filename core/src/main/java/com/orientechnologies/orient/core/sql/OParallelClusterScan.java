@@ -0,0 +1,341 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Scans the clusters of a query target in parallel. Every cluster is split in partitions, by position range for the biggest
+ * ones, and each partition is browsed and filtered by a thread of the pool of the engine ({@link Orient#getWorkers()}). The
+ * records that match the filter are returned by this iterator, in the same order of a sequential scan when ordered, otherwise as
+ * soon as they are found.<br>
+ * Every partition opens its own database on the storage of the caller, with the user of the caller, and filters the records in
+ * its own copy of the command context. The metrics of the partitions are added to the context of the caller when they end. The
+ * scan is used only for read-only queries outside transactions.<br>
+ * With a GROUP BY aggregator, every partition aggregates its records in its own partial aggregator instead of returning them.
+ * The partial aggregates are merged in the aggregator of the caller when the partitions end, and no record is returned.
+ */
+public class OParallelClusterScan implements Iterator<OIdentifiable> {
+  private static final int                   QUEUE_SIZE     = 1000;
+  private static final Object                END            = new Object();
+  private static final ThreadLocal<Boolean>  WORKER         = new ThreadLocal<Boolean>();
+
+  private final ODatabaseRecord              database;
+  private final OUser                        user;
+  private final OCommandExecutorSQLResultsetAbstract command;
+  private final OCommandContext              context;
+  private final Map<String, Object>          variables;
+  private final boolean                      useCache;
+  private final List<BlockingQueue<Object>>  queues         = new ArrayList<BlockingQueue<Object>>();
+  private final boolean                      ordered;
+  private final OGroupByAggregator           aggregator;
+  private final AtomicInteger                progressive    = new AtomicInteger();
+  private volatile boolean                   closed;
+
+  private int                                partitionsToEnd;
+  private int                                currentQueue;
+  private OIdentifiable                       nextRecord;
+
+  /**
+   * @param iDatabase
+   *          Database of the caller, the workers open their own database on its storage
+   * @param iCommand
+   *          Command that filters the records
+   * @param iClusterIds
+   *          Clusters to scan
+   * @param iThreads
+   *          Maximum number of partitions scanned at the same time
+   * @param iOrdered
+   *          Returns the records in the same order of a sequential scan
+   * @param iAggregator
+   *          Aggregator of the GROUP BY where the partitions merge their partial aggregates, null to return the records
+   */
+  public OParallelClusterScan(final ODatabaseRecord iDatabase, final OCommandExecutorSQLResultsetAbstract iCommand,
+      final int[] iClusterIds, final int iThreads, final boolean iOrdered, final OGroupByAggregator iAggregator) {
+    database = iDatabase;
+    user = iDatabase.getUser();
+    command = iCommand;
+    context = iCommand.getContext();
+    // THE VARIABLES ARE COPIED BEFORE STARTING THE WORKERS, THE CONTEXT IS CHANGED BY THE CALLER WHILE THE RECORDS ARE BROWSED
+    variables = context.getVariables();
+    useCache = iCommand.request.isUseCache();
+    ordered = iOrdered;
+    aggregator = iAggregator;
+
+    final List<Partition> partitions = new ArrayList<Partition>();
+    for (int clusterId : iClusterIds)
+      split(clusterId, iThreads, partitions);
+
+    final BlockingQueue<Object> sharedQueue = iOrdered ? null : new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+    if (sharedQueue != null && !partitions.isEmpty())
+      queues.add(sharedQueue);
+    partitionsToEnd = partitions.size();
+
+    final ExecutorService pool = Orient.instance().getWorkers();
+    for (Partition partition : partitions) {
+      if (iOrdered) {
+        partition.queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+        queues.add(partition.queue);
+      } else
+        partition.queue = sharedQueue;
+      pool.submit(partition);
+    }
+  }
+
+  /**
+   * Tells if the current thread is scanning a partition. Queries executed by the filter, like sub-queries, must not wait for
+   * other partitions on the same pool.
+   */
+  public static boolean isWorkerThread() {
+    return WORKER.get() != null;
+  }
+
+  public boolean hasNext() {
+    if (nextRecord != null)
+      return true;
+
+    try {
+      while (currentQueue < queues.size()) {
+        final Object item = queues.get(currentQueue).take();
+
+        if (item == END) {
+          // ORDERED: NEXT PARTITION, UNORDERED: WAIT FOR THE END OF ALL THE PARTITIONS
+          if (ordered || --partitionsToEnd == 0)
+            currentQueue++;
+        } else if (item instanceof OGroupByAggregator) {
+          aggregator.merge((OGroupByAggregator) item);
+        } else if (item instanceof PartitionMetrics) {
+          for (Entry<String, Long> metric : ((PartitionMetrics) item).metrics.entrySet())
+            context.updateMetric(metric.getKey(), metric.getValue());
+        } else if (item instanceof Throwable) {
+          close();
+          throw new OCommandExecutionException("Error on parallel scan of the clusters", (Throwable) item);
+        } else {
+          nextRecord = (OIdentifiable) item;
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      close();
+      Thread.currentThread().interrupt();
+      throw new OCommandExecutionException("The parallel scan has been interrupted");
+    }
+
+    return false;
+  }
+
+  public OIdentifiable next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    final OIdentifiable result = nextRecord;
+    nextRecord = null;
+    return result;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * Stops the workers. To call when the records are not browsed up to the end, for example because the LIMIT is reached.
+   */
+  public void close() {
+    closed = true;
+    for (BlockingQueue<Object> queue : queues) {
+      Object item;
+      while ((item = queue.poll()) != null)
+        if (item instanceof OGroupByAggregator)
+          // REMOVES THE GROUPS SPILLED ON DISK BY THE PARTITION
+          ((OGroupByAggregator) item).close();
+    }
+  }
+
+  private void split(final int iClusterId, final int iThreads, final List<Partition> iPartitions) {
+    final OClusterPosition[] range = database.getStorage().getClusterDataRange(iClusterId);
+    if (range[0].equals(OClusterPosition.INVALID_POSITION))
+      // EMPTY
+      return;
+
+    final long minPartitionSize = OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.getValueAsLong();
+    if (!(OClusterPositionFactory.INSTANCE instanceof OClusterPositionFactory.OClusterPositionFactoryLong) || minPartitionSize <= 0) {
+      iPartitions.add(new Partition(iClusterId, range[0], range[1]));
+      return;
+    }
+
+    final long first = range[0].longValue();
+    final long last = range[1].longValue();
+    final long positions = last - first + 1;
+    final long partitionSize = Math.max(minPartitionSize, (positions + iThreads - 1) / iThreads);
+
+    for (long begin = first; begin <= last; begin += partitionSize) {
+      final long end = Math.min(begin + partitionSize - 1, last);
+      iPartitions.add(new Partition(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(begin), OClusterPositionFactory.INSTANCE
+          .valueOf(end)));
+    }
+  }
+
+  /**
+   * Opens a database on the storage of the caller for the current worker. The caller has already been authenticated, so the
+   * security metadata are not loaded again and the user of the caller is assigned.
+   */
+  private ODatabaseDocumentTx openDatabase() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx(database.getURL());
+    db.setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+    db.open(user != null ? user.getName() : OUser.ADMIN, "");
+    db.setUser(user);
+    return db;
+  }
+
+  /**
+   * Metrics updated by a partition, sent to the caller before the end of the partition.
+   */
+  private static final class PartitionMetrics {
+    private final Map<String, Long> metrics;
+
+    private PartitionMetrics(final Map<String, Long> iMetrics) {
+      metrics = iMetrics;
+    }
+  }
+
+  /**
+   * Context of a partition, keeps apart the metrics updated by the partition to add them to the context of the caller.
+   */
+  private static final class PartitionContext extends OBasicCommandContext {
+    private final Map<String, Long> metrics = new HashMap<String, Long>();
+
+    @Override
+    public long updateMetric(final String iName, final long iValue) {
+      final long value = super.updateMetric(iName, iValue);
+      if (recordMetrics) {
+        final Long current = metrics.get(iName);
+        metrics.put(iName, current != null ? current + iValue : iValue);
+      }
+      return value;
+    }
+  }
+
+  private final class Partition implements Runnable {
+    private final int               clusterId;
+    private final OClusterPosition  first;
+    private final OClusterPosition  last;
+    private BlockingQueue<Object>   queue;
+
+    private Partition(final int iClusterId, final OClusterPosition iFirst, final OClusterPosition iLast) {
+      clusterId = iClusterId;
+      first = iFirst;
+      last = iLast;
+    }
+
+    public void run() {
+      WORKER.set(Boolean.TRUE);
+      ODatabaseDocumentTx partitionDatabase = null;
+      OGroupByAggregator partial = null;
+      try {
+        if (closed)
+          return;
+
+        partitionDatabase = openDatabase();
+
+        // EVERY PARTITION EVALUATES THE FILTER IN ITS OWN CONTEXT
+        final PartitionContext partitionContext = new PartitionContext();
+        partitionContext.setRecordingMetrics(context.isRecordingMetrics());
+        for (Entry<String, Object> variable : variables.entrySet())
+          partitionContext.setVariable(variable.getKey(), variable.getValue());
+
+        final ORecordIteratorCluster<ORecordInternal<?>> iterator = new ORecordIteratorCluster<ORecordInternal<?>>(
+            partitionDatabase, (ODatabaseRecordAbstract) partitionDatabase.getUnderlying(), clusterId, first, last, useCache,
+            false);
+
+        if (aggregator != null)
+          partial = aggregator.createPartial(partitionContext);
+
+        while (!closed && iterator.hasNext()) {
+          final ORecordInternal<?> record = iterator.next();
+          if (record != null && record.getRecordType() == ODocument.RECORD_TYPE && command.filter(record, partitionContext)) {
+            if (partial == null)
+              put(record);
+            else if (!context.checkTimeout())
+              // NO RECORD REACHES THE CALLER, THAT WOULD CHECK THE TIMEOUT
+              break;
+            else
+              partial.add(record, progressive.getAndIncrement());
+          }
+        }
+
+        if (partial != null && put(partial))
+          partial = null;
+
+        if (!partitionContext.metrics.isEmpty())
+          put(new PartitionMetrics(partitionContext.metrics));
+      } catch (Throwable t) {
+        put(t);
+      } finally {
+        if (partial != null)
+          partial.close();
+        put(END);
+        if (partitionDatabase != null)
+          partitionDatabase.close();
+        ODatabaseRecordThreadLocal.INSTANCE.remove();
+        WORKER.remove();
+      }
+    }
+
+    /**
+     * @return true if the item has been queued, false if the scan has been closed
+     */
+    private boolean put(final Object iItem) {
+      try {
+        while (!closed)
+          if (queue.offer(iItem, 100, TimeUnit.MILLISECONDS))
+            // CLOSED WHILE OFFERING: THE QUEUE COULD HAVE BEEN DRAINED ALREADY
+            return !closed || !queue.remove(iItem);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
+}
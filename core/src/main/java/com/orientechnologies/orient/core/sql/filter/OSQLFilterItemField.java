@@ -24,6 +24,7 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.record.impl.ODocumentHelper;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.sql.method.OSQLMethod;
 import com.orientechnologies.orient.core.sql.method.misc.OSQLMethodField;
 
@@ -37,6 +38,7 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
   protected Set<String> preLoadedFields;
   protected String[]    preLoadedFieldsArray;
   protected String      name;
+  protected boolean     plainName;
 
   public OSQLFilterItemField(final OBaseParser iQueryToParse, final String iName) {
     super(iQueryToParse, iName);
@@ -48,6 +50,10 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
 
     final ODocument doc = (ODocument) iRecord.getRecord();
 
+    if (plainName && doc.isPeekable())
+      // READ THE SINGLE FIELD FROM THE CONTENT WITHOUT UNMARSHALLING THE RECORD
+      return transformValue(iRecord, iContext, doc.peekField(name));
+
     if (preLoadedFieldsArray == null && preLoadedFields != null && preLoadedFields.size() > 0 && preLoadedFields.size() < 5) {
       // TRANSFORM THE SET IN ARRAY ONLY THE FIRST TIME AND IF FIELDS ARE MORE THAN ONE, OTHERWISE GO WITH THE DEFAULT BEHAVIOR
       preLoadedFieldsArray = new String[preLoadedFields.size()];
@@ -68,6 +74,8 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
 
   public void setRoot(final OBaseParser iQueryToParse, final String iRoot) {
     this.name = iRoot;
+    this.plainName = iRoot != null && iRoot.length() > 0 && iRoot.charAt(0) != '@'
+        && OStringSerializerHelper.indexOf(iRoot, 0, '.', '[') == -1;
   }
 
   /**
@@ -22,7 +22,11 @@ import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexDefinitionMultiValue;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
 import com.orientechnologies.orient.core.profiler.OJVMProfiler;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.filter.OSQLFilterCondition;
@@ -142,6 +146,73 @@ public abstract class OQueryOperator {
     return null;
   }
 
+  /**
+   * Estimates the number of records that {@link #executeIndexQuery} would return for the same parameters, using the statistics of
+   * the index. It is used by the query planner to choose between the available indexes and the scan of the clusters.
+   * 
+   * @param iContext
+   *          Command context
+   * @param index
+   *          Index that would be used to calculate the result of the operator
+   * @param keyParams
+   *          Parameters of the query
+   * @return Estimated number of records or -1 if the index or the operator do not support the estimation.
+   */
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    return -1;
+  }
+
+  protected static OIndexStatistics getIndexStatistics(final OIndex<?> index) {
+    final OIndexInternal<?> internalIndex = index.getInternal();
+    if (internalIndex == null || !internalIndex.canBeUsedInEqualityOperators())
+      return null;
+    return internalIndex.getStatistics();
+  }
+
+  /**
+   * Creates the key of an index on a single field as {@link #executeIndexQuery} does.
+   */
+  protected static Object createIndexKey(final OIndexDefinition indexDefinition, final List<Object> keyParams) {
+    if (indexDefinition instanceof OIndexDefinitionMultiValue)
+      return ((OIndexDefinitionMultiValue) indexDefinition).createSingleValue(keyParams.get(0));
+    return indexDefinition.createValue(keyParams);
+  }
+
+  /**
+   * Estimates an open range on the index. With composite indexes the range is limited to the keys that start with all the
+   * parameters but the last one, like the range operators do.
+   * 
+   * @param iLowerBound
+   *          The parameter is the lower bound of the range, otherwise the upper one
+   * @param iInclusive
+   *          The bound is included in the range
+   */
+  protected long estimateIndexRange(final OIndex<?> index, final List<Object> keyParams, final boolean iLowerBound,
+      final boolean iInclusive) {
+    final OIndexStatistics statistics = getIndexStatistics(index);
+    if (statistics == null)
+      return -1;
+
+    final OIndexDefinition indexDefinition = index.getDefinition();
+    if (indexDefinition.getParamCount() == 1) {
+      final Object key = createIndexKey(indexDefinition, keyParams);
+      if (key == null)
+        return -1;
+
+      return iLowerBound ? statistics.estimateRange(key, iInclusive, null, false) : statistics.estimateRange(null, false, key,
+          iInclusive);
+    }
+
+    final OCompositeIndexDefinition compositeIndexDefinition = (OCompositeIndexDefinition) indexDefinition;
+    final Object key = compositeIndexDefinition.createSingleValue(keyParams);
+    final Object prefix = compositeIndexDefinition.createSingleValue(keyParams.subList(0, keyParams.size() - 1));
+    if (key == null || prefix == null)
+      return -1;
+
+    return iLowerBound ? statistics.estimateRange(key, iInclusive, prefix, true) : statistics.estimateRange(prefix, true, key,
+        iInclusive);
+  }
+
   @Override
   public String toString() {
     return keyword;
@@ -28,6 +28,7 @@ import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocumentHelper;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
@@ -84,6 +85,35 @@ public class OQueryOperatorBetween extends OQueryOperatorEqualityNotNulls {
     return OIndexReuseType.INDEX_METHOD;
   }
 
+  @Override
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    final OIndexStatistics statistics = getIndexStatistics(index);
+    if (statistics == null)
+      return -1;
+
+    final OIndexDefinition indexDefinition = index.getDefinition();
+    final Object[] betweenKeys = (Object[]) keyParams.get(keyParams.size() - 1);
+
+    final Object keyOne;
+    final Object keyTwo;
+    if (indexDefinition.getParamCount() == 1) {
+      keyOne = indexDefinition.createValue(Collections.singletonList(OSQLHelper.getValue(betweenKeys[0])));
+      keyTwo = indexDefinition.createValue(Collections.singletonList(OSQLHelper.getValue(betweenKeys[2])));
+    } else {
+      final List<Object> keyOneParams = new ArrayList<Object>(keyParams.subList(0, keyParams.size() - 1));
+      keyOneParams.add(OSQLHelper.getValue(betweenKeys[0]));
+      final List<Object> keyTwoParams = new ArrayList<Object>(keyParams.subList(0, keyParams.size() - 1));
+      keyTwoParams.add(OSQLHelper.getValue(betweenKeys[2]));
+
+      keyOne = ((OCompositeIndexDefinition) indexDefinition).createSingleValue(keyOneParams);
+      keyTwo = ((OCompositeIndexDefinition) indexDefinition).createSingleValue(keyTwoParams);
+    }
+
+    if (keyOne == null || keyTwo == null)
+      return -1;
+    return statistics.estimateRange(keyOne, true, keyTwo, true);
+  }
+
   @Override
   public Object executeIndexQuery(OCommandContext iContext, OIndex<?> index, INDEX_OPERATION_TYPE iOperationType,
       List<Object> keyParams, int fetchLimit) {
@@ -28,6 +28,7 @@ import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexDefinitionMultiValue;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
@@ -106,6 +107,29 @@ public class OQueryOperatorEquals extends OQueryOperatorEqualityNotNulls {
     return OIndexReuseType.INDEX_METHOD;
   }
 
+  @Override
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    final OIndexStatistics statistics = getIndexStatistics(index);
+    if (statistics == null)
+      return -1;
+
+    final OIndexDefinition indexDefinition = index.getDefinition();
+    if (indexDefinition.getParamCount() == 1) {
+      final Object key = createIndexKey(indexDefinition, keyParams);
+      return key != null ? statistics.estimateEquals(key) : -1;
+    }
+
+    final Object key = ((OCompositeIndexDefinition) indexDefinition).createSingleValue(keyParams);
+    if (key == null)
+      return -1;
+
+    if (keyParams.size() == indexDefinition.getParamCount())
+      return statistics.estimateEquals(key);
+
+    // PARTIAL KEY: ALL THE KEYS STARTING WITH IT
+    return statistics.estimateRange(key, true, key, true);
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object executeIndexQuery(OCommandContext iContext, OIndex<?> index, final INDEX_OPERATION_TYPE iOperationType,
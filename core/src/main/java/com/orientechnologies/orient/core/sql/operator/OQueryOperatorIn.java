@@ -28,6 +28,7 @@ import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
 import com.orientechnologies.orient.core.record.impl.ODocumentHelper;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 import com.orientechnologies.orient.core.sql.filter.OSQLFilterCondition;
@@ -111,6 +112,33 @@ public class OQueryOperatorIn extends OQueryOperatorEqualityNotNulls {
     return OIndexReuseType.INDEX_METHOD;
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    final OIndexStatistics statistics = getIndexStatistics(index);
+    final OIndexDefinition indexDefinition = index.getDefinition();
+    if (statistics == null || indexDefinition.getParamCount() != 1)
+      return -1;
+
+    final Object inKeyValue = keyParams.get(0);
+    final List<Object> inParams;
+    if (inKeyValue instanceof List<?>)
+      inParams = (List<Object>) inKeyValue;
+    else if (inKeyValue instanceof OSQLFilterItem)
+      inParams = (List<Object>) ((OSQLFilterItem) inKeyValue).getValue(null, iContext);
+    else
+      return -1;
+
+    long result = 0;
+    for (final Object keyValue : inParams) {
+      final Object key = indexDefinition.createValue(OSQLHelper.getValue(keyValue));
+      if (key == null)
+        return -1;
+      result += statistics.estimateEquals(key);
+    }
+    return result;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object executeIndexQuery(OCommandContext iContext, OIndex<?> index, INDEX_OPERATION_TYPE iOperationType,
@@ -62,6 +62,11 @@ public class OQueryOperatorMajor extends OQueryOperatorEqualityNotNulls {
     return OIndexReuseType.INDEX_METHOD;
   }
 
+  @Override
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    return estimateIndexRange(index, keyParams, true, false);
+  }
+
   @Override
   public Object executeIndexQuery(OCommandContext iContext, OIndex<?> index, INDEX_OPERATION_TYPE iOperationType,
       List<Object> keyParams, int fetchLimit) {
@@ -60,6 +60,11 @@ public class OQueryOperatorMajorEquals extends OQueryOperatorEqualityNotNulls {
     return OIndexReuseType.INDEX_METHOD;
   }
 
+  @Override
+  public long estimateIndexQuery(final OCommandContext iContext, final OIndex<?> index, final List<Object> keyParams) {
+    return estimateIndexRange(index, keyParams, true, true);
+  }
+
   @Override
   public Object executeIndexQuery(OCommandContext iContext, OIndex<?> index, INDEX_OPERATION_TYPE iOperationType,
       List<Object> keyParams, int fetchLimit) {
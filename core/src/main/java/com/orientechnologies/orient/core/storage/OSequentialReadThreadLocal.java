@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage;
+
+/**
+ * Tells the storage that records are read by the current thread in the order of their positions in the cluster, as iterators of
+ * clusters do. Storage uses it to load pages of the cluster as pages of sequential read, which do not push out frequently used
+ * pages of the disk cache, and to read the next pages ahead.
+ */
+public class OSequentialReadThreadLocal extends ThreadLocal<Boolean> {
+
+  public static OSequentialReadThreadLocal INSTANCE = new OSequentialReadThreadLocal();
+
+  @Override
+  protected Boolean initialValue() {
+    return Boolean.FALSE;
+  }
+
+  public boolean isSequentialRead() {
+    return get();
+  }
+
+}
@@ -15,6 +15,11 @@
  */
 package com.orientechnologies.orient.core.storage;
 
+import java.util.Collection;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.id.ORID;
+
 /**
  * Tagged interface for proxy storage implementation
  * 
@@ -22,4 +27,21 @@ package com.orientechnologies.orient.core.storage;
  * 
  */
 public interface OStorageProxy extends OStorage {
+  /**
+   * Loads multiple records with less round trips than loading them one by one.
+   * 
+   * @param iRids
+   *          Records to load
+   * @param iFetchPlan
+   *          Fetch plan used for each record, can be null
+   * @param iIgnoreCache
+   *          Ignore the cache of the storage
+   * @param iLoadTombstones
+   *          Load also the records deleted but not removed yet
+   * @return The loaded records in the order of iRids. Records not found are not contained in the map.
+   * @throws com.orientechnologies.orient.core.exception.OStorageBusyException
+   *           if the records cannot be loaded now, for example while the result of a command is being received
+   */
+  public Map<ORID, ORawBuffer> loadRecords(Collection<? extends ORID> iRids, String iFetchPlan, boolean iIgnoreCache,
+      boolean iLoadTombstones);
 }
\ No newline at end of file
@@ -138,7 +138,9 @@ public class OStorageLocal extends OStorageLocalAbstract {
     if (directMemory != null)
       diskCache = new O2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * 1024 * 1024,
           OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, null,
-          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024, this, false);
+          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024, this, false,
+          OGlobalConfiguration.DISK_CACHE_WRITER_INTERVAL.getValueAsInteger(),
+          OGlobalConfiguration.DISK_CACHE_WRITER_DIRTY_RATIO.getValueAsFloat());
     else
       diskCache = null;
   }
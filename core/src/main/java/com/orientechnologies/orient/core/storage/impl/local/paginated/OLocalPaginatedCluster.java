@@ -62,6 +62,7 @@ import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.OClusterEntryIterator;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OSequentialReadThreadLocal;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.fs.OFile;
 import com.orientechnologies.orient.core.storage.fs.OFileFactory;
@@ -74,6 +75,7 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomi
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OClusterStateRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OFullPageDiff;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
 import com.orientechnologies.orient.core.version.ORecordVersion;
@@ -320,28 +322,10 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
             + OLongSerializer.LONG_SIZE;
 
         if (entryContentLength < OLocalPage.MAX_RECORD_SIZE) {
-          if (writeAheadLog != null) {
-            OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(false));
-            lastLsn.set(lsn);
-          }
-
-          byte[] entryContent = new byte[entryContentLength];
-
-          int entryPosition = 0;
-          entryContent[entryPosition] = recordType;
-          entryPosition++;
-
-          OIntegerSerializer.INSTANCE.serializeNative(content.length, entryContent, entryPosition);
-          entryPosition += OIntegerSerializer.INT_SIZE;
-
-          System.arraycopy(content, 0, entryContent, entryPosition, content.length);
-          entryPosition += grownContentSize;
+          startAtomicUnit(false);
 
-          entryContent[entryPosition] = 1;
-          entryPosition++;
-
-          OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryPosition);
-          OLocalPage.TrackMode trackMode = writeAheadLog == null ? OLocalPage.TrackMode.NONE : OLocalPage.TrackMode.FORWARD;
+          byte[] entryContent = createEntryContent(content, grownContentSize, entryContentLength, recordType);
+          OLocalPage.TrackMode trackMode = getTrackMode(false);
 
           final AddEntryResult addEntryResult = addEntry(recordVersion, entryContent, trackMode);
 
@@ -350,19 +334,13 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
           logClusterState();
 
-          if (writeAheadLog != null) {
-            writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-            lastLsn.set(null);
-          }
+          endAtomicUnit();
 
           return createPhysicalPosition(recordType, addEntryResult.pagePointer, addEntryResult.recordVersion);
         } else {
-          if (writeAheadLog != null) {
-            OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(true));
-            lastLsn.set(lsn);
-          }
+          startAtomicUnit(true);
 
-          OLocalPage.TrackMode trackMode = writeAheadLog == null ? OLocalPage.TrackMode.NONE : OLocalPage.TrackMode.BOTH;
+          OLocalPage.TrackMode trackMode = getTrackMode(true);
           int entrySize = grownContentSize + OIntegerSerializer.INT_SIZE + OByteSerializer.BYTE_SIZE;
 
           int fullEntryPosition = 0;
@@ -441,10 +419,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
           logClusterState();
 
-          if (writeAheadLog != null) {
-            writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-            lastLsn.set(null);
-          }
+          endAtomicUnit();
 
           return createPhysicalPosition(recordType, firstPagePointer, version);
         }
@@ -457,6 +432,124 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
   }
 
+  /**
+   * Creates records by appending them to new pages at the end of the cluster file. Changes of every page are logged in WAL by
+   * single record and all records of the batch are created in single atomic unit, so bulk load does not pay for the search of free
+   * space and WAL logging of every record. Records which do not fit in single page are created one by one by
+   * {@link #createRecord(byte[], ORecordVersion, byte)}.
+   * 
+   * @return positions of the created records in the same order as their contents
+   */
+  public OPhysicalPosition[] createRecords(final byte[][] contents, final ORecordVersion recordVersion, final byte recordType)
+      throws IOException {
+    final OPhysicalPosition[] positions = new OPhysicalPosition[contents.length];
+    final byte[][] entries = new byte[contents.length][];
+
+    for (int i = 0; i < contents.length; i++) {
+      final byte[] content = Snappy.compress(contents[i]);
+
+      int grownContentSize = (int) (RECORD_GROW_FACTOR * content.length);
+      int entryContentLength = grownContentSize + 2 * OByteSerializer.BYTE_SIZE + OIntegerSerializer.INT_SIZE
+          + OLongSerializer.LONG_SIZE;
+
+      if (entryContentLength < OLocalPage.MAX_RECORD_SIZE)
+        entries[i] = createEntryContent(content, grownContentSize, entryContentLength, recordType);
+    }
+
+    int start = 0;
+    while (start < contents.length) {
+      if (entries[start] == null) {
+        positions[start] = createRecord(contents[start], recordVersion, recordType);
+        start++;
+        continue;
+      }
+
+      int end = start + 1;
+      while (end < contents.length && entries[end] != null)
+        end++;
+
+      appendEntries(entries, start, end, recordVersion, recordType, positions);
+      start = end;
+    }
+
+    return positions;
+  }
+
+  private void appendEntries(final byte[][] entries, final int start, final int end, final ORecordVersion recordVersion,
+      final byte recordType, final OPhysicalPosition[] positions) throws IOException {
+    externalModificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        startAtomicUnit(false);
+
+        final OLocalPage.TrackMode trackMode = getTrackMode(false);
+
+        int entryIndex = start;
+        while (entryIndex < end) {
+          final long pageIndex = diskCache.getFilledUpTo(fileId);
+
+          long pagePointer = diskCache.load(fileId, pageIndex);
+          try {
+            final OLocalPage localPage = new OLocalPage(pagePointer, true, trackMode);
+            int initialFreeSpace = localPage.getFreeSpace();
+
+            while (entryIndex < end) {
+              int position = localPage.appendRecord(recordVersion, entries[entryIndex], false);
+              if (position < 0)
+                break;
+
+              positions[entryIndex] = createPhysicalPosition(recordType, (pageIndex << PAGE_INDEX_OFFSET) | position,
+                  localPage.getRecordVersion(position));
+              entryIndex++;
+              size++;
+            }
+
+            assert localPage.getRecordsCount() > 0;
+            recordsSize += initialFreeSpace - localPage.getFreeSpace();
+
+            logPageChanges(localPage, pageIndex);
+          } finally {
+            diskCache.markDirty(fileId, pageIndex);
+            diskCache.release(fileId, pageIndex);
+          }
+
+          updateFreePagesIndex(freePageLists.length, pageIndex, trackMode);
+        }
+
+        logClusterState();
+
+        endAtomicUnit();
+      } finally {
+        lastLsn.set(null);
+        releaseExclusiveLock();
+      }
+    } finally {
+      externalModificationLock.releaseModificationLock();
+    }
+  }
+
+  private byte[] createEntryContent(byte[] content, int grownContentSize, int entryContentLength, byte recordType) {
+    byte[] entryContent = new byte[entryContentLength];
+
+    int entryPosition = 0;
+    entryContent[entryPosition] = recordType;
+    entryPosition++;
+
+    OIntegerSerializer.INSTANCE.serializeNative(content.length, entryContent, entryPosition);
+    entryPosition += OIntegerSerializer.INT_SIZE;
+
+    System.arraycopy(content, 0, entryContent, entryPosition, content.length);
+    entryPosition += grownContentSize;
+
+    entryContent[entryPosition] = 1;
+    entryPosition++;
+
+    OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryPosition);
+
+    return entryContent;
+  }
+
   private OPhysicalPosition createPhysicalPosition(byte recordType, long firstPagePointer, ORecordVersion version) {
     final OPhysicalPosition physicalPosition = new OPhysicalPosition();
     physicalPosition.recordType = recordType;
@@ -480,7 +573,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
         return null;
 
       ORecordVersion recordVersion = null;
-      long pointer = diskCache.load(fileId, pageIndex);
+      long pointer = diskCache.load(fileId, pageIndex, OSequentialReadThreadLocal.INSTANCE.isSequentialRead());
       try {
         final OLocalPage localPage = new OLocalPage(pointer, false, OLocalPage.TrackMode.NONE);
 
@@ -525,10 +618,12 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     final List<byte[]> recordChunks = new ArrayList<byte[]>();
     int contentSize = 0;
 
+    final boolean sequentialRead = OSequentialReadThreadLocal.INSTANCE.isSequentialRead();
+
     long nextPagePointer = -1;
     boolean firstEntry = true;
     do {
-      long pointer = diskCache.load(fileId, pageIndex);
+      long pointer = diskCache.load(fileId, pageIndex, sequentialRead);
       try {
         final OLocalPage localPage = new OLocalPage(pointer, false, OLocalPage.TrackMode.NONE);
 
@@ -591,18 +686,9 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         boolean isRecordSpreadAcrossSeveralPages = isRecordSpreadAcrossSeveralPages(pageIndex, recordPosition);
 
-        final OLocalPage.TrackMode trackMode;
-        if (writeAheadLog == null)
-          trackMode = OLocalPage.TrackMode.NONE;
-        else if (isRecordSpreadAcrossSeveralPages)
-          trackMode = OLocalPage.TrackMode.BOTH;
-        else
-          trackMode = OLocalPage.TrackMode.FORWARD;
+        final OLocalPage.TrackMode trackMode = getTrackMode(isRecordSpreadAcrossSeveralPages);
 
-        if (writeAheadLog != null) {
-          OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(isRecordSpreadAcrossSeveralPages));
-          lastLsn.set(lsn);
-        }
+        startAtomicUnit(isRecordSpreadAcrossSeveralPages);
 
         long nextPagePointer = -1;
         int removedContentSize = 0;
@@ -647,10 +733,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         logClusterState();
 
-        if (writeAheadLog != null) {
-          writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-          lastLsn.set(null);
-        }
+        endAtomicUnit();
 
         return true;
       } finally {
@@ -693,18 +776,9 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
           isRecordSpreadAcrossSeveralPages = true;
         }
 
-        final OLocalPage.TrackMode trackMode;
-        if (writeAheadLog == null)
-          trackMode = OLocalPage.TrackMode.NONE;
-        else if (isRecordSpreadAcrossSeveralPages)
-          trackMode = OLocalPage.TrackMode.BOTH;
-        else
-          trackMode = OLocalPage.TrackMode.FORWARD;
+        final OLocalPage.TrackMode trackMode = getTrackMode(isRecordSpreadAcrossSeveralPages);
 
-        if (writeAheadLog != null) {
-          OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(isRecordSpreadAcrossSeveralPages));
-          lastLsn.set(lsn);
-        }
+        startAtomicUnit(isRecordSpreadAcrossSeveralPages);
 
         int entryPosition = 0;
         recordEntry[entryPosition] = recordType;
@@ -844,10 +918,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         logClusterState();
 
-        if (writeAheadLog != null) {
-          writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-          lastLsn.set(null);
-        }
+        endAtomicUnit();
 
       } finally {
         releaseExclusiveLock();
@@ -875,19 +946,23 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
   }
 
+  /**
+   * Redoes the changes of a page. Called concurrently for different pages during the restore of the storage, so only the shared
+   * lock is taken.
+   */
   public void restorePage(OAbstractPageWALRecord walRecord) throws IOException {
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
-      if (walRecord instanceof OAddNewPageRecord) {
+      if (walRecord instanceof OAddNewPageRecord)
         // skip it
-      }
+        return;
 
       if (!(walRecord instanceof OUpdatePageRecord))
         throw new OStorageException("Unknown WAL record type -  " + walRecord.getClass().getName());
 
       restorePageData((OUpdatePageRecord) walRecord);
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -896,10 +971,16 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     long pagePointer = diskCache.load(fileId, pageIndex);
     try {
       final OLocalPage page = new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE);
+
+      // THE PAGE ALREADY CONTAINS THE CHANGES IF IT WAS FLUSHED AFTER THEM
+      if (page.getLsn().compareTo(updatePageRecord.getLsn()) >= 0)
+        return;
+
+      page.restoreChanges(updatePageRecord.getDiffs());
       page.setLsn(updatePageRecord.getLsn());
 
-    } finally {
       diskCache.markDirty(fileId, pageIndex);
+    } finally {
       diskCache.release(fileId, pageIndex);
     }
   }
@@ -1073,15 +1154,96 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
   }
 
+  /**
+   * Returns how the changes of the pages are tracked. The previous values are kept when the change can be rolled back, always the
+   * case while the cluster is locked by a transaction, even without WAL, since the storage reverts the pages if the commit fails.
+   */
+  private OLocalPage.TrackMode getTrackMode(final boolean rollbackSupported) {
+    if (storageLocal.isAtomicOperationCluster(this))
+      return OLocalPage.TrackMode.BOTH;
+
+    if (writeAheadLog == null)
+      return OLocalPage.TrackMode.NONE;
+
+    return rollbackSupported ? OLocalPage.TrackMode.BOTH : OLocalPage.TrackMode.FORWARD;
+  }
+
+  /**
+   * Starts the WAL unit of a change of the cluster. If the cluster is locked by a transaction being committed by the storage in
+   * the current thread, the change becomes part of the transaction unit instead.
+   */
+  private void startAtomicUnit(final boolean rollbackSupported) throws IOException {
+    if (writeAheadLog == null)
+      return;
+
+    if (storageLocal.isAtomicOperationCluster(this))
+      lastLsn.set(storageLocal.getAtomicOperationLsn());
+    else
+      lastLsn.set(writeAheadLog.log(new OAtomicUnitStartRecord(rollbackSupported)));
+  }
+
+  private void endAtomicUnit() throws IOException {
+    if (writeAheadLog == null)
+      return;
+
+    if (storageLocal.isAtomicOperationCluster(this))
+      // THE UNIT IS CLOSED BY THE STORAGE AT THE END OF THE TRANSACTION
+      storageLocal.setAtomicOperationLsn(lastLsn.get());
+    else
+      writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
+
+    lastLsn.set(null);
+  }
+
   private void logPageChanges(OLocalPage localPage, long pageIndex) throws IOException {
+    List<OPageDiff<?>> pageChanges = localPage.getPageChanges();
+
     if (writeAheadLog != null) {
-      List<OPageDiff<?>> pageChanges = localPage.getPageChanges();
       OLogSequenceNumber lsn = lastLsn.get();
       assert lsn != null;
 
       lsn = writeAheadLog.log(new OUpdatePageRecord(pageIndex, id, lsn, pageChanges));
+      localPage.setLsn(lsn);
       lastLsn.set(lsn);
     }
+
+    if (storageLocal.isAtomicOperationCluster(this))
+      storageLocal.addAtomicOperationPageChanges(this, pageIndex, pageChanges);
+  }
+
+  /**
+   * Reverts the changes of a page, tracked with their previous values, in reverse order. The revert is logged in the WAL unit of
+   * the changes as a change of the page itself, so it is redone if the storage is restored and can be reverted in turn.
+   * 
+   * @return the LSN of the logged revert, the passed one if the WAL is not used
+   */
+  public OLogSequenceNumber revertPageChanges(final long pageIndex, final List<OPageDiff<?>> pageChanges,
+      final OLogSequenceNumber prevUnitRecord) throws IOException {
+    final List<OPageDiff<?>> revertChanges = new ArrayList<OPageDiff<?>>(pageChanges.size());
+    for (int i = pageChanges.size() - 1; i >= 0; --i)
+      revertChanges.add(((OFullPageDiff<?>) pageChanges.get(i)).createRevertDiff());
+
+    acquireExclusiveLock();
+    try {
+      final long pagePointer = diskCache.load(fileId, pageIndex);
+      try {
+        final OLocalPage localPage = new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE);
+        localPage.restoreChanges(revertChanges);
+
+        OLogSequenceNumber lsn = prevUnitRecord;
+        if (writeAheadLog != null) {
+          lsn = writeAheadLog.log(new OUpdatePageRecord(pageIndex, id, prevUnitRecord, revertChanges));
+          localPage.setLsn(lsn);
+        }
+
+        diskCache.markDirty(fileId, pageIndex);
+        return lsn;
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+    } finally {
+      releaseExclusiveLock();
+    }
   }
 
   private int calculateFreePageIndex(OLocalPage localPage) {
@@ -1285,6 +1447,18 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     throw new UnsupportedOperationException("unlock");
   }
 
+  /**
+   * Locks the cluster exclusively for the whole commit of a transaction. The lock is reentrant, so the record operations executed
+   * by the committing thread are not blocked.
+   */
+  public void acquireTxLock() {
+    acquireExclusiveLock();
+  }
+
+  public void releaseTxLock() {
+    releaseExclusiveLock();
+  }
+
   @Override
   public int getId() {
     return id;
@@ -1431,8 +1605,10 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   private OPhysicalPosition[] findFirstPhysicalPosition(long pageIndex, int recordPosition) throws IOException {
     long pagesCount = diskCache.getFilledUpTo(fileId);
+    final boolean sequentialRead = OSequentialReadThreadLocal.INSTANCE.isSequentialRead();
+
     pageLoop: for (long i = pageIndex; i < pagesCount; i++) {
-      long pointer = diskCache.load(fileId, i);
+      long pointer = diskCache.load(fileId, i, sequentialRead);
 
       try {
         final OLocalPage localPage = new OLocalPage(pointer, false, OLocalPage.TrackMode.NONE);
@@ -1487,8 +1663,10 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
       endPageIndex = pageIndex;
     }
 
+    final boolean sequentialRead = OSequentialReadThreadLocal.INSTANCE.isSequentialRead();
+
     pageLoop: for (long i = endPageIndex; i >= 0; i--) {
-      long pointer = diskCache.load(fileId, i);
+      long pointer = diskCache.load(fileId, i, sequentialRead);
       try {
         final OLocalPage localPage = new OLocalPage(pointer, false, OLocalPage.TrackMode.NONE);
 
@@ -1636,6 +1814,43 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     recordsSize = walRecord.getRecordsSize();
   }
 
+  /**
+   * Returns the state of the cluster kept out of its pages, to restore it if the changes of a transaction are reverted.
+   */
+  public State getState() {
+    acquireSharedLock();
+    try {
+      return new State(size, recordsSize, freePageLists.clone());
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public void restoreState(State state) throws IOException {
+    acquireExclusiveLock();
+    try {
+      size = state.size;
+      recordsSize = state.recordsSize;
+      freePageLists = state.freePageLists.clone();
+
+      logClusterState();
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public static final class State {
+    private final long   size;
+    private final long   recordsSize;
+    private final long[] freePageLists;
+
+    private State(long size, long recordsSize, long[] freePageLists) {
+      this.size = size;
+      this.recordsSize = recordsSize;
+      this.freePageLists = freePageLists;
+    }
+  }
+
   private static final class AddEntryResult {
     private final long           pagePointer;
     private final ORecordVersion recordVersion;
@@ -19,12 +19,17 @@ package com.orientechnologies.orient.core.storage.impl.local.paginated;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -60,9 +65,12 @@ import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.O2QCache;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.OPartitioned2QCache;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.OPageDataVerificationError;
 import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
 import com.orientechnologies.orient.core.metadata.OMetadata;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
@@ -77,6 +85,8 @@ import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstrac
 import com.orientechnologies.orient.core.storage.impl.local.OStorageVariableParser;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAbstractCheckPointStartRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAbstractPageWALRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitEndRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitStartRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OCheckpointEndRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OClusterStateRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.ODirtyPage;
@@ -86,8 +96,15 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OFuzzy
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OFuzzyCheckpointStartRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRedoExecutor;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRedoHandler;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OFullPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
 import com.orientechnologies.orient.core.tx.OTransaction;
+import com.orientechnologies.orient.core.tx.OTransactionAbstract;
+import com.orientechnologies.orient.core.tx.OTxListener;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
 
@@ -111,6 +128,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       ".ocs", ".oef", ".oem", ".oet", ".wal", ".wmr"                       };
 
   private OModificationLock                         modificationLock        = new OModificationLock();
+  private final ThreadLocal<OAtomicOperation>       atomicOperation         = new ThreadLocal<OAtomicOperation>();
 
   private ODiskCache                                diskCache;
   private OWriteAheadLog                            writeAheadLog;
@@ -177,9 +195,18 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     } else
       writeAheadLog = null;
 
-    diskCache = new O2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * ONE_KB * ONE_KB,
-        OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, writeAheadLog,
-        OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB, this, false);
+    final int diskCachePartitions = OGlobalConfiguration.DISK_CACHE_PARTITIONS.getValueAsInteger();
+    if (diskCachePartitions > 1)
+      diskCache = new OPartitioned2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * ONE_KB * ONE_KB,
+          OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, writeAheadLog,
+          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB, this, false, diskCachePartitions);
+    else
+      diskCache = new O2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * ONE_KB * ONE_KB,
+          OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, writeAheadLog,
+          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB, this, false,
+          OGlobalConfiguration.DISK_CACHE_WRITER_INTERVAL.getValueAsInteger(),
+          OGlobalConfiguration.DISK_CACHE_WRITER_DIRTY_RATIO.getValueAsFloat(),
+          OGlobalConfiguration.DISK_CACHE_READ_AHEAD_PAGES.getValueAsInteger());
   }
 
   public void open(final String iUserName, final String iUserPassword, final Map<String, Object> iProperties) {
@@ -275,6 +302,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     if (lastCheckPoint == null) {
       OLogManager.instance().info(this, "Checkpoints are absent will restore from beginning.");
       restoreFromBegging();
+      return;
     }
 
     OWALRecord checkPointRecord = writeAheadLog.read(lastCheckPoint);
@@ -304,7 +332,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
           OLogManager.instance().warn(this, "Will restore from beginning.");
           restoreFromBegging();
         }
-      }
+      } else
+        restoreFromCheckPoint((OAbstractCheckPointStartRecord) checkPointRecord);
 
       return;
     }
@@ -327,7 +356,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
           OLogManager.instance().warn(this, "Will restore from beginning.");
           restoreFromBegging();
         }
-      }
+      } else
+        restoreFromCheckPoint((OAbstractCheckPointStartRecord) checkPointRecord);
 
       return;
     }
@@ -343,6 +373,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       OWALRecord walRecord = writeAheadLog.read(lsn);
       if (walRecord instanceof OCheckpointEndRecord)
         return true;
+
+      lsn = writeAheadLog.next(lsn);
     }
 
     return false;
@@ -355,6 +387,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       OWALRecord walRecord = writeAheadLog.read(lsn);
       if (walRecord instanceof OFuzzyCheckpointEndRecord)
         return true;
+
+      lsn = writeAheadLog.next(lsn);
     }
 
     return false;
@@ -417,26 +451,141 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
   }
 
   private void restoreFrom(OLogSequenceNumber lsn) throws IOException {
-    while (lsn != null) {
-      OWALRecord walRecord = writeAheadLog.read(lsn);
-      if (walRecord instanceof OAbstractPageWALRecord)
-        restorePageWALRecord((OAbstractPageWALRecord) walRecord);
-      else if (walRecord instanceof OClusterStateRecord)
-        restoreClusterStateWALRecord((OClusterStateRecord) walRecord);
-      else if (walRecord instanceof OAbstractCheckPointStartRecord) {
-        // skip it
-      } else if (walRecord instanceof OCheckpointEndRecord) {
-        // skip it
-      } else if (walRecord instanceof OFuzzyCheckpointEndRecord) {
-        // skip it
-      } else if (walRecord instanceof ODirtyPagesRecord) {
-        // skip it
-      } else {
-        OLogManager.instance().error(this, "Unknown log record %s, will skip it.", walRecord.getClass().getName());
+    // THE UNITS NOT ENDED YET BY THEIR LAST RECORD, THE LAST STATE LOGGED FOR EVERY CLUSTER AND THE STATE BEFORE THE RESTORE
+    final Map<OLogSequenceNumber, ORestoredUnit> units = new HashMap<OLogSequenceNumber, ORestoredUnit>();
+    final Map<Integer, OClusterStateRecord> clusterStates = new HashMap<Integer, OClusterStateRecord>();
+    final Map<Integer, OLocalPaginatedCluster.State> initialStates = new HashMap<Integer, OLocalPaginatedCluster.State>();
+    for (OLocalPaginatedCluster cluster : clusters)
+      if (cluster != null)
+        initialStates.put(cluster.getId(), cluster.getState());
+
+    // THE PAGE CHANGES ARE REDONE IN PARALLEL, THE CHANGES ALREADY PRESENT IN THE PAGES ARE SKIPPED BY THE CLUSTERS
+    new OWALRedoExecutor(writeAheadLog, new OWALRedoHandler() {
+      @Override
+      public void recordRead(OWALRecord walRecord) {
+        if (walRecord instanceof OAtomicUnitStartRecord)
+          units.put(walRecord.getLsn(),
+              new ORestoredUnit(walRecord.getLsn(), ((OAtomicUnitStartRecord) walRecord).isRollbackSupported()));
+        else if (walRecord instanceof OAbstractPageWALRecord) {
+          final OAbstractPageWALRecord pageRecord = (OAbstractPageWALRecord) walRecord;
+          final ORestoredUnit unit = pageRecord.getPrevUnitRecord() != null ? units.remove(pageRecord.getPrevUnitRecord()) : null;
+          if (unit != null) {
+            // THE CLUSTERS CHANGED BY A UNIT ARE LOCKED TILL ITS END, SO THE LAST STATE LOGGED IS THE ONE BEFORE THE UNIT
+            final Integer clusterId = pageRecord.getClusterId();
+            if (!unit.clusterStates.containsKey(clusterId))
+              unit.clusterStates.put(clusterId, clusterStates.get(clusterId));
+
+            unit.lastLsn = walRecord.getLsn();
+            units.put(unit.lastLsn, unit);
+          }
+        } else if (walRecord instanceof OAtomicUnitEndRecord)
+          units.remove(((OAtomicUnitEndRecord) walRecord).getPrevUnitRecord());
+        else if (walRecord instanceof OClusterStateRecord)
+          clusterStates.put(((OClusterStateRecord) walRecord).getClusterId(), (OClusterStateRecord) walRecord);
       }
 
-      lsn = writeAheadLog.next(lsn);
+      @Override
+      public void redoPage(OAbstractPageWALRecord pageRecord) throws IOException {
+        restorePageWALRecord(pageRecord);
+      }
+
+      @Override
+      public void redoRecord(OWALRecord walRecord) {
+        if (walRecord instanceof OClusterStateRecord)
+          restoreClusterStateWALRecord((OClusterStateRecord) walRecord);
+        else if (walRecord instanceof OAbstractCheckPointStartRecord) {
+          // skip it
+        } else if (walRecord instanceof OCheckpointEndRecord) {
+          // skip it
+        } else if (walRecord instanceof OFuzzyCheckpointEndRecord) {
+          // skip it
+        } else if (walRecord instanceof ODirtyPagesRecord) {
+          // skip it
+        } else if (walRecord instanceof OAtomicUnitStartRecord || walRecord instanceof OAtomicUnitEndRecord) {
+          // TRACKED BY recordRead()
+        } else {
+          OLogManager.instance().error(this, "Unknown log record %s, will skip it.", walRecord.getClass().getName());
+        }
+      }
+    }).redoFrom(lsn);
+
+    if (units.isEmpty())
+      return;
+
+    // THE UNITS NOT ENDED WERE INTERRUPTED BY A CRASH, THE LAST ONES ARE REVERTED FIRST
+    final List<ORestoredUnit> incompleteUnits = new ArrayList<ORestoredUnit>(units.values());
+    Collections.sort(incompleteUnits, new Comparator<ORestoredUnit>() {
+      @Override
+      public int compare(ORestoredUnit unitOne, ORestoredUnit unitTwo) {
+        return unitTwo.lastLsn.compareTo(unitOne.lastLsn);
+      }
+    });
+
+    for (ORestoredUnit unit : incompleteUnits)
+      revertUnit(unit, initialStates);
+
+    writeAheadLog.flush();
+  }
+
+  /**
+   * Reverts the page changes of a WAL unit interrupted before its end, reading its records backward, then restores the state of
+   * its clusters and ends the unit, so it is not reverted again by the next restore. Only the units which support the rollback
+   * track the previous values of the pages, the changes of the others are kept.
+   */
+  private void revertUnit(final ORestoredUnit unit, final Map<Integer, OLocalPaginatedCluster.State> initialStates)
+      throws IOException {
+    final List<OUpdatePageRecord> pageRecords = new ArrayList<OUpdatePageRecord>();
+    boolean revertible = unit.rollbackSupported;
+
+    OLogSequenceNumber lsn = unit.lastLsn;
+    while (revertible) {
+      final OWALRecord walRecord = writeAheadLog.read(lsn);
+      if (!(walRecord instanceof OAbstractPageWALRecord))
+        // START OF THE UNIT
+        break;
+
+      if (walRecord instanceof OUpdatePageRecord) {
+        final OUpdatePageRecord pageRecord = (OUpdatePageRecord) walRecord;
+        for (OPageDiff<?> diff : pageRecord.getDiffs())
+          if (!(diff instanceof OFullPageDiff))
+            revertible = false;
+
+        pageRecords.add(pageRecord);
+      }
+
+      lsn = ((OAbstractPageWALRecord) walRecord).getPrevUnitRecord();
+    }
+
+    if (!revertible) {
+      OLogManager.instance().warn(this, "WAL unit ended by record %s was interrupted and cannot be reverted, its changes are kept.",
+          unit.lastLsn);
+      return;
+    }
+
+    OLogManager.instance().warn(this, "WAL unit ended by record %s was interrupted, %d page changes will be reverted.",
+        unit.lastLsn, pageRecords.size());
+
+    lsn = unit.lastLsn;
+    for (OUpdatePageRecord pageRecord : pageRecords) {
+      final OLocalPaginatedCluster cluster = getRestoredCluster(pageRecord.getClusterId());
+      if (cluster != null)
+        lsn = cluster.revertPageChanges(pageRecord.getPageIndex(), pageRecord.getDiffs(), lsn);
+    }
+
+    for (Map.Entry<Integer, OClusterStateRecord> entry : unit.clusterStates.entrySet()) {
+      final OLocalPaginatedCluster cluster = getRestoredCluster(entry.getKey());
+      if (cluster == null)
+        continue;
+
+      if (entry.getValue() != null) {
+        cluster.restoreClusterState(entry.getValue());
+        cluster.logClusterState();
+      } else if (initialStates.containsKey(entry.getKey()))
+        // NO STATE LOGGED BEFORE THE UNIT: THE CLUSTER WAS NOT CHANGED SINCE THE STATE STORED ON DISK
+        cluster.restoreState(initialStates.get(entry.getKey()));
     }
+
+    writeAheadLog.log(new OAtomicUnitEndRecord(lsn));
   }
 
   private void restoreClusterStateWALRecord(OClusterStateRecord clusterStateRecord) {
@@ -450,13 +599,19 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
   }
 
   private void restorePageWALRecord(OAbstractPageWALRecord pageRecord) throws IOException {
-    int clusterId = pageRecord.getClusterId();
-    OLocalPaginatedCluster cluster = getClusterById(clusterId);
+    final OLocalPaginatedCluster cluster = getRestoredCluster(pageRecord.getClusterId());
+    if (cluster != null)
+      cluster.restorePage(pageRecord);
+  }
+
+  private OLocalPaginatedCluster getRestoredCluster(final int clusterId) {
+    // THE STORAGE LOCK IS HELD BY THE THREAD WHICH OPENS THE STORAGE, SO THE REDO THREADS CANNOT CALL getClusterById()
+    final OLocalPaginatedCluster cluster = clusterId >= 0 && clusterId < clusters.length ? clusters[clusterId] : null;
 
     if (cluster == null)
       OLogManager.instance().error(this, "Cluster with id %d is absent, log record will be skipped.", clusterId);
-    else
-      cluster.restorePage(pageRecord);
+
+    return cluster;
   }
 
   public void create(final Map<String, Object> iProperties) {
@@ -900,6 +1055,12 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
             ppos = cluster.createRecord(content, recordVersion, recordType);
             rid.clusterPosition = ppos.clusterPosition;
 
+            final OAtomicOperation operation = atomicOperation.get();
+            if (operation != null && !operation.clusterStates.containsKey(cluster))
+              // CREATED WHILE COMMITTING A TRANSACTION, AS A LINKED RECORD, IN A CLUSTER NOT LOCKED BY THE TRANSACTION: THE PAGES
+              // ARE NOT REVERTED SO REMOVE IT IF THE TRANSACTION FAILS
+              operation.addUndo(cluster, rid.clusterPosition);
+
             if (callback != null)
               callback.call(rid, ppos.clusterPosition);
 
@@ -926,6 +1087,38 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     }
   }
 
+  /**
+   * Creates records of bulk load in the cluster, see {@link OLocalPaginatedCluster#createRecords(byte[][], ORecordVersion, byte)}.
+   * 
+   * @return positions of the created records in the same order as their contents
+   */
+  public OPhysicalPosition[] createRecords(final int clusterId, final byte[][] contents, final ORecordVersion recordVersion,
+      final byte recordType) {
+    checkOpeness();
+
+    final OLocalPaginatedCluster cluster = getClusterById(clusterId);
+    cluster.getExternalModificationLock().requestModificationLock();
+    try {
+      modificationLock.requestModificationLock();
+      try {
+        checkOpeness();
+
+        lock.acquireSharedLock();
+        try {
+          return cluster.createRecords(contents, recordVersion, recordType);
+        } finally {
+          lock.releaseSharedLock();
+        }
+      } catch (IOException ioe) {
+        throw new OStorageException("Error on creating records in cluster: " + cluster, ioe);
+      } finally {
+        modificationLock.releaseModificationLock();
+      }
+    } finally {
+      cluster.getExternalModificationLock().releaseModificationLock();
+    }
+  }
+
   @Override
   public ORecordMetadata getRecordMetadata(ORID rid) {
     if (rid.isNew())
@@ -1020,44 +1213,14 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
           lockManager.acquireLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
           try {
             // UPDATE IT
-            final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
-            if (!checkForRecordValidity(ppos)) {
-              final ORecordVersion recordVersion = OVersionFactory.instance().createUntrackedVersion();
-              if (callback != null)
-                callback.call(rid, recordVersion);
-
-              return new OStorageOperationResult<ORecordVersion>(recordVersion);
-            }
-
-            // VERSION CONTROL CHECK
-            switch (version.getCounter()) {
-            // DOCUMENT UPDATE, NO VERSION CONTROL
-            case -1:
-              ppos.recordVersion.increment();
-              break;
-
-            // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
-            case -2:
-              ppos.recordVersion.setCounter(-2);
-              break;
-
-            default:
-              // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
-              // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-              if (!version.equals(ppos.recordVersion))
-                if (OFastConcurrentModificationException.enabled())
-                  throw OFastConcurrentModificationException.instance();
-                else
-                  throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
-              ppos.recordVersion.increment();
-            }
-
-            cluster.updateRecord(rid.clusterPosition, content, ppos.recordVersion, recordType);
+            ORecordVersion recordVersion = doUpdateRecord(cluster, rid, content, version, recordType);
+            if (recordVersion == null)
+              recordVersion = OVersionFactory.instance().createUntrackedVersion();
 
             if (callback != null)
-              callback.call(rid, ppos.recordVersion);
+              callback.call(rid, recordVersion);
 
-            return new OStorageOperationResult<ORecordVersion>(ppos.recordVersion);
+            return new OStorageOperationResult<ORecordVersion>(recordVersion);
 
           } finally {
             lockManager.releaseLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
@@ -1096,22 +1259,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
         try {
           lockManager.acquireLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
           try {
-            final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
-
-            if (ppos == null)
-              // ALREADY DELETED
-              return new OStorageOperationResult<Boolean>(false);
-
-            // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-            if (version.getCounter() > -1 && !ppos.recordVersion.equals(version))
-              if (OFastConcurrentModificationException.enabled())
-                throw OFastConcurrentModificationException.instance();
-              else
-                throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.DELETED);
-
-            cluster.deleteRecord(ppos.clusterPosition);
-
-            return new OStorageOperationResult<Boolean>(true);
+            return new OStorageOperationResult<Boolean>(doDeleteRecord(cluster, rid, version));
           } finally {
             lockManager.releaseLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
           }
@@ -1245,12 +1393,333 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     return null;
   }
 
-  public void commit(final OTransaction tx) {
-    throw new UnsupportedOperationException("commit");
+  /**
+   * Commits the changes of an optimistic transaction. The records are serialized first, so the linked records not saved yet are
+   * created before any lock is held, then only the clusters touched by the transaction are locked, in order of id, the versions
+   * are checked and the changes are applied. All the page changes of the locked clusters are logged in the same WAL unit, made
+   * durable with one flush at the end, and are reverted if the commit fails.
+   */
+  public void commit(final OTransaction iTx) {
+    checkOpeness();
+
+    modificationLock.requestModificationLock();
+    try {
+      lock.acquireSharedLock();
+      try {
+        final List<OLocalPaginatedCluster> lockedClusters = new ArrayList<OLocalPaginatedCluster>();
+        try {
+          final OAtomicOperation operation = startAtomicOperation();
+
+          // COPY ALL THE ENTRIES IN SEPARATE COLLECTION SINCE DURING THE SERIALIZATION SOME NEW ENTRIES COULD BE CREATED
+          final List<ORecordOperation> entries = new ArrayList<ORecordOperation>();
+          while (iTx.getCurrentRecordEntries().iterator().hasNext()) {
+            final List<ORecordOperation> tmpEntries = new ArrayList<ORecordOperation>();
+            for (ORecordOperation txEntry : iTx.getCurrentRecordEntries())
+              tmpEntries.add(txEntry);
+
+            iTx.clearRecordEntries();
+
+            for (ORecordOperation txEntry : tmpEntries)
+              if (txEntry.type == ORecordOperation.CREATED || txEntry.type == ORecordOperation.UPDATED)
+                txEntry.getRecord().toStream();
+
+            entries.addAll(tmpEntries);
+          }
+
+          final Map<Integer, OLocalPaginatedCluster> involvedClusters = new TreeMap<Integer, OLocalPaginatedCluster>();
+          for (ORecordOperation txEntry : entries) {
+            final OLocalPaginatedCluster cluster = getTxEntryCluster(txEntry);
+            if (cluster != null)
+              involvedClusters.put(cluster.getId(), cluster);
+          }
+
+          for (OLocalPaginatedCluster cluster : involvedClusters.values()) {
+            cluster.acquireTxLock();
+            lockedClusters.add(cluster);
+            operation.clusterStates.put(cluster, cluster.getState());
+          }
+
+          // CHECK ALL THE VERSIONS BEFORE CHANGING ANYTHING
+          for (ORecordOperation txEntry : entries)
+            checkTxEntryVersion(txEntry);
+
+          for (ORecordOperation txEntry : entries)
+            commitEntry(iTx, txEntry);
+
+          endAtomicOperation(operation);
+
+          // UPDATE THE CACHE ONLY IF THE ITERATOR ALLOWS IT
+          OTransactionAbstract.updateCacheFromEntries(this, iTx, iTx.getAllRecordEntries(), true);
+
+        } catch (RuntimeException e) {
+          rollback(iTx);
+          throw e;
+        } catch (IOException e) {
+          rollback(iTx);
+          throw new OException(e);
+        } finally {
+          atomicOperation.remove();
+
+          for (int i = lockedClusters.size() - 1; i >= 0; --i)
+            lockedClusters.get(i).releaseTxLock();
+        }
+      } finally {
+        lock.releaseSharedLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
   }
 
+  /**
+   * Undoes the changes applied by the transaction being committed by the current thread, if any. The changes of optimistic
+   * transactions are kept in memory till the commit, so outside the commit there is nothing to undo. The pages of the locked
+   * clusters are reverted in reverse order, the records created as links in the other clusters are deleted, then the identities
+   * and versions assigned to the records of the transaction are restored.
+   */
   public void rollback(final OTransaction iTx) {
-    throw new UnsupportedOperationException("rollback");
+    final OAtomicOperation operation = atomicOperation.get();
+    if (operation == null)
+      return;
+
+    try {
+      for (int i = operation.pageChanges.size() - 1; i >= 0; --i) {
+        final OPageChanges pageChanges = operation.pageChanges.get(i);
+        operation.lastLsn = pageChanges.cluster.revertPageChanges(pageChanges.pageIndex, pageChanges.changes, operation.lastLsn);
+      }
+      operation.pageChanges.clear();
+
+      for (Map.Entry<OLocalPaginatedCluster, OLocalPaginatedCluster.State> entry : operation.clusterStates.entrySet())
+        entry.getKey().restoreState(entry.getValue());
+    } catch (IOException ioe) {
+      OLogManager.instance().error(this,
+          "Error executing rollback for transaction with id '" + iTx.getId() + "' cause: " + ioe.getMessage(), ioe);
+    }
+
+    for (int i = operation.undoEntries.size() - 1; i >= 0; --i) {
+      final OUndoEntry undoEntry = operation.undoEntries.get(i);
+      try {
+        undoEntry.cluster.deleteRecord(undoEntry.clusterPosition);
+      } catch (IOException ioe) {
+        OLogManager.instance().error(this,
+            "Error executing rollback for transaction with id '" + iTx.getId() + "' cause: " + ioe.getMessage(), ioe);
+      }
+    }
+    operation.undoEntries.clear();
+
+    for (int i = operation.recordStates.size() - 1; i >= 0; --i)
+      operation.recordStates.get(i).restore();
+    operation.recordStates.clear();
+
+    try {
+      endAtomicOperation(operation);
+    } catch (IOException ioe) {
+      OLogManager.instance().error(this, "Error on closing the WAL unit of transaction with id '" + iTx.getId() + "'", ioe);
+    }
+  }
+
+  /**
+   * Tells whether the cluster is locked by the transaction being committed by the current thread. Its changes are then part of
+   * the WAL unit of the transaction and are reverted by the storage if the commit fails.
+   */
+  public boolean isAtomicOperationCluster(final OLocalPaginatedCluster cluster) {
+    final OAtomicOperation operation = atomicOperation.get();
+    return operation != null && operation.clusterStates.containsKey(cluster);
+  }
+
+  /**
+   * Returns the last WAL record of the transaction being committed by the current thread, or null if no transaction is being
+   * committed. Used by the clusters to log their changes in the unit of the transaction.
+   */
+  public OLogSequenceNumber getAtomicOperationLsn() {
+    final OAtomicOperation operation = atomicOperation.get();
+    return operation != null ? operation.lastLsn : null;
+  }
+
+  public void setAtomicOperationLsn(final OLogSequenceNumber lsn) {
+    atomicOperation.get().lastLsn = lsn;
+  }
+
+  public void addAtomicOperationPageChanges(final OLocalPaginatedCluster cluster, final long pageIndex,
+      final List<OPageDiff<?>> changes) {
+    atomicOperation.get().pageChanges.add(new OPageChanges(cluster, pageIndex, new ArrayList<OPageDiff<?>>(changes)));
+  }
+
+  private OAtomicOperation startAtomicOperation() throws IOException {
+    final OAtomicOperation operation = new OAtomicOperation();
+    if (writeAheadLog != null)
+      operation.lastLsn = writeAheadLog.log(new OAtomicUnitStartRecord(true));
+
+    atomicOperation.set(operation);
+    return operation;
+  }
+
+  private void endAtomicOperation(final OAtomicOperation operation) throws IOException {
+    if (writeAheadLog == null || operation.lastLsn == null)
+      return;
+
+    final OLogSequenceNumber endLsn = writeAheadLog.log(new OAtomicUnitEndRecord(operation.lastLsn));
+    operation.lastLsn = null;
+
+    // ONE FLUSH FOR THE WHOLE TRANSACTION
+    writeAheadLog.flushTill(endLsn);
+  }
+
+  private OLocalPaginatedCluster getTxEntryCluster(final ORecordOperation txEntry) {
+    final ORecordId rid = (ORecordId) txEntry.getRecord().getIdentity();
+
+    if (rid.clusterId == ORID.CLUSTER_ID_INVALID && txEntry.getRecord() instanceof ODocument
+        && ((ODocument) txEntry.getRecord()).getSchemaClass() != null) {
+      // TRY TO FIX CLUSTER ID TO THE DEFAULT CLUSTER ID DEFINED IN SCHEMA CLASS
+      rid.clusterId = ((ODocument) txEntry.getRecord()).getSchemaClass().getDefaultClusterId();
+    }
+
+    final OLocalPaginatedCluster cluster = getClusterById(rid.clusterId);
+    if (cluster.getName().equals(OMetadata.CLUSTER_INDEX_NAME) || cluster.getName().equals(OMetadata.CLUSTER_MANUAL_INDEX_NAME))
+      // AVOID TO COMMIT INDEX STUFF
+      return null;
+
+    return cluster;
+  }
+
+  private void checkTxEntryVersion(final ORecordOperation txEntry) throws IOException {
+    if (txEntry.type != ORecordOperation.UPDATED && txEntry.type != ORecordOperation.DELETED)
+      return;
+
+    final ORecordId rid = (ORecordId) txEntry.getRecord().getIdentity();
+    final ORecordVersion version = txEntry.getRecord().getRecordVersion();
+    if (rid.isNew() || version.getCounter() < 0 || txEntry.type == ORecordOperation.UPDATED && !txEntry.getRecord().isDirty())
+      return;
+
+    final OLocalPaginatedCluster cluster = getTxEntryCluster(txEntry);
+    if (cluster == null)
+      return;
+
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+    if (checkForRecordValidity(ppos) && !version.equals(ppos.recordVersion))
+      if (OFastConcurrentModificationException.enabled())
+        throw OFastConcurrentModificationException.instance();
+      else
+        throw new OConcurrentModificationException(rid, ppos.recordVersion, version, txEntry.type);
+  }
+
+  private void commitEntry(final OTransaction iTx, final ORecordOperation txEntry) throws IOException {
+    if (txEntry.type != ORecordOperation.DELETED && !txEntry.getRecord().isDirty())
+      return;
+
+    final OLocalPaginatedCluster cluster = getTxEntryCluster(txEntry);
+    if (cluster == null)
+      return;
+
+    final ORecordInternal<?> record = txEntry.getRecord();
+    final ORecordId rid = (ORecordId) record.getIdentity();
+
+    if (record instanceof OTxListener)
+      ((OTxListener) record).onEvent(txEntry, OTxListener.EVENT.BEFORE_COMMIT);
+
+    if (txEntry.type == ORecordOperation.CREATED || txEntry.type == ORecordOperation.UPDATED)
+      // KEEP THE IDENTITY AND THE VERSION TO RESTORE THEM IF THE TRANSACTION FAILS
+      atomicOperation.get().recordStates.add(new ORecordState(record));
+
+    switch (txEntry.type) {
+    case ORecordOperation.LOADED:
+      break;
+
+    case ORecordOperation.CREATED: {
+      // CHECK 2 TIMES TO ASSURE THAT IT'S A CREATE OR AN UPDATE BASED ON RECURSIVE TO-STREAM METHOD
+      final byte[] stream = record.toStream();
+
+      final ORID oldRid = rid.copy();
+
+      if (rid.isNew()) {
+        record.onBeforeIdentityChanged(rid);
+        rid.clusterId = cluster.getId();
+      }
+
+      if (rid.isNew()) {
+        final OPhysicalPosition ppos = cluster.createRecord(stream, record.getRecordVersion(), record.getRecordType());
+
+        rid.clusterPosition = ppos.clusterPosition;
+        record.getRecordVersion().copyFrom(ppos.recordVersion);
+
+        record.onAfterIdentityChanged(record);
+        iTx.updateIndexIdentityAfterCommit(oldRid, rid);
+      } else
+        record.getRecordVersion().copyFrom(doUpdateRecord(cluster, rid, stream, record.getRecordVersion(), record.getRecordType()));
+      break;
+    }
+
+    case ORecordOperation.UPDATED: {
+      final byte[] stream = record.toStream();
+      final ORecordVersion version = doUpdateRecord(cluster, rid, stream, record.getRecordVersion(), record.getRecordType());
+      record.getRecordVersion().copyFrom(version != null ? version : OVersionFactory.instance().createUntrackedVersion());
+      break;
+    }
+
+    case ORecordOperation.DELETED:
+      doDeleteRecord(cluster, rid, record.getRecordVersion());
+      break;
+    }
+
+    record.unsetDirty();
+
+    if (record instanceof OTxListener)
+      ((OTxListener) record).onEvent(txEntry, OTxListener.EVENT.AFTER_COMMIT);
+  }
+
+  /**
+   * Updates the record checking its version. Returns the new version, or null if the record does not exist.
+   */
+  private ORecordVersion doUpdateRecord(final OLocalPaginatedCluster cluster, final ORecordId rid, final byte[] content,
+      final ORecordVersion version, final byte recordType) throws IOException {
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+    if (!checkForRecordValidity(ppos))
+      return null;
+
+    // VERSION CONTROL CHECK
+    switch (version.getCounter()) {
+    // DOCUMENT UPDATE, NO VERSION CONTROL
+    case -1:
+      ppos.recordVersion.increment();
+      break;
+
+    // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
+    case -2:
+      ppos.recordVersion.setCounter(-2);
+      break;
+
+    default:
+      // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
+      // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+      if (!version.equals(ppos.recordVersion))
+        if (OFastConcurrentModificationException.enabled())
+          throw OFastConcurrentModificationException.instance();
+        else
+          throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
+      ppos.recordVersion.increment();
+    }
+
+    cluster.updateRecord(rid.clusterPosition, content, ppos.recordVersion, recordType);
+    return ppos.recordVersion;
+  }
+
+  private boolean doDeleteRecord(final OLocalPaginatedCluster cluster, final ORecordId rid, final ORecordVersion version)
+      throws IOException {
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+
+    if (ppos == null)
+      // ALREADY DELETED
+      return false;
+
+    // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+    if (version.getCounter() > -1 && !ppos.recordVersion.equals(version))
+      if (OFastConcurrentModificationException.enabled())
+        throw OFastConcurrentModificationException.instance();
+      else
+        throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.DELETED);
+
+    cluster.deleteRecord(ppos.clusterPosition);
+    return true;
   }
 
   @Override
@@ -1651,4 +2120,90 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     cluster.getExternalModificationLock().allowModifications();
 
   }
+
+  /**
+   * Changes applied by the transaction being committed, undone in reverse order if the commit fails.
+   */
+  private static final class OAtomicOperation {
+    private OLogSequenceNumber                                              lastLsn;
+    /** Clusters locked by the transaction, with their state before the transaction. */
+    private final Map<OLocalPaginatedCluster, OLocalPaginatedCluster.State> clusterStates = new LinkedHashMap<OLocalPaginatedCluster, OLocalPaginatedCluster.State>();
+    private final List<OPageChanges>                                        pageChanges   = new ArrayList<OPageChanges>();
+    private final List<OUndoEntry>                                          undoEntries   = new ArrayList<OUndoEntry>();
+    private final List<ORecordState>                                        recordStates  = new ArrayList<ORecordState>();
+
+    private void addUndo(final OLocalPaginatedCluster cluster, final OClusterPosition clusterPosition) {
+      undoEntries.add(new OUndoEntry(cluster, clusterPosition));
+    }
+  }
+
+  /**
+   * Changes of a page of a locked cluster, tracked with their previous values.
+   */
+  private static final class OPageChanges {
+    private final OLocalPaginatedCluster cluster;
+    private final long                   pageIndex;
+    private final List<OPageDiff<?>>     changes;
+
+    private OPageChanges(final OLocalPaginatedCluster cluster, final long pageIndex, final List<OPageDiff<?>> changes) {
+      this.cluster = cluster;
+      this.pageIndex = pageIndex;
+      this.changes = changes;
+    }
+  }
+
+  /**
+   * Record created by the transaction in a cluster it does not lock.
+   */
+  private static final class OUndoEntry {
+    private final OLocalPaginatedCluster cluster;
+    private final OClusterPosition       clusterPosition;
+
+    private OUndoEntry(final OLocalPaginatedCluster cluster, final OClusterPosition clusterPosition) {
+      this.cluster = cluster;
+      this.clusterPosition = clusterPosition;
+    }
+  }
+
+  /**
+   * Identity and version of a record before the commit.
+   */
+  private static final class ORecordState {
+    private final ORecordInternal<?> record;
+    private final ORecordId          rid;
+    private final ORecordVersion     version;
+
+    private ORecordState(final ORecordInternal<?> record) {
+      this.record = record;
+      this.rid = ((ORecordId) record.getIdentity()).copy();
+      this.version = record.getRecordVersion().copy();
+    }
+
+    private void restore() {
+      final ORecordId currentRid = (ORecordId) record.getIdentity();
+      if (!currentRid.equals(rid)) {
+        record.onBeforeIdentityChanged(currentRid);
+        currentRid.clusterId = rid.clusterId;
+        currentRid.clusterPosition = rid.clusterPosition;
+        record.onAfterIdentityChanged(record);
+      }
+
+      record.getRecordVersion().copyFrom(version);
+    }
+  }
+
+  /**
+   * WAL unit read during the restore of the storage.
+   */
+  private static final class ORestoredUnit {
+    private OLogSequenceNumber                      lastLsn;
+    private final boolean                           rollbackSupported;
+    /** Clusters changed by the unit, with the last state logged before the unit, null if none. */
+    private final Map<Integer, OClusterStateRecord> clusterStates = new HashMap<Integer, OClusterStateRecord>();
+
+    private ORestoredUnit(final OLogSequenceNumber lastLsn, final boolean rollbackSupported) {
+      this.lastLsn = lastLsn;
+      this.rollbackSupported = rollbackSupported;
+    }
+  }
 }
@@ -107,6 +107,10 @@ public abstract class OAbstractPageWALRecord implements OWALRecord {
     return clusterId;
   }
 
+  public OLogSequenceNumber getPrevUnitRecord() {
+    return prevUnitRecord;
+  }
+
   @Override
   public OLogSequenceNumber getLsn() {
     return lsn;
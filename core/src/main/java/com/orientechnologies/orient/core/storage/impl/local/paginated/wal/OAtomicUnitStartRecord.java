@@ -34,16 +34,19 @@ public class OAtomicUnitStartRecord implements OWALRecord {
     this.isRollbackSupported = isRollbackSupported;
   }
 
+  public boolean isRollbackSupported() {
+    return isRollbackSupported;
+  }
+
   @Override
   public int toStream(byte[] content, int offset) {
-    isRollbackSupported = content[offset] > 0;
+    content[offset] = isRollbackSupported ? (byte) 1 : 0;
     return offset + OByteSerializer.BYTE_SIZE;
-
   }
 
   @Override
   public int fromStream(byte[] content, int offset) {
-    content[offset] = isRollbackSupported ? (byte) 1 : 0;
+    isRollbackSupported = content[offset] > 0;
     return offset + OByteSerializer.BYTE_SIZE;
   }
 
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OStorageException;
+
+/**
+ * Redoes the records of a WAL. A single thread reads and decodes the records, the page records are partitioned by cluster and
+ * page index across the redo threads, so the changes of different pages are applied in parallel while the changes of the same
+ * page keep the order of the WAL. The progress is logged at regular intervals.
+ */
+public class OWALRedoExecutor {
+  private static final int      QUEUE_SIZE = 1024;
+  private static final Object   END        = new Object();
+
+  private final OWriteAheadLog  writeAheadLog;
+  private final OWALRedoHandler handler;
+  private final int             threads;
+  private final long            reportInterval;
+
+  private long                  lastReport;
+
+  public OWALRedoExecutor(OWriteAheadLog writeAheadLog, OWALRedoHandler handler) {
+    this(writeAheadLog, handler, OGlobalConfiguration.WAL_RESTORE_THREADS.getValueAsInteger(),
+        OGlobalConfiguration.WAL_RESTORE_REPORT_INTERVAL.getValueAsInteger() * 1000L);
+  }
+
+  public OWALRedoExecutor(OWriteAheadLog writeAheadLog, OWALRedoHandler handler, int threads, long reportInterval) {
+    this.writeAheadLog = writeAheadLog;
+    this.handler = handler;
+    this.threads = Math.max(threads, 1);
+    this.reportInterval = reportInterval;
+  }
+
+  /**
+   * Redoes all the records starting from the passed LSN.
+   *
+   * @return the number of records read
+   */
+  public long redoFrom(OLogSequenceNumber lsn) throws IOException {
+    final long start = System.currentTimeMillis();
+    lastReport = start;
+
+    final long records;
+    if (threads == 1)
+      records = redoSequentially(lsn);
+    else
+      records = redoConcurrently(lsn);
+
+    OLogManager.instance().info(this, "%d WAL records were redone in %d ms.", records, System.currentTimeMillis() - start);
+    return records;
+  }
+
+  private long redoSequentially(OLogSequenceNumber lsn) throws IOException {
+    long records = 0;
+    while (lsn != null) {
+      final OWALRecord walRecord = writeAheadLog.read(lsn);
+      handler.recordRead(walRecord);
+      if (walRecord instanceof OAbstractPageWALRecord)
+        handler.redoPage((OAbstractPageWALRecord) walRecord);
+      else
+        handler.redoRecord(walRecord);
+
+      records++;
+      reportProgress(records, lsn);
+
+      lsn = writeAheadLog.next(lsn);
+    }
+
+    return records;
+  }
+
+  private long redoConcurrently(OLogSequenceNumber lsn) throws IOException {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>(threads);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+
+    final ExecutorService redoExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName("WAL Redo Task");
+        return thread;
+      }
+    });
+
+    long records = 0;
+    try {
+      for (int i = 0; i < threads; i++) {
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+        queues.add(queue);
+        futures.add(redoExecutor.submit(new RedoTask(queue, failure)));
+      }
+
+      try {
+        while (lsn != null && failure.get() == null) {
+          final OWALRecord walRecord = writeAheadLog.read(lsn);
+          handler.recordRead(walRecord);
+          if (walRecord instanceof OAbstractPageWALRecord)
+            queues.get(partition((OAbstractPageWALRecord) walRecord)).put(walRecord);
+          else
+            handler.redoRecord(walRecord);
+
+          records++;
+          reportProgress(records, lsn);
+
+          lsn = writeAheadLog.next(lsn);
+        }
+      } finally {
+        for (BlockingQueue<Object> queue : queues)
+          queue.put(END);
+
+        for (Future<Void> future : futures)
+          future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OStorageException("Restore from WAL was interrupted", e);
+    } catch (ExecutionException e) {
+      failure.compareAndSet(null, e.getCause());
+    } finally {
+      redoExecutor.shutdown();
+    }
+
+    final Throwable t = failure.get();
+    if (t != null) {
+      if (t instanceof IOException)
+        throw (IOException) t;
+      if (t instanceof RuntimeException)
+        throw (RuntimeException) t;
+      if (t instanceof Error)
+        throw (Error) t;
+
+      throw new OStorageException("Error during restore from WAL", t);
+    }
+
+    return records;
+  }
+
+  private int partition(OAbstractPageWALRecord pageRecord) {
+    final long hash = pageRecord.getPageIndex() * 31 + pageRecord.getClusterId();
+    return (int) ((hash ^ (hash >>> 32)) & Integer.MAX_VALUE) % threads;
+  }
+
+  private void reportProgress(long records, OLogSequenceNumber lsn) {
+    final long now = System.currentTimeMillis();
+    if (now - lastReport < reportInterval)
+      return;
+
+    lastReport = now;
+    OLogManager.instance().info(this, "Restore from WAL: %d records were read, current LSN is %s, last flushed LSN is %s.",
+        records, lsn, writeAheadLog.getFlushedLSN());
+  }
+
+  private final class RedoTask implements Callable<Void> {
+    private final BlockingQueue<Object>      queue;
+    private final AtomicReference<Throwable> failure;
+
+    private RedoTask(BlockingQueue<Object> queue, AtomicReference<Throwable> failure) {
+      this.queue = queue;
+      this.failure = failure;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      while (true) {
+        final Object record = queue.take();
+        if (record == END)
+          return null;
+
+        // AFTER A FAILURE THE QUEUE IS ONLY DRAINED TO NOT BLOCK THE READER
+        if (failure.get() == null)
+          try {
+            handler.redoPage((OAbstractPageWALRecord) record);
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal;
+
+import java.io.IOException;
+
+/**
+ * Applies the records read by {@link OWALRedoExecutor} during the restore of a storage.
+ */
+public interface OWALRedoHandler {
+  /**
+   * Called by the thread which reads the WAL for every record, in the order of the WAL, before the record is redone.
+   */
+  void recordRead(OWALRecord record) throws IOException;
+
+  /**
+   * Redoes the changes of a page. Called concurrently by the redo threads, the records of the same page are always passed to the
+   * same thread in the order of the WAL.
+   */
+  void redoPage(OAbstractPageWALRecord pageRecord) throws IOException;
+
+  /**
+   * Redoes any other record, called by the thread which reads the WAL.
+   */
+  void redoRecord(OWALRecord record) throws IOException;
+}
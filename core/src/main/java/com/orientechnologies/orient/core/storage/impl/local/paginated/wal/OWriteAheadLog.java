@@ -34,6 +34,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.zip.CRC32;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -62,6 +63,14 @@ public class OWriteAheadLog {
 
   private final int                    maxPagesCacheSize;
   private final int                    commitDelay;
+  private final int                    groupCommitDelay;
+
+  /**
+   * Guards group commit state, thread which holds {@link #groupCommitInProgress} flag flushes WAL on behalf of all threads which
+   * wait on this monitor.
+   */
+  private final Object                 groupCommitMonitor   = new Object();
+  private boolean                      groupCommitInProgress;
 
   private final long                   maxSegmentSize;
   private final long                   maxLogSize;
@@ -97,8 +106,15 @@ public class OWriteAheadLog {
 
   public OWriteAheadLog(int maxPagesCacheSize, int commitDelay, long maxSegmentSize, long maxLogSize, OLocalPaginatedStorage storage)
       throws IOException {
+    this(maxPagesCacheSize, commitDelay, OGlobalConfiguration.WAL_GROUP_COMMIT_DELAY.getValueAsInteger(), maxSegmentSize,
+        maxLogSize, storage);
+  }
+
+  public OWriteAheadLog(int maxPagesCacheSize, int commitDelay, int groupCommitDelay, long maxSegmentSize, long maxLogSize,
+      OLocalPaginatedStorage storage) throws IOException {
     this.maxPagesCacheSize = maxPagesCacheSize;
     this.commitDelay = commitDelay;
+    this.groupCommitDelay = groupCommitDelay;
     this.maxSegmentSize = maxSegmentSize;
     this.maxLogSize = maxLogSize;
     this.paginatedStorage = storage;
@@ -196,6 +212,53 @@ public class OWriteAheadLog {
     }
   }
 
+  /**
+   * Makes all records till passed in LSN durable. Calls of concurrent threads are grouped: the first thread waits up to
+   * {@link OGlobalConfiguration#WAL_GROUP_COMMIT_DELAY} microseconds to let other threads append their records and then performs
+   * single flush for all of them, the rest of threads wait till this flush is completed and return without disk sync if their
+   * records were covered by it.
+   *
+   * @param lsn
+   *          LSN of the last record which should be durable.
+   */
+  public void flushTill(OLogSequenceNumber lsn) {
+    synchronized (groupCommitMonitor) {
+      while (true) {
+        if (isFlushed(lsn))
+          return;
+
+        if (!groupCommitInProgress)
+          break;
+
+        try {
+          groupCommitMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OStorageException("Thread was interrupted during WAL flush", e);
+        }
+      }
+
+      groupCommitInProgress = true;
+    }
+
+    try {
+      if (groupCommitDelay > 0)
+        LockSupport.parkNanos(groupCommitDelay * 1000L);
+
+      flush();
+    } finally {
+      synchronized (groupCommitMonitor) {
+        groupCommitInProgress = false;
+        groupCommitMonitor.notifyAll();
+      }
+    }
+  }
+
+  private boolean isFlushed(OLogSequenceNumber lsn) {
+    final OLogSequenceNumber flushedLsn = this.flushedLsn;
+    return flushedLsn != null && flushedLsn.compareTo(lsn) >= 0;
+  }
+
   private void fixMasterRecords() throws IOException {
     if (firstMasterRecord != null) {
       int index = firstMasterRecord.getSegment() - logSegments.get(0).getOrder();
@@ -305,11 +368,12 @@ public class OWriteAheadLog {
   }
 
   public OLogSequenceNumber log(OWALRecord record) throws IOException {
+    // record is serialized before lock is acquired, so only LSN assignment and copy of record to the page are serialized
+    final byte[] serializedForm = OWALRecordsFactory.INSTANCE.toStream(record);
+
     synchronized (syncObject) {
       checkForClose();
 
-      final byte[] serializedForm = OWALRecordsFactory.INSTANCE.toStream(record);
-
       LogSegment last = logSegments.get(logSegments.size() - 1);
       long lastSize = last.filledUpTo();
 
@@ -26,6 +26,11 @@ public class OBinaryFullPageDiff extends OFullPageDiff<byte[]> {
     directMemory.set(pagePointer + pageOffset, newValue, 0, newValue.length);
   }
 
+  @Override
+  public OFullPageDiff<byte[]> createRevertDiff() {
+    return new OBinaryFullPageDiff(oldValue, pageOffset, newValue);
+  }
+
   @Override
   public int serializedSize() {
     return super.serializedSize() + 2 * OIntegerSerializer.INT_SIZE + newValue.length + oldValue.length;
@@ -33,6 +33,11 @@ public abstract class OFullPageDiff<T> extends OPageDiff<T> {
 
   public abstract void revertPageData(long pagePointer);
 
+  /**
+   * Returns the change which reverts this one, it keeps the new value as its old value so it can be reverted too.
+   */
+  public abstract OFullPageDiff<T> createRevertDiff();
+
   @Override
   public boolean equals(Object o) {
     if (this == o)
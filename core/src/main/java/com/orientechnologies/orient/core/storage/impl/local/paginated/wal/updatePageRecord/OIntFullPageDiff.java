@@ -40,6 +40,11 @@ public class OIntFullPageDiff extends OFullPageDiff<Integer> {
     OIntegerSerializer.INSTANCE.serializeInDirectMemory(newValue, directMemory, pagePointer + pageOffset);
   }
 
+  @Override
+  public OFullPageDiff<Integer> createRevertDiff() {
+    return new OIntFullPageDiff(oldValue, pageOffset, newValue);
+  }
+
   @Override
   public int serializedSize() {
     return super.serializedSize() + 2 * OIntegerSerializer.INT_SIZE;
@@ -68,4 +68,9 @@ public class OLongFullPageDiff extends OFullPageDiff<Long> {
   public void restorePageData(long pagePointer) {
     OLongSerializer.INSTANCE.serializeInDirectMemory(newValue, directMemory, pagePointer + pageOffset);
   }
+
+  @Override
+  public OFullPageDiff<Long> createRevertDiff() {
+    return new OLongFullPageDiff(oldValue, pageOffset, newValue);
+  }
 }
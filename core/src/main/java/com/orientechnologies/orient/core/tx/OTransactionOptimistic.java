@@ -41,6 +41,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.storage.OStorageProxy;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 
 public class OTransactionOptimistic extends OTransactionRealAbstract {
@@ -133,7 +134,8 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
             return null;
           }
 
-        }, true);
+          // THE PAGINATED STORAGE LOCKS ONLY THE CLUSTERS INVOLVED IN THE TRANSACTION
+        }, !(database.getStorage() instanceof OLocalPaginatedStorage));
       } finally {
         // RELEASE INDEX LOCKS IF ANY
         if (lockedIndexes != null) {
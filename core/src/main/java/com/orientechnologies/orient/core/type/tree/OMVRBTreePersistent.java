@@ -60,6 +60,7 @@ public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
   protected int                                            entryPointsSize;
 
   protected float                                          optimizeEntryPointsFactor;
+  private Float                                            customPageLoadFactor;
   private final TreeMap<K, OMVRBTreeEntryPersistent<K, V>> entryPoints;
   private final Map<ORID, OMVRBTreeEntryPersistent<K, V>>  cache              = new HashMap<ORID, OMVRBTreeEntryPersistent<K, V>>();
   protected static final OJVMProfiler                      PROFILER           = Orient.instance().getProfiler();
@@ -832,10 +833,20 @@ public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
       dataProvider.setRoot(((OMVRBTreeEntryPersistent<K, V>) iRoot).getProvider().getIdentity());
   }
 
+  /**
+   * Sets the load factor of the nodes created from now on in place of the configured one, null restores the configured one. Keys
+   * inserted in ascending order never go back to the nodes left by a split, so a higher value gives fuller nodes.
+   */
+  public void setPageLoadFactor(final Float iPageLoadFactor) {
+    customPageLoadFactor = iPageLoadFactor;
+    config();
+  }
+
   protected void config() {
     if (dataProvider.updateConfig())
       markDirty();
-    pageLoadFactor = OGlobalConfiguration.MVRBTREE_LOAD_FACTOR.getValueAsFloat();
+    pageLoadFactor = customPageLoadFactor != null ? customPageLoadFactor : OGlobalConfiguration.MVRBTREE_LOAD_FACTOR
+        .getValueAsFloat();
     optimizeEntryPointsFactor = OGlobalConfiguration.MVRBTREE_OPTIMIZE_ENTRYPOINTS_FACTOR.getValueAsFloat();
     optimizeThreshold = OGlobalConfiguration.MVRBTREE_OPTIMIZE_THRESHOLD.getValueAsInteger();
     entryPointsSize = OGlobalConfiguration.MVRBTREE_ENTRYPOINTS.getValueAsInteger();
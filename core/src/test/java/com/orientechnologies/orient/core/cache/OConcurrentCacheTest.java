@@ -0,0 +1,151 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OConcurrentCacheTest {
+
+  public void enabledAfterStartupAndDisabledAfterShutdown() {
+    OConcurrentCache sut = new OConcurrentCache("test", 100, 4);
+
+    sut.startup();
+    assertTrue(sut.isEnabled());
+
+    sut.shutdown();
+    assertFalse(sut.isEnabled());
+  }
+
+  public void segmentsAreNotMoreThanLimit() {
+    assertEquals(new OConcurrentCache("test", 5, 16).getSegmentsCount(), 4);
+    assertEquals(new OConcurrentCache("test", 1000, 16).getSegmentsCount(), 16);
+    assertEquals(new OConcurrentCache("test", -1, 10).getSegmentsCount(), 8);
+  }
+
+  public void storesRecordsUsingTheirIdentity() {
+    OConcurrentCache sut = enabledCache(100);
+
+    for (int i = 0; i < 50; i++)
+      sut.put(new ODocument(rid(i)));
+
+    assertEquals(sut.size(), 50);
+    for (int i = 0; i < 50; i++)
+      assertEquals(sut.get(rid(i)).getIdentity(), rid(i));
+
+    assertNull(sut.get(rid(51)));
+    assertEquals(sut.getHits(), 50);
+    assertEquals(sut.getMisses(), 1);
+  }
+
+  public void providesAccessToAllKeysInCache() {
+    OConcurrentCache sut = enabledCache(100);
+    for (int i = 0; i < 20; i++)
+      sut.put(new ODocument(rid(i)));
+
+    Collection<ORID> keys = sut.keys();
+
+    assertEquals(keys.size(), 20);
+    for (ORID key : keys)
+      assertNotNull(sut.get(key));
+  }
+
+  public void removesAndClears() {
+    OConcurrentCache sut = enabledCache(100);
+    for (int i = 0; i < 20; i++)
+      sut.put(new ODocument(rid(i)));
+
+    assertNotNull(sut.remove(rid(3)));
+    assertNull(sut.remove(rid(3)));
+    assertEquals(sut.size(), 19);
+
+    sut.clear();
+    assertEquals(sut.size(), 0);
+  }
+
+  public void storesNoMoreElementsThanSpecifiedLimitAndCountsEvictions() {
+    OConcurrentCache sut = enabledCache(64);
+
+    for (int i = 0; i < 1000; i++)
+      sut.put(new ODocument(rid(i)));
+
+    assertTrue(sut.size() <= sut.limit(), "Cache doesn't meet limit requirements");
+    assertEquals(sut.getEvictions(), 1000 - sut.size());
+  }
+
+  public void removesPartOfEntriesInCaseOfLowMemory() {
+    OConcurrentCache sut = new OConcurrentCache("test", 1000, 4);
+    sut.startup();
+    for (int i = 0; i < 1000; i++)
+      sut.put(new ODocument(rid(i)));
+    final int originalSize = sut.size();
+
+    sut.lowMemoryListener.memoryUsageLow(1, 20);
+    assertTrue(sut.size() < originalSize, "Cache was not cleaned");
+    assertTrue(sut.size() > 0, "Cache was cleared wholly");
+
+    sut.lowMemoryListener.memoryUsageLow(1, 8);
+    assertEquals(sut.size(), 0, "Cache has entries in it yet");
+
+    sut.shutdown();
+  }
+
+  public void concurrentAccess() throws Exception {
+    final OConcurrentCache sut = enabledCache(500);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    for (int n = 0; n < 8; n++)
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          final Random random = new Random();
+          for (int i = 0; i < 20000; i++) {
+            final ORecordId rid = rid(random.nextInt(1000));
+            if (random.nextInt(4) == 0)
+              sut.put(new ODocument(rid));
+            else {
+              final ODocument record = (ODocument) sut.get(rid);
+              if (record != null)
+                assertEquals(record.getIdentity(), rid);
+            }
+          }
+          return null;
+        }
+      }));
+
+    for (Future<Void> future : futures)
+      future.get();
+    executor.shutdown();
+
+    assertTrue(sut.size() <= sut.limit());
+    assertEquals(sut.keys().size(), sut.size());
+  }
+
+  private OConcurrentCache enabledCache(final int limit) {
+    OConcurrentCache cache = new OConcurrentCache("test", limit, 8);
+    cache.enable();
+    return cache;
+  }
+
+  private static ORecordId rid(final int i) {
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(i));
+  }
+}
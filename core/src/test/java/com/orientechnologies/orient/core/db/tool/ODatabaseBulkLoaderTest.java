@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.tool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class ODatabaseBulkLoaderTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    final String buildDirectory = System.getProperty("buildDirectory", ".");
+    db = new ODatabaseDocumentTx("plocal:" + buildDirectory + "/databaseBulkLoaderTest");
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+    }
+    db.create();
+
+    final OClass account = db.getMetadata().getSchema().createClass("Account");
+    account.createProperty("number", OType.INTEGER);
+    account.createIndex("Account.number", OClass.INDEX_TYPE.UNIQUE, "number");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testLoadedRecordsAreStoredAndIndexed() {
+    final ODatabaseBulkLoader loader = new ODatabaseBulkLoader(db).setBatchSize(100);
+
+    final List<ODocument> documents = new ArrayList<ODocument>();
+    for (int i = 0; i < 1050; i++) {
+      final ODocument document = new ODocument("Account").field("number", i).field("name", "account" + i);
+      loader.add(document);
+      documents.add(document);
+    }
+
+    loader.close();
+
+    Assert.assertEquals(loader.getLoadedRecords(), 1050);
+    Assert.assertEquals(db.countClass("Account"), 1050);
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Account.number");
+    Assert.assertEquals(index.getSize(), 1050);
+
+    for (int i = 0; i < documents.size(); i++) {
+      final ODocument document = documents.get(i);
+      Assert.assertFalse(document.getIdentity().isNew());
+      Assert.assertEquals(((OIdentifiable) index.get(i)).getIdentity(), document.getIdentity());
+
+      final ODocument loaded = db.load(document.getIdentity(), null, true);
+      Assert.assertEquals(loaded.field("name"), "account" + i);
+    }
+  }
+
+  public void testLoadedKeysAreAddedToExistingIndex() {
+    final ODocument existing = new ODocument("Account").field("number", -1).field("name", "existing");
+    existing.save();
+
+    final ODatabaseBulkLoader loader = new ODatabaseBulkLoader(db).setBatchSize(10);
+    for (int i = 24; i >= 0; i--)
+      loader.add(new ODocument("Account").field("number", i));
+
+    loader.close();
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Account.number");
+    Assert.assertEquals(index.getSize(), 26);
+    Assert.assertEquals(((OIdentifiable) index.get(-1)).getIdentity(), existing.getIdentity());
+    for (int i = 0; i < 25; i++)
+      Assert.assertNotNull(index.get(i));
+  }
+
+  public void testDuplicatedKeyOfExistingRecordStopsTheBatch() {
+    new ODocument("Account").field("number", 5).save();
+
+    final ODatabaseBulkLoader loader = new ODatabaseBulkLoader(db);
+    for (int i = 0; i < 10; i++)
+      loader.add(new ODocument("Account").field("number", i));
+
+    try {
+      loader.close();
+      Assert.fail();
+    } catch (OIndexException e) {
+    }
+
+    Assert.assertEquals(loader.getLoadedRecords(), 0);
+    Assert.assertEquals(db.countClass("Account"), 1);
+    Assert.assertEquals(db.getMetadata().getIndexManager().getIndex("Account.number").getSize(), 1);
+  }
+
+  @Test(expectedExceptions = OIndexException.class)
+  public void testDuplicatedKeyInTheBatch() {
+    final ODatabaseBulkLoader loader = new ODatabaseBulkLoader(db);
+    loader.add(new ODocument("Account").field("number", 1));
+    loader.add(new ODocument("Account").field("number", 1));
+
+    try {
+      loader.close();
+    } finally {
+      Assert.assertEquals(db.countClass("Account"), 0);
+    }
+  }
+}
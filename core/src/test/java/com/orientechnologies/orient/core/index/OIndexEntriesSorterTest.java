@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.id.OClusterPositionLong;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OIndexEntriesSorterTest {
+  private static final int ENTRIES = 1000;
+
+  @SuppressWarnings("unchecked")
+  public void spilledRunsAreMergedInKeyOrder() {
+    final OBinarySerializer<Object> serializer = (OBinarySerializer<Object>) (OBinarySerializer<?>) OIntegerSerializer.INSTANCE;
+    final OIndexEntriesSorter sorter = new OIndexEntriesSorter(serializer, 100 * (OIntegerSerializer.INT_SIZE + 64));
+
+    final Random random = new Random(42);
+    for (int i = 0; i < ENTRIES; i++)
+      sorter.add(random.nextInt(100), new ORecordId(5, new OClusterPositionLong(ENTRIES - i)));
+
+    assertEquals(sorter.getSpilledRuns(), ENTRIES / 100);
+
+    int count = 0;
+    OIndexEntriesSorter.Entry previous = null;
+    for (Iterator<OIndexEntriesSorter.Entry> it = sorter.sortedEntries(); it.hasNext();) {
+      final OIndexEntriesSorter.Entry entry = it.next();
+      if (previous != null) {
+        final int keyOrder = ((Integer) previous.getKey()).compareTo((Integer) entry.getKey());
+        assertTrue(keyOrder < 0 || keyOrder == 0 && previous.getRid().compareTo(entry.getRid()) < 0);
+      }
+      previous = entry;
+      count++;
+    }
+
+    assertEquals(count, ENTRIES);
+    assertEquals(sorter.getSpilledRuns(), 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  public void rebuiltIndexContainsAllTheRecords() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:indexEntriesSorterTest");
+    db.create();
+
+    try {
+      final OClass item = db.getMetadata().getSchema().createClass("Item");
+      item.createProperty("value", OType.INTEGER);
+
+      final Random random = new Random(42);
+      for (int i = 0; i < ENTRIES; i++)
+        new ODocument("Item").field("id", i).field("value", random.nextInt(50)).save();
+
+      final OIndex<?> index = item.createIndex("Item.value", OClass.INDEX_TYPE.NOTUNIQUE, "value");
+      assertEquals(index.getSize(), ENTRIES);
+      assertEquals(index.rebuild(), ENTRIES);
+      assertEquals(index.getSize(), ENTRIES);
+
+      for (int value = 0; value < 50; value++)
+        for (OIdentifiable rid : (Collection<OIdentifiable>) index.get(value))
+          assertEquals(((ODocument) rid.getRecord()).field("value"), value);
+    } finally {
+      db.drop();
+    }
+  }
+}
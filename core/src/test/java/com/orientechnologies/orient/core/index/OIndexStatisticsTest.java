@@ -0,0 +1,120 @@
+package com.orientechnologies.orient.core.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OIndexStatisticsTest {
+
+  public void histogramEstimatesEqualityAndRanges() {
+    // KEYS 0..999, KEY i HAS i % 10 + 1 VALUES
+    final TreeMap<Object, Integer> entries = new TreeMap<Object, Integer>();
+    long total = 0;
+    for (int i = 0; i < 1000; i++) {
+      entries.put(i, i % 10 + 1);
+      total += i % 10 + 1;
+    }
+
+    final OIndexStatistics statistics = build(entries, total);
+    assertEquals(statistics.getEntries(), total);
+    assertEquals(statistics.getKeys(), 1000);
+    assertTrue(statistics.hasHistogram());
+
+    assertTrue(statistics.estimateEquals(500) <= 10);
+    assertEquals(statistics.estimateRange(null, false, null, false), total);
+    assertEquals(statistics.estimateRange(2000, true, null, false), 0);
+
+    final long half = statistics.estimateRange(500, true, null, false);
+    assertTrue(Math.abs(half - total / 2) < total / OIndexStatistics.HISTOGRAM_BUCKETS + 1, "Estimated " + half);
+
+    final long tenth = statistics.estimateRange(100, true, 199, true);
+    assertTrue(Math.abs(tenth - total / 10) < 2 * total / OIndexStatistics.HISTOGRAM_BUCKETS, "Estimated " + tenth);
+  }
+
+  public void skewedKeysHaveTheirOwnBuckets() {
+    final TreeMap<Object, Integer> entries = new TreeMap<Object, Integer>();
+    for (int i = 0; i < 100; i++)
+      entries.put("key" + (1000 + i), i == 50 ? 10000 : 1);
+
+    final OIndexStatistics statistics = build(entries, 10099);
+
+    assertTrue(statistics.estimateEquals("key1050") >= 5000);
+    assertEquals(statistics.estimateEquals("key1010"), 1);
+  }
+
+  public void updatesAreAppliedToTheBuckets() {
+    final TreeMap<Object, Integer> entries = new TreeMap<Object, Integer>();
+    for (int i = 0; i < 1000; i++)
+      entries.put(i, 1);
+
+    final OIndexStatistics statistics = build(entries, 1000);
+    for (int i = 0; i < 100; i++)
+      statistics.update(10, 1, 0);
+    statistics.update(5000, 1, 1);
+    statistics.update(20, -1, -1);
+
+    assertEquals(statistics.getEntries(), 1100);
+    assertEquals(statistics.getKeys(), 1000);
+    assertTrue(statistics.estimateRange(null, false, 31, true) >= 100);
+    assertTrue(statistics.estimateRange(4000, true, null, false) > 0);
+    assertFalse(statistics.isStale());
+
+    for (int i = 0; i < 2000; i++)
+      statistics.update(i, 1, 0);
+    assertTrue(statistics.isStale());
+  }
+
+  public void compositeKeysMatchByPrefix() {
+    final TreeMap<Object, Integer> entries = new TreeMap<Object, Integer>();
+    for (int a = 0; a < 10; a++)
+      for (int b = 0; b < 100; b++)
+        entries.put(new OCompositeKey(a, b), 1);
+
+    final OIndexStatistics statistics = build(entries, 1000);
+
+    final long prefix = statistics.estimateRange(new OCompositeKey(3), true, new OCompositeKey(3), true);
+    assertTrue(prefix >= 50 && prefix <= 200, "Estimated " + prefix);
+    assertEquals(statistics.estimateEquals(new OCompositeKey(3, 3)), 1);
+  }
+
+  public void storedAndLoaded() {
+    final TreeMap<Object, Integer> entries = new TreeMap<Object, Integer>();
+    for (int i = 0; i < 1000; i++)
+      entries.put(new OCompositeKey("k" + (i % 10), i), 2);
+
+    final OIndexStatistics statistics = build(entries, 2000);
+    final ODocument document = new ODocument().fromStream(statistics.toDocument().toStream());
+    final OIndexStatistics loaded = OIndexStatistics.fromDocument(document);
+
+    assertEquals(loaded.getEntries(), 2000);
+    assertEquals(loaded.getKeys(), 1000);
+    assertTrue(loaded.hasHistogram());
+    final OCompositeKey key = new OCompositeKey("k5");
+    assertEquals(loaded.estimateRange(key, true, key, true), statistics.estimateRange(key, true, key, true));
+  }
+
+  public void withoutHistogramUsesTheAverage() {
+    final OIndexStatistics statistics = new OIndexStatistics(1000, 10);
+
+    assertFalse(statistics.hasHistogram());
+    assertEquals(statistics.estimateEquals("any"), 100);
+    assertEquals(statistics.estimateRange(1, true, null, false), 333);
+  }
+
+  private static OIndexStatistics build(final TreeMap<Object, Integer> iEntries, final long iTotal) {
+    final TreeMap<Object, Object> values = new TreeMap<Object, Object>(iEntries.comparator());
+    for (Map.Entry<Object, Integer> entry : iEntries.entrySet())
+      values.put(entry.getKey(), entry.getValue() == 1 ? "rid" : Collections.nCopies(entry.getValue(), "rid"));
+    return OIndexStatistics.build(values.entrySet().iterator(), iTotal);
+  }
+}
@@ -1,7 +1,14 @@
 package com.orientechnologies.orient.core.index.hashindex.local;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
@@ -214,4 +221,121 @@ public class LocalHashTableTest {
         Assert.assertEquals(localHashTable.get(KEYS_COUNT + i), "" + (KEYS_COUNT + i));
     }
   }
+
+  public void testKeyDeleteAfterReload() {
+    for (int i = 0; i < KEYS_COUNT; i++)
+      localHashTable.put(i, i + "");
+
+    for (int i = 0; i < KEYS_COUNT; i++) {
+      if (i % 3 == 0)
+        Assert.assertEquals(localHashTable.remove(i), i + "");
+    }
+
+    localHashTable.close();
+
+    OMurmurHash3HashFunction<Integer> murmurHash3HashFunction = new OMurmurHash3HashFunction<Integer>();
+    murmurHash3HashFunction.setValueSerializer(OIntegerSerializer.INSTANCE);
+
+    localHashTable = new OLocalHashTable<Integer, String>(OAbstractLocalHashIndex.METADATA_CONFIGURATION_FILE_EXTENSION,
+        OAbstractLocalHashIndex.TREE_STATE_FILE_EXTENSION, OAbstractLocalHashIndex.BUCKET_FILE_EXTENSION, murmurHash3HashFunction);
+    localHashTable.load("localHashTableTest", (OStorageLocal) databaseDocumentTx.getStorage());
+
+    Assert.assertEquals(localHashTable.size(), KEYS_COUNT - (KEYS_COUNT + 2) / 3);
+
+    for (int i = 0; i < KEYS_COUNT; i++) {
+      if (i % 3 == 0)
+        Assert.assertNull(localHashTable.get(i));
+      else
+        Assert.assertEquals(localHashTable.get(i), i + "");
+    }
+  }
+
+  public void testConcurrentPutGetRemove() throws Exception {
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int n = 0; n < threads; n++) {
+        final int thread = n;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = thread; i < KEYS_COUNT; i += threads) {
+              localHashTable.put(i, i + "");
+              Assert.assertEquals(localHashTable.get(i), i + "");
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+        future.get();
+
+      futures.clear();
+      for (int n = 0; n < threads; n++) {
+        final int thread = n;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = thread; i < KEYS_COUNT; i += threads) {
+              if (i % 3 == 0)
+                Assert.assertEquals(localHashTable.remove(i), i + "");
+              else
+                Assert.assertEquals(localHashTable.get(i), i + "");
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+        future.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(localHashTable.size(), KEYS_COUNT - (KEYS_COUNT + 2) / 3);
+
+    for (int i = 0; i < KEYS_COUNT; i++) {
+      if (i % 3 == 0)
+        Assert.assertNull(localHashTable.get(i));
+      else
+        Assert.assertEquals(localHashTable.get(i), i + "");
+    }
+  }
+
+  public void testConcurrentPutIfAbsent() throws Exception {
+    final int threads = 4;
+    final int keys = KEYS_COUNT / 16;
+    final AtomicInteger puts = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int n = 0; n < threads; n++) {
+        final int thread = n;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < keys; i++) {
+              if (localHashTable.putIfAbsent(i, thread + "") == null)
+                puts.incrementAndGet();
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures)
+        future.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(puts.get(), keys);
+    Assert.assertEquals(localHashTable.size(), keys);
+  }
 }
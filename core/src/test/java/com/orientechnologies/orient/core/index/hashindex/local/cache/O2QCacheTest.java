@@ -16,6 +16,7 @@ import org.testng.annotations.Test;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
 import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.io.OIOException;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
 import com.orientechnologies.common.serialization.types.OLongSerializer;
 import com.orientechnologies.orient.core.Orient;
@@ -527,6 +528,136 @@ public class O2QCacheTest {
     }
   }
 
+  public void testBackgroundWriterWritesDirtyPages() throws Exception {
+    buffer.close();
+    buffer = new O2QCache(4 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 10, 0.25f);
+
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < 6; i++) {
+      long pointer = buffer.load(fileId, i);
+      buffer.markDirty(fileId, i);
+      directMemory.set(pointer + systemOffset, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, 7 }, 0, 8);
+      buffer.release(fileId, i);
+    }
+
+    // PAGES 0 AND 1 ARE EVICTED, THE OTHERS ARE STILL IN CACHE
+    for (int i = 0; i < 6; i++)
+      waitForFilePage(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, 7 });
+
+    for (int i = 0; i < 6; i++) {
+      long pointer = buffer.load(fileId, i);
+      Assert.assertEquals(directMemory.get(pointer + systemOffset, 8), new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, 7 });
+      buffer.release(fileId, i);
+    }
+  }
+
+  public void testBackgroundWriterDoesNotOverwriteNewerContent() throws Exception {
+    buffer.close();
+    buffer = new O2QCache(4 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 1, 0.25f);
+
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int j = 0; j < 100; j++) {
+      for (int i = 0; i < 6; i++) {
+        long pointer = buffer.load(fileId, i);
+        buffer.markDirty(fileId, i);
+        directMemory.set(pointer + systemOffset, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) j }, 0, 8);
+        buffer.release(fileId, i);
+      }
+    }
+
+    buffer.flushFile(fileId);
+
+    for (int i = 0; i < 6; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, 99 }, new OLogSequenceNumber(0, 0));
+  }
+
+  public void testSequentialReadDoesNotMoveItemsInAm() throws Exception {
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < 10; i++) {
+      long pointer = buffer.load(fileId, i);
+      buffer.markDirty(fileId, i);
+      directMemory.set(pointer + systemOffset, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i }, 0, 8);
+      buffer.release(fileId, i);
+    }
+
+    buffer.clear();
+
+    for (int i = 0; i < 8; i++) {
+      buffer.load(fileId, i);
+      buffer.release(fileId, i);
+    }
+
+    for (int i = 2; i < 4; i++) {
+      buffer.load(fileId, i);
+      buffer.release(fileId, i);
+    }
+
+    LRUList am = buffer.getAm();
+    LRUList a1in = buffer.getA1in();
+    LRUList a1out = buffer.getA1out();
+
+    buffer.load(fileId, 2, true);
+    buffer.release(fileId, 2);
+
+    Assert.assertEquals(am.getLRU().pageIndex, 2);
+
+    for (int i : new int[] { 4, 5, 8, 9, 0 }) {
+      long pointer = buffer.load(fileId, i, true);
+      Assert.assertEquals(directMemory.get(pointer + systemOffset, 8), new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i });
+      buffer.release(fileId, i);
+    }
+
+    Assert.assertEquals(am.size(), 2);
+    Assert.assertNotNull(am.get(fileId, 2));
+    Assert.assertNotNull(am.get(fileId, 3));
+
+    // PAGES 4 AND 5 WERE ACCESSED RECENTLY, THEY ARE REMEMBERED AGAIN WHEN THEY ARE EVICTED
+    Assert.assertEquals(a1out.size(), 2);
+    Assert.assertNotNull(a1out.get(fileId, 4));
+    Assert.assertNotNull(a1out.get(fileId, 5));
+
+    Assert.assertEquals(a1in.size(), 2);
+    Assert.assertTrue(a1in.get(fileId, 9).sequentialRead);
+    Assert.assertTrue(a1in.get(fileId, 0).sequentialRead);
+  }
+
+  public void testSequentialReadLoadsNextPagesAhead() throws Exception {
+    buffer.close();
+    buffer = new O2QCache(16 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 0, 0, 2);
+
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < 10; i++) {
+      long pointer = buffer.load(fileId, i);
+      buffer.markDirty(fileId, i);
+      directMemory.set(pointer + systemOffset, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i }, 0, 8);
+      buffer.release(fileId, i);
+    }
+
+    buffer.clear();
+
+    buffer.load(fileId, 0, true);
+    buffer.release(fileId, 0);
+
+    LRUList a1in = buffer.getA1in();
+
+    final long timeout = System.currentTimeMillis() + 10000;
+    while (a1in.size() < 3 && System.currentTimeMillis() < timeout)
+      Thread.sleep(10);
+
+    Assert.assertEquals(a1in.size(), 3);
+    for (int i = 1; i < 3; i++) {
+      Assert.assertTrue(a1in.get(fileId, i).sequentialRead);
+
+      long pointer = buffer.load(fileId, i, true);
+      Assert.assertEquals(directMemory.get(pointer + systemOffset, 8), new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i });
+      buffer.release(fileId, i);
+    }
+  }
+
   public void testDataVerificationOK() throws Exception {
     long fileId = buffer.openFile(fileConfiguration, ".tst");
 
@@ -718,6 +849,23 @@ public class O2QCacheTest {
     fileClassic.close();
   }
 
+  private void waitForFilePage(long pageIndex, byte[] value) throws Exception {
+    final long timeout = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < timeout) {
+      try {
+        assertFile(pageIndex, value, new OLogSequenceNumber(0, 0));
+        return;
+      } catch (AssertionError e) {
+        Thread.sleep(10);
+      } catch (OIOException e) {
+        // THE PAGE IS NOT WRITTEN YET
+        Thread.sleep(10);
+      }
+    }
+
+    assertFile(pageIndex, value, new OLogSequenceNumber(0, 0));
+  }
+
   private void assertFile(long pageIndex, byte[] value, OLogSequenceNumber lsn) throws IOException {
     String path = storageLocal.getConfiguration().getDirectory() + "/o2QCacheTest.0.tst";
 
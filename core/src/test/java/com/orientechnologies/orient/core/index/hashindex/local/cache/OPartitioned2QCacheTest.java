@@ -0,0 +1,203 @@
+package com.orientechnologies.orient.core.index.hashindex.local.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.storage.fs.OFileClassic;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+
+@Test
+public class OPartitioned2QCacheTest {
+  private static final int             PAGE_COUNT   = 64;
+  private static final int             THREAD_COUNT = 8;
+
+  private int                          systemOffset = 2 * (OIntegerSerializer.INT_SIZE + OLongSerializer.LONG_SIZE);
+
+  private OPartitioned2QCache          buffer;
+  private OLocalPaginatedStorage       storageLocal;
+  private ODirectMemory                directMemory;
+  private OStorageSegmentConfiguration fileConfiguration;
+  private byte                         seed;
+
+  @BeforeClass
+  public void beforeClass() throws IOException {
+    OGlobalConfiguration.FILE_LOCK.setValue(Boolean.FALSE);
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    storageLocal = (OLocalPaginatedStorage) Orient.instance().loadStorage("plocal:" + buildDirectory + "/OPartitioned2QCacheTest");
+
+    fileConfiguration = new OStorageSegmentConfiguration(storageLocal.getConfiguration(), "partitioned2QCacheTest", 0);
+    fileConfiguration.fileType = OFileFactory.CLASSIC;
+    fileConfiguration.fileMaxSize = "10000Mb";
+  }
+
+  @BeforeMethod
+  public void beforeMethod() throws IOException {
+    closeBufferAndDeleteFile();
+
+    // 16 pages per partition, so pages will be evicted during tests
+    buffer = new OPartitioned2QCache(4 * 16 * (8 + systemOffset), 4, directMemory, null, 8 + systemOffset, storageLocal, true, 3);
+
+    seed = (byte) (new Random().nextInt() & 0xFF);
+  }
+
+  @AfterClass
+  public void afterClass() throws IOException {
+    closeBufferAndDeleteFile();
+
+    storageLocal.delete();
+  }
+
+  private void closeBufferAndDeleteFile() throws IOException {
+    if (buffer != null) {
+      buffer.close();
+      buffer = null;
+    }
+
+    File file = new File(storageLocal.getConfiguration().getDirectory() + "/partitioned2QCacheTest.0.tst");
+    if (file.exists())
+      Assert.assertTrue(file.delete());
+  }
+
+  public void testPartitionsCountIsPowerOfTwo() {
+    Assert.assertEquals(buffer.getPartitionsCount(), 4);
+  }
+
+  public void testWriteAndFlushPagesWithEviction() throws IOException {
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < PAGE_COUNT; i++)
+      writePage(fileId, i);
+
+    Assert.assertEquals(buffer.getFilledUpTo(fileId), PAGE_COUNT);
+
+    for (int i = 0; i < PAGE_COUNT; i++)
+      assertPageInCache(fileId, i);
+
+    buffer.flushBuffer();
+
+    for (int i = 0; i < PAGE_COUNT; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i });
+  }
+
+  public void testCloseFileFlushesAllPartitions() throws IOException {
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < 8; i++)
+      writePage(fileId, i);
+
+    buffer.closeFile(fileId);
+
+    for (int i = 0; i < 8; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i });
+  }
+
+  public void testTruncateFile() throws IOException {
+    long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < 8; i++)
+      writePage(fileId, i);
+
+    buffer.truncateFile(fileId);
+
+    Assert.assertEquals(buffer.getFilledUpTo(fileId), 0);
+
+    long pointer = buffer.load(fileId, 0);
+    Assert.assertEquals(directMemory.get(pointer + systemOffset, 8), new byte[8]);
+    buffer.release(fileId, 0);
+  }
+
+  public void testConcurrentReadWrite() throws Exception {
+    final long fileId = buffer.openFile(fileConfiguration, ".tst");
+
+    for (int i = 0; i < PAGE_COUNT; i++)
+      writePage(fileId, i);
+
+    final AtomicInteger pageCounter = new AtomicInteger();
+    final ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    for (int n = 0; n < THREAD_COUNT; n++) {
+      futures.add(executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          final Random random = new Random();
+          for (int i = 0; i < 10000; i++) {
+            if (i % 10 == 0) {
+              final int pageIndex = pageCounter.getAndIncrement() % PAGE_COUNT;
+              writePage(fileId, pageIndex);
+            } else
+              assertPageInCache(fileId, random.nextInt(PAGE_COUNT));
+          }
+          return null;
+        }
+      }));
+    }
+
+    for (Future<Void> future : futures)
+      future.get();
+
+    executorService.shutdown();
+
+    buffer.flushBuffer();
+
+    for (int i = 0; i < PAGE_COUNT; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) i });
+  }
+
+  private void writePage(long fileId, int pageIndex) throws IOException {
+    long pointer = buffer.load(fileId, pageIndex);
+    buffer.markDirty(fileId, pageIndex);
+    directMemory.set(pointer + systemOffset, new byte[] { (byte) pageIndex, 1, 2, seed, 4, 5, 6, (byte) pageIndex }, 0, 8);
+    buffer.release(fileId, pageIndex);
+  }
+
+  private void assertPageInCache(long fileId, int pageIndex) throws IOException {
+    long pointer = buffer.load(fileId, pageIndex);
+    byte[] content = directMemory.get(pointer + systemOffset, 8);
+    buffer.release(fileId, pageIndex);
+
+    Assert.assertEquals(content, new byte[] { (byte) pageIndex, 1, 2, seed, 4, 5, 6, (byte) pageIndex });
+  }
+
+  private void assertFile(long pageIndex, byte[] value) throws IOException {
+    String path = storageLocal.getConfiguration().getDirectory() + "/partitioned2QCacheTest.0.tst";
+
+    OFileClassic fileClassic = new OFileClassic();
+    fileClassic.init(path, "r");
+    fileClassic.open();
+    byte[] content = new byte[8 + systemOffset];
+    fileClassic.read(pageIndex * (8 + systemOffset), content, 8 + systemOffset);
+
+    for (int i = 0; i < value.length; i++)
+      Assert.assertEquals(content[systemOffset + i], value[i]);
+
+    fileClassic.close();
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.serialization.serializer.record.binary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchemaProxy;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class ORecordSerializerBinaryTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:recordSerializerBinaryTest");
+    db.create();
+
+    final OClass cls = db.getMetadata().getSchema().createClass("Person");
+    cls.createProperty("name", OType.STRING);
+    cls.createProperty("age", OType.INTEGER);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testRoundTrip() {
+    final List<String> tags = new ArrayList<String>();
+    tags.add("a");
+    tags.add("b");
+    final Set<Integer> numbers = new HashSet<Integer>();
+    numbers.add(1);
+    numbers.add(-300);
+    final Map<String, Object> attributes = new HashMap<String, Object>();
+    attributes.put("x", 1.5d);
+    attributes.put("y", "text");
+
+    final ODocument address = new ODocument();
+    address.field("city", "Rome");
+
+    final ODocument doc = new ODocument("Person");
+    doc.field("name", "Jay");
+    doc.field("age", 47);
+    doc.field("big", Long.MIN_VALUE);
+    doc.field("short", (short) -3);
+    doc.field("byte", (byte) 7);
+    doc.field("flag", true);
+    doc.field("ratio", 0.25f);
+    doc.field("salary", 1234.5d);
+    doc.field("amount", new BigDecimal("-12.345"));
+    doc.field("born", new Date(123456789L));
+    doc.field("bytes", new byte[] { 1, 2, 3 });
+    doc.field("empty", (Object) null);
+    doc.field("link", new ORecordId(5, OClusterPositionFactory.INSTANCE.valueOf(10)));
+    doc.field("tags", tags);
+    doc.field("numbers", numbers);
+    doc.field("attributes", attributes);
+    doc.field("address", address, OType.EMBEDDED);
+
+    final byte[] content = ORecordSerializerBinary.INSTANCE.toStream(doc, false);
+    Assert.assertTrue(ORecordSerializerBinary.isBinary(content));
+
+    final ODocument loaded = (ODocument) ORecordSerializerBinary.INSTANCE.fromStream(content, new ODocument(), null);
+    Assert.assertEquals(loaded.getClassName(), "Person");
+    Assert.assertEquals(loaded.field("name"), "Jay");
+    Assert.assertEquals(loaded.field("age"), 47);
+    Assert.assertEquals(loaded.field("big"), Long.MIN_VALUE);
+    Assert.assertEquals(loaded.field("short"), (short) -3);
+    Assert.assertEquals(loaded.field("byte"), (byte) 7);
+    Assert.assertEquals(loaded.field("flag"), Boolean.TRUE);
+    Assert.assertEquals(loaded.field("ratio"), 0.25f);
+    Assert.assertEquals(loaded.field("salary"), 1234.5d);
+    Assert.assertEquals(loaded.field("amount"), new BigDecimal("-12.345"));
+    Assert.assertEquals(((Date) loaded.field("born")).getTime(), 123456789L);
+    Assert.assertEquals((byte[]) loaded.field("bytes"), new byte[] { 1, 2, 3 });
+    Assert.assertTrue(loaded.containsField("empty"));
+    Assert.assertNull(loaded.field("empty"));
+    Assert.assertEquals(loaded.field("link", OType.LINK), new ORecordId(5, OClusterPositionFactory.INSTANCE.valueOf(10)));
+    Assert.assertEquals(new ArrayList<Object>((List<?>) loaded.field("tags")), tags);
+    Assert.assertEquals(new HashSet<Object>((Set<?>) loaded.field("numbers")), numbers);
+    Assert.assertEquals(new HashMap<Object, Object>((Map<?, ?>) loaded.field("attributes")), attributes);
+    Assert.assertEquals(((ODocument) loaded.field("address")).field("city"), "Rome");
+  }
+
+  public void testFieldNamesByDictionary() {
+    final ODocument doc = new ODocument("Person");
+    doc.field("name", "Jay");
+
+    final ODocument schemaLess = new ODocument("Person");
+    schemaLess.field("undeclaredFieldName", "Jay");
+
+    // DECLARED PROPERTIES ARE WRITTEN AS IDS, THE OTHER FIELDS WITH THEIR NAME
+    Assert.assertTrue(((OSchemaProxy) db.getMetadata().getSchema()).getFieldNameId("name") >= 0);
+    Assert.assertTrue(ORecordSerializerBinary.INSTANCE.toStream(doc, false).length < ORecordSerializerBinary.INSTANCE.toStream(
+        schemaLess, false).length);
+
+    final ODocument loaded = (ODocument) ORecordSerializerBinary.INSTANCE.fromStream(
+        ORecordSerializerBinary.INSTANCE.toStream(schemaLess, false), new ODocument(), null);
+    Assert.assertEquals(loaded.field("undeclaredFieldName"), "Jay");
+  }
+
+  public void testPartialFields() {
+    final ODocument doc = new ODocument("Person");
+    doc.field("name", "Jay");
+    doc.field("age", 47);
+    doc.field("city", "Rome");
+
+    final ODocument loaded = (ODocument) ORecordSerializerBinary.INSTANCE.fromStream(
+        ORecordSerializerBinary.INSTANCE.toStream(doc, false), new ODocument(), new String[] { "age" });
+    Assert.assertEquals(loaded.field("age"), 47);
+    Assert.assertFalse(loaded.containsField("name"));
+    Assert.assertFalse(loaded.containsField("city"));
+  }
+
+  public void testReadSingleField() {
+    final List<String> tags = new ArrayList<String>();
+    tags.add("a");
+
+    final ODocument doc = new ODocument("Person");
+    doc.field("name", "Jay");
+    doc.field("age", 47);
+    doc.field("undeclaredFieldName", 12.5d);
+    doc.field("tags", tags);
+    doc.field("empty", (Object) null);
+
+    final byte[] content = ORecordSerializerBinary.INSTANCE.toStream(doc, false);
+    Assert.assertEquals(ORecordSerializerBinary.INSTANCE.readField(content, "name"), "Jay");
+    Assert.assertEquals(ORecordSerializerBinary.INSTANCE.readField(content, "age"), 47);
+    Assert.assertEquals(ORecordSerializerBinary.INSTANCE.readField(content, "undeclaredFieldName"), 12.5d);
+    Assert.assertNull(ORecordSerializerBinary.INSTANCE.readField(content, "empty"));
+    Assert.assertNull(ORecordSerializerBinary.INSTANCE.readField(content, "missing"));
+    Assert.assertSame(ORecordSerializerBinary.INSTANCE.readField(content, "tags"), ORecordSerializerBinary.NOT_READABLE);
+    Assert.assertSame(ORecordSerializerBinary.INSTANCE.readField("name:\"Jay\"".getBytes(), "name"),
+        ORecordSerializerBinary.NOT_READABLE);
+
+    db.set(ODatabase.ATTRIBUTES.RECORDFORMAT, ORecordSerializerBinary.NAME);
+    doc.save();
+
+    final ODocument loaded = db.load(doc.getIdentity(), null, true);
+    Assert.assertTrue(loaded.isPeekable());
+    Assert.assertEquals(loaded.peekField("age"), 47);
+    Assert.assertEquals(((List<?>) loaded.peekField("tags")).size(), 1);
+    Assert.assertEquals(loaded.field("name"), "Jay");
+
+    Assert.assertEquals(db.query(new OSQLSynchQuery<ODocument>("select from Person where age = 47 and name = 'Jay'")).size(), 1);
+
+    // THE KEYS ARE READ FROM THE CONTENT OF THE RECORDS WHILE BUILDING THE INDEX
+    db.getMetadata().getSchema().getClass("Person").getProperty("age").createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    Assert.assertEquals(db.getMetadata().getIndexManager().getIndex("Person.age").getSize(), 1);
+  }
+
+  public void testTextFallback() {
+    final ODocument friend = new ODocument("Person");
+    friend.field("name", "Luca");
+    friend.save();
+
+    final List<ODocument> friends = new ArrayList<ODocument>();
+    friends.add(friend);
+
+    final ODocument doc = new ODocument("Person");
+    doc.field("friends", friends, OType.LINKLIST);
+
+    final ODocument loaded = (ODocument) ORecordSerializerBinary.INSTANCE.fromStream(
+        ORecordSerializerBinary.INSTANCE.toStream(doc, false), new ODocument(), null);
+    final List<?> loadedFriends = loaded.field("friends");
+    Assert.assertEquals(loadedFriends.size(), 1);
+    Assert.assertEquals(((ODocument) loadedFriends.get(0)).getIdentity(), friend.getIdentity());
+  }
+
+  public void testMixedFormats() {
+    final ODocument csv = new ODocument("Person");
+    csv.field("name", "Jay");
+    csv.save();
+    Assert.assertFalse(ORecordSerializerBinary.isBinary(csv.toStream()));
+
+    db.set(ODatabase.ATTRIBUTES.RECORDFORMAT, ORecordSerializerBinary.NAME);
+    Assert.assertEquals(db.get(ODatabase.ATTRIBUTES.RECORDFORMAT), ORecordSerializerBinary.NAME);
+
+    final ODocument binary = new ODocument("Person");
+    binary.field("name", "Luca");
+    binary.field("age", 35);
+    binary.save();
+    Assert.assertTrue(ORecordSerializerBinary.isBinary(binary.toStream()));
+
+    final ODocument loadedCsv = db.load(csv.getIdentity(), null, true);
+    final ODocument loadedBinary = db.load(binary.getIdentity(), null, true);
+    Assert.assertEquals(loadedCsv.field("name"), "Jay");
+    Assert.assertEquals(loadedBinary.field("name"), "Luca");
+    Assert.assertEquals(loadedBinary.field("age"), 35);
+
+    // BOTH FORMATS ARE READ BY THE CSV SERIALIZER TOO
+    final ODocument fromCsvSerializer = (ODocument) ORecordSerializerSchemaAware2CSV.INSTANCE.fromStream(
+        ORecordSerializerBinary.INSTANCE.toStream(binary, false), new ODocument(), null);
+    Assert.assertEquals(fromCsvSerializer.field("name"), "Luca");
+
+    Assert.assertEquals(db.query(new OSQLSynchQuery<ODocument>("select from Person where age = 35")).size(), 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testUnknownRecordFormat() {
+    db.set(ODatabase.ATTRIBUTES.RECORDFORMAT, "xml");
+  }
+}
@@ -0,0 +1,245 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OGroupByAggregatorTest {
+  private static final int    RECORDS = 1000;
+  private static final int    GROUPS  = 50;
+
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void init() {
+    db = new ODatabaseDocumentTx("memory:groupByAggregatorTest");
+    db.create();
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Sale");
+      doc.field("id", i);
+      doc.field("shop", "shop" + (i % GROUPS));
+      doc.field("region", i % 2 == 0 ? "north" : "south");
+      doc.field("amount", i);
+      doc.field("price", i / 4d);
+      if (i % 3 != 0)
+        doc.field("discount", i % 7);
+      doc.save();
+    }
+  }
+
+  @AfterMethod
+  public void close() {
+    db.drop();
+  }
+
+  public void aggregatesInMemory() {
+    checkAggregates(query("select shop, count(*), count(discount), sum(amount), avg(amount), min(price), max(price) from Sale group by shop"));
+  }
+
+  public void aggregatesWithSpilledPartitions() {
+    final Object previous = OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.getValue();
+    OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.setValue(7);
+    try {
+      checkAggregates(query("select shop, count(*), count(discount), sum(amount), avg(amount), min(price), max(price) from Sale group by shop"));
+    } finally {
+      OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.setValue(previous);
+    }
+  }
+
+  public void aggregatesByMultipleFields() {
+    final List<ODocument> result = query("select shop, region, count(*), sum(amount) from Sale group by shop, region");
+
+    // SHOPS HAVE EITHER EVEN OR ODD IDS
+    assertEquals(result.size(), GROUPS);
+    for (ODocument doc : result) {
+      final int shop = Integer.parseInt(doc.<String> field("shop").substring(4));
+      assertEquals(doc.field("region"), shop % 2 == 0 ? "north" : "south");
+      assertEquals(((Number) doc.field("count")).longValue(), RECORDS / GROUPS);
+    }
+  }
+
+  public void orderByAndLimitAfterGrouping() {
+    final List<ODocument> result = query("select shop, sum(amount) as total from Sale group by shop order by total desc limit 3");
+
+    assertEquals(result.size(), 3);
+    assertEquals(result.get(0).field("shop"), "shop49");
+    assertEquals(result.get(1).field("shop"), "shop48");
+    assertEquals(result.get(2).field("shop"), "shop47");
+  }
+
+  public void notSupportedProjectionsUseTheFunctions() {
+    final Map<String, Object> projections = new LinkedHashMap<String, Object>();
+    projections.put("shop", OSQLHelper.parseValue(null, "shop", null));
+    projections.put("list", OSQLHelper.parseValue(null, "list(amount)", null));
+    assertNull(OGroupByAggregator.create(projections, Collections.singletonList("shop"), new OBasicCommandContext(), -1));
+
+    final List<ODocument> result = query("select shop, list(amount) from Sale group by shop");
+    assertEquals(result.size(), GROUPS);
+    for (ODocument doc : result)
+      assertEquals(doc.<List<?>> field("list").size(), RECORDS / GROUPS);
+  }
+
+  public void closeRemovesThePartitionsNotBrowsed() {
+    final Map<String, Object> projections = new LinkedHashMap<String, Object>();
+    projections.put("shop", OSQLHelper.parseValue(null, "shop", null));
+    projections.put("count", OSQLHelper.parseValue(null, "count(*)", null));
+
+    final OGroupByAggregator aggregator = OGroupByAggregator.create(projections, Collections.singletonList("shop"),
+        new OBasicCommandContext(), 5);
+    assertNotNull(aggregator);
+
+    int progressive = 0;
+    for (ODocument doc : db.browseClass("Sale"))
+      aggregator.add(doc, progressive++);
+    assertTrue(aggregator.isSpilled());
+
+    // BROWSES ONLY THE FIRST GROUP, AS WITH A LIMIT
+    final Iterator<OIdentifiable> iterator = aggregator.getResult().iterator();
+    assertEquals(((ODocument) iterator.next()).field("count"), (long) (RECORDS / GROUPS));
+
+    aggregator.close();
+    assertFalse(aggregator.isSpilled());
+  }
+
+  public void mergesPartialAggregates() {
+    final Map<String, Object> projections = new LinkedHashMap<String, Object>();
+    projections.put("shop", OSQLHelper.parseValue(null, "shop", null));
+    projections.put("count", OSQLHelper.parseValue(null, "count(*)", null));
+    projections.put("count2", OSQLHelper.parseValue(null, "count(discount)", null));
+    projections.put("sum", OSQLHelper.parseValue(null, "sum(amount)", null));
+    projections.put("avg", OSQLHelper.parseValue(null, "avg(amount)", null));
+    projections.put("min", OSQLHelper.parseValue(null, "min(price)", null));
+    projections.put("max", OSQLHelper.parseValue(null, "max(price)", null));
+
+    final OGroupByAggregator aggregator = OGroupByAggregator.create(projections, Collections.singletonList("shop"),
+        new OBasicCommandContext(), -1);
+    final OGroupByAggregator first = aggregator.createPartial(new OBasicCommandContext());
+    final OGroupByAggregator second = aggregator.createPartial(new OBasicCommandContext());
+
+    int progressive = 0;
+    for (ODocument doc : db.browseClass("Sale")) {
+      // THE SAME GROUPS ARE IN BOTH THE PARTIALS
+      final int id = doc.<Integer> field("id");
+      (id < RECORDS / 2 ? first : second).add(doc, progressive++);
+    }
+    assertFalse(first.isSpilled());
+
+    aggregator.merge(first);
+    aggregator.merge(second);
+    assertEquals(first.getGroupsInMemory(), 0);
+    assertEquals(second.getGroupsInMemory(), 0);
+
+    final List<ODocument> result = new ArrayList<ODocument>();
+    for (OIdentifiable r : aggregator.getResult())
+      result.add((ODocument) r);
+    checkAggregates(result);
+  }
+
+  public void mergesSpilledPartialAggregates() {
+    final Map<String, Object> projections = new LinkedHashMap<String, Object>();
+    projections.put("shop", OSQLHelper.parseValue(null, "shop", null));
+    projections.put("count", OSQLHelper.parseValue(null, "count(*)", null));
+    projections.put("sum", OSQLHelper.parseValue(null, "sum(amount)", null));
+
+    final OGroupByAggregator aggregator = OGroupByAggregator.create(projections, Collections.singletonList("shop"),
+        new OBasicCommandContext(), 5);
+    final OGroupByAggregator partial = aggregator.createPartial(new OBasicCommandContext());
+
+    int progressive = 0;
+    for (ODocument doc : db.browseClass("Sale"))
+      partial.add(doc, progressive++);
+    assertTrue(partial.isSpilled());
+
+    aggregator.merge(partial);
+    // THE FILES OF THE PARTIAL ARE REMOVED ONCE MERGED
+    assertFalse(partial.isSpilled());
+    assertTrue(aggregator.isSpilled());
+
+    int groups = 0;
+    for (OIdentifiable r : aggregator.getResult()) {
+      final ODocument doc = (ODocument) r;
+      final int shop = Integer.parseInt(doc.<String> field("shop").substring(4));
+      assertEquals(doc.field("count"), (long) (RECORDS / GROUPS));
+      assertEquals(doc.field("sum"), expectedSum(shop));
+      groups++;
+    }
+    assertEquals(groups, GROUPS);
+    aggregator.close();
+  }
+
+  public void aggregatesInParallelPartitions() {
+    final Object threads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValue();
+    final Object partitionSize = OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.getValue();
+    final Object maxGroups = OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.getValue();
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.setValue(100);
+    // THE PARTITIONS SPILL THEIR PARTIAL AGGREGATES TOO
+    OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.setValue(7);
+    try {
+      checkAggregates(query("select shop, count(*), count(discount), sum(amount), avg(amount), min(price), max(price) from Sale group by shop"));
+    } finally {
+      OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(threads);
+      OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.setValue(partitionSize);
+      OGlobalConfiguration.QUERY_GROUPBY_MAX_MEMORY_GROUPS.setValue(maxGroups);
+    }
+  }
+
+  private void checkAggregates(final List<ODocument> result) {
+    assertEquals(result.size(), GROUPS);
+
+    final Map<String, ODocument> byShop = new HashMap<String, ODocument>();
+    for (ODocument doc : result)
+      byShop.put(doc.<String> field("shop"), doc);
+
+    for (int shop = 0; shop < GROUPS; shop++) {
+      final ODocument doc = byShop.get("shop" + shop);
+      assertNotNull(doc);
+
+      int discounts = 0;
+      for (int i = shop; i < RECORDS; i += GROUPS)
+        if (i % 3 != 0)
+          discounts++;
+
+      assertEquals(doc.field("count"), (long) (RECORDS / GROUPS));
+      assertEquals(doc.field("count2"), (long) discounts);
+      assertEquals(doc.field("sum"), expectedSum(shop));
+      assertEquals(doc.field("avg"), expectedSum(shop) / (RECORDS / GROUPS));
+      assertEquals(doc.field("min"), shop / 4d);
+      assertEquals(doc.field("max"), (RECORDS - GROUPS + shop) / 4d);
+    }
+  }
+
+  private static int expectedSum(final int shop) {
+    int sum = 0;
+    for (int i = shop; i < RECORDS; i += GROUPS)
+      sum += i;
+    return sum;
+  }
+
+  private List<ODocument> query(final String sql) {
+    return db.query(new OSQLSynchQuery<ODocument>(sql));
+  }
+}
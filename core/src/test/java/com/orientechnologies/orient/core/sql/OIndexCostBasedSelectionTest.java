@@ -0,0 +1,115 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OIndexCostBasedSelectionTest {
+  private static final int    RECORDS = 20000;
+
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void init() throws InterruptedException {
+    db = new ODatabaseDocumentTx("memory:indexCostBasedSelectionTest");
+    db.create();
+
+    final OClass cls = db.getMetadata().getSchema().createClass("Item");
+    cls.createProperty("code", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    cls.createProperty("flag", OType.BOOLEAN).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    cls.createProperty("a", OType.INTEGER).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    cls.createProperty("b", OType.INTEGER).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Item");
+      doc.field("code", i);
+      doc.field("flag", i % 2 == 0);
+      doc.field("a", i % 100);
+      doc.field("b", (i / 100) % 100);
+      doc.save();
+    }
+
+    // THE STATISTICS ARE BUILT IN BACKGROUND, NOT BY THE QUERIES
+    for (OIndex<?> index : cls.getIndexes())
+      waitForStatistics(index);
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void selectiveIndexIsUsed() {
+    final ODocument explain = explain("select from Item where code = 1234");
+
+    assertTrue(involvedIndexes(explain).contains("Item.code"));
+    assertEquals(((Number) explain.field("estimatedRows")).longValue(), 1);
+    assertEquals(((Number) explain.field("actualRows")).longValue(), 1);
+  }
+
+  public void lowSelectivityIndexIsNotUsed() {
+    final ODocument explain = explain("select from Item where flag = true");
+
+    assertNull(explain.field("involvedIndexes"));
+    assertEquals(((Number) explain.field("estimatedRows")).longValue(), RECORDS);
+    assertEquals(((Number) explain.field("resultSize")).intValue(), RECORDS / 2);
+  }
+
+  public void mostSelectiveIndexIsChosen() {
+    final ODocument explain = explain("select from Item where flag = true and code < 10");
+
+    assertTrue(involvedIndexes(explain).contains("Item.code"));
+    assertTrue(!involvedIndexes(explain).contains("Item.flag"));
+    assertEquals(((Number) explain.field("resultSize")).intValue(), 5);
+  }
+
+  public void indexesAreIntersected() {
+    final ODocument explain = explain("select from Item where a = 3 and b = 7");
+
+    assertTrue(involvedIndexes(explain).contains("Item.a"));
+    assertTrue(involvedIndexes(explain).contains("Item.b"));
+    assertEquals(((Number) explain.field("actualRows")).longValue(), 2);
+
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select from Item where a = 3 and b = 7"));
+    assertEquals(result.size(), 2);
+    for (ODocument doc : result) {
+      assertEquals(doc.field("a"), 3);
+      assertEquals(doc.field("b"), 7);
+    }
+  }
+
+  private static void waitForStatistics(final OIndex<?> iIndex) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    OIndexStatistics statistics = iIndex.getInternal().getStatistics();
+    while ((statistics == null || statistics.isStale()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      statistics = iIndex.getInternal().getStatistics();
+    }
+    assertTrue(statistics != null && !statistics.isStale());
+  }
+
+  private ODocument explain(final String iQuery) {
+    return db.command(new OCommandSQL("explain " + iQuery)).execute();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Collection<String> involvedIndexes(final ODocument iExplain) {
+    return (Collection<String>) iExplain.field("involvedIndexes");
+  }
+}
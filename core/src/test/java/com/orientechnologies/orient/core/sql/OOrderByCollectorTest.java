@@ -0,0 +1,165 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ODocumentHelper;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OOrderByCollectorTest {
+  private static final int    RECORDS = 1000;
+
+  private ODatabaseDocumentTx db;
+  private List<ODocument>     records;
+
+  @BeforeMethod
+  public void init() {
+    db = new ODatabaseDocumentTx("memory:orderByCollectorTest");
+    db.create();
+
+    records = new ArrayList<ODocument>();
+    final Random random = new Random(42);
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Item");
+      doc.field("id", i);
+      // FEW DISTINCT VALUES AND SOME NULLS TO CHECK THE ORDER OF TIES
+      doc.field("value", random.nextInt(10) == 0 ? null : random.nextInt(50));
+      doc.field("name", "name" + random.nextInt(5));
+      doc.save();
+      records.add(doc);
+    }
+  }
+
+  @AfterMethod
+  public void close() {
+    db.drop();
+  }
+
+  public void topRecordsAreTheFirstOfTheStableSort() {
+    final List<OPair<String, String>> criteria = criteria("value", "desc", "name", "asc");
+
+    final OOrderByCollector collector = new OOrderByCollector(criteria, 37, -1);
+    for (ODocument doc : records)
+      collector.add(doc);
+
+    assertEquals(ids(collector.getResult()), ids(sorted(criteria).subList(0, 37)));
+  }
+
+  public void topRecordsWithLessRecordsThanLimit() {
+    final List<OPair<String, String>> criteria = criteria("value", "asc");
+
+    final OOrderByCollector collector = new OOrderByCollector(criteria, RECORDS * 2, -1);
+    for (ODocument doc : records)
+      collector.add(doc);
+
+    assertEquals(ids(collector.getResult()), ids(sorted(criteria)));
+  }
+
+  public void spilledRunsAreMergedAsTheStableSort() {
+    final List<OPair<String, String>> criteria = criteria("value", "asc", "name", "desc");
+
+    final OOrderByCollector collector = new OOrderByCollector(criteria, -1, 128);
+    for (ODocument doc : records)
+      collector.add(doc);
+
+    assertEquals(collector.getSpilledRuns(), RECORDS / 128);
+    assertEquals(ids(collector.getResult()), ids(sorted(criteria)));
+    assertEquals(collector.getSpilledRuns(), 0);
+  }
+
+  public void closeRemovesTheRunsNotBrowsed() {
+    final OOrderByCollector collector = new OOrderByCollector(criteria("id", "asc"), -1, 100);
+    for (ODocument doc : records)
+      collector.add(doc);
+
+    // BROWSES ONLY THE FIRST RECORDS, AS WITH A LIMIT
+    final Iterator<OIdentifiable> iterator = collector.getResult().iterator();
+    for (int i = 0; i < 10; ++i)
+      iterator.next();
+    assertEquals(collector.getSpilledRuns(), RECORDS / 100);
+
+    collector.close();
+    assertEquals(collector.getSpilledRuns(), 0);
+  }
+
+  public void deletedRecordsAreSkippedOnMerge() {
+    final List<OPair<String, String>> criteria = criteria("id", "desc");
+
+    final OOrderByCollector collector = new OOrderByCollector(criteria, -1, 100);
+    for (ODocument doc : records)
+      collector.add(doc);
+    records.get(500).delete();
+
+    final List<Integer> ids = ids(collector.getResult());
+    assertEquals(ids.size(), RECORDS - 1);
+    assertEquals(ids.get(0).intValue(), RECORDS - 1);
+    assertTrue(!ids.contains(500));
+  }
+
+  public void notPersistentRecordsAreNotSpilled() {
+    final OOrderByCollector collector = new OOrderByCollector(criteria("id", "asc"), -1, 10);
+    for (int i = 100; i > 0; --i)
+      collector.add(new ODocument().field("id", i));
+
+    assertEquals(collector.getSpilledRuns(), 0);
+    final List<Integer> ids = ids(collector.getResult());
+    assertEquals(ids.size(), 100);
+    assertEquals(ids.get(0).intValue(), 1);
+  }
+
+  public void queryWithLimitAndSkip() {
+    final List<ODocument> expected = sorted(criteria("value", "desc", "id", "asc")).subList(20, 30);
+
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(
+        "select from Item order by value desc, id asc skip 20 limit 10"));
+
+    assertEquals(ids(result), ids(expected));
+  }
+
+  public void queryWithSpilledRuns() {
+    final Object previous = OGlobalConfiguration.QUERY_ORDERBY_MAX_MEMORY_RECORDS.getValue();
+    OGlobalConfiguration.QUERY_ORDERBY_MAX_MEMORY_RECORDS.setValue(100);
+    try {
+      final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select from Item order by name asc, value desc"));
+
+      assertEquals(ids(result), ids(sorted(criteria("name", "asc", "value", "desc"))));
+    } finally {
+      OGlobalConfiguration.QUERY_ORDERBY_MAX_MEMORY_RECORDS.setValue(previous);
+    }
+  }
+
+  private List<ODocument> sorted(final List<OPair<String, String>> criteria) {
+    final List<ODocument> sorted = new ArrayList<ODocument>(records);
+    ODocumentHelper.sort(sorted, criteria);
+    return sorted;
+  }
+
+  private static List<OPair<String, String>> criteria(final String... fieldsAndOrders) {
+    final List<OPair<String, String>> criteria = new ArrayList<OPair<String, String>>();
+    for (int i = 0; i < fieldsAndOrders.length; i += 2)
+      criteria.add(new OPair<String, String>(fieldsAndOrders[i], fieldsAndOrders[i + 1].toUpperCase()));
+    return criteria;
+  }
+
+  private static List<Integer> ids(final Iterable<? extends OIdentifiable> result) {
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (OIdentifiable r : result)
+      ids.add(((ODocument) r.getRecord()).<Integer> field("id"));
+    return ids;
+  }
+}
@@ -0,0 +1,111 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+@Test
+public class OParallelClusterScanTest {
+  private static final int    RECORDS = 2000;
+
+  private ODatabaseDocumentTx db;
+  private Object              previousThreads;
+  private Object              previousPartitionSize;
+
+  @BeforeMethod
+  public void init() {
+    db = new ODatabaseDocumentTx("memory:parallelClusterScanTest");
+    db.create();
+
+    // RECORDS SPREAD ON 4 CLUSTERS
+    final OClass cls = db.getMetadata().getSchema().createClass("Item");
+    final String[] clusters = { "item", "item1", "item2", "item3" };
+    for (int i = 1; i < clusters.length; i++)
+      cls.addClusterId(db.addCluster(clusters[i], OStorage.CLUSTER_TYPE.PHYSICAL));
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Item");
+      doc.field("id", i);
+      doc.field("group", "g" + (i % 10));
+      doc.save(clusters[i % clusters.length]);
+    }
+
+    previousThreads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValue();
+    previousPartitionSize = OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.getValue();
+  }
+
+  @AfterMethod
+  public void close() {
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(previousThreads);
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.setValue(previousPartitionSize);
+    db.drop();
+  }
+
+  public void sameResultOfSequentialScan() {
+    final String sql = "select from Item where id % 3 = 0";
+    final List<Integer> sequential = ids(query(sql));
+
+    enableParallelScan();
+    assertEquals(ids(query(sql)), sequential);
+  }
+
+  public void orderByOnParallelScan() {
+    enableParallelScan();
+    final List<Integer> result = ids(query("select from Item where id < 1000 order by id desc"));
+
+    assertEquals(result.size(), 1000);
+    for (int i = 0; i < result.size(); i++)
+      assertEquals(result.get(i).intValue(), 999 - i);
+  }
+
+  public void limitStopsTheScan() {
+    final String sql = "select from Item where id >= 100 limit 20";
+    final List<Integer> sequential = ids(query(sql));
+
+    enableParallelScan();
+    assertEquals(ids(query(sql)), sequential);
+  }
+
+  public void groupByOnParallelScan() {
+    enableParallelScan();
+    final List<ODocument> result = query("select group, count(*) from Item group by group");
+
+    assertEquals(result.size(), 10);
+    final Set<String> groups = new HashSet<String>();
+    for (ODocument doc : result) {
+      groups.add(doc.<String> field("group"));
+      assertEquals(((Number) doc.field("count")).intValue(), RECORDS / 10);
+    }
+    assertEquals(groups.size(), 10);
+  }
+
+  private void enableParallelScan() {
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_PARTITION_SIZE.setValue(100);
+  }
+
+  private List<ODocument> query(final String sql) {
+    return db.query(new OSQLSynchQuery<ODocument>(sql));
+  }
+
+  private static List<Integer> ids(final List<ODocument> result) {
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (ODocument doc : result)
+      ids.add(doc.<Integer> field("id"));
+    return ids;
+  }
+}
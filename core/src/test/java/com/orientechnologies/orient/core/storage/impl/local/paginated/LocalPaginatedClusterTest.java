@@ -247,6 +247,50 @@ public class LocalPaginatedClusterTest {
     }
   }
 
+  public void testCreateRecordsInBulk() throws IOException {
+    final int records = 10000;
+    long seed = System.currentTimeMillis();
+    MersenneTwisterFast mersenneTwisterFast = new MersenneTwisterFast(seed);
+
+    System.out.println("testCreateRecordsInBulk seed : " + seed);
+
+    ORecordVersion recordVersion = OVersionFactory.instance().createVersion();
+    recordVersion.increment();
+
+    final byte[][] contents = new byte[records][];
+    for (int i = 0; i < records; i++) {
+      int recordSize;
+      if (i % 100 == 0)
+        recordSize = mersenneTwisterFast.nextInt(OLocalPage.MAX_RECORD_SIZE) + OLocalPage.MAX_RECORD_SIZE + 1;
+      else
+        recordSize = mersenneTwisterFast.nextInt(1024) + 1;
+
+      contents[i] = new byte[recordSize];
+      mersenneTwisterFast.nextBytes(contents[i]);
+    }
+
+    final OPhysicalPosition[] positions = paginatedCluster.createRecords(contents, recordVersion, (byte) 2);
+    Assert.assertEquals(positions.length, records);
+    Assert.assertEquals(paginatedCluster.getEntries(), records);
+
+    Set<OClusterPosition> clusterPositions = new HashSet<OClusterPosition>();
+    for (int i = 0; i < records; i++) {
+      Assert.assertTrue(clusterPositions.add(positions[i].clusterPosition));
+
+      ORawBuffer rawBuffer = paginatedCluster.readRecord(positions[i].clusterPosition);
+      Assert.assertNotNull(rawBuffer);
+
+      Assert.assertEquals(rawBuffer.version, recordVersion);
+      Assert.assertEquals(rawBuffer.buffer, contents[i]);
+      Assert.assertEquals(rawBuffer.recordType, 2);
+    }
+
+    byte[] smallRecord = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 0 };
+    OPhysicalPosition physicalPosition = paginatedCluster.createRecord(smallRecord, recordVersion, (byte) 1);
+    Assert.assertTrue(clusterPositions.add(physicalPosition.clusterPosition));
+    Assert.assertEquals(paginatedCluster.readRecord(physicalPosition.clusterPosition).buffer, smallRecord);
+  }
+
   public void testRemoveHalfSmallRecords() throws IOException {
     final int records = 10000;
     long seed = System.currentTimeMillis();
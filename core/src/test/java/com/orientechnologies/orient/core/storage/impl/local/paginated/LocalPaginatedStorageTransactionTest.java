@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.tx.OTxListener;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+
+@Test
+public class LocalPaginatedStorageTransactionTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    final String buildDirectory = System.getProperty("buildDirectory", ".");
+    db = new ODatabaseDocumentTx("plocal:" + buildDirectory + "/localPaginatedStorageTransactionTest");
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+    }
+    db.create();
+    db.getMetadata().getSchema().createClass("Account");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testCommit() {
+    final ODocument toUpdate = new ODocument("Account").field("balance", 10).save();
+    final ODocument toDelete = new ODocument("Account").field("balance", 20).save();
+
+    db.begin();
+    final ODocument created = new ODocument("Account").field("balance", 30);
+    created.field("owner", new ODocument("Account").field("balance", 40));
+    created.save();
+    toUpdate.field("balance", 11).save();
+    toDelete.delete();
+    db.commit();
+
+    Assert.assertFalse(created.getIdentity().isNew());
+    Assert.assertFalse(((ODocument) created.field("owner")).getIdentity().isNew());
+    Assert.assertEquals(db.countClass("Account"), 3);
+
+    final ODocument loaded = db.load(toUpdate.getIdentity(), null, true);
+    Assert.assertEquals(loaded.field("balance"), 11);
+    Assert.assertNull(db.load(toDelete.getIdentity(), null, true));
+  }
+
+  public void testRollbackOnConcurrentModification() {
+    final ODocument first = new ODocument("Account").field("balance", 10).save();
+    final ODocument second = new ODocument("Account").field("balance", 20).save();
+
+    // CHANGE THE SECOND RECORD BEHIND THE TRANSACTION
+    final ODocument concurrent = db.load(second.getIdentity(), null, true);
+    concurrent.field("balance", 21).save();
+
+    db.begin();
+    first.field("balance", 11).save();
+    new ODocument("Account").field("balance", 30).save();
+    second.field("balance", 22).save();
+    try {
+      db.commit();
+      Assert.fail();
+    } catch (OConcurrentModificationException e) {
+      // EXPECTED
+    }
+
+    Assert.assertEquals(db.countClass("Account"), 2);
+    Assert.assertEquals(((ODocument) db.load(first.getIdentity(), null, true)).field("balance"), 10);
+    Assert.assertEquals(((ODocument) db.load(second.getIdentity(), null, true)).field("balance"), 21);
+  }
+
+  public void testRollbackOfAppliedChanges() {
+    final ODocument toUpdate = new ODocument("Account").field("balance", 10).save();
+    final ODocument toDelete = new ODocument("Account").field("balance", 20).save();
+    final ORecordVersion updateVersion = toUpdate.getRecordVersion().copy();
+
+    db.begin();
+    toDelete.delete();
+    toUpdate.field("balance", 11).save();
+    final ODocument created = new ODocument("Account").field("balance", 30);
+    created.save();
+    // FAILS AFTER THE OTHER CHANGES HAVE BEEN APPLIED
+    new FailingDocument("Account").field("balance", 40).save();
+    try {
+      db.commit();
+      Assert.fail();
+    } catch (RuntimeException e) {
+      // EXPECTED
+    }
+
+    Assert.assertTrue(created.getIdentity().isNew());
+    Assert.assertEquals(toUpdate.getRecordVersion(), updateVersion);
+
+    Assert.assertEquals(db.countClass("Account"), 2);
+    Assert.assertEquals(((ODocument) db.load(toUpdate.getIdentity(), null, true)).field("balance"), 10);
+    Assert.assertEquals(((ODocument) db.load(toDelete.getIdentity(), null, true)).field("balance"), 20);
+
+    // THE STATE OF THE CLUSTER IS RESTORED TOO
+    new ODocument("Account").field("balance", 50).save();
+    Assert.assertEquals(db.countClass("Account"), 3);
+  }
+
+  private static final class FailingDocument extends ODocument implements OTxListener {
+    private FailingDocument(final String className) {
+      super(className);
+    }
+
+    @Override
+    public void onEvent(final ORecordOperation iTxEntry, final EVENT iEvent) {
+      if (iEvent == EVENT.BEFORE_COMMIT)
+        throw new IllegalStateException("Commit failure");
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+
+@Test
+public class WALRedoExecutorTest {
+  private static final int PAGES   = 100;
+  private static final int RECORDS = 10000;
+
+  private OWriteAheadLog   writeAheadLog;
+  private File             testDir;
+
+  @BeforeMethod
+  public void beforeMethod() throws Exception {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty())
+      buildDirectory = ".";
+
+    testDir = new File(buildDirectory, "walRedoExecutorTest");
+    if (!testDir.exists())
+      testDir.mkdir();
+
+    OLocalPaginatedStorage paginatedStorage = mock(OLocalPaginatedStorage.class);
+    when(paginatedStorage.getName()).thenReturn("WALRedoExecutorTest");
+    when(paginatedStorage.getStoragePath()).thenReturn(testDir.getAbsolutePath());
+
+    writeAheadLog = new OWriteAheadLog(100, -1, OWALPage.PAGE_SIZE * 16, 100L * 1024L * 1024L * 1024L, paginatedStorage);
+
+    for (int i = 0; i < RECORDS; i++) {
+      writeAheadLog.log(new OUpdatePageRecord(i % PAGES, i % 3, null, new ArrayList<OPageDiff<?>>()));
+      if (i % 1000 == 0)
+        writeAheadLog.log(new OClusterStateRecord(i, i, i % 3));
+    }
+  }
+
+  @AfterMethod
+  public void afterMethod() throws Exception {
+    writeAheadLog.delete();
+    testDir.delete();
+  }
+
+  public void testPageOrderIsKept() throws Exception {
+    final ConcurrentMap<String, List<OLogSequenceNumber>> pages = new ConcurrentHashMap<String, List<OLogSequenceNumber>>();
+    final AtomicInteger otherRecords = new AtomicInteger();
+    final Thread reader = Thread.currentThread();
+
+    final long records = new OWALRedoExecutor(writeAheadLog, new OWALRedoHandler() {
+      @Override
+      public void recordRead(OWALRecord record) {
+      }
+
+      @Override
+      public void redoPage(OAbstractPageWALRecord pageRecord) {
+        final String page = pageRecord.getClusterId() + ":" + pageRecord.getPageIndex();
+        List<OLogSequenceNumber> lsns = pages.get(page);
+        if (lsns == null) {
+          lsns = new ArrayList<OLogSequenceNumber>();
+          final List<OLogSequenceNumber> oldLsns = pages.putIfAbsent(page, lsns);
+          if (oldLsns != null)
+            lsns = oldLsns;
+        }
+        lsns.add(pageRecord.getLsn());
+      }
+
+      @Override
+      public void redoRecord(OWALRecord record) {
+        Assert.assertSame(Thread.currentThread(), reader);
+        otherRecords.incrementAndGet();
+      }
+    }, 4, 1000).redoFrom(writeAheadLog.begin());
+
+    Assert.assertEquals(records, RECORDS + otherRecords.get());
+    Assert.assertEquals(otherRecords.get(), RECORDS / 1000);
+    Assert.assertEquals(pages.size(), PAGES * 3);
+
+    int pageRecords = 0;
+    for (List<OLogSequenceNumber> lsns : pages.values()) {
+      for (int i = 1; i < lsns.size(); i++)
+        Assert.assertTrue(lsns.get(i - 1).compareTo(lsns.get(i)) < 0);
+      pageRecords += lsns.size();
+    }
+    Assert.assertEquals(pageRecords, RECORDS);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testFailureIsPropagated() throws Exception {
+    new OWALRedoExecutor(writeAheadLog, new OWALRedoHandler() {
+      @Override
+      public void recordRead(OWALRecord record) {
+      }
+
+      @Override
+      public void redoPage(OAbstractPageWALRecord pageRecord) throws IOException {
+        if (pageRecord.getPageIndex() == PAGES / 2)
+          throw new IOException("test");
+      }
+
+      @Override
+      public void redoRecord(OWALRecord record) {
+      }
+    }, 4, 1000).redoFrom(writeAheadLog.begin());
+  }
+}
@@ -12,6 +12,10 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -525,6 +529,50 @@ public class WriteAheadLogTest {
     Assert.assertEquals(writeAheadLog.getFlushedLSN(), walRecord.getLsn());
   }
 
+  public void testFlushTill() throws Exception {
+    OWALRecord walRecordOne = new TestRecord(ONE_KB, false);
+    writeAheadLog.log(walRecordOne);
+
+    OWALRecord walRecordTwo = new TestRecord(ONE_KB, false);
+    writeAheadLog.log(walRecordTwo);
+
+    Assert.assertNull(writeAheadLog.getFlushedLSN());
+
+    writeAheadLog.flushTill(walRecordOne.getLsn());
+
+    Assert.assertEquals(writeAheadLog.getFlushedLSN(), walRecordTwo.getLsn());
+
+    writeAheadLog.flushTill(walRecordTwo.getLsn());
+
+    Assert.assertEquals(writeAheadLog.getFlushedLSN(), walRecordTwo.getLsn());
+  }
+
+  public void testConcurrentFlushTill() throws Exception {
+    final int threads = 8;
+    final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    for (int i = 0; i < threads; i++)
+      futures.add(executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int n = 0; n < 100; n++) {
+            OWALRecord walRecord = new TestRecord(ONE_KB, false);
+            OLogSequenceNumber lsn = writeAheadLog.log(walRecord);
+
+            writeAheadLog.flushTill(lsn);
+            Assert.assertTrue(writeAheadLog.getFlushedLSN().compareTo(lsn) >= 0);
+          }
+          return null;
+        }
+      }));
+
+    for (Future<Void> future : futures)
+      future.get();
+
+    executorService.shutdown();
+  }
+
   public void testFlushedLSNOnePageWithLessThanMinRecordSpace() throws Exception {
     OWALRecord walRecord = new TestRecord(ONE_KB, false);
     writeAheadLog.log(walRecord);
@@ -73,9 +73,29 @@ public abstract class OAbstractDistributedQueryExecutor extends OQueryExecutor {
    * @return number of the nodes that are running command
    */
   protected int runCommandOnAllNodes(final OCommandRequestText iDistributedCommand) {
-    final List<ODHTNode> nodes = serverInstance.getDHTNodes();
-    final int nodesNumber = nodes.size();
-    final List<Future> tasks = new ArrayList<Future>(nodesNumber);
+    final List<Future<?>> tasks = submitCommandOnNodes(serverInstance.getDHTNodes(), iDistributedCommand);
+    for (final Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (Exception e) {
+        failedNodes.incrementAndGet();
+        // OLogManager.instance().error(this, "Query execution failed on one of the nodes", e);
+      }
+    }
+    return tasks.size();
+  }
+
+  /**
+   * Start the execution of given command on the nodes without waiting for it.
+   * 
+   * @param nodes
+   *          nodes to run the command on
+   * @param iDistributedCommand
+   *          command to execute
+   * @return the tasks running the command, in the same order of the nodes
+   */
+  protected List<Future<?>> submitCommandOnNodes(final List<ODHTNode> nodes, final OCommandRequestText iDistributedCommand) {
+    final List<Future<?>> tasks = new ArrayList<Future<?>>(nodes.size());
     for (final ODHTNode node : nodes) {
       tasks.add(distributedQueryExecutors.submit(new Runnable() {
         @Override
@@ -95,15 +115,7 @@ public abstract class OAbstractDistributedQueryExecutor extends OQueryExecutor {
         }
       }));
     }
-    for (final Future task : tasks) {
-      try {
-        task.get();
-      } catch (Exception e) {
-        failedNodes.incrementAndGet();
-        // OLogManager.instance().error(this, "Query execution failed on one of the nodes", e);
-      }
-    }
-    return nodesNumber;
+    return tasks;
   }
 
   /**
@@ -58,6 +58,8 @@ public class OCommandResultSerializationHelper {
   private static final byte BOOLEAN_MARKER    = (byte) 'b';
   private static final byte OTHER_MARKER      = (byte) 'o';
   private static final byte END_MARKER        = (byte) 'e';
+  private static final byte FAILURE_MARKER    = (byte) 'f';
+  private static final byte BATCH_MARKER      = (byte) 'B';
 
   public static byte[] writeToStream(Object result) throws IOException {
     final ByteArrayOutputStream stream = new ByteArrayOutputStream();
@@ -92,8 +94,14 @@ public class OCommandResultSerializationHelper {
       stream.write(BOOLEAN_MARKER);
       stream.write(((Boolean) result) ? 1 : 0);
     } else if (result instanceof OHazelcastResultListener.EndOfResult) {
-      stream.write(END_MARKER);
-      stream.write(OBinaryProtocol.long2bytes(((OHazelcastResultListener.EndOfResult) result).getNodeId()));
+      final OHazelcastResultListener.EndOfResult end = (OHazelcastResultListener.EndOfResult) result;
+      stream.write(end.isFailed() ? FAILURE_MARKER : END_MARKER);
+      stream.write(OBinaryProtocol.long2bytes(end.getNodeId()));
+      if (end.isFailed()) {
+        final byte[] bytes = end.getError().getBytes();
+        stream.write(OBinaryProtocol.int2bytes(bytes.length));
+        stream.write(bytes);
+      }
     } else {
       stream.write(OTHER_MARKER);
       final StringBuilder value = new StringBuilder();
@@ -134,6 +142,20 @@ public class OCommandResultSerializationHelper {
       final long nodeId = OBinaryProtocol.bytes2long(stream);
       return new OHazelcastResultListener.EndOfResult(nodeId);
     }
+    case FAILURE_MARKER: {
+      final long nodeId = OBinaryProtocol.bytes2long(stream);
+      final int len = OBinaryProtocol.bytes2int(stream);
+      return new OHazelcastResultListener.EndOfResult(nodeId, new String(readFully(stream, 0, len)));
+    }
+    case BATCH_MARKER: {
+      final long nodeId = OBinaryProtocol.bytes2long(stream);
+      final int size = OBinaryProtocol.bytes2int(stream);
+      final List<Object> results = new ArrayList<Object>(size);
+      for (int i = 0; i < size; i++) {
+        results.add(readFromStream(stream));
+      }
+      return new OHazelcastResultListener.ResultBatch(nodeId, results);
+    }
     case OTHER_MARKER: {
       final int len = OBinaryProtocol.bytes2int(stream);
       final byte[] bytes = readFully(stream, 0, len);
@@ -144,6 +166,25 @@ public class OCommandResultSerializationHelper {
     return null;
   }
 
+  /**
+   * Frames a batch of results sent by a node.
+   * 
+   * @param nodeId
+   *          id of the node that produced the results
+   * @param size
+   *          number of results in the batch
+   * @param results
+   *          results already serialized one after the other by {@link #writeToStream(Object, OutputStream)}
+   */
+  public static byte[] writeBatch(long nodeId, int size, byte[] results) throws IOException {
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream(results.length + 13);
+    stream.write(BATCH_MARKER);
+    stream.write(OBinaryProtocol.long2bytes(nodeId));
+    stream.write(OBinaryProtocol.int2bytes(size));
+    stream.write(results);
+    return stream.toByteArray();
+  }
+
   public static void writeIdentifiable(OIdentifiable o, OutputStream stream) throws IOException {
     if (o == null) {
       stream.write(OBinaryProtocol.short2bytes(OChannelBinaryProtocol.RECORD_NULL));
@@ -17,11 +17,17 @@ package com.orientechnologies.orient.server.hazelcast.sharding;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.hazelcast.core.ITopic;
@@ -31,12 +37,16 @@ import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.util.OPair;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.query.OQueryAbstract;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ODocumentComparator;
 import com.orientechnologies.orient.core.record.impl.ODocumentHelper;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.core.sql.OCommandExecutorSQLSelect;
 import com.orientechnologies.orient.core.sql.functions.OSQLFunction;
 import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
@@ -44,18 +54,23 @@ import com.orientechnologies.orient.core.sql.functions.coll.OSQLFunctionDistinct
 import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
+import com.orientechnologies.orient.server.hazelcast.sharding.distributed.ODHTNode;
 import com.orientechnologies.orient.server.hazelcast.sharding.hazelcast.OHazelcastResultListener;
 import com.orientechnologies.orient.server.hazelcast.sharding.hazelcast.ServerInstance;
 
 /**
  * Executor for distributed select command and its result merge
  * 
+ * Every node sends its results in batches, already sorted and limited when the query has ORDER BY and LIMIT. The results of the
+ * nodes are merged while they arrive, so only the batches not consumed yet are kept in memory. Aggregates are merged from the
+ * partial results of the nodes.
+ * 
  * @author edegtyarenko
  * @since 25.10.12 8:12
  */
 public class ODistributedSelectQueryExecutor extends OAbstractDistributedQueryExecutor implements MessageListener<byte[]> {
 
-  private static final int                        QUEUE_SIZE          = 100;
+  private static final long                       POLL_TIMEOUT        = 100;
   private static final AtomicLong                 SELECT_ID_GENERATOR = new AtomicLong(0);
 
   private final long                              storageId;
@@ -66,13 +81,20 @@ public class ODistributedSelectQueryExecutor extends OAbstractDistributedQueryEx
   private OPair<String, OSQLFunctionDistinct>     distinct            = null;
   private List<OPair<String, String>>             order               = null;
   private final int                               limit;
+  private final boolean                           collect;
   private final boolean                           async;
+  private final ODocumentComparator               comparator;
 
   private final OCommandResultListener            resultListener;
 
-  private final BlockingQueue<byte[]>             plainResult         = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+  // BOUNDED BY THE BATCHES EVERY NODE CAN SEND BEFORE THEY ARE CONSUMED
+  private final BlockingQueue<byte[]>             plainResult         = new LinkedBlockingQueue<byte[]>();
 
   private final ITopic<byte[]>                    resultTopic;
+  private final int                               ackInterval;
+  private final Map<Long, NodeResult>             nodeResults         = new LinkedHashMap<Long, NodeResult>();
+  private int                                     processed           = 0;
+  private boolean                                 stopped             = false;
 
   public ODistributedSelectQueryExecutor(OCommandRequestText iCommand, OCommandExecutorSQLSelect executor,
       OStorageEmbedded wrapped, ServerInstance serverInstance) {
@@ -98,7 +120,10 @@ public class ODistributedSelectQueryExecutor extends OAbstractDistributedQueryEx
     this.limit = executor.getLimit();
     this.resultListener = (iCommand.getResultListener() != null && !(iCommand.getResultListener() instanceof OSQLSynchQuery)) ? iCommand
         .getResultListener() : null;
-    this.async = resultListener != null && !anyFunctionAggregate && distinct == null && mergers.isEmpty() && order == null;
+    this.collect = anyFunctionAggregate || distinct != null || !mergers.isEmpty();
+    this.async = resultListener != null && !collect;
+    this.comparator = !collect && order != null && !order.isEmpty() ? new ODocumentComparator(order) : null;
+    this.ackInterval = Math.max(1, OGlobalConfiguration.DISTRIBUTED_QUERY_WINDOW.getValueAsInteger() / 2);
 
     this.resultTopic = ServerInstance.getHazelcast().getTopic(getResultTopicName(storageId, selectId));
     this.resultTopic.addMessageListener(this);
@@ -126,47 +151,149 @@ public class ODistributedSelectQueryExecutor extends OAbstractDistributedQueryEx
         iCommand.getParameters().clear();
       }
     }
-    int remainingExecutors = runCommandOnAllNodes(new OSQLAsynchQuery(iCommand.getText(), iCommand.getLimit(),
+    // THE RESULTS ARE CONSUMED WHILE THE NODES ARE STILL SENDING THEM
+    final List<ODHTNode> nodes = serverInstance.getDHTNodes();
+    final List<Future<?>> tasks = submitCommandOnNodes(nodes, new OSQLAsynchQuery(iCommand.getText(), iCommand.getLimit(),
         iCommand instanceof OQueryAbstract ? ((OQueryAbstract) iCommand).getFetchPlan() : null, iCommand.getParameters(),
         new OHazelcastResultListener(ServerInstance.getHazelcast(), storageId, selectId)));
+    for (int i = 0; i < nodes.size(); i++) {
+      final long nodeId = nodes.get(i).getNodeId();
+      nodeResults.put(nodeId, new NodeResult(nodeId, tasks.get(i), ServerInstance.getHazelcast().<byte[]> getTopic(
+          getAckTopicName(storageId, selectId, nodeId)), ackInterval));
+    }
 
-    int processed = 0;
     final List<OIdentifiable> result = new ArrayList<OIdentifiable>();
 
-    while (true) {
-      try {
-        final byte[] plainItem = plainResult.take();
-        final Object item = OCommandResultSerializationHelper.readFromStream(plainItem);
-        if (item instanceof OIdentifiable) {
-          if (async) {
-            resultListener.result(item);
+    try {
+      while (!isLimitReached() && !isCompleted()) {
+        try {
+          final byte[] plainItem = plainResult.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+          if (plainItem != null) {
+            receiveBatch(plainItem);
           } else {
-            result.add((OIdentifiable) item);
+            // THE QUEUE IS DRAINED: A NODE THAT ENDED WITHOUT SENDING ALL ITS RESULTS WILL NOT SEND THEM ANYMORE
+            for (NodeResult nodeResult : nodeResults.values()) {
+              nodeResult.checkFailure();
+            }
           }
-          processed++;
-        } else if (item instanceof OHazelcastResultListener.EndOfResult) {
-          remainingExecutors--;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OCommandExecutionException("Interrupted while waiting for the results of query: " + iCommand.getText(), e);
+        } catch (IOException e) {
+          // THE NODE OF THE BATCH IS NOT KNOWN: ITS RESULTS, OR THE END OF THEM, ARE LOST AND THE WHOLE QUERY FAILS
+          throw new OCommandExecutionException("Error on deserializing the results of query: " + iCommand.getText(), e);
+        }
+
+        if (comparator != null) {
+          mergeResults(result);
         } else {
-          throw new IllegalArgumentException("Invalid type provided");
+          for (NodeResult nodeResult : nodeResults.values()) {
+            while (nodeResult.hasNext() && !isLimitReached()) {
+              passResult(nodeResult.next(), result);
+            }
+          }
         }
-      } catch (InterruptedException e) {
-        OLogManager.instance().warn(this, "Failed to take message from queue");
-      } catch (IOException e) {
-        OLogManager.instance().warn(this, "Error deserializing result");
       }
-
-      if (remainingExecutors <= failedNodes.get() || (async && limit != -1 && processed >= limit)) {
-        break;
+    } finally {
+      for (NodeResult nodeResult : nodeResults.values()) {
+        nodeResult.close();
       }
+      resultTopic.destroy();
     }
 
-    resultTopic.destroy();
+    // PARTIAL RESULTS ARE WRONG RESULTS: THE QUERY FAILS IF A NODE FAILED BEFORE ALL THE NEEDED RESULTS WERE RECEIVED
+    final StringBuilder errors = new StringBuilder();
+    for (NodeResult nodeResult : nodeResults.values()) {
+      if (nodeResult.isFailed()) {
+        failedNodes.incrementAndGet();
+        errors.append("\n").append(nodeResult.nodeId).append(": ").append(nodeResult.error);
+      }
+    }
+    if (failedNodes.get() > 0) {
+      throw new OCommandExecutionException(String.format("%d nodes of %d have failed during execution of query: %s%s",
+          failedNodes.get(), nodeResults.size(), iCommand.getText(), errors));
+    }
 
     if (async) {
       return null;
-    } else {
+    } else if (collect) {
       return processResult(result);
+    } else {
+      return result;
+    }
+  }
+
+  private void receiveBatch(byte[] plainItem) throws IOException {
+    final Object item = OCommandResultSerializationHelper.readFromStream(plainItem);
+    if (!(item instanceof OHazelcastResultListener.ResultBatch)) {
+      throw new IllegalArgumentException("Invalid type provided");
+    }
+
+    final OHazelcastResultListener.ResultBatch batch = (OHazelcastResultListener.ResultBatch) item;
+    final NodeResult nodeResult = nodeResults.get(batch.getNodeId());
+    if (nodeResult == null) {
+      OLogManager.instance().warn(this, "Received results from unknown node %d", batch.getNodeId());
+      return;
+    }
+    nodeResult.add(batch.getResults());
+  }
+
+  /**
+   * K-way merge of the sorted results of the nodes.
+   */
+  private void mergeResults(List<OIdentifiable> result) {
+    while (!isLimitReached()) {
+      final NodeResult min = nextSorted(nodeResults.values(), comparator);
+      if (min == null) {
+        return;
+      }
+      passResult(min.next(), result);
+    }
+  }
+
+  /**
+   * Returns the node with the lowest next result. A result is passed on only when the next result of every node is known.
+   * 
+   * @return null if the next batch of a node must be received first, or all the results have been consumed
+   */
+  static NodeResult nextSorted(Collection<NodeResult> nodeResults, Comparator<OIdentifiable> comparator) {
+    NodeResult min = null;
+    for (NodeResult nodeResult : nodeResults) {
+      if (!nodeResult.hasNext()) {
+        if (!nodeResult.isFinished()) {
+          // WAIT FOR THE NEXT BATCH OF THE NODE
+          return null;
+        }
+      } else if (min == null || comparator.compare(nodeResult.peek(), min.peek()) < 0) {
+        min = nodeResult;
+      }
+    }
+    return min;
+  }
+
+  private void passResult(OIdentifiable item, List<OIdentifiable> result) {
+    processed++;
+    if (async) {
+      if (!resultListener.result(item)) {
+        stopped = true;
+      }
+    } else {
+      result.add(item);
+    }
+  }
+
+  private boolean isLimitReached() {
+    // AGGREGATES AND DISTINCT NEED ALL THE RESULTS
+    return !collect && (stopped || (limit != -1 && processed >= limit));
+  }
+
+  private boolean isCompleted() {
+    for (NodeResult nodeResult : nodeResults.values()) {
+      if (nodeResult.hasNext() || !nodeResult.isFinished()) {
+        return false;
+      }
     }
+    return true;
   }
 
   private List<OIdentifiable> processResult(List<OIdentifiable> result) {
@@ -231,4 +358,124 @@ public class ODistributedSelectQueryExecutor extends OAbstractDistributedQueryEx
   public static String getResultTopicName(long storageId, long selectId) {
     return new StringBuilder("query-").append(storageId).append("-").append(selectId).toString();
   }
+
+  public static String getAckTopicName(long storageId, long selectId, long nodeId) {
+    return new StringBuilder("query-").append(storageId).append("-").append(selectId).append("-ack-").append(nodeId).toString();
+  }
+
+  /**
+   * Batches received from a node and not consumed yet.
+   */
+  static final class NodeResult {
+
+    private final long                            nodeId;
+    private final Future<?>                       task;
+    private final ITopic<byte[]>                  ackTopic;
+    private final int                             ackInterval;
+    private final LinkedList<List<OIdentifiable>> batches             = new LinkedList<List<OIdentifiable>>();
+    private int                                   position            = 0;
+    private long                                  consumedBatches     = 0;
+    private long                                  acknowledgedBatches = 0;
+    private boolean                               ended               = false;
+    private boolean                               failed              = false;
+    private String                                error;
+
+    NodeResult(long nodeId, Future<?> task, ITopic<byte[]> ackTopic, int ackInterval) {
+      this.nodeId = nodeId;
+      this.task = task;
+      this.ackTopic = ackTopic;
+      this.ackInterval = ackInterval;
+    }
+
+    void add(List<Object> results) {
+      final List<OIdentifiable> records = new ArrayList<OIdentifiable>(results.size());
+      for (Object item : results) {
+        if (item instanceof OIdentifiable) {
+          records.add((OIdentifiable) item);
+        } else if (item instanceof OHazelcastResultListener.EndOfResult) {
+          final OHazelcastResultListener.EndOfResult end = (OHazelcastResultListener.EndOfResult) item;
+          if (end.isFailed()) {
+            // THE NODE DROPPED SOME RESULTS
+            failed = true;
+            error = end.getError();
+          } else {
+            ended = true;
+          }
+        } else {
+          throw new IllegalArgumentException("Invalid type provided");
+        }
+      }
+
+      if (records.isEmpty()) {
+        consumed();
+      } else {
+        batches.add(records);
+      }
+    }
+
+    boolean hasNext() {
+      return !batches.isEmpty();
+    }
+
+    OIdentifiable peek() {
+      return batches.getFirst().get(position);
+    }
+
+    OIdentifiable next() {
+      final List<OIdentifiable> batch = batches.getFirst();
+      final OIdentifiable result = batch.get(position++);
+      if (position == batch.size()) {
+        batches.removeFirst();
+        position = 0;
+        consumed();
+      }
+      return result;
+    }
+
+    /**
+     * Returns true if the node will not send other results.
+     */
+    boolean isFinished() {
+      return ended || failed;
+    }
+
+    /**
+     * Returns true if the node will not send all its results.
+     */
+    boolean isFailed() {
+      return failed;
+    }
+
+    /**
+     * Marks the node as failed if its task ended before all its results were received. Must be called when all the batches
+     * received have been read.
+     */
+    void checkFailure() {
+      if (!isFinished() && task.isDone()) {
+        failed = true;
+        try {
+          task.get();
+          error = "the node ended without sending the end of its results";
+        } catch (Exception e) {
+          error = e.getCause() != null ? e.getCause().toString() : e.toString();
+        }
+      }
+    }
+
+    private void consumed() {
+      consumedBatches++;
+      if (!isFinished() && consumedBatches - acknowledgedBatches >= ackInterval) {
+        // LET THE NODE SEND OTHER BATCHES
+        ackTopic.publish(OBinaryProtocol.long2bytes(consumedBatches));
+        acknowledgedBatches = consumedBatches;
+      }
+    }
+
+    private void close() {
+      if (!isFinished()) {
+        // THE RESULTS OF THE NODE ARE NOT NEEDED ANYMORE. THE NODE DESTROYS THE TOPIC WHEN IT ENDS
+        ackTopic.publish(OBinaryProtocol.long2bytes(OHazelcastResultListener.STOP));
+      }
+    }
+  }
 }
@@ -334,49 +334,54 @@ public class OLocalDHTNode implements ODHTNode {
     }
 
     final ODatabaseDocumentTx database = openDatabase(storageName);
-    final OCommandExecutor executor = OCommandManager.instance().getExecutor(request);
+    OHazelcastResultListener resultListener = null;
+    try {
+      final OCommandExecutor executor = OCommandManager.instance().getExecutor(request);
 
-    executor.setProgressListener(request.getProgressListener());
-    executor.parse(request);
+      executor.setProgressListener(request.getProgressListener());
+      executor.parse(request);
 
-    final long from;
-    if (predecessor.get() == -1) {
-      if (fingerPoints.get(0) == id) {
-        // single node in dht
-        from = id;
+      final long from;
+      if (predecessor.get() == -1) {
+        if (fingerPoints.get(0) == id) {
+          // single node in dht
+          from = id;
+        } else {
+          throw new OCommandExecutionException("Predecessor node has failed");
+        }
       } else {
-        throw new OCommandExecutionException("Predecessor node has failed");
+        from = predecessor.get();
       }
-    } else {
-      from = predecessor.get();
-    }
 
-    final OCommandExecutorSQLSelect selectExecutor;
-    if (executor instanceof OCommandExecutorSQLDelegate
-        && ((OCommandExecutorSQLDelegate) executor).getDelegate() instanceof OCommandExecutorSQLSelect) {
+      final OCommandExecutorSQLSelect selectExecutor;
+      if (executor instanceof OCommandExecutorSQLDelegate
+          && ((OCommandExecutorSQLDelegate) executor).getDelegate() instanceof OCommandExecutorSQLSelect) {
 
-      selectExecutor = ((OCommandExecutorSQLSelect) ((OCommandExecutorSQLDelegate) executor).getDelegate());
-    } else if (executor instanceof OCommandExecutorSQLSelect) {
-      selectExecutor = ((OCommandExecutorSQLSelect) executor);
-    } else {
-      selectExecutor = null;
-    }
+        selectExecutor = ((OCommandExecutorSQLSelect) ((OCommandExecutorSQLDelegate) executor).getDelegate());
+      } else if (executor instanceof OCommandExecutorSQLSelect) {
+        selectExecutor = ((OCommandExecutorSQLSelect) executor);
+      } else {
+        selectExecutor = null;
+      }
 
-    if (request.isIdempotent() && !executor.isIdempotent())
-      throw new OCommandExecutionException("Cannot execute non idempotent command");
+      if (request.isIdempotent() && !executor.isIdempotent())
+        throw new OCommandExecutionException("Cannot execute non idempotent command");
 
-    if (selectExecutor != null) {
-      selectExecutor.boundToLocalNode(from, id);
-    }
+      if (selectExecutor != null) {
+        selectExecutor.boundToLocalNode(from, id);
+        if (request.getResultListener() instanceof OHazelcastResultListener) {
+          resultListener = (OHazelcastResultListener) request.getResultListener();
+          resultListener.setNodeId(id);
+        }
+      }
 
-    try {
       Object result = executor.execute(request.getParameters());
       request.setContext(executor.getContext());
       if (serializeResult) {
         result = OCommandResultSerializationHelper.writeToStream(result);
       }
-      if (selectExecutor != null && request.getResultListener() instanceof OHazelcastResultListener) {
-        request.getResultListener().result(new OHazelcastResultListener.EndOfResult(id));
+      if (resultListener != null) {
+        resultListener.result(new OHazelcastResultListener.EndOfResult(id));
       }
       return result;
     } catch (OException e) {
@@ -385,6 +390,10 @@ public class OLocalDHTNode implements ODHTNode {
     } catch (Exception e) {
       throw new OCommandExecutionException("Error on execution of command: " + request, e);
     } finally {
+      // THE COORDINATOR KNOWS ABOUT A FAILURE FROM THE TASK OF THE NODE: STOP LISTENING FOR ITS ACKNOWLEDGES ANYWAY
+      if (resultListener != null) {
+        resultListener.close();
+      }
       closeDatabase(database);
     }
   }
@@ -15,54 +15,153 @@
  */
 package com.orientechnologies.orient.server.hazelcast.sharding.hazelcast;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.server.hazelcast.sharding.OCommandResultSerializationHelper;
 import com.orientechnologies.orient.server.hazelcast.sharding.ODistributedSelectQueryExecutor;
 
 /**
  * This class provides functionality to async aggregation of result sets from different nodes to one that initiated query
  * 
+ * Results are sent in batches. A node can send a limited window of batches that the coordinator has not consumed yet, then it
+ * waits for the coordinator to acknowledge them. The coordinator can also stop the node when it does not need more results.
+ * 
  * @author edegtyarenko
  * @since 22.10.12 11:53
  */
-public class OHazelcastResultListener implements OCommandResultListener {
+public class OHazelcastResultListener implements OCommandResultListener, MessageListener<byte[]> {
 
+  /**
+   * Last result sent by a node. When the node could not send all its results it carries the error.
+   */
   public static final class EndOfResult {
 
-    private final long nodeId;
+    private final long   nodeId;
+    private final String error;
 
     public EndOfResult(long nodeId) {
+      this(nodeId, null);
+    }
+
+    public EndOfResult(long nodeId, String error) {
+      this.nodeId = nodeId;
+      this.error = error;
+    }
+
+    public long getNodeId() {
+      return nodeId;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public boolean isFailed() {
+      return error != null;
+    }
+  }
+
+  public static final class ResultBatch {
+
+    private final long         nodeId;
+    private final List<Object> results;
+
+    public ResultBatch(long nodeId, List<Object> results) {
       this.nodeId = nodeId;
+      this.results = results;
     }
 
     public long getNodeId() {
       return nodeId;
     }
+
+    public List<Object> getResults() {
+      return results;
+    }
   }
 
-  private final long           storageId;
-  private final long           selectId;
-  private final ITopic<byte[]> topic;
+  /**
+   * Consumed batches sent by the coordinator to stop the node.
+   */
+  public static final long            STOP            = -1;
+
+  private final HazelcastInstance     hazelcast;
+  private final long                  storageId;
+  private final long                  selectId;
+  private final ITopic<byte[]>        topic;
+
+  private final int                   batchSize       = OGlobalConfiguration.DISTRIBUTED_QUERY_BATCH_SIZE.getValueAsInteger();
+  private final int                   window          = OGlobalConfiguration.DISTRIBUTED_QUERY_WINDOW.getValueAsInteger();
+  private final long                  timeout         = OGlobalConfiguration.DISTRIBUTED_QUERY_TIMEOUT.getValueAsLong();
+
+  private final ByteArrayOutputStream batch           = new ByteArrayOutputStream();
+  private int                         batchResults    = 0;
+
+  private long                        nodeId          = -1;
+  private ITopic<byte[]>              ackTopic;
+  private long                        sentBatches     = 0;
+  private long                        consumedBatches = 0;
+  private boolean                     stopped         = false;
+  private boolean                     timedOut        = false;
 
   public OHazelcastResultListener(HazelcastInstance hazelcast, long storageId, long selectId) {
+    this.hazelcast = hazelcast;
     this.storageId = storageId;
     this.selectId = selectId;
     this.topic = hazelcast.getTopic(ODistributedSelectQueryExecutor.getResultTopicName(storageId, selectId));
   }
 
+  /**
+   * Binds the listener to the node that executes the query, to receive the acknowledges of the coordinator.
+   */
+  public void setNodeId(long nodeId) {
+    this.nodeId = nodeId;
+    this.ackTopic = hazelcast.getTopic(ODistributedSelectQueryExecutor.getAckTopicName(storageId, selectId, nodeId));
+    this.ackTopic.addMessageListener(this);
+  }
+
   @Override
   public boolean result(Object iRecord) {
+    final boolean end = iRecord instanceof EndOfResult;
+    if (isStopped() && !end)
+      return false;
+
     try {
-      topic.publish(OCommandResultSerializationHelper.writeToStream(iRecord));
-      return true;
+      OCommandResultSerializationHelper.writeToStream(iRecord, batch);
+      batchResults++;
+
+      if (batchResults >= batchSize || end)
+        sendBatch(end);
     } catch (IOException e) {
       OLogManager.instance().error(this, "Error serializing record", e);
       return false;
+    } finally {
+      if (end)
+        close();
+    }
+    return !isStopped();
+  }
+
+  @Override
+  public void onMessage(Message<byte[]> message) {
+    final long consumed = OBinaryProtocol.bytes2long(message.getMessageObject());
+
+    synchronized (this) {
+      if (consumed == STOP)
+        stopped = true;
+      else if (consumed > consumedBatches)
+        consumedBatches = consumed;
+      notifyAll();
     }
   }
 
@@ -77,4 +176,76 @@ public class OHazelcastResultListener implements OCommandResultListener {
   @Override
   public void end() {
   }
+
+  private void sendBatch(final boolean end) throws IOException {
+    if (!waitForWindow()) {
+      batch.reset();
+      batchResults = 0;
+      if (!end || !timedOut)
+        return;
+
+      // THE COORDINATOR DID NOT CONSUME THE RESULTS IN TIME AND THE REMAINING ONES WERE DROPPED: THE RESULT OF THIS NODE FAILED
+      OCommandResultSerializationHelper.writeToStream(new EndOfResult(nodeId,
+          "Timeout on waiting for the coordinator to consume the results"), batch);
+      batchResults++;
+    }
+
+    topic.publish(OCommandResultSerializationHelper.writeBatch(nodeId, batchResults, batch.toByteArray()));
+    synchronized (this) {
+      sentBatches++;
+    }
+    batch.reset();
+    batchResults = 0;
+  }
+
+  /**
+   * Waits until the coordinator consumed enough batches to send another one.
+   * 
+   * @return false if the results must be discarded because the coordinator stopped the query
+   */
+  private synchronized boolean waitForWindow() {
+    if (ackTopic == null)
+      // NOT BOUND TO A NODE: NO ACKNOWLEDGES TO WAIT FOR
+      return true;
+
+    final long deadline = System.currentTimeMillis() + timeout;
+    while (!stopped && sentBatches - consumedBatches >= window) {
+      final long wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        OLogManager.instance().warn(this, "Timeout on waiting for the coordinator of query %d to consume the results of node %d",
+            selectId, nodeId);
+        stopped = true;
+        timedOut = true;
+        break;
+      }
+
+      try {
+        wait(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stopped = true;
+      }
+    }
+    return !stopped;
+  }
+
+  private synchronized boolean isStopped() {
+    return stopped;
+  }
+
+  /**
+   * Stops receiving the acknowledges of the coordinator. Called when the last result is sent and anyway at the end of the
+   * execution of the query, even if it failed.
+   */
+  public void close() {
+    final ITopic<byte[]> topic;
+    synchronized (this) {
+      topic = ackTopic;
+      ackTopic = null;
+    }
+    if (topic != null) {
+      topic.removeMessageListener(this);
+      topic.destroy();
+    }
+  }
 }
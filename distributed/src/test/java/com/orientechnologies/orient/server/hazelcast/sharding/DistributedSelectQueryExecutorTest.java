@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.hazelcast.sharding;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.hazelcast.core.ITopic;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.server.hazelcast.sharding.ODistributedSelectQueryExecutor.NodeResult;
+import com.orientechnologies.orient.server.hazelcast.sharding.hazelcast.OHazelcastResultListener;
+
+public class DistributedSelectQueryExecutorTest {
+  private static final Comparator<OIdentifiable> BY_POSITION = new Comparator<OIdentifiable>() {
+                                                               public int compare(final OIdentifiable o1, final OIdentifiable o2) {
+                                                                 return o1.getIdentity().compareTo(o2.getIdentity());
+                                                               }
+                                                             };
+
+  private final List<Long>                       acks        = new ArrayList<Long>();
+
+  @Test
+  public void testMergeSortedResults() {
+    final NodeResult node1 = new NodeResult(1, null, createAckTopic(), 100);
+    final NodeResult node2 = new NodeResult(2, null, createAckTopic(), 100);
+    final List<NodeResult> nodes = Arrays.asList(node1, node2);
+
+    node1.add(results(1, 4));
+    node2.add(results(2));
+
+    final List<Long> merged = new ArrayList<Long>();
+    merge(nodes, merged);
+    // THE NEXT RESULT OF NODE 2 IS NOT KNOWN YET: 4 CANNOT BE PASSED ON
+    Assert.assertEquals(Arrays.asList(1l, 2l), merged);
+
+    node2.add(results(3, 5, null));
+    merge(nodes, merged);
+    Assert.assertEquals(Arrays.asList(1l, 2l, 3l, 4l), merged);
+
+    node1.add(results((Integer) null));
+    merge(nodes, merged);
+    Assert.assertEquals(Arrays.asList(1l, 2l, 3l, 4l, 5l), merged);
+
+    Assert.assertTrue(node1.isFinished());
+    Assert.assertTrue(node2.isFinished());
+    Assert.assertFalse(node1.hasNext() || node2.hasNext());
+  }
+
+  @Test
+  public void testConsumedBatchesAreAcknowledged() {
+    final NodeResult node = new NodeResult(1, null, createAckTopic(), 2);
+
+    node.add(results(1));
+    node.add(results(2));
+    node.add(results(3));
+
+    node.next();
+    Assert.assertTrue(acks.isEmpty());
+    node.next();
+    Assert.assertEquals(Arrays.asList(2l), acks);
+
+    // THE LAST BATCH ENDS THE RESULTS: NO MORE ACKNOWLEDGES
+    node.add(results((Integer) null));
+    node.next();
+    Assert.assertEquals(Arrays.asList(2l), acks);
+  }
+
+  @Test
+  public void testFailedNode() {
+    final NodeResult node1 = new NodeResult(1, null, createAckTopic(), 100);
+    final NodeResult node2 = new NodeResult(2, null, createAckTopic(), 100);
+
+    node1.add(results(1, null));
+    node2.add(Arrays.<Object> asList(new OHazelcastResultListener.EndOfResult(2, "timeout")));
+
+    Assert.assertFalse(node1.isFailed());
+    Assert.assertTrue(node2.isFailed());
+    Assert.assertTrue(node2.isFinished());
+
+    // THE MERGE DOES NOT WAIT FOR A FAILED NODE
+    final List<Long> merged = new ArrayList<Long>();
+    merge(Arrays.asList(node1, node2), merged);
+    Assert.assertEquals(Arrays.asList(1l), merged);
+  }
+
+  @Test
+  public void testNodeEndedWithoutEndOfResult() {
+    final FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+      public void run() {
+      }
+    }, null);
+    final NodeResult node = new NodeResult(1, task, createAckTopic(), 100);
+
+    node.add(results(1));
+    node.checkFailure();
+    Assert.assertFalse(node.isFinished());
+
+    // THE BATCH WITH THE END OF THE RESULTS IS LOST: THE NODE CANNOT BE WAITED FOR FOREVER
+    task.run();
+    node.checkFailure();
+    Assert.assertTrue(node.isFailed());
+    Assert.assertTrue(node.isFinished());
+  }
+
+  @Test
+  public void testNodeTaskFailed() {
+    final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+      public Object call() throws Exception {
+        throw new IllegalStateException("node down");
+      }
+    });
+    final NodeResult node = new NodeResult(1, task, createAckTopic(), 100);
+
+    task.run();
+    node.checkFailure();
+    Assert.assertTrue(node.isFailed());
+  }
+
+  @Test
+  public void testEndedNodeIsNotFailed() {
+    final FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+      public void run() {
+      }
+    }, null);
+    final NodeResult node = new NodeResult(1, task, createAckTopic(), 100);
+
+    node.add(results(1, null));
+    task.run();
+    node.checkFailure();
+    Assert.assertFalse(node.isFailed());
+  }
+
+  private static void merge(final List<NodeResult> iNodes, final List<Long> iMerged) {
+    NodeResult min;
+    while ((min = ODistributedSelectQueryExecutor.nextSorted(iNodes, BY_POSITION)) != null)
+      iMerged.add(min.next().getIdentity().getClusterPosition().longValue());
+  }
+
+  /**
+   * Results of a batch, null for the end of the results.
+   */
+  private static List<Object> results(final Integer... iPositions) {
+    final List<Object> results = new ArrayList<Object>();
+    for (Integer position : iPositions)
+      results.add(position != null ? new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(position))
+          : new OHazelcastResultListener.EndOfResult(1));
+    return results;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ITopic<byte[]> createAckTopic() {
+    return (ITopic<byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ITopic.class },
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().equals("publish"))
+              acks.add(OBinaryProtocol.bytes2long((byte[]) args[0]));
+            return null;
+          }
+        });
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.hazelcast.sharding.hazelcast;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.server.hazelcast.sharding.OCommandResultSerializationHelper;
+import com.orientechnologies.orient.server.hazelcast.sharding.ODistributedSelectQueryExecutor;
+
+public class HazelcastResultListenerTest {
+  private static final long             NODE_ID = 7;
+
+  private final Map<String, List<byte[]>> published = new HashMap<String, List<byte[]>>();
+  private HazelcastInstance             hazelcast;
+  private Object                        batchSize;
+  private Object                        window;
+  private Object                        timeout;
+
+  @Before
+  public void setUp() {
+    batchSize = OGlobalConfiguration.DISTRIBUTED_QUERY_BATCH_SIZE.getValue();
+    window = OGlobalConfiguration.DISTRIBUTED_QUERY_WINDOW.getValue();
+    timeout = OGlobalConfiguration.DISTRIBUTED_QUERY_TIMEOUT.getValue();
+
+    hazelcast = (HazelcastInstance) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HazelcastInstance.class },
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().equals("getTopic"))
+              return createTopic((String) args[0]);
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  @After
+  public void tearDown() {
+    OGlobalConfiguration.DISTRIBUTED_QUERY_BATCH_SIZE.setValue(batchSize);
+    OGlobalConfiguration.DISTRIBUTED_QUERY_WINDOW.setValue(window);
+    OGlobalConfiguration.DISTRIBUTED_QUERY_TIMEOUT.setValue(timeout);
+  }
+
+  @Test
+  public void testBatches() throws IOException {
+    configure(3, 100, 10000);
+    final OHazelcastResultListener listener = new OHazelcastResultListener(hazelcast, 1, 1);
+    listener.setNodeId(NODE_ID);
+
+    for (int i = 0; i < 7; i++)
+      Assert.assertTrue(listener.result(rid(i)));
+    listener.result(new OHazelcastResultListener.EndOfResult(NODE_ID));
+
+    final List<OHazelcastResultListener.ResultBatch> batches = getBatches();
+    Assert.assertEquals(3, batches.size());
+    Assert.assertEquals(3, batches.get(0).getResults().size());
+    Assert.assertEquals(3, batches.get(1).getResults().size());
+    Assert.assertEquals(2, batches.get(2).getResults().size());
+
+    int position = 0;
+    for (OHazelcastResultListener.ResultBatch batch : batches) {
+      Assert.assertEquals(NODE_ID, batch.getNodeId());
+      for (Object result : batch.getResults())
+        if (result instanceof ORecordId)
+          Assert.assertEquals(rid(position++), result);
+    }
+    Assert.assertEquals(7, position);
+
+    final Object end = batches.get(2).getResults().get(1);
+    Assert.assertTrue(end instanceof OHazelcastResultListener.EndOfResult);
+    Assert.assertFalse(((OHazelcastResultListener.EndOfResult) end).isFailed());
+  }
+
+  @Test
+  public void testWindow() throws Exception {
+    configure(1, 2, 10000);
+    final OHazelcastResultListener listener = new OHazelcastResultListener(hazelcast, 1, 1);
+    listener.setNodeId(NODE_ID);
+
+    listener.result(rid(0));
+    listener.result(rid(1));
+
+    // THE WINDOW IS FULL: THE THIRD BATCH WAITS FOR THE COORDINATOR TO CONSUME THE FIRST ONE
+    final Thread sender = new Thread() {
+      @Override
+      public void run() {
+        listener.result(rid(2));
+      }
+    };
+    sender.start();
+    sender.join(300);
+    Assert.assertTrue(sender.isAlive());
+    Assert.assertEquals(2, getBatches().size());
+
+    listener.onMessage(ack(1));
+    sender.join(10000);
+    Assert.assertFalse(sender.isAlive());
+    Assert.assertEquals(3, getBatches().size());
+  }
+
+  @Test
+  public void testWindowTimeout() throws IOException {
+    configure(1, 1, 100);
+    final OHazelcastResultListener listener = new OHazelcastResultListener(hazelcast, 1, 1);
+    listener.setNodeId(NODE_ID);
+
+    Assert.assertTrue(listener.result(rid(0)));
+    // NOT CONSUMED IN TIME: THE RESULT IS DROPPED AND THE NODE STOPS
+    Assert.assertFalse(listener.result(rid(1)));
+    listener.result(new OHazelcastResultListener.EndOfResult(NODE_ID));
+
+    final List<OHazelcastResultListener.ResultBatch> batches = getBatches();
+    Assert.assertEquals(2, batches.size());
+    Assert.assertEquals(Collections.<Object> singletonList(rid(0)), batches.get(0).getResults());
+
+    final List<Object> last = batches.get(1).getResults();
+    Assert.assertEquals(1, last.size());
+    Assert.assertTrue(((OHazelcastResultListener.EndOfResult) last.get(0)).isFailed());
+  }
+
+  @Test
+  public void testStop() throws IOException {
+    configure(1, 100, 10000);
+    final OHazelcastResultListener listener = new OHazelcastResultListener(hazelcast, 1, 1);
+    listener.setNodeId(NODE_ID);
+
+    Assert.assertTrue(listener.result(rid(0)));
+    listener.onMessage(ack(OHazelcastResultListener.STOP));
+    Assert.assertFalse(listener.result(rid(1)));
+    listener.result(new OHazelcastResultListener.EndOfResult(NODE_ID));
+
+    // THE COORDINATOR DOES NOT NEED OTHER RESULTS: NOTHING ELSE IS SENT
+    Assert.assertEquals(1, getBatches().size());
+  }
+
+  private static void configure(final int iBatchSize, final int iWindow, final long iTimeout) {
+    OGlobalConfiguration.DISTRIBUTED_QUERY_BATCH_SIZE.setValue(iBatchSize);
+    OGlobalConfiguration.DISTRIBUTED_QUERY_WINDOW.setValue(iWindow);
+    OGlobalConfiguration.DISTRIBUTED_QUERY_TIMEOUT.setValue(iTimeout);
+  }
+
+  private static ORecordId rid(final long iPosition) {
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(iPosition));
+  }
+
+  private static Message<byte[]> ack(final long iConsumed) {
+    return new Message<byte[]>("ack", OBinaryProtocol.long2bytes(iConsumed));
+  }
+
+  private List<OHazelcastResultListener.ResultBatch> getBatches() throws IOException {
+    final List<OHazelcastResultListener.ResultBatch> batches = new ArrayList<OHazelcastResultListener.ResultBatch>();
+    for (byte[] message : getPublished(ODistributedSelectQueryExecutor.getResultTopicName(1, 1)))
+      batches.add((OHazelcastResultListener.ResultBatch) OCommandResultSerializationHelper.readFromStream(message));
+    return batches;
+  }
+
+  private List<byte[]> getPublished(final String iTopic) {
+    synchronized (published) {
+      final List<byte[]> messages = published.get(iTopic);
+      return messages != null ? new ArrayList<byte[]>(messages) : new ArrayList<byte[]>();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private ITopic<byte[]> createTopic(final String iName) {
+    return (ITopic<byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ITopic.class },
+        new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().equals("publish"))
+              synchronized (published) {
+                List<byte[]> messages = published.get(iName);
+                if (messages == null) {
+                  messages = new ArrayList<byte[]>();
+                  published.put(iName, messages);
+                }
+                messages.add((byte[]) args[0]);
+              }
+            return null;
+          }
+        });
+  }
+}
@@ -20,7 +20,9 @@ import java.util.Iterator;
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 import com.orientechnologies.orient.graph.sql.OGraphCommandExecutorSQLFactory;
 import com.tinkerpop.blueprints.Direction;
@@ -66,9 +68,10 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
     }
     paramDestinationVertex = graph.getVertex((OIdentifiable) OSQLHelper.getValue(dest, record, iContext));
 
-    paramWeightFieldName = (String) OSQLHelper.getValue(iParameters[2], record, iContext);
-    if (iParameters.length > 3)
-      paramDirection = Direction.valueOf(iParameters[3].toString().toUpperCase());
+    // IT IS THE NAME OF THE EDGE FIELD: DO NOT RESOLVE IT AGAINST THE CURRENT RECORD
+    paramWeightFieldName = OStringSerializerHelper.getStringContent(iParameters[2]);
+    // THE SAME INSTANCE IS EXECUTED FOR EVERY RECORD: RESET THE DIRECTION IF NOT PASSED
+    paramDirection = iParameters.length > 3 ? Direction.valueOf(iParameters[3].toString().toUpperCase()) : Direction.OUT;
 
     return super.execute(iParameters, iContext);
   }
@@ -82,7 +85,7 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
     if (destination == null)
       return Float.MAX_VALUE;
 
-    final Float d = distance.get(destination);
+    final Float d = getKnownDistance(destination);
     return d == null ? Float.MAX_VALUE : d;
   }
 
@@ -91,22 +94,51 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
     return MIN;
   }
 
+  /**
+   * Browses the edges of the node once, reading the weight of each edge, instead of looking for the edges to every neighbor.
+   */
+  @Override
+  protected void findMinimalDistances(final Vertex node) {
+    final int nodeId = getNodeId(node, false);
+    final Float nodeDistance = getShortestDistance(node);
+    final ORID nodeRid = ((OIdentifiable) node).getIdentity();
+
+    for (Edge e : node.getEdges(paramDirection)) {
+      if (e == null)
+        continue;
+
+      final Vertex target;
+      if (paramDirection == Direction.BOTH) {
+        final Vertex out = e.getVertex(Direction.OUT);
+        target = out != null && nodeRid.equals(((OIdentifiable) out).getIdentity()) ? e.getVertex(Direction.IN) : out;
+      } else
+        target = e.getVertex(paramDirection.opposite());
+
+      if (target != null && !isSettled(target))
+        updateDistance(nodeId, target, sumDistances(nodeDistance, getWeight(e)));
+    }
+  }
+
   protected Float getDistance(final Vertex node, final Vertex target) {
     final Iterator<Edge> edges = ((OrientVertex) node).getEdges(target, paramDirection).iterator();
     if (edges.hasNext()) {
       final Edge e = edges.next();
-      if (e != null) {
-        final Object fieldValue = e.getProperty(paramWeightFieldName);
-        if (fieldValue != null)
-          if (fieldValue instanceof Float)
-            return (Float) fieldValue;
-          else if (fieldValue instanceof Number)
-            return ((Number) fieldValue).floatValue();
-      }
+      if (e != null)
+        return getWeight(e);
     }
     return MIN;
   }
 
+  protected Float getWeight(final Edge e) {
+    final Object fieldValue = e.getProperty(paramWeightFieldName);
+    if (fieldValue != null)
+      if (fieldValue instanceof Float)
+        return (Float) fieldValue;
+      else if (fieldValue instanceof Number)
+        return ((Number) fieldValue).floatValue();
+    return MIN;
+  }
+
   @Override
   protected Float sumDistances(final Float iDistance1, final Float iDistance2) {
     return iDistance1.floatValue() + iDistance2.floatValue();
@@ -16,15 +16,19 @@
 package com.orientechnologies.orient.graph.sql.functions;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import com.orientechnologies.common.collection.OLongIntHashMap;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.OClusterPositionLong;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
@@ -32,20 +36,33 @@ import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
 
 /**
  * Abstract class to find paths between nodes.
- * 
+ *
+ * Every reached vertex gets a sequential node id, used as index of the arrays that keep distances and predecessors. Node ids are
+ * mapped by the RID of the vertex packed in a long. The unsettled nodes are kept in a binary heap ordered by distance, that supports
+ * the decrease of the distance of a node already in the heap.
+ *
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
- * 
+ *
  */
 public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OSQLFunctionMathAbstract {
-  protected OrientBaseGraph     db;
-  protected Set<Vertex>         settledNodes;
-  protected Set<Vertex>         unSettledNodes;
-  protected Map<Vertex, Vertex> predecessors;
-  protected Map<Vertex, T>      distance;
+  private static final int   POSITION_BITS  = 48;
+
+  protected OrientBaseGraph  db;
 
-  protected Vertex              paramSourceVertex;
-  protected Vertex              paramDestinationVertex;
-  protected Direction           paramDirection = Direction.OUT;
+  private OLongIntHashMap    packedNodeIds;
+  private Map<ORID, Integer> otherNodeIds;
+  private List<Vertex>       nodes;
+  private List<T>            distance;
+  private int[]              predecessors;
+  private BitSet             settledNodes;
+
+  private int[]              heap;
+  private int[]              heapPositions;
+  private int                heapSize;
+
+  protected Vertex           paramSourceVertex;
+  protected Vertex           paramDestinationVertex;
+  protected Direction        paramDirection = Direction.OUT;
 
   public OSQLFunctionPathFinder(final String iName, final int iMinParams, final int iMaxParams) {
     super(iName, iMinParams, iMaxParams);
@@ -60,18 +77,21 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
   protected abstract T sumDistances(T iDistance1, T iDistance2);
 
   public Object execute(final Object[] iParameters, final OCommandContext iContext) {
-    settledNodes = new HashSet<Vertex>();
-    unSettledNodes = new HashSet<Vertex>();
-    distance = new HashMap<Vertex, T>();
-    predecessors = new HashMap<Vertex, Vertex>();
-    distance.put(paramSourceVertex, getMinimumDistance());
-    unSettledNodes.add(paramSourceVertex);
+    initNodes();
+    heap = new int[16];
+    heapSize = 0;
+
+    if (paramSourceVertex == null || paramDestinationVertex == null)
+      return null;
+
+    final int source = getNodeId(paramSourceVertex, true);
+    distance.set(source, getMinimumDistance());
+    offer(source);
 
     while (continueTraversing()) {
-      final Vertex node = getMinimum(unSettledNodes);
-      settledNodes.add(node);
-      unSettledNodes.remove(node);
-      findMinimalDistances(node);
+      final int node = poll();
+      settledNodes.set(node);
+      findMinimalDistances(nodes.get(node));
     }
 
     return getPath();
@@ -81,16 +101,19 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
    * This method returns the path from the source to the selected target and NULL if no path exists
    */
   public LinkedList<Vertex> getPath() {
-    final LinkedList<Vertex> path = new LinkedList<Vertex>();
-    Vertex step = paramDestinationVertex;
+    if (nodes == null || paramDestinationVertex == null)
+      return null;
+
+    int step = getNodeId(paramDestinationVertex, false);
     // Check if a path exists
-    if (predecessors.get(step) == null)
+    if (step < 0 || predecessors[step] < 0)
       return null;
 
-    path.add(step);
-    while (predecessors.get(step) != null) {
-      step = predecessors.get(step);
-      path.add(step);
+    final LinkedList<Vertex> path = new LinkedList<Vertex>();
+    path.add(nodes.get(step));
+    while (predecessors[step] >= 0) {
+      step = predecessors[step];
+      path.add(nodes.get(step));
     }
     // Put it into the correct order
     Collections.reverse(path);
@@ -107,17 +130,24 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
   }
 
   protected void findMinimalDistances(final Vertex node) {
+    final int nodeId = getNodeId(node, false);
+    final T nodeDistance = distance.get(nodeId);
+
     final List<Vertex> adjacentNodes = getNeighbors(node);
-    for (Vertex target : adjacentNodes) {
-      final T d = sumDistances(getShortestDistance(node), getDistance(node, target));
-
-      if (getShortestDistance(target).compareTo(d) > 0) {
-        distance.put(target, d);
-        predecessors.put(target, node);
-        unSettledNodes.add(target);
-      }
-    }
+    for (Vertex target : adjacentNodes)
+      updateDistance(nodeId, target, sumDistances(nodeDistance, getDistance(node, target)));
+  }
 
+  /**
+   * Sets the distance of the target if it is shorter than the known one, reaching it from the node.
+   */
+  protected void updateDistance(final int iNodeId, final Vertex target, final T iDistance) {
+    if (getShortestDistance(target).compareTo(iDistance) > 0) {
+      final int targetId = getNodeId(target, true);
+      distance.set(targetId, iDistance);
+      predecessors[targetId] = iNodeId;
+      offer(targetId);
+    }
   }
 
   protected List<Vertex> getNeighbors(final Vertex node) {
@@ -130,20 +160,157 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
     return neighbors;
   }
 
-  protected Vertex getMinimum(final Set<Vertex> vertexes) {
-    Vertex minimum = null;
-    for (Vertex vertex : vertexes) {
-      if (minimum == null || getShortestDistance(vertex).compareTo(getShortestDistance(minimum)) < 0)
-        minimum = vertex;
+  protected boolean isSettled(final Vertex vertex) {
+    final int node = getNodeId(vertex, false);
+    return node > -1 && settledNodes.get(node);
+  }
+
+  protected boolean continueTraversing() {
+    if (heapSize == 0)
+      return false;
+
+    // THE PATH TO THE DESTINATION CANNOT GET SHORTER ONCE IT IS SETTLED
+    final int destination = getNodeId(paramDestinationVertex, false);
+    return destination < 0 || !settledNodes.get(destination);
+  }
+
+  /**
+   * Returns the distance of the vertex from the source found so far, or null if the vertex was not reached yet.
+   */
+  protected T getKnownDistance(final Vertex vertex) {
+    final int node = getNodeId(vertex, false);
+    return node > -1 ? distance.get(node) : null;
+  }
+
+  protected void initNodes() {
+    packedNodeIds = new OLongIntHashMap();
+    otherNodeIds = new HashMap<ORID, Integer>();
+    nodes = new ArrayList<Vertex>();
+    distance = new ArrayList<T>();
+    predecessors = new int[16];
+    settledNodes = new BitSet();
+    heapPositions = new int[16];
+  }
+
+  /**
+   * Returns the node id of the vertex, assigning a new one if requested and the vertex was not reached yet. Otherwise returns -1
+   * for vertices not reached yet.
+   */
+  protected int getNodeId(final Vertex vertex, final boolean iCreate) {
+    final ORID rid = ((OIdentifiable) vertex).getIdentity();
+
+    final long packed = pack(rid);
+    int node = packed > -1 ? packedNodeIds.get(packed, -1) : getOtherNodeId(rid);
+    if (node > -1 || !iCreate)
+      return node;
+
+    node = nodes.size();
+    if (packed > -1)
+      packedNodeIds.put(packed, node);
+    else
+      otherNodeIds.put(rid, node);
+
+    nodes.add(vertex);
+    distance.add(null);
+
+    if (node == predecessors.length) {
+      predecessors = Arrays.copyOf(predecessors, node << 1);
+      heapPositions = Arrays.copyOf(heapPositions, node << 1);
     }
-    return minimum;
+    predecessors[node] = -1;
+    heapPositions[node] = -1;
+
+    return node;
   }
 
-  protected boolean isSettled(final Vertex vertex) {
-    return settledNodes.contains(vertex.getId());
+  protected Vertex getNode(final int iNodeId) {
+    return nodes.get(iNodeId);
   }
 
-  protected boolean continueTraversing() {
-    return unSettledNodes.size() > 0;
+  protected int getNodes() {
+    return nodes.size();
+  }
+
+  private int getOtherNodeId(final ORID rid) {
+    final Integer node = otherNodeIds.get(rid);
+    return node != null ? node : -1;
+  }
+
+  /**
+   * Packs cluster id and position of persistent RIDs in a long, -1 if they do not fit.
+   */
+  private static long pack(final ORID rid) {
+    if (!(rid.getClusterPosition() instanceof OClusterPositionLong) || rid.getClusterId() < 0)
+      return -1;
+
+    final long position = rid.getClusterPosition().longValue();
+    if (position < 0 || position >= (1L << POSITION_BITS))
+      return -1;
+
+    return ((long) rid.getClusterId() << POSITION_BITS) | position;
+  }
+
+  /**
+   * Adds the node to the heap, or moves it up if it is already there because its distance was decreased.
+   */
+  private void offer(final int iNode) {
+    int position = heapPositions[iNode];
+    if (position < 0) {
+      if (heapSize == heap.length)
+        heap = Arrays.copyOf(heap, heapSize << 1);
+      position = heapSize++;
+      heap[position] = iNode;
+      heapPositions[iNode] = position;
+    }
+    siftUp(position);
+  }
+
+  private int poll() {
+    final int result = heap[0];
+    heapPositions[result] = -1;
+
+    heapSize--;
+    if (heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapPositions[heap[0]] = 0;
+      siftDown(0);
+    }
+    return result;
+  }
+
+  private void siftUp(int iPosition) {
+    final int node = heap[iPosition];
+    while (iPosition > 0) {
+      final int parent = (iPosition - 1) >>> 1;
+      if (distance.get(heap[parent]).compareTo(distance.get(node)) <= 0)
+        break;
+
+      heap[iPosition] = heap[parent];
+      heapPositions[heap[iPosition]] = iPosition;
+      iPosition = parent;
+    }
+    heap[iPosition] = node;
+    heapPositions[node] = iPosition;
+  }
+
+  private void siftDown(int iPosition) {
+    final int node = heap[iPosition];
+    while (true) {
+      int child = (iPosition << 1) + 1;
+      if (child >= heapSize)
+        break;
+
+      if (child + 1 < heapSize && distance.get(heap[child + 1]).compareTo(distance.get(heap[child])) < 0)
+        child++;
+
+      if (distance.get(node).compareTo(distance.get(heap[child])) <= 0)
+        break;
+
+      heap[iPosition] = heap[child];
+      heapPositions[heap[iPosition]] = iPosition;
+      iPosition = child;
+    }
+    heap[iPosition] = node;
+    heapPositions[node] = iPosition;
   }
 }
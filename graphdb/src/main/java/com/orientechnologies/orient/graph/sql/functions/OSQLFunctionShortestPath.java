@@ -15,6 +15,10 @@
  */
 package com.orientechnologies.orient.graph.sql.functions;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -26,7 +30,9 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
 
 /**
- * Shortest path algorithm to find the shortest path from one node to another node in a directed graph.
+ * Shortest path algorithm to find the shortest path from one node to another node in a directed graph. All the edges have the same
+ * weight, so the path is found by a breadth-first search that starts from both the ends and expands the smaller frontier at every
+ * step, until the two searches meet.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
@@ -36,6 +42,8 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
   private static final Integer MIN      = new Integer(0);
   private static final Integer DISTANCE = new Integer(1);
 
+  private LinkedList<Vertex>   path;
+
   public OSQLFunctionShortestPath() {
     super(NAME, 2, 3);
   }
@@ -62,10 +70,16 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
     }
     paramDestinationVertex = graph.getVertex((OIdentifiable) OSQLHelper.getValue(dest, record, iContext));
 
-    if (iParameters.length > 2)
-      paramDirection = Direction.valueOf(iParameters[2].toString().toUpperCase());
+    // THE SAME INSTANCE IS EXECUTED FOR EVERY RECORD: RESET THE DIRECTION IF NOT PASSED
+    paramDirection = iParameters.length > 2 ? Direction.valueOf(iParameters[2].toString().toUpperCase()) : Direction.OUT;
 
-    return super.execute(iParameters, iContext);
+    path = bidirectionalSearch();
+    return path;
+  }
+
+  @Override
+  public LinkedList<Vertex> getPath() {
+    return path;
   }
 
   public String getSyntax() {
@@ -77,7 +91,7 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
     if (destination == null)
       return Integer.MAX_VALUE;
 
-    final Integer d = distance.get(destination);
+    final Integer d = getKnownDistance(destination);
     return d == null ? Integer.MAX_VALUE : d;
   }
 
@@ -94,4 +108,116 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
   protected Integer sumDistances(final Integer iDistance1, final Integer iDistance2) {
     return iDistance1.intValue() + iDistance2.intValue();
   }
+
+  protected LinkedList<Vertex> bidirectionalSearch() {
+    initNodes();
+    if (paramSourceVertex == null || paramDestinationVertex == null)
+      return null;
+
+    final int source = getNodeId(paramSourceVertex, true);
+    final int destination = getNodeId(paramDestinationVertex, true);
+    if (source == destination)
+      return null;
+
+    final SearchSide forward = new SearchSide(paramDirection, source);
+    final SearchSide backward = new SearchSide(paramDirection.opposite(), destination);
+
+    int shortest = Integer.MAX_VALUE;
+    int forwardMeeting = -1;
+    int backwardMeeting = -1;
+
+    while (forward.frontierSize > 0 && backward.frontierSize > 0) {
+      final boolean expandForward = forward.frontierSize <= backward.frontierSize;
+      final SearchSide side = expandForward ? forward : backward;
+      final SearchSide other = expandForward ? backward : forward;
+
+      final int[] frontier = side.frontier;
+      final int frontierSize = side.frontierSize;
+      side.frontier = new int[Math.max(16, frontierSize)];
+      side.frontierSize = 0;
+
+      for (int i = 0; i < frontierSize; i++) {
+        final int node = frontier[i];
+        for (Vertex v : getNode(node).getVertices(side.direction)) {
+          if (v == null)
+            continue;
+
+          final int target = getNodeId(v, true);
+          if (!side.isVisited(target))
+            side.visit(target, node);
+
+          if (other.isVisited(target)) {
+            // THE SEARCHES MET: KEEP THE SHORTEST PATH FOUND IN THIS LEVEL
+            final int length = side.depths[node] + 1 + other.depths[target];
+            if (length < shortest) {
+              shortest = length;
+              forwardMeeting = expandForward ? node : target;
+              backwardMeeting = expandForward ? target : node;
+            }
+          }
+        }
+      }
+
+      if (forwardMeeting > -1)
+        break;
+    }
+
+    if (forwardMeeting < 0)
+      return null;
+
+    final LinkedList<Vertex> result = new LinkedList<Vertex>();
+    for (int node = forwardMeeting; node > -1; node = forward.predecessors[node])
+      result.add(getNode(node));
+    Collections.reverse(result);
+
+    for (int node = backwardMeeting; node > -1; node = backward.predecessors[node])
+      result.add(getNode(node));
+
+    return result;
+  }
+
+  /**
+   * Vertices visited by the search from one end of the path, with their depths and predecessors indexed by node id.
+   */
+  private final class SearchSide {
+    private final Direction direction;
+    private int[]           depths       = new int[0];
+    private int[]           predecessors = new int[0];
+    private int[]           frontier     = new int[16];
+    private int             frontierSize;
+
+    private SearchSide(final Direction iDirection, final int iStart) {
+      direction = iDirection;
+      ensureCapacity();
+      depths[iStart] = 0;
+      frontier[frontierSize++] = iStart;
+    }
+
+    private boolean isVisited(final int iNode) {
+      ensureCapacity();
+      return depths[iNode] > -1;
+    }
+
+    private void visit(final int iNode, final int iPredecessor) {
+      depths[iNode] = depths[iPredecessor] + 1;
+      predecessors[iNode] = iPredecessor;
+
+      if (frontierSize == frontier.length)
+        frontier = Arrays.copyOf(frontier, frontierSize << 1);
+      frontier[frontierSize++] = iNode;
+    }
+
+    private void ensureCapacity() {
+      final int nodes = getNodes();
+      if (nodes <= depths.length)
+        return;
+
+      final int oldLength = depths.length;
+      final int newLength = Math.max(nodes, oldLength << 1);
+      depths = Arrays.copyOf(depths, newLength);
+      predecessors = Arrays.copyOf(predecessors, newLength);
+      Arrays.fill(depths, oldLength, newLength, -1);
+      Arrays.fill(predecessors, oldLength, newLength, -1);
+    }
+  }
 }
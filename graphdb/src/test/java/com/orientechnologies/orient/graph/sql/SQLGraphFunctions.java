@@ -15,13 +15,17 @@
  */
 package com.orientechnologies.orient.graph.sql;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientGraph;
 import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 
@@ -65,4 +69,44 @@ public class SQLGraphFunctions {
           + ((Collection<ODocument>) d.field("$target")).iterator().next().field("name") + " is: " + d.field("path"));
     }
   }
+
+  public void checkDijkstraPath() {
+    Assert.assertEquals(path("Dijkstra(@rid, $target, 'weight')", "A", "D"), names("A", "B", "C", "D"));
+    Assert.assertEquals(path("Dijkstra(@rid, $target, 'weight', 'in')", "A", "D"), names("A", "E", "D"));
+    // LIGHTER THAN D, E, A
+    Assert.assertEquals(path("Dijkstra(@rid, $target, 'weight', 'both')", "D", "A"), names("D", "C", "B", "A"));
+    Assert.assertNull(path("Dijkstra(@rid, $target, 'weight')", "F", "A"));
+  }
+
+  public void checkShortestPath() {
+    Assert.assertEquals(path("shortestPath(@rid, $target)", "A", "F"), names("A", "B", "C", "D", "E", "F"));
+    Assert.assertEquals(path("shortestPath(@rid, $target, 'both')", "A", "F"), names("A", "E", "F"));
+    Assert.assertEquals(path("shortestPath(@rid, $target, 'in')", "A", "D"), names("A", "E", "D"));
+    Assert.assertNull(path("shortestPath(@rid, $target)", "F", "A"));
+  }
+
+  private List<String> path(final String function, final String from, final String to) {
+    final Iterable<ODocument> result = graph.command(
+        new OSQLSynchQuery<ODocument>("select " + function + " as path from V let $target = ( select from V where name = '" + to
+            + "' ) where name = '" + from + "'")).execute();
+    final Iterator<ODocument> it = result.iterator();
+    Assert.assertTrue(it.hasNext());
+
+    final Collection<Vertex> path = it.next().field("path");
+    Assert.assertFalse(it.hasNext());
+    if (path == null)
+      return null;
+
+    final List<String> names = new ArrayList<String>();
+    for (Vertex v : path)
+      names.add((String) v.getProperty("name"));
+    return names;
+  }
+
+  private List<String> names(final String... names) {
+    final List<String> result = new ArrayList<String>();
+    for (String name : names)
+      result.add(name);
+    return result;
+  }
 }
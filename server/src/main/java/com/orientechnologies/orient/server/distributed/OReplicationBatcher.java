@@ -0,0 +1,249 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.distributed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+import com.orientechnologies.orient.server.task.OAbstractDistributedTask;
+import com.orientechnologies.orient.server.task.OMultipleDistributedTasks;
+
+/**
+ * Replicates the record changes of a database to the other nodes. Every node has its own queue of changes: while a message is
+ * being sent to the node, the changes replicated in the meanwhile are queued and then sent all together in one
+ * {@link OMultipleDistributedTasks}. The caller waits only for the write quorum of nodes to apply the change, the other nodes
+ * apply it asynchronously.
+ */
+public class OReplicationBatcher {
+  private static final AtomicInteger         senderCounter = new AtomicInteger();
+  private static final ExecutorService       senders       = Executors.newCachedThreadPool(new ThreadFactory() {
+                                                             public Thread newThread(final Runnable r) {
+                                                               final Thread t = new Thread(Orient.getThreadGroup(), r,
+                                                                   "OrientDB replication sender " + senderCounter.incrementAndGet());
+                                                               t.setDaemon(true);
+                                                               return t;
+                                                             }
+                                                           });
+
+  private final ODistributedServerManager    cluster;
+  private final String                       databaseName;
+  private final int                          batchSize;
+  private final long                         batchDelay;
+  private final Map<String, NodeQueue>       queues        = new HashMap<String, NodeQueue>();
+
+  public OReplicationBatcher(final ODistributedServerManager iCluster, final String iDatabaseName) {
+    cluster = iCluster;
+    databaseName = iDatabaseName;
+    batchSize = Math.max(1, OGlobalConfiguration.DISTRIBUTED_REPLICATION_BATCH_SIZE.getValueAsInteger());
+    batchDelay = OGlobalConfiguration.DISTRIBUTED_REPLICATION_BATCH_DELAY.getValueAsLong();
+  }
+
+  /**
+   * Replicates the task to the nodes and waits for the requested number of them to execute it.
+   * 
+   * @param iNodeIds
+   *          Nodes where to replicate the task
+   * @param iTask
+   *          Task to replicate
+   * @param iQuorum
+   *          Number of nodes to wait for. 0 to return immediately
+   * @return The results of the nodes that executed the task before the quorum was reached, by node id
+   * @throws ODistributedException
+   *           if too many nodes failed to reach the quorum
+   */
+  public Map<String, Object> replicate(final Set<String> iNodeIds, final OAbstractDistributedTask<?> iTask, final int iQuorum)
+      throws ODistributedException {
+    final Replication replication = new Replication(iTask, iNodeIds.size(), Math.min(iQuorum, iNodeIds.size()));
+
+    for (String nodeId : iNodeIds)
+      getQueue(nodeId).offer(replication);
+
+    return replication.await();
+  }
+
+  /**
+   * Creates the group that sends the tasks queued for a node in one message.
+   */
+  protected OMultipleDistributedTasks createGroup() {
+    return new OMultipleDistributedTasks(cluster.getLocalNodeId(), databaseName, EXECUTION_MODE.SYNCHRONOUS);
+  }
+
+  private NodeQueue getQueue(final String iNodeId) {
+    synchronized (queues) {
+      NodeQueue queue = queues.get(iNodeId);
+      if (queue == null) {
+        queue = new NodeQueue(iNodeId);
+        queues.put(iNodeId, queue);
+      }
+      return queue;
+    }
+  }
+
+  /**
+   * Replication of one task to a set of nodes.
+   */
+  private static final class Replication {
+    private final OAbstractDistributedTask<?> task;
+    private final int                         nodes;
+    private final int                         quorum;
+    private final Map<String, Object>         results   = new HashMap<String, Object>();
+    private int                               failures  = 0;
+    private Exception                         lastError;
+    private boolean                           returned  = false;
+
+    private Replication(final OAbstractDistributedTask<?> iTask, final int iNodes, final int iQuorum) {
+      task = iTask;
+      nodes = iNodes;
+      quorum = iQuorum;
+    }
+
+    private synchronized Map<String, Object> await() {
+      try {
+        while (results.size() < quorum && results.size() + failures < nodes)
+          wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ODistributedException("Interrupted while waiting for the replication of " + task);
+      } finally {
+        returned = true;
+      }
+
+      if (results.size() < quorum)
+        throw new ODistributedException("Cannot replicate " + task + " on " + quorum + " nodes: " + failures + " of " + nodes
+            + " nodes failed", lastError);
+
+      return new HashMap<String, Object>(results);
+    }
+
+    private synchronized void done(final String iNodeId, final Object iResult) {
+      if (!returned) {
+        results.put(iNodeId, iResult);
+        notifyAll();
+      }
+    }
+
+    private synchronized void failed(final String iNodeId, final Exception iError) {
+      if (returned)
+        OLogManager.instance().warn(this, "DISTRIBUTED ->[%s] asynchronous replication of %s failed: the node could be unaligned",
+            iError, iNodeId, task);
+      else {
+        failures++;
+        lastError = iError;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Tasks to send to a node. One sender at a time drains the queue, so the tasks are executed on the node in the order they were
+   * queued.
+   */
+  private final class NodeQueue implements Runnable {
+    private final String            nodeId;
+    private final List<Replication> pending = new ArrayList<Replication>();
+    private boolean                 sending = false;
+
+    private NodeQueue(final String iNodeId) {
+      nodeId = iNodeId;
+    }
+
+    private synchronized void offer(final Replication iReplication) {
+      pending.add(iReplication);
+      if (!sending) {
+        sending = true;
+        senders.execute(this);
+      } else if (pending.size() >= batchSize)
+        notifyAll();
+    }
+
+    public void run() {
+      while (true) {
+        final List<Replication> batch;
+        synchronized (this) {
+          // WAIT FOR MORE TASKS TO JOIN THE BATCH
+          final long deadline = System.currentTimeMillis() + batchDelay;
+          while (pending.size() < batchSize) {
+            final long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+              break;
+            try {
+              wait(wait);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              break;
+            }
+          }
+
+          if (pending.isEmpty()) {
+            sending = false;
+            return;
+          }
+
+          final List<Replication> head = pending.subList(0, Math.min(pending.size(), batchSize));
+          batch = new ArrayList<Replication>(head);
+          head.clear();
+        }
+
+        send(batch);
+      }
+    }
+
+    private void send(final List<Replication> iBatch) {
+      try {
+        if (iBatch.size() == 1) {
+          final Replication replication = iBatch.get(0);
+          final Object result = cluster.sendOperation2Node(nodeId, replication.task);
+          if (result instanceof Exception)
+            replication.failed(nodeId, (Exception) result);
+          else
+            replication.done(nodeId, result);
+          return;
+        }
+
+        final OMultipleDistributedTasks group = createGroup();
+        for (Replication replication : iBatch)
+          group.addTask(replication.task);
+
+        final Object[] results = (Object[]) cluster.sendOperation2Node(nodeId, group);
+        if (results == null || results.length != iBatch.size())
+          throw new ODistributedException("Node " + nodeId + " returned " + (results != null ? results.length : 0)
+              + " results for a group of " + iBatch.size() + " tasks");
+
+        // THE GROUP EXECUTES ALL THE TASKS: EVERY RESULT BELONGS TO ITS OWN TASK, THE FAILED ONES ARE EXCEPTIONS
+        for (int i = 0; i < iBatch.size(); ++i)
+          if (results[i] instanceof Exception)
+            iBatch.get(i).failed(nodeId, (Exception) results[i]);
+          else
+            iBatch.get(i).done(nodeId, results[i]);
+
+      } catch (Exception e) {
+        for (Replication replication : iBatch)
+          replication.failed(nodeId, e);
+      }
+    }
+  }
+}
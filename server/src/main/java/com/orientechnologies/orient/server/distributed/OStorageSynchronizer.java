@@ -23,12 +23,14 @@ import java.util.concurrent.ExecutionException;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.parser.OSystemVariableResolver;
 import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.version.OVersionFactory;
 import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
 import com.orientechnologies.orient.server.distributed.conflict.OReplicationConflictResolver;
 import com.orientechnologies.orient.server.journal.ODatabaseJournal;
 import com.orientechnologies.orient.server.task.OAbstractDistributedTask;
@@ -46,6 +48,7 @@ public class OStorageSynchronizer {
   private String                       storageName;
   private ODatabaseJournal             log;
   private OReplicationConflictResolver resolver;
+  private OReplicationBatcher          replicator;
 
   public OStorageSynchronizer(final ODistributedServerManager iCluster, final String storageName) throws IOException {
     cluster = iCluster;
@@ -63,6 +66,7 @@ public class OStorageSynchronizer {
         + storageName);
 
     log = new ODatabaseJournal(storage, logDirectory);
+    replicator = new OReplicationBatcher(iCluster, storageName);
   }
   
   public void recoverUncommited(final ODistributedServerManager iCluster, final String storageName) throws IOException{
@@ -101,11 +105,23 @@ public class OStorageSynchronizer {
       // RESET THE SOURCE TO AVOID LOOPS
       iTask.setNodeSource(cluster.getLocalNodeId());
       iTask.setStatus(STATUS.REMOTE_EXEC);
-      return cluster.sendOperation2Nodes(targetNodes, iTask);
+      return replicator.replicate(targetNodes, iTask, getWriteQuorum(iTask, targetNodes.size()));
     }
     return null;
   }
 
+  /**
+   * Returns the number of remote nodes that must execute the task before the operation returns.
+   */
+  protected int getWriteQuorum(final OAbstractDistributedTask<?> iTask, final int iRemoteNodes) {
+    if (iTask.getMode() != EXECUTION_MODE.SYNCHRONOUS)
+      return 0;
+
+    // THE QUORUM COUNTS THE LOCAL NODE TOO
+    final int quorum = OGlobalConfiguration.DISTRIBUTED_REPLICATION_WRITE_QUORUM.getValueAsInteger();
+    return quorum > 0 ? Math.min(quorum - 1, iRemoteNodes) : iRemoteNodes;
+  }
+
   /**
    * Returns the conflict resolver implementation
    * 
@@ -257,6 +257,44 @@ public class ODatabaseJournal {
     }
   }
 
+  /**
+   * Returns the type of an operation without loading it.
+   */
+  public OPERATION_TYPES getOperationType(final long iOffsetEndOperation) throws IOException {
+    lock.acquireExclusiveLock();
+    try {
+      final int varSize = file.readInt(iOffsetEndOperation - OFFSET_BACK_SIZE);
+      final long offset = iOffsetEndOperation - OFFSET_BACK_SIZE - varSize - OFFSET_VARDATA;
+
+      return OPERATION_TYPES.values()[file.readByte(offset + OFFSET_OPERATION_TYPE)];
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Returns the record of an operation without loading it.
+   * 
+   * @return The record id, or null if the operation is not against a record
+   */
+  public ORecordId getOperationRid(final long iOffsetEndOperation) throws IOException {
+    lock.acquireExclusiveLock();
+    try {
+      final int varSize = file.readInt(iOffsetEndOperation - OFFSET_BACK_SIZE);
+      final long offset = iOffsetEndOperation - OFFSET_BACK_SIZE - varSize - OFFSET_VARDATA;
+
+      if (OPERATION_TYPES.values()[file.readByte(offset + OFFSET_OPERATION_TYPE)] == OPERATION_TYPES.SQL_COMMAND)
+        return null;
+
+      return new ORecordId(file.readShort(offset + OFFSET_VARDATA), OClusterPositionFactory.INSTANCE.valueOf(file.readLong(offset
+          + OFFSET_VARDATA + OBinaryProtocol.SIZE_SHORT)));
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
   /**
    * Appends a log entry about a command with status = 0 (doing).
    * 
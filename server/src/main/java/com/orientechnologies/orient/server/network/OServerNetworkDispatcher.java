@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryProtocol;
+import com.orientechnologies.orient.server.network.protocol.binary.OBinaryNetworkProtocolAbstract;
+
+/**
+ * Serves binary connections with a few selector threads and a pool of workers instead of a thread per connection. Idle
+ * connections are registered against a selector. When a connection becomes readable its socket is switched back to blocking
+ * mode and a worker executes the request with the regular protocol code, so the wire format does not change. Once the input
+ * buffer is drained the connection is given back to its selector.<br>
+ * Commands can run for long: they are executed by a separate pool of workers, so they cannot hold all the workers and delay the
+ * other requests.
+ */
+public class OServerNetworkDispatcher {
+  private final SelectorThread[] selectors;
+  private final ExecutorService  workers;
+  private final ExecutorService  commandWorkers;
+  private final AtomicInteger    nextSelector = new AtomicInteger();
+  private volatile boolean       active       = true;
+
+  /**
+   * @param iName
+   *          Prefix of the names of the threads
+   * @param iSelectors
+   *          Number of selector threads
+   * @param iWorkers
+   *          Maximum number of threads executing the requests
+   * @param iCommandWorkers
+   *          Maximum number of threads executing the commands. With 0 the commands are executed by the other workers
+   */
+  public OServerNetworkDispatcher(final String iName, final int iSelectors, final int iWorkers, final int iCommandWorkers)
+      throws IOException {
+    workers = createWorkers(iName + " worker ", iWorkers);
+    commandWorkers = iCommandWorkers > 0 ? createWorkers(iName + " command worker ", iCommandWorkers) : null;
+
+    selectors = new SelectorThread[Math.max(iSelectors, 1)];
+    for (int i = 0; i < selectors.length; ++i) {
+      selectors[i] = new SelectorThread(iName + " selector " + i);
+      selectors[i].start();
+    }
+  }
+
+  /**
+   * Hands a configured connection to the dispatcher.
+   */
+  public void register(final OBinaryNetworkProtocolAbstract iProtocol) {
+    if (iProtocol.getChannel().socket.getChannel() == null)
+      throw new IllegalArgumentException("Socket of connection " + iProtocol.getChannel() + " has no channel");
+
+    selectors[(nextSelector.getAndIncrement() & Integer.MAX_VALUE) % selectors.length].enqueue(iProtocol);
+  }
+
+  public void shutdown() {
+    active = false;
+
+    for (SelectorThread s : selectors)
+      s.selector.wakeup();
+
+    workers.shutdown();
+    if (commandWorkers != null)
+      commandWorkers.shutdown();
+  }
+
+  private static ExecutorService createWorkers(final String iName, final int iWorkers) {
+    final AtomicInteger workerCounter = new AtomicInteger();
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(iWorkers, iWorkers, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(Orient.getThreadGroup(), r, iName + workerCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private void submit(final ExecutorService iWorkers, final OBinaryNetworkProtocolAbstract iProtocol,
+      final SelectorThread iSelector) {
+    try {
+      iWorkers.execute(new Runnable() {
+        @Override
+        public void run() {
+          execute(iProtocol, iSelector, iWorkers == commandWorkers);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      iProtocol.closeDispatched();
+    }
+  }
+
+  private void execute(final OBinaryNetworkProtocolAbstract iProtocol, final SelectorThread iSelector,
+      final boolean iCommandWorker) {
+    try {
+      boolean open;
+      do {
+        if (!iCommandWorker && commandWorkers != null
+            && iProtocol.peekRequestType() == OChannelBinaryProtocol.REQUEST_COMMAND) {
+          // THE COMMAND AND THE REQUESTS THAT FOLLOW IT ON THIS CONNECTION GO TO THE COMMAND WORKERS
+          submit(commandWorkers, iProtocol, iSelector);
+          return;
+        }
+
+        open = iProtocol.executeDispatchedRequest();
+        // PIPELINED REQUESTS COULD BE ALREADY BUFFERED: THE SELECTOR WOULD NOT SEE THEM
+      } while (open && active && iProtocol.getChannel().inStream.available() > 0);
+
+      if (!open)
+        return;
+
+      if (active)
+        iSelector.enqueue(iProtocol);
+      else
+        iProtocol.closeDispatched();
+
+    } catch (IOException e) {
+      iProtocol.closeDispatched();
+    }
+  }
+
+  private class SelectorThread extends Thread {
+    private final Selector                                              selector;
+    private final ConcurrentLinkedQueue<OBinaryNetworkProtocolAbstract> pending = new ConcurrentLinkedQueue<OBinaryNetworkProtocolAbstract>();
+
+    private SelectorThread(final String iName) throws IOException {
+      super(Orient.getThreadGroup(), iName);
+      setDaemon(true);
+      selector = Selector.open();
+    }
+
+    private void enqueue(final OBinaryNetworkProtocolAbstract iProtocol) {
+      pending.offer(iProtocol);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      final List<OBinaryNetworkProtocolAbstract> ready = new ArrayList<OBinaryNetworkProtocolAbstract>();
+
+      try {
+        while (active) {
+          selector.select();
+
+          registerPending();
+
+          for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+            final SelectionKey key = it.next();
+            it.remove();
+            key.cancel();
+            ready.add((OBinaryNetworkProtocolAbstract) key.attachment());
+          }
+
+          if (ready.isEmpty())
+            continue;
+
+          // FLUSH THE CANCELLED KEYS: A CHANNEL CANNOT SWITCH TO BLOCKING MODE WHILE IT IS STILL REGISTERED
+          selector.selectNow();
+
+          for (final OBinaryNetworkProtocolAbstract protocol : ready)
+            dispatch(protocol);
+
+          ready.clear();
+        }
+      } catch (Throwable t) {
+        OLogManager.instance().error(this, "Error on selecting client connections", t);
+      } finally {
+        for (SelectionKey key : selector.keys())
+          ((OBinaryNetworkProtocolAbstract) key.attachment()).closeDispatched();
+
+        OBinaryNetworkProtocolAbstract protocol;
+        while ((protocol = pending.poll()) != null)
+          protocol.closeDispatched();
+
+        try {
+          selector.close();
+        } catch (IOException e) {
+        }
+      }
+    }
+
+    private void registerPending() {
+      OBinaryNetworkProtocolAbstract protocol;
+      while ((protocol = pending.poll()) != null) {
+        try {
+          final SocketChannel channel = protocol.getChannel().socket.getChannel();
+          channel.configureBlocking(false);
+          channel.register(selector, SelectionKey.OP_READ, protocol);
+        } catch (IOException e) {
+          protocol.closeDispatched();
+        }
+      }
+    }
+
+    private void dispatch(final OBinaryNetworkProtocolAbstract iProtocol) {
+      try {
+        iProtocol.getChannel().socket.getChannel().configureBlocking(true);
+      } catch (IOException e) {
+        iProtocol.closeDispatched();
+        return;
+      }
+
+      submit(workers, iProtocol, this);
+    }
+  }
+}
@@ -24,6 +24,8 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,11 +33,13 @@ import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
 import com.orientechnologies.orient.server.config.OServerParameterConfiguration;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocol;
+import com.orientechnologies.orient.server.network.protocol.binary.OBinaryNetworkProtocolAbstract;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommand;
 
 public class OServerNetworkListener extends Thread {
@@ -49,18 +53,19 @@ public class OServerNetworkListener extends Thread {
   private OContextConfiguration             configuration;
   private OServer                           server;
   private ONetworkProtocol                  protocol;
+  private OServerNetworkDispatcher          dispatcher;
 
   public OServerNetworkListener(final OServer iServer, final String iHostName, final String iHostPortRange,
       final String iProtocolName, final Class<? extends ONetworkProtocol> iProtocol,
       final OServerParameterConfiguration[] iParameters, final OServerCommandConfiguration[] iCommands) {
     super(Orient.getThreadGroup(), "OrientDB " + iProtocol.getSimpleName() + " listen at " + iHostName + ":" + iHostPortRange);
     server = iServer;
-
-    listen(iHostName, iHostPortRange, iProtocolName);
     protocolType = iProtocol;
 
     readParameters(iServer.getContextConfiguration(), iParameters);
 
+    listen(iHostName, iHostPortRange, iProtocolName);
+
     if (iCommands != null) {
       for (int i = 0; i < iCommands.length; ++i) {
         if (iCommands[i].stateful)
@@ -83,6 +88,9 @@ public class OServerNetworkListener extends Thread {
       protocol = null;
     }
 
+    if (dispatcher != null)
+      dispatcher.shutdown();
+
     if (serverSocket != null)
       try {
         serverSocket.close();
@@ -102,7 +110,18 @@ public class OServerNetworkListener extends Thread {
     for (int port : ports) {
       inboundAddr = new InetSocketAddress(iHostName, port);
       try {
-        serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
+        if (dispatcher != null) {
+          // DISPATCHED CONNECTIONS NEED A SOCKET CHANNEL TO BE REGISTERED AGAINST THE SELECTORS
+          final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+          try {
+            serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(iHostName), port), 0);
+          } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+          }
+          serverSocket = serverChannel.socket();
+        } else
+          serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
 
         if (serverSocket.isBound()) {
           OLogManager.instance().info(
@@ -147,9 +166,18 @@ public class OServerNetworkListener extends Thread {
           // CREATE A NEW PROTOCOL INSTANCE
           protocol = protocolType.newInstance();
 
+          if (dispatcher != null)
+            ((OBinaryNetworkProtocolAbstract) protocol).setDispatched(true);
+
           // CONFIGURE THE PROTOCOL FOR THE INCOMING CONNECTION
           protocol.config(server, socket, configuration, statelessCommands, statefulCommands);
 
+          if (dispatcher != null)
+            dispatcher.register((OBinaryNetworkProtocolAbstract) protocol);
+
+        } catch (ClosedChannelException e) {
+          // THE SOCKET OF A DISPATCHED LISTENER HAS BEEN CLOSED, ALSO BY INTERRUPTING THE LISTENER THREAD
+          break;
         } catch (Throwable e) {
           if (active)
             OLogManager.instance().error(this, "Error on client connection", e);
@@ -191,6 +219,22 @@ public class OServerNetworkListener extends Thread {
     }
 
     socketBufferSize = configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_SOCKET_BUFFER_SIZE);
+
+    if (!OBinaryNetworkProtocolAbstract.class.isAssignableFrom(protocolType))
+      return;
+
+    final String transport = configuration.getValueAsString(OGlobalConfiguration.NETWORK_BINARY_TRANSPORT);
+    if ("nio".equalsIgnoreCase(transport)) {
+      try {
+        dispatcher = new OServerNetworkDispatcher(getName(),
+            configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_NIO_SELECTORS),
+            configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_NIO_WORKERS),
+            configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_NIO_COMMAND_WORKERS));
+      } catch (IOException e) {
+        throw new OConfigurationException("Cannot open the selectors of listener " + getName(), e);
+      }
+    } else if (!"thread".equalsIgnoreCase(transport))
+      throw new OConfigurationException("Unknown network transport '" + transport + "'. Supported are 'thread' and 'nio'");
   }
 
   public static int[] getPorts(final String iHostPortRange) {
@@ -16,9 +16,11 @@
 package com.orientechnologies.orient.server.network.protocol.binary;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import com.orientechnologies.common.concur.lock.OLockException;
@@ -67,6 +69,10 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
   protected int                  clientTxId;
   private final Level            logClientExceptions;
   private final boolean          logClientFullStackTrace;
+  private volatile boolean       dispatched;
+  private volatile boolean       closeRequested;
+  private volatile Thread        requestThread;
+  private final AtomicBoolean    closed = new AtomicBoolean();
 
   public OBinaryNetworkProtocolAbstract(final String iThreadName) {
     super(Orient.getThreadGroup(), iThreadName);
@@ -150,6 +156,90 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     channel.close();
   }
 
+  /**
+   * Lets an external dispatcher execute the requests instead of the protocol's own thread. Must be called before
+   * {@link #config(OServer, Socket, OContextConfiguration, List, List)}.
+   */
+  public void setDispatched(final boolean iDispatched) {
+    dispatched = iDispatched;
+  }
+
+  public boolean isDispatched() {
+    return dispatched;
+  }
+
+  /**
+   * Executes one request in the calling thread. Used by dispatched protocols only.
+   * 
+   * @return true if the connection is still open, otherwise false
+   */
+  public boolean executeDispatchedRequest() {
+    requestThread = Thread.currentThread();
+    try {
+      execute();
+    } catch (Throwable t) {
+      OLogManager.instance().error(this, "Error on executing request from client %s", t, channel.socket.getRemoteSocketAddress());
+      closeRequested = true;
+    } finally {
+      requestThread = null;
+      // CLEAR ANY INTERRUPTION RAISED AGAINST THIS REQUEST BEFORE GIVING BACK THE WORKER THREAD
+      Thread.interrupted();
+    }
+
+    if (closeRequested || channel.socket.isClosed()) {
+      closeDispatched();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the type of the next request without consuming it, waiting for it if not received yet. Used by dispatched protocols
+   * only.
+   * 
+   * @return the request type, or -1 if the connection has been closed by the client
+   */
+  public int peekRequestType() throws IOException {
+    final InputStream in = channel.inStream;
+    in.mark(1);
+    final int type = in.read();
+    in.reset();
+    return type;
+  }
+
+  /**
+   * Closes the connection of a dispatched protocol. Can be called more than once.
+   */
+  public void closeDispatched() {
+    if (closed.compareAndSet(false, true))
+      shutdown();
+  }
+
+  @Override
+  public void sendShutdown() {
+    if (!dispatched) {
+      super.sendShutdown();
+      return;
+    }
+
+    closeRequested = true;
+    if (requestThread == null)
+      // IDLE CONNECTION: NO REQUEST WILL CHECK THE FLAG
+      closeDispatched();
+  }
+
+  @Override
+  public void interrupt() {
+    if (!dispatched) {
+      super.interrupt();
+      return;
+    }
+
+    final Thread t = requestThread;
+    if (t != null)
+      t.interrupt();
+  }
+
   @Override
   public OChannel getChannel() {
     return channel;
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+
+/**
+ * Writes the content of an HTTP/1.1 response with chunked transfer encoding. Bytes are collected in a buffer that is sent as a
+ * chunk when full. Closing the stream sends the last chunk and the final empty one, but does not close the connection. A response
+ * interrupted by an error is ended by {@link #abort()} instead.
+ */
+public class OHttpChunkedOutputStream extends OutputStream {
+  public static final int    DEFAULT_CHUNK_SIZE = 16384;
+
+  private final OutputStream out;
+  private final byte[]       buffer;
+  private int                count;
+  private boolean            closed;
+
+  public OHttpChunkedOutputStream(final OutputStream iOut) {
+    this(iOut, DEFAULT_CHUNK_SIZE);
+  }
+
+  public OHttpChunkedOutputStream(final OutputStream iOut, final int iChunkSize) {
+    out = iOut;
+    buffer = new byte[iChunkSize];
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    if (count == buffer.length)
+      writeChunk();
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(final byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == buffer.length)
+        writeChunk();
+
+      final int toCopy = Math.min(len, buffer.length - count);
+      System.arraycopy(b, off, buffer, count, toCopy);
+      count += toCopy;
+      off += toCopy;
+      len -= toCopy;
+    }
+  }
+
+  /**
+   * Sends the bytes collected so far as a chunk.
+   */
+  @Override
+  public void flush() throws IOException {
+    writeChunk();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+
+    writeChunk();
+    out.write('0');
+    out.write(OHttpUtils.EOL);
+    out.write(OHttpUtils.EOL);
+    out.flush();
+  }
+
+  /**
+   * Ends the stream after an error: the bytes collected so far are sent but the final empty chunk is not, so the client detects the
+   * response as incomplete once the connection is closed, instead of receiving a well-formed but partial content.
+   */
+  public void abort() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+
+    writeChunk();
+    out.flush();
+  }
+
+  private void writeChunk() throws IOException {
+    if (count == 0)
+      return;
+
+    out.write(OBinaryProtocol.string2bytes(Integer.toHexString(count)));
+    out.write(OHttpUtils.EOL);
+    out.write(buffer, 0, count);
+    out.write(OHttpUtils.EOL);
+    count = 0;
+  }
+}
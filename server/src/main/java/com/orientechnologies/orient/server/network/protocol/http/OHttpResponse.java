@@ -19,7 +19,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -42,20 +44,27 @@ import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
  * 
  */
 public class OHttpResponse {
-  public static final String JSON_FORMAT   = "type,indent:-1,rid,version,attribSameRow,class";
-  public static final char[] URL_SEPARATOR = { '/' };
-
-  private final OutputStream out;
-  public final String        httpVersion;
-  public String              headers;
-  public String[]            additionalHeaders;
-  public String              characterSet;
-  public String              contentType;
-  public String              serverInfo;
-  public String              sessionId;
-  public String              callbackFunction;
-  public String              contentEncoding;
-  public boolean             sendStarted   = false;
+  public static final String       JSON_FORMAT   = "type,indent:-1,rid,version,attribSameRow,class";
+  public static final char[]       URL_SEPARATOR = { '/' };
+
+  private final OutputStream       out;
+  public final String              httpVersion;
+  public String                    headers;
+  public String[]                  additionalHeaders;
+  public String                    characterSet;
+  public String                    contentType;
+  public String                    serverInfo;
+  public String                    sessionId;
+  public String                    callbackFunction;
+  public String                    contentEncoding;
+  public boolean                   sendStarted   = false;
+
+  private Writer                   recordsWriter;
+  private OHttpChunkedOutputStream recordsChunks;
+  private OJSONWriter              recordsJson;
+  private String                   recordsFormat;
+  private int                      recordsCount;
+  private boolean                  streaming     = false;
 
   public OHttpResponse(final OutputStream iOutStream, final String iHttpVersion, final String[] iAdditionalHeaders,
       final String iResponseCharSet, final String iServerInfo, final String iSessionId, final String iCallbackFunction) {
@@ -223,29 +232,108 @@ public class OHttpResponse {
     if (iRecords == null)
       return;
 
+    beginRecords(iFetchPlan, iFormat);
+    while (iRecords.hasNext())
+      appendRecord(iRecords.next());
+    endRecords();
+  }
+
+  /**
+   * Starts a JSON result set whose records are passed one by one to {@link #appendRecord(Object)} and closed by
+   * {@link #endRecords()}. On HTTP/1.1 the result set is sent while it is written, with chunked transfer encoding and compressed on
+   * the fly if requested, so the records are not kept in memory. Older clients receive it in one piece at the end.
+   */
+  public void beginRecords(final String iFetchPlan, String iFormat) throws IOException {
     if (iFormat == null)
       iFormat = JSON_FORMAT;
 
-    final StringWriter buffer = new StringWriter();
-    final OJSONWriter json = new OJSONWriter(buffer, iFormat);
-    json.beginObject();
+    recordsFormat = iFetchPlan != null ? iFormat + ",fetchPlan:" + iFetchPlan : iFormat;
+    recordsCount = 0;
 
-    final String format = iFetchPlan != null ? iFormat + ",fetchPlan:" + iFetchPlan : iFormat;
+    if (!sendStarted && "HTTP/1.1".equals(httpVersion)) {
+      sendStarted = true;
+      streaming = true;
+
+      writeStatus(OHttpUtils.STATUS_OK_CODE, "OK");
+      writeHeaders(callbackFunction != null ? "text/javascript" : OHttpUtils.CONTENT_JSON, true);
+      writeLine("Set-Cookie: " + OHttpUtils.OSESSIONID + "=" + (sessionId != null ? sessionId : "-") + "; Path=/; HttpOnly");
+      writeLine(OHttpUtils.HEADER_TRANSFER_ENCODING + "chunked");
+      writeLine(null);
+
+      recordsChunks = new OHttpChunkedOutputStream(out);
+      OutputStream content = recordsChunks;
+      if (contentEncoding != null && contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED))
+        content = new GZIPOutputStream(content, 8192);
+
+      recordsWriter = new OutputStreamWriter(content, "UTF-8");
+      if (callbackFunction != null)
+        recordsWriter.append(callbackFunction).append('(');
+    } else
+      recordsWriter = new StringWriter();
+
+    recordsJson = new OJSONWriter(recordsWriter, iFormat);
+    recordsJson.beginObject();
+    recordsJson.beginCollection(-1, true, "result");
+  }
+
+  public void appendRecord(final Object iRecord) throws IOException {
+    if (iRecord == null)
+      return;
+
+    if (recordsCount++ > 0)
+      recordsWriter.append(", ");
+    formatValue(iRecord, recordsWriter, recordsFormat);
+  }
 
-    // WRITE RECORDS
-    json.beginCollection(-1, true, "result");
-    formatMultiValue(iRecords, buffer, format);
-    json.endCollection(-1, true);
+  public void endRecords() throws IOException {
+    recordsJson.endCollection(-1, true);
+    recordsJson.endObject();
+
+    final Writer writer = recordsWriter;
+    recordsWriter = null;
+    recordsJson = null;
+
+    if (streaming) {
+      if (callbackFunction != null)
+        writer.append(')');
+      // SENDS THE LAST CHUNKS WITHOUT CLOSING THE CONNECTION
+      writer.close();
+      streaming = false;
+      recordsChunks = null;
+    } else
+      send(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_JSON, writer.toString(), null);
+  }
 
-    json.endObject();
+  /**
+   * Ends a result set interrupted by an error after it started to be sent, when it cannot be replaced by an error response any more.
+   * The bytes already passed to the chunked stream are sent without the final empty chunk, so the client sees a truncated response
+   * rather than a complete JSON document with part of the records. The connection must be closed afterwards.
+   */
+  public void abortRecords() {
+    if (!streaming)
+      return;
 
-    send(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_JSON, buffer.toString(), null);
+    streaming = false;
+    recordsWriter = null;
+    recordsJson = null;
+    try {
+      recordsChunks.abort();
+    } catch (IOException e) {
+      // THE CONNECTION IS CLOSED ANYWAY
+    }
+    recordsChunks = null;
   }
 
-  public void formatMultiValue(final Iterator<?> iIterator, final StringWriter buffer, final String format) throws IOException {
+  /**
+   * Returns true if a result set is being sent with chunked transfer encoding: the response cannot be replaced by another one.
+   */
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public void formatMultiValue(final Iterator<?> iIterator, final Writer buffer, final String format) throws IOException {
     if (iIterator != null) {
       int counter = 0;
-      String objectJson;
 
       while (iIterator.hasNext()) {
         final Object entry = iIterator.next();
@@ -253,24 +341,28 @@ public class OHttpResponse {
           if (counter++ > 0)
             buffer.append(", ");
 
-          if (entry instanceof OIdentifiable) {
-            ORecord<?> rec = ((OIdentifiable) entry).getRecord();
-            try {
-              objectJson = rec.getRecord().toJSON(format);
-
-              buffer.append(objectJson);
-            } catch (Exception e) {
-              OLogManager.instance().error(this, "Error transforming record " + rec.getIdentity() + " to JSON", e);
-            }
-          } else if (OMultiValue.isMultiValue(entry))
-            formatMultiValue(OMultiValue.getMultiValueIterator(entry), buffer, format);
-          else
-            buffer.append(OJSONWriter.writeValue(entry, format));
+          formatValue(entry, buffer, format);
         }
       }
     }
   }
 
+  protected void formatValue(final Object entry, final Writer buffer, final String format) throws IOException {
+    if (entry instanceof OIdentifiable) {
+      ORecord<?> rec = ((OIdentifiable) entry).getRecord();
+      try {
+        final String objectJson = rec.getRecord().toJSON(format);
+
+        buffer.append(objectJson);
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error transforming record " + rec.getIdentity() + " to JSON", e);
+      }
+    } else if (OMultiValue.isMultiValue(entry))
+      formatMultiValue(OMultiValue.getMultiValueIterator(entry), buffer, format);
+    else
+      buffer.append(OJSONWriter.writeValue(entry, format));
+  }
+
   public void writeRecord(final ORecord<?> iRecord) throws IOException {
     writeRecord(iRecord, null, null);
   }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.IOException;
+
+import com.orientechnologies.common.io.OIOException;
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+
+/**
+ * Writes the results of a command to the HTTP response as soon as the executor produces them, so the result set is never collected
+ * in memory. The response is started with the first result and completed by {@link #finish()}.
+ */
+public class OHttpResultListener implements OCommandResultListener {
+  private final OHttpResponse response;
+  private final String        fetchPlan;
+  private final String        format;
+  private boolean             started = false;
+
+  public OHttpResultListener(final OHttpResponse iResponse, final String iFetchPlan, final String iFormat) {
+    response = iResponse;
+    fetchPlan = iFetchPlan;
+    format = iFormat;
+  }
+
+  public boolean result(final Object iRecord) {
+    try {
+      begin();
+      response.appendRecord(iRecord);
+    } catch (IOException e) {
+      throw new OIOException("Error on sending the result to the HTTP client", e);
+    }
+    return true;
+  }
+
+  public void end() {
+    // ORDERED RESULTS ARE PASSED AFTER THE END OF THE SEARCH: THE RESPONSE IS COMPLETED BY finish()
+  }
+
+  /**
+   * Completes the response, sending an empty result set if no result was produced.
+   */
+  public void finish() throws IOException {
+    begin();
+    response.endRecords();
+  }
+
+  public boolean isStarted() {
+    return started;
+  }
+
+  private void begin() throws IOException {
+    if (!started) {
+      started = true;
+      response.beginRecords(fetchPlan, format);
+    }
+  }
+}
@@ -41,6 +41,7 @@ public class OHttpUtils {
 	public static final String	HEADER_COOKIE												= "Cookie: ";
 	public static final String	HEADER_AUTHORIZATION								= "Authorization: ";
 	public static final String	HEADER_IF_MATCH											= "If-Match: ";
+	public static final String	HEADER_TRANSFER_ENCODING						= "Transfer-Encoding: ";
 	public static final String	HEADER_X_FORWARDED_FOR							= "X-Forwarded-For: ";
 	public static final String	HEADER_AUTHENTICATION								= "OAuthentication: ";
 	public static final String  HEADER_CONTENT_ENCODING                             = "Accept-Encoding: ";
@@ -169,6 +169,15 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     if (OLogManager.instance().isDebugEnabled())
       OLogManager.instance().debug(this, "Caught exception", e);
 
+    if (response != null && response.isStreaming()) {
+      // THE RESULT IS PARTIALLY SENT ALREADY: THE CHUNKED RESPONSE IS LEFT WITHOUT ITS FINAL EMPTY CHUNK AND THE CONNECTION IS
+      // CLOSED, SO THE CLIENT DETECTS THE ERROR BY THE TRUNCATED RESPONSE
+      OLogManager.instance().error(this, "Error on sending the result to the HTTP client", e);
+      response.abortRecords();
+      sendShutdown();
+      return;
+    }
+
     int errorCode = 500;
     String errorReason = null;
     String errorMessage = null;
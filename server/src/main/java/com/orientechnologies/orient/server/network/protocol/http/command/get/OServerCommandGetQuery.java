@@ -15,21 +15,18 @@
  */
 package com.orientechnologies.orient.server.network.protocol.http.command.get;
 
-import java.util.List;
-
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
-import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.ORecordSchemaAware;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResultListener;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
 
 public class OServerCommandGetQuery extends OServerCommandAuthenticatedDbAbstract {
   private static final String[] NAMES = { "GET|query/*" };
 
   @Override
-  @SuppressWarnings("unchecked")
   public boolean execute(final OHttpRequest iRequest, OHttpResponse iResponse) throws Exception {
     String[] urlParts = checkSyntax(
         iRequest.url,
@@ -47,15 +44,13 @@ public class OServerCommandGetQuery extends OServerCommandAuthenticatedDbAbstrac
 
     ODatabaseDocumentTx db = null;
 
-    final List<OIdentifiable> response;
-
     try {
       db = getProfiledDatabaseInstance(iRequest);
 
-      response = (List<OIdentifiable>) db.command(new OSQLSynchQuery<ORecordSchemaAware<?>>(text, limit).setFetchPlan(fetchPlan))
-          .execute();
-
-      iResponse.writeRecords(response, fetchPlan);
+      // RECORDS ARE SENT WHILE THE QUERY BROWSES THEM
+      final OHttpResultListener listener = new OHttpResultListener(iResponse, fetchPlan, null);
+      db.command(new OSQLAsynchQuery<ORecordSchemaAware<?>>(text, limit, listener).setFetchPlan(fetchPlan)).execute();
+      listener.finish();
 
     } finally {
       if (db != null)
@@ -20,6 +20,7 @@ import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResultListener;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
 
 public class OServerCommandPostCommand extends OServerCommandAuthenticatedDbAbstract {
@@ -54,12 +55,19 @@ public class OServerCommandPostCommand extends OServerCommandAuthenticatedDbAbst
       cmd.setText(text);
       cmd.setLimit(limit);
       cmd.setFetchPlan(fetchPlan);
-      response = db.command(cmd).execute();
 
       final String format = fetchPlan != null ? "fetchPlan:" + fetchPlan : null;
 
-      iResponse.writeResult(response, format);
-      
+      // QUERIES SEND THE RECORDS WHILE THEY BROWSE THEM, OTHER COMMANDS RETURN THEIR RESULT
+      final OHttpResultListener listener = new OHttpResultListener(iResponse, null, format);
+      cmd.setResultListener(listener);
+      response = db.command(cmd).execute();
+
+      if (listener.isStarted())
+        listener.finish();
+      else
+        iResponse.writeResult(response, format);
+
     } finally {
       if (db != null)
         db.close();
@@ -54,9 +54,6 @@ public abstract class OAbstractDistributedTask<T> implements Callable<T>, Extern
   protected boolean                         inheritedDatabase;
 
   protected static OServerUserConfiguration replicatorUser;
-  static {
-    replicatorUser = OServerMain.server().getUser(ODistributedAbstractPlugin.REPLICATOR_USER);
-  }
 
   /**
    * Constructor used from unmarshalling.
@@ -191,8 +188,17 @@ public abstract class OAbstractDistributedTask<T> implements Callable<T>, Extern
     }
 
     inheritedDatabase = false;
-    return (ODatabaseDocumentTx) OServerMain.server().openDatabase("document", databaseName, replicatorUser.name,
-        replicatorUser.password);
+    final OServerUserConfiguration user = getReplicatorUser();
+    return (ODatabaseDocumentTx) OServerMain.server().openDatabase("document", databaseName, user.name, user.password);
+  }
+
+  /**
+   * Returns the user the tasks open the databases with, read from the configuration of the server at the first use.
+   */
+  protected static synchronized OServerUserConfiguration getReplicatorUser() {
+    if (replicatorUser == null)
+      replicatorUser = OServerMain.server().getUser(ODistributedAbstractPlugin.REPLICATOR_USER);
+    return replicatorUser;
   }
 
   protected void closeDatabase(final ODatabaseDocumentTx iDatabase) {
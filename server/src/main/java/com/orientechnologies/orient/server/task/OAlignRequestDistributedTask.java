@@ -19,18 +19,24 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.server.distributed.ODistributedServerManager;
 import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
 import com.orientechnologies.orient.server.distributed.OStorageSynchronizer;
 import com.orientechnologies.orient.server.journal.ODatabaseJournal;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
 
 /**
- * Distributed align request task used for synchronization.
+ * Distributed align request task used for synchronization. The operations journaled after the last one of the requester are
+ * compacted, then sent in compressed groups.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
@@ -40,7 +46,6 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
 
   protected long             lastRunId;
   protected long             lastOperationId;
-  protected static final int OP_BUFFER        = 150;
 
   public OAlignRequestDistributedTask() {
   }
@@ -75,31 +80,43 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
       try {
         aligned = 0;
         final OMultipleDistributedTasks tasks = new OMultipleDistributedTasks(localNode, databaseName, EXECUTION_MODE.SYNCHRONOUS);
+        tasks.setCompressed(OGlobalConfiguration.DISTRIBUTED_ALIGN_COMPRESSION.getValueAsBoolean());
         final List<Long> positions = new ArrayList<Long>();
 
-        Iterator<Long> it = log.browse(new long[] { lastRunId, lastOperationId });
-        //for (Iterator<Long> it = log.browse(new long[] { lastRunId, lastOperationId }); it.hasNext();) {
-        while(it.hasNext()) {
-          final long pos = it.next();
+        final int maxTasks = OGlobalConfiguration.DISTRIBUTED_ALIGN_BATCH_SIZE.getValueAsInteger();
+        final long maxBytes = OGlobalConfiguration.DISTRIBUTED_ALIGN_BATCH_MAX_BYTES.getValueAsLong();
+        long bytes = 0;
 
-          final OAbstractDistributedTask<?> operation = log.getOperation(pos);
+        for (AlignOperation op : compact(log, log.browse(new long[] { lastRunId, lastOperationId }))) {
+          final OAbstractDistributedTask<?> operation = log.getOperation(op.position);
           if (operation == null) {
-            OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] skipped operation #%d.%d", nodeSource, databaseName,
-                lastRunId, lastOperationId);
+            if (OLogManager.instance().isDebugEnabled())
+              OLogManager.instance().debug(this, "DISTRIBUTED ->[%s/%s] skipped operation at %d: the record does not exist anymore",
+                  nodeSource, databaseName, op.position);
             continue;
           }
 
-          OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] operation %s", nodeSource, databaseName, operation);
+          if (OLogManager.instance().isDebugEnabled())
+            OLogManager.instance().debug(this, "DISTRIBUTED ->[%s/%s] operation %s", nodeSource, databaseName, operation);
+
+          if (operation instanceof OUpdateRecordDistributedTask) {
+            final OUpdateRecordDistributedTask update = (OUpdateRecordDistributedTask) operation;
+            op.rewindVersion(update);
+            bytes += update.content.length;
+          } else if (operation instanceof OCreateRecordDistributedTask)
+            bytes += ((OCreateRecordDistributedTask) operation).content.length;
 
           operation.setNodeSource(localNode);
           operation.setDatabaseName(databaseName);
           operation.setMode(EXECUTION_MODE.SYNCHRONOUS);
 
           tasks.addTask(operation);
-          positions.add(pos);
+          positions.add(op.position);
 
-          if (tasks.getTasks() >= OP_BUFFER)
+          if (tasks.getTasks() >= maxTasks || bytes >= maxBytes) {
             aligned += flushBufferedTasks(dManager, synchronizer, tasks, positions);
+            bytes = 0;
+          }
         }
 
         if (tasks.getTasks() > 0)
@@ -124,13 +141,20 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
       final OMultipleDistributedTasks tasks, final List<Long> positions) throws IOException {
 
     // SEND TO THE REQUESTER NODE THE TASK TO EXECUTE
-    @SuppressWarnings("unused")
     final Object[] result = (Object[]) dManager.sendOperation2Node(nodeSource, tasks);
 
+    // THE GROUP EXECUTES ALL THE OPERATIONS: ONLY THE ONES APPLIED BY THE NODE ARE MARKED AS COMPLETED
+    final ODatabaseJournal log = synchronizer.getLog();
+    int aligned = 0;
     for (int i = 0; i < positions.size(); ++i)
-      tasks.getTask(i).setAsCompleted(synchronizer, positions.get(i));
-
-    final int aligned = tasks.getTasks();
+      if (result[i] instanceof Exception)
+        OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] error on aligning operation %s", (Exception) result[i],
+            nodeSource, databaseName, tasks.getTask(i));
+      else {
+        if (!log.getOperationStatus(positions.get(i)))
+          tasks.getTask(i).setAsCompleted(synchronizer, positions.get(i));
+        aligned++;
+      }
 
     // REUSE THE MULTIPLE TASK
     tasks.clearTasks();
@@ -139,6 +163,124 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
     return aligned;
   }
 
+  /**
+   * Drops the operations made useless by the following ones: the updates of a record deleted later in the same range. The creates
+   * are always kept, since the node assigns the positions of the records in order, and so are the updates that follow a create,
+   * because the create cannot set the version of the record. The journal keeps only the RIDs and the current content of the
+   * records is sent, so the consecutive updates of a record send the same content, each one with its own version. SQL commands
+   * can change any record, so the operations are never compacted across them, but the updates of a record are counted across
+   * them to assign the versions.
+   */
+  protected List<AlignOperation> compact(final ODatabaseJournal log, final Iterator<Long> iPositions) throws IOException {
+    final List<AlignOperation> operations = new ArrayList<AlignOperation>();
+    // UPDATES THAT CAN BE DROPPED BY A DELETE, AND ALL THE UPDATES OF EVERY RECORD TO ASSIGN THEIR VERSIONS
+    final Map<ORecordId, UpdateRun> runs = new HashMap<ORecordId, UpdateRun>();
+    final Map<ORecordId, RecordUpdates> updates = new HashMap<ORecordId, RecordUpdates>();
+    int dropped = 0;
+
+    while (iPositions.hasNext()) {
+      final long position = iPositions.next();
+      final OPERATION_TYPES type = log.getOperationType(position);
+
+      UpdateRun run = null;
+      RecordUpdates recordUpdates = null;
+      int index = 0;
+
+      switch (type) {
+      case SQL_COMMAND:
+        runs.clear();
+        break;
+
+      case RECORD_CREATE:
+        // THE UPDATES OF THE RECORD BEFORE ITS CREATE WERE APPLIED TO ANOTHER RECORD WITH THE SAME RID
+        final ORecordId created = log.getOperationRid(position);
+        runs.remove(created);
+        updates.remove(created);
+        break;
+
+      case RECORD_DELETE:
+        final ORecordId deletedRid = log.getOperationRid(position);
+        updates.remove(deletedRid);
+        final UpdateRun deleted = runs.remove(deletedRid);
+        if (deleted != null)
+          for (AlignOperation update : deleted.operations) {
+            update.dropped = true;
+            dropped++;
+          }
+        break;
+
+      case RECORD_UPDATE:
+        final ORecordId rid = log.getOperationRid(position);
+        run = runs.get(rid);
+        if (run == null) {
+          run = new UpdateRun();
+          runs.put(rid, run);
+        }
+        recordUpdates = updates.get(rid);
+        if (recordUpdates == null) {
+          recordUpdates = new RecordUpdates();
+          updates.put(rid, recordUpdates);
+        }
+        index = recordUpdates.count++;
+        break;
+      }
+
+      final AlignOperation operation = new AlignOperation(position, run, recordUpdates, index);
+      if (run != null)
+        run.operations.add(operation);
+      operations.add(operation);
+    }
+
+    if (dropped == 0)
+      return operations;
+
+    OLogManager.instance().info(this, "DISTRIBUTED ->[%s/%s] compacted %d update(s) of deleted records", nodeSource,
+        databaseName, dropped);
+
+    final List<AlignOperation> result = new ArrayList<AlignOperation>(operations.size() - dropped);
+    for (AlignOperation operation : operations)
+      if (!operation.dropped)
+        result.add(operation);
+    return result;
+  }
+
+  protected static class AlignOperation {
+    protected final long          position;
+    protected final UpdateRun     run;
+    protected final RecordUpdates updates;
+    protected final int           index;
+    protected boolean             dropped;
+
+    protected AlignOperation(final long iPosition, final UpdateRun iRun, final RecordUpdates iUpdates, final int iIndex) {
+      position = iPosition;
+      run = iRun;
+      updates = iUpdates;
+      index = iIndex;
+    }
+
+    /**
+     * The journal passes the version before the last update of the record: goes back to the one before this update.
+     */
+    protected void rewindVersion(final OUpdateRecordDistributedTask iUpdate) {
+      for (int i = index + 1; i < updates.count; ++i)
+        iUpdate.getVersion().decrement();
+    }
+  }
+
+  /**
+   * Consecutive updates of the same record not separated by SQL commands, dropped if the record is deleted.
+   */
+  protected static class UpdateRun {
+    protected final List<AlignOperation> operations = new ArrayList<AlignOperation>();
+  }
+
+  /**
+   * Number of updates of a record in the range, also across SQL commands.
+   */
+  protected static class RecordUpdates {
+    protected int count;
+  }
+
   @Override
   public void writeExternal(final ObjectOutput out) throws IOException {
     super.writeExternal(out);
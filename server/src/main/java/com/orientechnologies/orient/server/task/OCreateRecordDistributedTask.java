@@ -68,7 +68,9 @@ public class OCreateRecordDistributedTask extends OAbstractRecordDistributedTask
 
   @Override
   protected OPhysicalPosition executeOnLocalNode(final OStorageSynchronizer dbSynchronizer) {
-    OLogManager.instance().warn(this, "DISTRIBUTED <-[%s/%s] CREATE RECORD %s v.%s", nodeSource, databaseName, rid.toString(), version.toString());
+    if (OLogManager.instance().isDebugEnabled())
+      OLogManager.instance().debug(this, "DISTRIBUTED <-[%s/%s] CREATE RECORD %s v.%s", nodeSource, databaseName, rid.toString(),
+          version.toString());
     final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(recordType);
 
     final ODatabaseDocumentTx database = openDatabase();
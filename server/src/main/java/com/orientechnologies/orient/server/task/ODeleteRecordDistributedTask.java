@@ -54,8 +54,9 @@ public class ODeleteRecordDistributedTask extends OAbstractRecordDistributedTask
 
   @Override
   protected Boolean executeOnLocalNode(final OStorageSynchronizer dbSynchronizer) {
-    OLogManager.instance().warn(this, "DISTRIBUTED <-[%s/%s] DELETE RECORD %s v.%s", nodeSource, databaseName, rid.toString(),
-        version.toString());
+    if (OLogManager.instance().isDebugEnabled())
+      OLogManager.instance().debug(this, "DISTRIBUTED <-[%s/%s] DELETE RECORD %s v.%s", nodeSource, databaseName, rid.toString(),
+          version.toString());
 
     final ODatabaseDocumentTx database = openDatabase();
     try {
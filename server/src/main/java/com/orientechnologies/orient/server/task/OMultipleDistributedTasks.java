@@ -15,24 +15,40 @@
  */
 package com.orientechnologies.orient.server.task;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
 
 /**
- * Groups multiples tasks to being replicated in one single call.
+ * Groups multiples tasks to being replicated in one single call. The tasks are executed in order sharing the same database
+ * instance. Every task is executed even if a previous one failed: the result of a failed task is its exception. Large groups can
+ * be compressed.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
 public class OMultipleDistributedTasks extends OAbstractDistributedTask<Object[]> {
   private static final long                 serialVersionUID = 1L;
+  /**
+   * Written in place of the number of tasks when the group is compressed. The uncompressed groups keep the format of the previous
+   * versions.
+   */
+  private static final int                  COMPRESSED       = -1;
   private List<OAbstractDistributedTask<?>> tasks            = new ArrayList<OAbstractDistributedTask<?>>();
+  private boolean                           compressed       = false;
 
   public OMultipleDistributedTasks() {
   }
@@ -43,14 +59,27 @@ public class OMultipleDistributedTasks extends OAbstractDistributedTask<Object[]
 
   @Override
   public Object[] call() throws Exception {
-    OLogManager.instance().warn(this, "DISTRIBUTED <-[%s/%s] executing group of %d command(s)", nodeSource, databaseName,
-        tasks.size());
+    if (OLogManager.instance().isDebugEnabled())
+      OLogManager.instance().debug(this, "DISTRIBUTED <-[%s/%s] executing group of %d command(s)", nodeSource, databaseName,
+          tasks.size());
 
     final Object[] result = new Object[tasks.size()];
 
-    for (int i = 0; i < tasks.size(); ++i) {
-      final OAbstractDistributedTask<?> task = tasks.get(i);
-      result[i] = task.call();
+    // OPEN THE DATABASE ONCE: THE TASKS INHERIT IT
+    final ODatabaseDocumentTx database = openDatabase();
+    try {
+      for (int i = 0; i < tasks.size(); ++i) {
+        final OAbstractDistributedTask<?> task = tasks.get(i);
+        try {
+          result[i] = task.call();
+        } catch (Exception e) {
+          OLogManager.instance().error(this, "DISTRIBUTED <-[%s/%s] error on executing command %s of the group", e, nodeSource,
+              databaseName, task);
+          result[i] = e;
+        }
+      }
+    } finally {
+      closeDatabase(database);
     }
 
     return result;
@@ -59,18 +88,48 @@ public class OMultipleDistributedTasks extends OAbstractDistributedTask<Object[]
   @Override
   public void writeExternal(final ObjectOutput out) throws IOException {
     super.writeExternal(out);
-    out.writeInt(tasks.size());
-    for (int i = 0; i < tasks.size(); ++i) {
-      out.writeObject(tasks.get(i));
+    if (!compressed) {
+      writeTasks(out);
+      return;
+    }
+
+    out.writeInt(COMPRESSED);
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      final ObjectOutputStream stream = new ObjectOutputStream(new DeflaterOutputStream(buffer, deflater));
+      writeTasks(stream);
+      stream.close();
+    } finally {
+      deflater.end();
     }
+
+    out.writeInt(buffer.size());
+    out.write(buffer.toByteArray());
   }
 
   @Override
   public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
     super.readExternal(in);
-    final int taskSize = in.readInt();
-    for (int i = 0; i < taskSize; ++i)
-      tasks.add((OAbstractDistributedTask<?>) in.readObject());
+    final int header = in.readInt();
+    if (header >= 0) {
+      readTasks(in, header);
+      return;
+    }
+    if (header != COMPRESSED)
+      throw new IOException("Unsupported format of the group of tasks: " + header);
+
+    compressed = true;
+    final byte[] buffer = new byte[in.readInt()];
+    in.readFully(buffer);
+
+    final ObjectInputStream stream = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(buffer)));
+    try {
+      readTasks(stream, stream.readInt());
+    } finally {
+      stream.close();
+    }
   }
 
   @Override
@@ -93,4 +152,28 @@ public class OMultipleDistributedTasks extends OAbstractDistributedTask<Object[]
   public OAbstractDistributedTask<?> getTask(final int i) {
     return tasks.get(i);
   }
+
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  /**
+   * Compresses the tasks when the group is serialized. Worth for large groups only. The nodes of the versions before the
+   * compression cannot read compressed groups.
+   */
+  public void setCompressed(final boolean iCompressed) {
+    compressed = iCompressed;
+  }
+
+  private void writeTasks(final ObjectOutput out) throws IOException {
+    out.writeInt(tasks.size());
+    for (int i = 0; i < tasks.size(); ++i) {
+      out.writeObject(tasks.get(i));
+    }
+  }
+
+  private void readTasks(final ObjectInput in, final int taskSize) throws IOException, ClassNotFoundException {
+    for (int i = 0; i < taskSize; ++i)
+      tasks.add((OAbstractDistributedTask<?>) in.readObject());
+  }
 }
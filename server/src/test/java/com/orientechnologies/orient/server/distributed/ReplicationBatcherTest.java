@@ -0,0 +1,289 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.distributed;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.server.task.OAbstractDistributedTask;
+import com.orientechnologies.orient.server.task.OMultipleDistributedTasks;
+
+public class ReplicationBatcherTest {
+  private ExecutorService callers;
+
+  @Before
+  public void setUp() {
+    callers = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void testBatchKeepsOrder() throws Exception {
+    final Node node = new Node("node1");
+    node.block();
+
+    final OReplicationBatcher batcher = createBatcher(node);
+    for (int i = 0; i < 10; ++i)
+      batcher.replicate(nodes("node1"), new TestTask(i, false), 0);
+
+    node.release();
+    node.awaitExecuted(10);
+
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), node.getExecuted());
+    Assert.assertTrue("tasks queued while sending were not batched", node.getMessages() < 10);
+  }
+
+  @Test
+  public void testQuorum() throws Exception {
+    final Node fast = new Node("node1");
+    final Node slow = new Node("node2");
+    slow.block();
+
+    final OReplicationBatcher batcher = createBatcher(fast, slow);
+    final Map<String, Object> results = batcher.replicate(nodes("node1", "node2"), new TestTask(1, false), 1);
+
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(1, results.get("node1"));
+    Assert.assertTrue(slow.getExecuted().isEmpty());
+
+    slow.release();
+    slow.awaitExecuted(1);
+  }
+
+  @Test
+  public void testQuorumNotReached() throws Exception {
+    final Node node1 = new Node("node1");
+    final Node node2 = new Node("node2");
+
+    final OReplicationBatcher batcher = createBatcher(node1, node2);
+    try {
+      batcher.replicate(nodes("node1", "node2"), new TestTask(1, true), 1);
+      Assert.fail("the quorum was reached by failed tasks");
+    } catch (ODistributedException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    Assert.assertEquals(1, node1.getExecuted().size());
+    Assert.assertEquals(1, node2.getExecuted().size());
+  }
+
+  @Test
+  public void testFailureInGroup() throws Exception {
+    final Node node = new Node("node1");
+    node.block();
+
+    final OReplicationBatcher batcher = createBatcher(node);
+
+    // THE FIRST TASK KEEPS THE SENDER BUSY: THE OTHERS ARE SENT IN ONE GROUP
+    final List<Future<Map<String, Object>>> results = new ArrayList<Future<Map<String, Object>>>();
+    for (int i = 0; i < 5; ++i) {
+      results.add(replicate(batcher, new TestTask(i, i == 2)));
+      node.awaitQueued(i + 1);
+    }
+
+    node.release();
+
+    for (int i = 0; i < 5; ++i)
+      if (i == 2)
+        try {
+          results.get(i).get(10, TimeUnit.SECONDS);
+          Assert.fail("the failed task of the group was reported as replicated");
+        } catch (java.util.concurrent.ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof ODistributedException);
+        }
+      else
+        Assert.assertEquals(i, results.get(i).get(10, TimeUnit.SECONDS).get("node1"));
+
+    // THE TASKS AFTER THE FAILED ONE ARE EXECUTED TOO
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), node.getExecuted());
+    Assert.assertEquals(2, node.getMessages());
+  }
+
+  private Future<Map<String, Object>> replicate(final OReplicationBatcher iBatcher, final TestTask iTask) {
+    return callers.submit(new Callable<Map<String, Object>>() {
+      public Map<String, Object> call() throws Exception {
+        return iBatcher.replicate(nodes("node1"), iTask, 1);
+      }
+    });
+  }
+
+  private static Set<String> nodes(final String... iNodeIds) {
+    return new HashSet<String>(Arrays.asList(iNodeIds));
+  }
+
+  private static OReplicationBatcher createBatcher(final Node... iNodes) {
+    final ODistributedServerManager cluster = (ODistributedServerManager) Proxy.newProxyInstance(
+        ReplicationBatcherTest.class.getClassLoader(), new Class<?>[] { ODistributedServerManager.class }, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().equals("getLocalNodeId"))
+              return "local";
+            if (method.getName().equals("sendOperation2Node"))
+              for (Node node : iNodes)
+                if (node.id.equals(args[0]))
+                  return node.execute((OAbstractDistributedTask<?>) args[1]);
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    return new OReplicationBatcher(cluster, "test") {
+      @Override
+      protected OMultipleDistributedTasks createGroup() {
+        return new OMultipleDistributedTasks() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected ODatabaseDocumentTx openDatabase() {
+            return null;
+          }
+
+          @Override
+          protected void closeDatabase(final ODatabaseDocumentTx iDatabase) {
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Node that executes the tasks it receives in the calling thread.
+   */
+  private static final class Node {
+    private final String        id;
+    private final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    private CountDownLatch      blocked  = new CountDownLatch(0);
+    private int                 messages = 0;
+    private int                 received = 0;
+
+    private Node(final String iId) {
+      id = iId;
+    }
+
+    private Object execute(final OAbstractDistributedTask<?> iTask) throws Exception {
+      synchronized (this) {
+        messages++;
+        received += iTask instanceof OMultipleDistributedTasks ? ((OMultipleDistributedTasks) iTask).getTasks() : 1;
+        notifyAll();
+      }
+
+      blocked.await(10, TimeUnit.SECONDS);
+
+      if (iTask instanceof OMultipleDistributedTasks) {
+        final OMultipleDistributedTasks group = (OMultipleDistributedTasks) iTask;
+        for (int i = 0; i < group.getTasks(); ++i)
+          executed.add(((TestTask) group.getTask(i)).id);
+      } else
+        executed.add(((TestTask) iTask).id);
+
+      try {
+        return iTask.call();
+      } catch (Exception e) {
+        return e;
+      } finally {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    private void block() {
+      blocked = new CountDownLatch(1);
+    }
+
+    private void release() {
+      blocked.countDown();
+    }
+
+    private synchronized int getMessages() {
+      return messages;
+    }
+
+    private List<Integer> getExecuted() {
+      synchronized (executed) {
+        return new ArrayList<Integer>(executed);
+      }
+    }
+
+    private synchronized void awaitExecuted(final int iTasks) throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + 10000;
+      while (executed.size() < iTasks && System.currentTimeMillis() < deadline)
+        wait(100);
+      Assert.assertEquals(iTasks, executed.size());
+    }
+
+    /**
+     * Waits until the first task is received by the node and the others are queued in the batcher.
+     */
+    private void awaitQueued(final int iTasks) throws InterruptedException {
+      synchronized (this) {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (received == 0 && System.currentTimeMillis() < deadline)
+          wait(100);
+      }
+      // THE CALLER THREADS ENQUEUE ASYNCHRONOUSLY: GIVE THEM THE TIME TO JOIN THE QUEUE
+      Thread.sleep(iTasks > 1 ? 50 : 0);
+    }
+  }
+
+  public static class TestTask extends OAbstractDistributedTask<Object> {
+    private static final long serialVersionUID = 1L;
+    private int               id;
+    private boolean           fail;
+
+    public TestTask() {
+    }
+
+    public TestTask(final int iId, final boolean iFail) {
+      id = iId;
+      fail = iFail;
+    }
+
+    @Override
+    public Object call() throws Exception {
+      if (fail)
+        throw new IllegalStateException("Task " + id + " failed");
+      return id;
+    }
+
+    @Override
+    public String getName() {
+      return "test_" + id;
+    }
+  }
+}
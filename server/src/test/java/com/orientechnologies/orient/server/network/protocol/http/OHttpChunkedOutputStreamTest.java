@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OHttpChunkedOutputStreamTest {
+
+  @Test
+  public void testFullChunksAreSent() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpChunkedOutputStream chunked = new OHttpChunkedOutputStream(out, 4);
+
+    chunked.write("hello world".getBytes("UTF-8"));
+    // THE LAST 3 BYTES WAIT FOR THE CHUNK TO FILL
+    Assert.assertEquals("4\r\nhell\r\n4\r\no wo\r\n", out.toString("UTF-8"));
+
+    chunked.close();
+    Assert.assertEquals("4\r\nhell\r\n4\r\no wo\r\n3\r\nrld\r\n0\r\n\r\n", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testFlushSendsAPartialChunk() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpChunkedOutputStream chunked = new OHttpChunkedOutputStream(out, 16);
+
+    chunked.write('a');
+    chunked.write('b');
+    chunked.flush();
+    // NOTHING TO SEND: NO EMPTY CHUNK THAT WOULD END THE CONTENT
+    chunked.flush();
+    Assert.assertEquals("2\r\nab\r\n", out.toString("UTF-8"));
+
+    chunked.write(new byte[20], 0, 20);
+    chunked.close();
+    Assert.assertEquals("2\r\nab\r\n10\r\n" + new String(new byte[16], "UTF-8") + "\r\n4\r\n" + new String(new byte[4], "UTF-8")
+        + "\r\n0\r\n\r\n", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testCloseEndsTheContentOnce() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpChunkedOutputStream chunked = new OHttpChunkedOutputStream(out);
+
+    chunked.close();
+    chunked.close();
+    Assert.assertEquals("0\r\n\r\n", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testAbortDoesNotEndTheContent() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpChunkedOutputStream chunked = new OHttpChunkedOutputStream(out, 4);
+
+    chunked.write("abcdef".getBytes("UTF-8"));
+    chunked.abort();
+    // A LATER CLOSE CANNOT COMPLETE THE RESPONSE
+    chunked.close();
+
+    Assert.assertEquals("4\r\nabcd\r\n2\r\nef\r\n", out.toString("UTF-8"));
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+public class OHttpResponseTest {
+
+  @Test
+  public void testRecordsAreStreamedInChunks() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = createResponse(out, "HTTP/1.1");
+
+    response.beginRecords(null, null);
+    Assert.assertTrue(response.isStreaming());
+    for (int i = 0; i < 3; i++)
+      response.appendRecord(new ODocument().field("id", i));
+    response.endRecords();
+    Assert.assertFalse(response.isStreaming());
+
+    final String[] parts = split(out.toByteArray());
+    Assert.assertTrue(parts[0].startsWith("HTTP/1.1 200 OK"));
+    Assert.assertTrue(parts[0].contains(OHttpUtils.HEADER_TRANSFER_ENCODING + "chunked"));
+    Assert.assertFalse(parts[0].contains(OHttpUtils.HEADER_CONTENT_LENGTH));
+
+    checkResult(new String(dechunk(parts[1], true), "UTF-8"), 3);
+  }
+
+  @Test
+  public void testStreamedRecordsAreCompressed() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = createResponse(out, "HTTP/1.1");
+    response.contentEncoding = OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED;
+
+    response.beginRecords(null, null);
+    for (int i = 0; i < 100; i++)
+      response.appendRecord(new ODocument().field("id", i));
+    response.endRecords();
+
+    final String[] parts = split(out.toByteArray());
+    Assert.assertTrue(parts[0].contains("Content-Encoding: gzip"));
+
+    final InputStream in = new GZIPInputStream(new ByteArrayInputStream(dechunk(parts[1], true)));
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) > -1)
+      content.write(buffer, 0, read);
+
+    checkResult(content.toString("UTF-8"), 100);
+  }
+
+  @Test
+  public void testRecordsAreBufferedForHttp10() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = createResponse(out, "HTTP/1.0");
+
+    response.beginRecords(null, null);
+    Assert.assertFalse(response.isStreaming());
+    response.appendRecord(new ODocument().field("id", 0));
+    response.appendRecord(null);
+    response.appendRecord(new ODocument().field("id", 1));
+    response.endRecords();
+
+    final String[] parts = split(out.toByteArray());
+    Assert.assertFalse(parts[0].contains(OHttpUtils.HEADER_TRANSFER_ENCODING));
+    Assert.assertTrue(parts[0].contains(OHttpUtils.HEADER_CONTENT_LENGTH + parts[1].getBytes("UTF-8").length));
+
+    checkResult(parts[1], 2);
+  }
+
+  @Test
+  public void testAbortedRecordsAreNotCompleted() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = createResponse(out, "HTTP/1.1");
+
+    response.beginRecords(null, null);
+    response.appendRecord(new ODocument().field("id", 0));
+    response.abortRecords();
+    Assert.assertFalse(response.isStreaming());
+
+    final String body = split(out.toByteArray())[1];
+    Assert.assertFalse(body.endsWith("0\r\n\r\n"));
+    // WHAT WAS SENT IS STILL A SEQUENCE OF CHUNKS, BUT WITHOUT THE FINAL ONE
+    dechunk(body, false);
+  }
+
+  private static OHttpResponse createResponse(final ByteArrayOutputStream iOut, final String iHttpVersion) {
+    return new OHttpResponse(iOut, iHttpVersion, null, "utf-8", "OrientDB test", null, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void checkResult(final String iJson, final int iRecords) {
+    final ODocument json = new ODocument().fromJSON(iJson);
+    final Collection<ODocument> result = (Collection<ODocument>) json.field("result");
+    Assert.assertEquals(iRecords, result.size());
+
+    int id = 0;
+    for (ODocument doc : result)
+      Assert.assertEquals(id++, ((Number) doc.field("id")).intValue());
+  }
+
+  /**
+   * Splits the response in headers and body.
+   */
+  private static String[] split(final byte[] iResponse) throws IOException {
+    final String response = new String(iResponse, "ISO-8859-1");
+    final int end = response.indexOf("\r\n\r\n");
+    Assert.assertTrue(end > -1);
+    return new String[] { response.substring(0, end), response.substring(end + 4) };
+  }
+
+  /**
+   * Decodes a chunked body, checking that it ends with the final empty chunk if expected.
+   */
+  private static byte[] dechunk(final String iBody, final boolean iComplete) throws IOException {
+    final List<byte[]> chunks = new ArrayList<byte[]>();
+    int position = 0;
+    boolean ended = false;
+    while (position < iBody.length()) {
+      final int eol = iBody.indexOf("\r\n", position);
+      final int size = Integer.parseInt(iBody.substring(position, eol), 16);
+      position = eol + 2;
+      if (size == 0) {
+        Assert.assertEquals("\r\n", iBody.substring(position));
+        ended = true;
+        break;
+      }
+      chunks.add(iBody.substring(position, position + size).getBytes("ISO-8859-1"));
+      position += size;
+      Assert.assertEquals("\r\n", iBody.substring(position, position + 2));
+      position += 2;
+    }
+    Assert.assertEquals(iComplete, ended);
+
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (byte[] chunk : chunks)
+      content.write(chunk);
+    return content.toByteArray();
+  }
+}
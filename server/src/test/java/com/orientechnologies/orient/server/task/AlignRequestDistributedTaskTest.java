@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
+import com.orientechnologies.orient.server.task.OAlignRequestDistributedTask.AlignOperation;
+
+public class AlignRequestDistributedTaskTest {
+  private File        directory;
+  private TestJournal journal;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("alignRequestTest", "");
+    directory.delete();
+    journal = new TestJournal(directory.getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    new File(directory, ODatabaseJournal.DIRECTORY + "/" + ODatabaseJournal.FILENAME).delete();
+    new File(directory, ODatabaseJournal.DIRECTORY).delete();
+    directory.delete();
+  }
+
+  @Test
+  public void testUpdatesAfterCreateAreKept() throws IOException {
+    journal.add(OPERATION_TYPES.RECORD_CREATE, 1);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+
+    final List<AlignOperation> operations = compact();
+    Assert.assertEquals(Arrays.asList(0l, 1l, 2l), positions(operations));
+
+    // EVERY UPDATE IS SENT WITH ITS OWN VERSION
+    Assert.assertNull(operations.get(0).run);
+    Assert.assertSame(operations.get(1).run, operations.get(2).run);
+    Assert.assertEquals(2, operations.get(1).updates.count);
+    Assert.assertEquals(0, operations.get(1).index);
+    Assert.assertEquals(1, operations.get(2).index);
+  }
+
+  @Test
+  public void testUpdatesOfDeletedRecordsAreDropped() throws IOException {
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.RECORD_CREATE, 2);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 2);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 3);
+    journal.add(OPERATION_TYPES.RECORD_DELETE, 1);
+    journal.add(OPERATION_TYPES.RECORD_DELETE, 2);
+
+    // THE CREATE IS KEPT TO ASSIGN THE SAME POSITIONS TO THE RECORDS CREATED AFTER IT
+    Assert.assertEquals(Arrays.asList(1l, 4l, 5l, 6l), positions(compact()));
+  }
+
+  @Test
+  public void testNoCompactionAcrossCommands() throws IOException {
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.SQL_COMMAND, -1);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.RECORD_DELETE, 1);
+
+    final List<AlignOperation> operations = compact();
+    Assert.assertEquals(Arrays.asList(0l, 1l, 3l), positions(operations));
+    Assert.assertNotSame(operations.get(0).run, operations.get(2).run);
+  }
+
+  @Test
+  public void testVersionsAcrossCommands() throws IOException {
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+    journal.add(OPERATION_TYPES.SQL_COMMAND, -1);
+    journal.add(OPERATION_TYPES.RECORD_UPDATE, 1);
+
+    final List<AlignOperation> operations = compact();
+    Assert.assertEquals(Arrays.asList(0l, 1l, 2l), positions(operations));
+    Assert.assertSame(operations.get(0).updates, operations.get(2).updates);
+
+    // THE JOURNAL PASSES THE VERSION BEFORE THE LAST UPDATE, 5, FOR BOTH THE UPDATES
+    Assert.assertEquals(4, rewind(operations.get(0), 5));
+    Assert.assertEquals(5, rewind(operations.get(2), 5));
+  }
+
+  private static int rewind(final AlignOperation iOperation, final int iVersion) {
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    version.setCounter(iVersion);
+    final OUpdateRecordDistributedTask update = new OUpdateRecordDistributedTask(1, 1, new ORecordId(1,
+        OClusterPositionFactory.INSTANCE.valueOf(1)), new byte[0], version, (byte) 'd');
+    iOperation.rewindVersion(update);
+    return update.getVersion().getCounter();
+  }
+
+  private List<AlignOperation> compact() throws IOException {
+    final List<Long> positions = new ArrayList<Long>();
+    for (long i = 0; i < journal.types.size(); ++i)
+      positions.add(i);
+    return new OAlignRequestDistributedTask().compact(journal, positions.iterator());
+  }
+
+  private static List<Long> positions(final List<AlignOperation> iOperations) {
+    final List<Long> positions = new ArrayList<Long>();
+    for (AlignOperation operation : iOperations)
+      positions.add(operation.position);
+    return positions;
+  }
+
+  /**
+   * Journal whose operations are kept in memory, the position of an operation is its index.
+   */
+  private static final class TestJournal extends ODatabaseJournal {
+    private final List<OPERATION_TYPES> types = new ArrayList<OPERATION_TYPES>();
+    private final List<ORecordId>       rids  = new ArrayList<ORecordId>();
+
+    private TestJournal(final String iDirectory) throws IOException {
+      super(null, iDirectory);
+    }
+
+    private void add(final OPERATION_TYPES iType, final long iPosition) {
+      types.add(iType);
+      rids.add(iPosition > -1 ? new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(iPosition)) : null);
+    }
+
+    @Override
+    public OPERATION_TYPES getOperationType(final long iOffsetEndOperation) {
+      return types.get((int) iOffsetEndOperation);
+    }
+
+    @Override
+    public ORecordId getOperationRid(final long iOffsetEndOperation) {
+      return rids.get((int) iOffsetEndOperation);
+    }
+  }
+}
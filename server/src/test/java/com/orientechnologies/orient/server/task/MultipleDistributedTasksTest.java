@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+
+public class MultipleDistributedTasksTest {
+
+  @Test
+  public void testUncompressedGroupKeepsThePreviousFormat() throws Exception {
+    final byte[] stream = write(createGroup(false));
+
+    // READ AS THE PREVIOUS VERSIONS DO: THE FIELDS OF THE TASK, THEN THE NUMBER OF TASKS
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(stream));
+    Assert.assertEquals("node1", in.readUTF());
+    Assert.assertEquals("test", in.readUTF());
+    in.readLong();
+    in.readLong();
+    in.readByte();
+    in.readByte();
+    Assert.assertEquals(3, in.readInt());
+
+    final OMultipleDistributedTasks group = read(stream);
+    Assert.assertFalse(group.isCompressed());
+    assertTasks(group);
+  }
+
+  @Test
+  public void testCompressedGroup() throws Exception {
+    final OMultipleDistributedTasks group = read(write(createGroup(true)));
+    Assert.assertTrue(group.isCompressed());
+    assertTasks(group);
+  }
+
+  private static OMultipleDistributedTasks createGroup(final boolean iCompressed) {
+    final OMultipleDistributedTasks group = new OMultipleDistributedTasks();
+    group.setNodeSource("node1");
+    group.setDatabaseName("test");
+    group.setMode(EXECUTION_MODE.SYNCHRONOUS);
+    group.setCompressed(iCompressed);
+
+    for (int i = 0; i < 3; ++i) {
+      final OCreateRecordDistributedTask task = new OCreateRecordDistributedTask(1, i, new ORecordId(9,
+          OClusterPositionFactory.INSTANCE.valueOf(i)), ("{\"value\":" + i + "}").getBytes(), OVersionFactory.instance()
+          .createVersion(), ODocument.RECORD_TYPE);
+      task.setNodeSource("node1");
+      task.setDatabaseName("test");
+      task.setMode(EXECUTION_MODE.SYNCHRONOUS);
+      group.addTask(task);
+    }
+    return group;
+  }
+
+  private static void assertTasks(final OMultipleDistributedTasks iGroup) {
+    Assert.assertEquals(3, iGroup.getTasks());
+    for (int i = 0; i < 3; ++i) {
+      final OCreateRecordDistributedTask task = (OCreateRecordDistributedTask) iGroup.getTask(i);
+      Assert.assertEquals(new ORecordId(9, OClusterPositionFactory.INSTANCE.valueOf(i)), task.getRid());
+      Assert.assertEquals("{\"value\":" + i + "}", new String(task.content));
+    }
+  }
+
+  private static byte[] write(final OMultipleDistributedTasks iGroup) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(buffer);
+    iGroup.writeExternal(out);
+    out.close();
+    return buffer.toByteArray();
+  }
+
+  private static OMultipleDistributedTasks read(final byte[] iStream) throws IOException, ClassNotFoundException {
+    final OMultipleDistributedTasks group = new OMultipleDistributedTasks();
+    group.readExternal(new ObjectInputStream(new ByteArrayInputStream(iStream)));
+    return group;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.auto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordLazyList;
+import com.orientechnologies.orient.core.exception.OStorageBusyException;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
+
+/**
+ * Loads many records with one round trip every few records. Runs only against remote storages.
+ */
+@Test(groups = "query")
+public class RemoteLoadRecordsTest {
+  private static final int    ITEMS = 25;
+
+  private ODatabaseDocumentTx database;
+  private ODocument           parent;
+
+  @Parameters(value = "url")
+  public RemoteLoadRecordsTest(final String iURL) {
+    database = new ODatabaseDocumentTx(iURL);
+  }
+
+  @BeforeMethod
+  public void open() {
+    database.open("admin", "admin");
+
+    final List<ODocument> items = new ArrayList<ODocument>();
+    for (int i = 0; i < ITEMS; i++)
+      items.add(new ODocument("LoadRecordsItem").field("id", i).save());
+
+    parent = new ODocument("LoadRecordsParent").field("items", items).save();
+  }
+
+  @AfterMethod
+  public void close() {
+    database.command(new OCommandSQL("delete from LoadRecordsItem")).execute();
+    database.command(new OCommandSQL("delete from LoadRecordsParent")).execute();
+    database.close();
+  }
+
+  public void loadRecords() {
+    if (!(database.getStorage() instanceof OStorageProxy))
+      return;
+
+    final List<ORID> rids = new ArrayList<ORID>();
+    for (OIdentifiable item : parent.<List<OIdentifiable>> field("items"))
+      rids.add(item.getIdentity());
+    final ORID missing = new ORecordId(rids.get(0).getClusterId(), OClusterPositionFactory.INSTANCE.valueOf(Integer.MAX_VALUE));
+    rids.add(ITEMS / 2, missing);
+
+    final Map<ORID, ORawBuffer> buffers = ((OStorageProxy) database.getStorage()).loadRecords(rids, null, false, false);
+
+    Assert.assertEquals(buffers.size(), ITEMS);
+    Assert.assertFalse(buffers.containsKey(missing));
+
+    int id = 0;
+    for (Map.Entry<ORID, ORawBuffer> entry : buffers.entrySet()) {
+      final ODocument item = new ODocument().fromStream(entry.getValue().buffer);
+      Assert.assertEquals(item.field("id"), id++);
+      Assert.assertEquals(entry.getValue().version.getCounter(), ((ODocument) entry.getKey().getRecord()).getVersion());
+    }
+  }
+
+  public void linksAreConvertedWithRecordsLoadedTogether() {
+    if (!(database.getStorage() instanceof OStorageProxy))
+      return;
+
+    database.getLevel1Cache().clear();
+    final ODocument loaded = database.load(parent.getIdentity());
+    final ORecordLazyList items = loaded.field("items");
+
+    items.convertLinks2Records();
+
+    int id = 0;
+    for (OIdentifiable item : items) {
+      Assert.assertTrue(item instanceof ODocument);
+      Assert.assertEquals(((ODocument) item).field("id"), id++);
+      Assert.assertNotNull(database.getLevel1Cache().findRecord(item.getIdentity()));
+    }
+    Assert.assertEquals(id, ITEMS);
+  }
+
+  public void loadRecordsWhileReceivingACommandResult() {
+    if (!(database.getStorage() instanceof OStorageProxy))
+      return;
+
+    final List<ORID> rids = new ArrayList<ORID>();
+    for (OIdentifiable item : parent.<List<OIdentifiable>> field("items"))
+      rids.add(item.getIdentity());
+
+    final List<Exception> errors = new ArrayList<Exception>();
+    database.command(new OSQLAsynchQuery<ODocument>("select from LoadRecordsParent", new OCommandResultListener() {
+      public boolean result(final Object iRecord) {
+        try {
+          ((OStorageProxy) database.getStorage()).loadRecords(rids, null, false, false);
+        } catch (OStorageBusyException e) {
+          errors.add(e);
+        }
+        return true;
+      }
+
+      public void end() {
+      }
+    })).execute();
+
+    // THE CHANNEL IS BUSY WITH THE RESULT: THE RECORDS CANNOT BE RETURNED AS MISSING
+    Assert.assertEquals(errors.size(), 1);
+  }
+}
@@ -0,0 +1,138 @@
+package com.orientechnologies.orient.test.internal.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.O2QCache;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.OPartitioned2QCache;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+
+/**
+ * Compares read/write throughput of {@link O2QCache} and {@link OPartitioned2QCache} for different amount of threads.
+ */
+@Test(enabled = false)
+public class DiskCacheThroughputSpeedTest {
+  private static final int       PAGE_SIZE          = 4 * 1024;
+  private static final int       PAGE_COUNT         = 64 * 1024;
+  private static final long      CACHE_MEMORY       = 128L * 1024 * 1024;
+  private static final int       OPERATIONS         = 4 * 1000 * 1000;
+  private static final int       WRITE_PERCENT      = 10;
+  private static final int[]     THREADS            = { 1, 2, 4, 8, 16, 32 };
+
+  private OLocalPaginatedStorage storageLocal;
+  private ODirectMemory          directMemory;
+
+  @BeforeClass
+  public void beforeClass() {
+    OGlobalConfiguration.FILE_LOCK.setValue(Boolean.FALSE);
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    storageLocal = (OLocalPaginatedStorage) Orient.instance().loadStorage("plocal:" + buildDirectory + "/diskCacheThroughputTest");
+  }
+
+  @AfterClass
+  public void afterClass() {
+    storageLocal.delete();
+  }
+
+  @Test(enabled = false)
+  public void testThroughput() throws Exception {
+    final int partitions = Runtime.getRuntime().availableProcessors();
+
+    for (int threads : THREADS) {
+      final long o2q = measure(new O2QCache(CACHE_MEMORY, 15000, directMemory, null, PAGE_SIZE, storageLocal, false), "o2qCache",
+          threads);
+      final long partitioned = measure(new OPartitioned2QCache(CACHE_MEMORY, 15000, directMemory, null, PAGE_SIZE, storageLocal,
+          false, partitions), "partitionedCache", threads);
+
+      System.out.printf("threads=%d O2QCache=%d ops/s OPartitioned2QCache(%d)=%d ops/s speedup=%.2f\n", threads, o2q, partitions,
+          partitioned, ((double) partitioned) / o2q);
+    }
+  }
+
+  private long measure(final ODiskCache diskCache, String fileName, int threads) throws Exception {
+    final OStorageSegmentConfiguration fileConfiguration = new OStorageSegmentConfiguration(storageLocal.getConfiguration(),
+        fileName, 0);
+    fileConfiguration.fileType = OFileFactory.CLASSIC;
+    fileConfiguration.fileMaxSize = "10000Mb";
+
+    final long fileId = diskCache.openFile(fileConfiguration, ".tst");
+    try {
+      for (int i = 0; i < PAGE_COUNT; i++) {
+        diskCache.load(fileId, i);
+        diskCache.markDirty(fileId, i);
+        diskCache.release(fileId, i);
+      }
+      diskCache.flushBuffer();
+
+      final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+      final CountDownLatch startLatch = new CountDownLatch(1);
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+      for (int n = 0; n < threads; n++)
+        futures.add(executorService.submit(new Worker(diskCache, fileId, OPERATIONS / threads, startLatch)));
+
+      final long start = System.nanoTime();
+      startLatch.countDown();
+      for (Future<Void> future : futures)
+        future.get();
+      final long elapsed = System.nanoTime() - start;
+
+      executorService.shutdown();
+
+      return OPERATIONS * 1000000000L / elapsed;
+    } finally {
+      diskCache.deleteFile(fileId);
+      diskCache.close();
+    }
+  }
+
+  private static final class Worker implements Callable<Void> {
+    private final ODiskCache     diskCache;
+    private final long           fileId;
+    private final int            operations;
+    private final CountDownLatch startLatch;
+
+    private Worker(ODiskCache diskCache, long fileId, int operations, CountDownLatch startLatch) {
+      this.diskCache = diskCache;
+      this.fileId = fileId;
+      this.operations = operations;
+      this.startLatch = startLatch;
+    }
+
+    @Override
+    public Void call() throws IOException, InterruptedException {
+      final Random random = new Random();
+      startLatch.await();
+
+      for (int i = 0; i < operations; i++) {
+        final long pageIndex = random.nextInt(PAGE_COUNT);
+        diskCache.load(fileId, pageIndex);
+        if (random.nextInt(100) < WRITE_PERCENT)
+          diskCache.markDirty(fileId, pageIndex);
+        diskCache.release(fileId, pageIndex);
+      }
+
+      return null;
+    }
+  }
+}
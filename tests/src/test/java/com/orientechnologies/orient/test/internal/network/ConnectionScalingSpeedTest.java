@@ -0,0 +1,99 @@
+package com.orientechnologies.orient.test.internal.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OContextConfiguration;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryClient;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryProtocol;
+
+/**
+ * Opens thousands of mostly idle binary connections against a running server and measures the latency of the requests sent by a
+ * few of them. Run it once against a listener configured with the 'thread' transport and once against a listener using the
+ * 'nio' one (parameter "network.binary.transport" of the listener), then compare the results and the server thread count.
+ */
+@Test(enabled = false)
+public class ConnectionScalingSpeedTest {
+  private static final int    CONNECTIONS = Integer.getInteger("connections", 10000);
+  private static final int    REQUESTS    = Integer.getInteger("requests", 100000);
+  private static final String HOST        = System.getProperty("host", "localhost");
+  private static final int    PORT        = Integer.getInteger("port", 2424);
+  private static final String USER        = System.getProperty("user", "root");
+  private static final String PASSWORD    = System.getProperty("password", "");
+
+  @Test(enabled = false)
+  public void testConnectionScaling() throws IOException {
+    final OContextConfiguration config = new OContextConfiguration();
+    config.setValue(OGlobalConfiguration.NETWORK_SOCKET_BUFFER_SIZE, 1024);
+
+    final List<OChannelBinaryClient> channels = new ArrayList<OChannelBinaryClient>(CONNECTIONS);
+    final int[] sessions = new int[CONNECTIONS];
+
+    try {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < CONNECTIONS; ++i) {
+        final OChannelBinaryClient channel = new OChannelBinaryClient(HOST, PORT, config,
+            OChannelBinaryProtocol.CURRENT_PROTOCOL_VERSION);
+        channels.add(channel);
+        sessions[i] = connect(channel);
+      }
+      System.out.printf("Opened %d connections in %d ms\n", CONNECTIONS, System.currentTimeMillis() - start);
+
+      final Random random = new Random();
+      final long[] latencies = new long[REQUESTS];
+
+      start = System.currentTimeMillis();
+      for (int i = 0; i < REQUESTS; ++i) {
+        final int c = random.nextInt(CONNECTIONS);
+        final long requestStart = System.nanoTime();
+        existsDatabase(channels.get(c), sessions[c]);
+        latencies[i] = System.nanoTime() - requestStart;
+      }
+      final long elapsed = System.currentTimeMillis() - start;
+
+      java.util.Arrays.sort(latencies);
+      System.out.printf("%d requests in %d ms (%d req/s), latency p50=%d us p99=%d us max=%d us\n", REQUESTS, elapsed, REQUESTS
+          * 1000L / Math.max(elapsed, 1), latencies[REQUESTS / 2] / 1000, latencies[REQUESTS * 99 / 100] / 1000,
+          latencies[REQUESTS - 1] / 1000);
+    } finally {
+      for (OChannelBinaryClient channel : channels)
+        channel.close();
+    }
+  }
+
+  private int connect(final OChannelBinaryClient channel) throws IOException {
+    channel.writeByte(OChannelBinaryProtocol.REQUEST_CONNECT);
+    channel.writeInt(-1);
+    channel.writeString("ConnectionScalingSpeedTest");
+    channel.writeString("1.0");
+    channel.writeShort((short) OChannelBinaryProtocol.CURRENT_PROTOCOL_VERSION);
+    channel.writeString(null);
+    channel.writeString(USER);
+    channel.writeString(PASSWORD);
+    channel.flush();
+
+    readStatus(channel);
+    return channel.readInt();
+  }
+
+  private void existsDatabase(final OChannelBinaryClient channel, final int session) throws IOException {
+    channel.writeByte(OChannelBinaryProtocol.REQUEST_DB_EXIST);
+    channel.writeInt(session);
+    channel.writeString("ConnectionScalingSpeedTest");
+    channel.flush();
+
+    readStatus(channel);
+    channel.readByte();
+  }
+
+  private void readStatus(final OChannelBinaryClient channel) throws IOException {
+    Assert.assertEquals(channel.readByte(), OChannelBinaryProtocol.RESPONSE_STATUS_OK);
+    channel.readInt();
+  }
+}